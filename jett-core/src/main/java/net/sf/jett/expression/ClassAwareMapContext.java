@@ -1,16 +1,26 @@
 package net.sf.jett.expression;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.jexl2.MapContext;
 
+import net.sf.jett.util.LruCache;
+
 /**
- * A <code>ClassAwareMapContext</code> is a JEXL <code>MapContext</code> that
- * can resolve class names using <code>Class.forName</code> for the purposes
- * of allowing access to built-in Java methods, especially static methods such
- * as <code>java.lang.String.format</code>.
+ * <p>A <code>ClassAwareMapContext</code> is a JEXL <code>MapContext</code>
+ * that can resolve class names using <code>Class.forName</code> for the
+ * purposes of allowing access to built-in Java methods, especially static
+ * methods such as <code>java.lang.String.format</code>.</p>
+ *
+ * <p>As of 0.11.1, names of imported classes are resolved first, and class
+ * name resolution with <code>Class.forName</code> may be turned off.  The
+ * results of <code>Class.forName</code>, including names that aren't classes,
+ * are cached for all contexts, because JEXL asks about every prefix of a
+ * dotted name, e.g. "java", "java.lang", and "java.lang.String", and a miss
+ * is an expensive <code>ClassNotFoundException</code>.</p>
  *
  * @author Randy Gettman
  * @since 0.4.0
@@ -18,6 +28,16 @@ import org.apache.commons.jexl2.MapContext;
 public class ClassAwareMapContext extends MapContext
 {
     private static final Map<String, Object> additionalValues;
+    private static final int CLASS_CACHE_SIZE = 1000;
+    /**
+     * Caches <code>Class.forName</code> results by name, with
+     * <code>NOT_A_CLASS</code> for names that aren't classes.
+     */
+    private static final LruCache<String, Object> CLASS_CACHE = new LruCache<>(CLASS_CACHE_SIZE);
+    private static final Object NOT_A_CLASS = new Object();
+
+    private final Map<String, Class<?>> myImports;
+    private final boolean amIClassNameFallback;
 
     static
     {
@@ -37,6 +57,8 @@ public class ClassAwareMapContext extends MapContext
     public ClassAwareMapContext()
     {
         super();
+        myImports = Collections.emptyMap();
+        amIClassNameFallback = true;
     }
 
     /**
@@ -45,13 +67,56 @@ public class ClassAwareMapContext extends MapContext
      * @param beans A <code>Map</code> of bean names to bean values.
      */
     public ClassAwareMapContext(Map<String, Object> beans)
+    {
+        this(beans, Collections.<String, Class<?>>emptyMap(), true);
+    }
+
+    /**
+     * Constructs a <code>ClassAwareMapContext</code> that wraps the existing
+     * <code>Map</code> of bean names to bean values, and that resolves the
+     * given imported class names.
+     * @param beans A <code>Map</code> of bean names to bean values.
+     * @param imports A <code>Map</code> of imported class names to
+     *    <code>Classes</code>.
+     * @param classNameFallback Whether to resolve other class names with
+     *    <code>Class.forName</code>.
+     * @since 0.11.1
+     */
+    public ClassAwareMapContext(Map<String, Object> beans, Map<String, Class<?>> imports,
+                                boolean classNameFallback)
     {
         super(beans);
+        myImports = imports;
+        amIClassNameFallback = classNameFallback;
+    }
+
+    /**
+     * Returns whether this context wraps the given <code>Map</code> of bean
+     * names to bean values, so that it can be reused for it.
+     * @param beans A <code>Map</code> of bean names to bean values.
+     * @return Whether this context wraps that very <code>Map</code>.
+     * @since 0.11.1
+     */
+    public boolean wraps(Map<String, Object> beans)
+    {
+        return map == beans;
+    }
+
+    /**
+     * Returns whether names that aren't beans or imported classes are
+     * resolved with <code>Class.forName</code>.
+     * @return Whether other class names are resolved.
+     * @since 0.11.1
+     */
+    public boolean isClassNameFallback()
+    {
+        return amIClassNameFallback;
     }
 
     /**
      * Checks whether the name is a variable defined in this context, or if it
-     * is a valid Java class name as determined by <code>Class.forName</code>.
+     * is an imported class name or a valid Java class name as determined by
+     * <code>Class.forName</code>.
      * @param name The variable's or class's name.
      * @return <code>true</code> if the name exists, otherwise
      *    <code>false</code>.
@@ -59,14 +124,7 @@ public class ClassAwareMapContext extends MapContext
     @Override
     public boolean has(String name)
     {
-        try
-        {
-            return super.has(name) || additionalValues.containsKey(name) || Class.forName(name) != null;
-        }
-        catch (ClassNotFoundException e)
-        {
-            return false;
-        }
+        return super.has(name) || additionalValues.containsKey(name) || resolveClass(name) != null;
     }
 
     /**
@@ -78,20 +136,41 @@ public class ClassAwareMapContext extends MapContext
     @Override
     public Object get(String name)
     {
-        try
+        Object value = super.get(name);
+        // Check for a legitimate null value for a variable name before
+        // attempting to resolve a class name.
+        if (value == null && !super.has(name) && (value = additionalValues.get(name)) == null)
         {
-            Object value = super.get(name);
-            // Check for a legitimate null value for a variable name before
-            // attempting to resolve a class name.
-            if (value == null && !super.has(name) && (value = additionalValues.get(name)) == null)
-            {
-                value = Class.forName(name);
-            }
-            return value;
+            value = resolveClass(name);
         }
-        catch (ClassNotFoundException e)
+        return value;
+    }
+
+    /**
+     * Resolves the given name as an imported class name, or else, if class
+     * name fallback is on, with <code>Class.forName</code>, cached.
+     * @param name The class's name.
+     * @return The <code>Class</code>, or <code>null</code> if it's not a
+     *    class name.
+     */
+    private Class<?> resolveClass(String name)
+    {
+        Class<?> cls = myImports.get(name);
+        if (cls != null || !amIClassNameFallback)
+            return cls;
+        Object cached = CLASS_CACHE.get(name);
+        if (cached == null)
         {
-            return null;
+            try
+            {
+                cached = Class.forName(name);
+            }
+            catch (ClassNotFoundException e)
+            {
+                cached = NOT_A_CLASS;
+            }
+            CLASS_CACHE.put(name, cached);
         }
+        return (cached == NOT_A_CLASS) ? null : (Class<?>) cached;
     }
 }
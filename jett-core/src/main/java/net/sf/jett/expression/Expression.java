@@ -2,12 +2,11 @@ package net.sf.jett.expression;
 
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.parser.ASTIdentifier;
@@ -27,6 +26,7 @@ import net.sf.jett.exception.ParseException;
 import net.sf.jett.formula.Formula;
 import net.sf.jett.model.WorkbookContext;
 import net.sf.jett.util.FormulaUtil;
+import net.sf.jett.util.LruCache;
 import net.sf.jett.util.RichTextStringUtil;
 
 /**
@@ -42,14 +42,6 @@ public class Expression
 {
     private static final Logger logger = LogManager.getLogger();
 
-    /**
-     * Contains a cache of collection names found in expression texts.  If it is
-     * known that there are no collection names, then the value will be an empty
-     * String, to distinguish from the case in which the result is not known
-     * yet, in which case the result is <code>null</code>.
-     */
-    private static final Map<String, String> MAP_EXPRESSION_TO_COLL_NAMES = new HashMap<>();
-
     /**
      * This pattern makes sure that there is no backslash in front of an
      * expression that is due to be replaced with the result of its evaluation.
@@ -66,7 +58,24 @@ public class Expression
      */
     public static final String END_EXPR = "}";
 
-    private String myExpression;
+    /**
+     * The maximum number of distinct texts whose parsed <code>Segments</code>
+     * are cached.
+     */
+    private static final int SEGMENTS_CACHE_SIZE = 10000;
+    /**
+     * Caches the parsed <code>Segments</code> of texts, so that identical
+     * text, e.g. a template cell copied by a loop, is only parsed once.
+     */
+    private static final LruCache<String, Segments> SEGMENTS_CACHE = new LruCache<>(SEGMENTS_CACHE_SIZE);
+    /**
+     * Caches the parsed <code>ASTReferences</code> of expression texts, so
+     * that implicit collections detection doesn't parse the same expression
+     * text again.
+     */
+    private static final LruCache<String, List<ASTReference>> REFERENCES_CACHE = new LruCache<>(SEGMENTS_CACHE_SIZE);
+
+    private final String myExpression;
 
     /**
      * Create an <code>Expression</code>.
@@ -89,7 +98,7 @@ public class Expression
     {
         if (beans != null && !beans.isEmpty())
         {
-            JexlContext context = new ClassAwareMapContext(beans);
+            JexlContext context = factory.getContext(beans);
             return factory.createExpression(myExpression).evaluate(context);
         }
         return myExpression;
@@ -160,8 +169,7 @@ public class Expression
                     continue;
                 }
 
-                Expression expr = new Expression(collectionName);
-                Object result = expr.evaluate(factory, beans);
+                Object result = evaluateQuietly(collectionName, factory, beans);
                 if (result instanceof Collection)
                 {
                     // Continue past a Collection if the next method called is a
@@ -275,51 +283,92 @@ public class Expression
     {
         String expression = myExpression;
         // Try cache first.
-        String cachedResult = MAP_EXPRESSION_TO_COLL_NAMES.get(expression);
+        Map<String, String> exprToCollNamesMap = context.getExpressionToCollNamesMap();
+        String cachedResult = exprToCollNamesMap.get(expression);
         if (cachedResult != null)
         {
-            return cachedResult;
+            return cachedResult.isEmpty() ? null : cachedResult;
         }
 
-        Parser parser = new Parser(new StringReader(";"));
-        try
+        // Only the parsing is cached across transformations; whether a
+        // reference refers to a Collection depends on the beans.
+        List<ASTReference> references = getReferences(expression);
+        for (ASTReference node : references)
         {
-            SimpleNode tree = parser.parse(new StringReader(expression), null);
-            List<ASTReference> references = findReferences(tree);
-            for (ASTReference node : references)
+            logger.trace("  Reference...");
+            String collectionName = findCollectionName(node, beans, context);
+            if (collectionName != null)
             {
-                logger.trace("  Reference...");
-                String collectionName = findCollectionName(node, beans, context);
-                if (collectionName != null)
-                {
-                    // Cache this result.
-                    MAP_EXPRESSION_TO_COLL_NAMES.put(expression, collectionName);
-                    return collectionName;
-                }
+                // Cache this result.
+                exprToCollNamesMap.put(expression, collectionName);
+                return collectionName;
             }
         }
-        catch (org.apache.commons.jexl2.parser.ParseException e)
-        {
-            throw new ParseException("JEXL ParseException caught on expression \"" + expression + "\": " + e.getMessage(), e);
-        }
         // If we get here, then there is no Collection name reference.
-        MAP_EXPRESSION_TO_COLL_NAMES.put(expression, "");
+        exprToCollNamesMap.put(expression, "");
         return null;
     }
 
     /**
-     * Clear the <code>Map</code> that is used to cache the fact that a certain
-     * collection name may be present in expression text.  Call this method when
-     * a new beans <code>Map</code> is being used, which would render the cache
-     * useless.  Such a situation arises when supplying multiple bean maps to
-     * the <code>transform</code> method on <code>ExcelTransformer</code>, and
-     * we are moving to a new <code>Sheet</code>, or if either
-     * <code>transform</code> method on <code>ExcelTransformer</code> is called
-     * more than once.
+     * Returns the <code>ASTReferences</code> in the given expression text,
+     * parsing it only if it's not cached already.  The parsed references
+     * don't depend on any beans.
+     * @param expression The expression text.
+     * @return An unmodifiable <code>List</code> of <code>ASTReferences</code>.
+     * @throws ParseException If the expression text can't be parsed.
+     */
+    private List<ASTReference> getReferences(String expression)
+    {
+        List<ASTReference> references = REFERENCES_CACHE.get(expression);
+        if (references == null)
+        {
+            Parser parser = new Parser(new StringReader(";"));
+            try
+            {
+                SimpleNode tree = parser.parse(new StringReader(expression), null);
+                references = Collections.unmodifiableList(findReferences(tree));
+            }
+            catch (org.apache.commons.jexl2.parser.ParseException e)
+            {
+                throw new ParseException("JEXL ParseException caught on expression \"" + expression + "\": " + e.getMessage(), e);
+            }
+            REFERENCES_CACHE.put(expression, references);
+        }
+        return references;
+    }
+
+    /**
+     * Formerly cleared a global <code>Map</code> that was used to cache the
+     * fact that a certain collection name may be present in expression text.
+     * That cache now belongs to each transformation's
+     * <code>WorkbookContext</code>, so that concurrent transformations don't
+     * interfere with each other, and this method does nothing.
+     * @deprecated The cache is now scoped to a <code>WorkbookContext</code>;
+     *    see <code>WorkbookContext.getExpressionToCollNamesMap</code>.
      */
+    @Deprecated
     public static void clearExpressionToCollNamesMap()
     {
-        MAP_EXPRESSION_TO_COLL_NAMES.clear();
+    }
+
+    /**
+     * Evaluates the given expression text leniently and silently, without
+     * changing the flags of the given <code>ExpressionFactory</code>, which may
+     * be shared with other threads.
+     * @param expression The expression text.
+     * @param factory An <code>ExpressionFactory</code>.
+     * @param beans A <code>Map</code> mapping strings to objects.
+     * @return The result of the evaluation.
+     * @since 0.11.1
+     */
+    private static Object evaluateQuietly(String expression, ExpressionFactory factory, Map<String, Object> beans)
+    {
+        if (beans != null && !beans.isEmpty())
+        {
+            JexlContext context = factory.getContext(beans);
+            return factory.createQuietExpression(expression).evaluate(context);
+        }
+        return expression;
     }
 
     /**
@@ -341,21 +390,14 @@ public class Expression
     public static List<String> getImplicitCollectionExpr(String value, Map<String, Object> beans,
                                                          WorkbookContext context)
     {
-        ExpressionFactory factory = context.getExpressionFactory();
-
         logger.trace("getImplicitCollectionExpr: \"{}\".", value);
         List<Expression> expressions = getExpressions(value);
         List<String> implicitCollections = new ArrayList<>();
 
-        // Don't report errors for some identifiers that depend on implicit
+        // Errors aren't reported for some identifiers that depend on implicit
         // processing to be a legal expression, e.g. a property access on a List
-        // meant to be a property access on an element of the List.  Store the
-        // current silent/lenient flags for restoration later.
-        boolean lenient = factory.isLenient();
-        boolean silent = factory.isSilent();
-        factory.setLenient(true);
-        factory.setSilent(true);
-
+        // meant to be a property access on an element of the List.  The
+        // probing expressions are evaluated quietly for that reason.
         if (value.startsWith(Expression.BEGIN_EXPR) && value.endsWith(Expression.END_EXPR) && expressions.size() == 1)
         {
             Expression expression = new Expression(value.substring(2, value.length() - 1));
@@ -382,10 +424,6 @@ public class Expression
             }
         }
 
-        // Restore settings.
-        factory.setLenient(lenient);
-        factory.setSilent(silent);
-
         return implicitCollections;
     }
 
@@ -442,15 +480,15 @@ public class Expression
      */
     public static Object evaluateString(String value, ExpressionFactory factory, Map<String, Object> beans)
     {
-        List<Expression> expressions = getExpressions(value);
-        if (value.startsWith(Expression.BEGIN_EXPR) && value.endsWith(Expression.END_EXPR) && expressions.size() == 1)
+        Segments segments = getSegments(value);
+        if (value.startsWith(Expression.BEGIN_EXPR) && value.endsWith(Expression.END_EXPR) && segments.getNumExpressions() == 1)
         {
             Expression expression = new Expression(value.substring(2, value.length() - 1));
             return expression.evaluate(factory, beans);
         }
         else
         {
-            return replaceExpressions(value, expressions, factory, beans);
+            return segments.interpolate(factory, beans);
         }
     }
 
@@ -461,17 +499,50 @@ public class Expression
      */
     private static List<Expression> getExpressions(String value)
     {
+        return getSegments(value).getExpressions();
+    }
+
+    /**
+     * Split the given value into literal text and the <code>Expressions</code>
+     * between the literal text.  Escaped expressions, e.g. "\${expr}", and
+     * expressions inside JETT formulas are part of the literal text, and
+     * escapes are removed from the literal text.  <code>Segments</code> are
+     * cached by text, because they don't depend on any beans.
+     * @param value The given value.
+     * @return The <code>Segments</code>.
+     * @since 0.11.1
+     */
+    private static Segments getSegments(String value)
+    {
+        Segments segments = SEGMENTS_CACHE.get(value);
+        if (segments == null)
+        {
+            segments = parseSegments(value);
+            SEGMENTS_CACHE.put(value, segments);
+        }
+        return segments;
+    }
+
+    /**
+     * Parses the given value into <code>Segments</code>.
+     * @param value The given value.
+     * @return The <code>Segments</code>.
+     */
+    private static Segments parseSegments(String value)
+    {
+        List<String> literals = new ArrayList<>();
         List<Expression> expressions = new ArrayList<>();
+        int literalStart = 0;
         int beginIdx = value.indexOf(Expression.BEGIN_EXPR);
         int endIdx = findEndOfExpression(value, beginIdx + Expression.BEGIN_EXPR.length());
         logger.debug("  getExprs: beginIdx = {}, endIdx = {}", beginIdx, endIdx);
+        int formulaBeginIdx = value.indexOf(Formula.BEGIN_FORMULA);
+        int formulaEndIdx = formulaBeginIdx != -1 ?
+                FormulaUtil.getEndOfJettFormula(value, formulaBeginIdx) :
+                value.indexOf(Formula.END_FORMULA);
 
         while (beginIdx != -1 && endIdx != -1 && endIdx > beginIdx)
         {
-            int formulaBeginIdx = value.indexOf(Formula.BEGIN_FORMULA);
-            int formulaEndIdx = formulaBeginIdx != -1 ?
-                    FormulaUtil.getEndOfJettFormula(value, formulaBeginIdx) :
-                    value.indexOf(Formula.END_FORMULA);
             boolean exprFound = true;
             // Skip escaped expressions, e.g. "\${...}".
             if (beginIdx > 0 && value.charAt(beginIdx - 1) == '\\')
@@ -490,59 +561,29 @@ public class Expression
             {
                 String strExpr = value.substring(beginIdx + 2, endIdx);
                 logger.debug("  Expression Found: {}", strExpr);
-                Expression expr = new Expression(strExpr);
-                expressions.add(expr);
+                literals.add(unescape(value.substring(literalStart, beginIdx)));
+                expressions.add(new Expression(strExpr));
+                literalStart = endIdx + Expression.END_EXPR.length();
             }
 
             beginIdx = value.indexOf(Expression.BEGIN_EXPR, endIdx + 1);
             endIdx = findEndOfExpression(value, beginIdx + Expression.BEGIN_EXPR.length());
             logger.debug("  getExprs: beginIdx = {}, endIdx = {}", beginIdx, endIdx);
         }
-        return expressions;
+        literals.add(unescape(value.substring(literalStart)));
+        return new Segments(literals, expressions);
     }
 
     /**
-     * Replace all expressions with their evaluated results.  This attempts to
-     * preserve any formatting within the <code>RichTextString</code>.
-     * @param value The entire string, with possibly many expressions.
-     * @param expressions A <code>List</code> of <code>Expressions</code>.
-     * @param factory An <code>ExpressionFactory</code>.
-     * @param beans A <code>Map</code> of beans to provide context for the
-     *    <code>Expressions</code>.
-     * @return A <code>String</code> with all expressions replaced with their
-     *    evaluated results.
+     * Respect escapes of expressions.  E.g. "\${expr}" =&gt; "${expr}".
+     * @param literal Literal text.
+     * @return The literal text with escapes of expressions removed.
      */
-    private static String replaceExpressions(String value,
-                                             List<Expression> expressions, ExpressionFactory factory, Map<String, Object> beans)
+    private static String unescape(String literal)
     {
-        // Replace Expressions with values.
-        for (Expression expr : expressions)
-        {
-            logger.debug("replExprs: Loop for {}", expr.myExpression);
-            int beginIdx = value.indexOf(Expression.BEGIN_EXPR);
-            int endIdx = beginIdx + Expression.BEGIN_EXPR.length() + expr.myExpression.length();
-            if (beginIdx != -1 && endIdx != -1 && endIdx > beginIdx)
-            {
-                String replaceMe = value.substring(beginIdx, endIdx + 1);
-                Object result = expr.evaluate(factory, beans);
-                String replaceWith = "";
-                if (result != null)
-                    replaceWith = expr.evaluate(factory, beans).toString();
-                logger.debug("  Replacing \"{}\" with \"{}\".", replaceMe, replaceWith);
-
-                // Don't replace an expression when the $ is escaped, e.g. "\${replaceMe}".
-                value = value.replaceFirst(NEGATIVE_LOOKBEHIND_BACKSLASH + Pattern.quote(replaceMe),
-                        Matcher.quoteReplacement(replaceWith));
-                logger.debug("  value is now \"{}\".", value);
-            }
-            else
-            {
-                break;
-            }
-        }
-        // Respect escapes of expressions.  E.g. "\${expr}" => "${expr}", unevaluated.
-        value = value.replace("\\" + Expression.BEGIN_EXPR, Expression.BEGIN_EXPR);
-        return value;
+        if (literal.indexOf('\\') == -1)
+            return literal;
+        return literal.replace("\\" + Expression.BEGIN_EXPR, Expression.BEGIN_EXPR);
     }
 
     /**
@@ -606,4 +647,80 @@ public class Expression
         }
         return -1;
     }
+
+    /**
+     * The literal text and the <code>Expressions</code> of a string with
+     * embedded expressions, in order, starting and ending with literal text,
+     * e.g. "Hello ${name}!" =&gt; "Hello ", name, "!".
+     */
+    private static class Segments
+    {
+        private final String[] myLiterals;
+        private final Expression[] myExpressions;
+
+        /**
+         * Constructs <code>Segments</code>.
+         * @param literals The literal text, one more than the number of
+         *    <code>Expressions</code>.
+         * @param expressions The <code>Expressions</code>.
+         */
+        private Segments(List<String> literals, List<Expression> expressions)
+        {
+            myLiterals = literals.toArray(new String[literals.size()]);
+            myExpressions = expressions.toArray(new Expression[expressions.size()]);
+        }
+
+        /**
+         * Returns the number of <code>Expressions</code>.
+         * @return The number of <code>Expressions</code>.
+         */
+        private int getNumExpressions()
+        {
+            return myExpressions.length;
+        }
+
+        /**
+         * Returns the <code>Expressions</code>.
+         * @return An unmodifiable <code>List</code> of
+         *    <code>Expressions</code>, possibly empty.
+         */
+        private List<Expression> getExpressions()
+        {
+            return Collections.unmodifiableList(Arrays.asList(myExpressions));
+        }
+
+        /**
+         * Evaluates each <code>Expression</code> once, and writes the literal
+         * text and the results, with <code>null</code> results as empty text,
+         * into one buffer.
+         * @param factory An <code>ExpressionFactory</code>.
+         * @param beans A <code>Map</code> of beans to provide context for the
+         *    <code>Expressions</code>.
+         * @return A <code>String</code> with all expressions replaced with
+         *    their evaluated results.
+         */
+        private String interpolate(ExpressionFactory factory, Map<String, Object> beans)
+        {
+            if (myExpressions.length == 0)
+                return myLiterals[0];
+            int length = 0;
+            for (String literal : myLiterals)
+            {
+                length += literal.length();
+            }
+            StringBuilder buf = new StringBuilder(length + 16 * myExpressions.length);
+            for (int i = 0; i < myExpressions.length; i++)
+            {
+                buf.append(myLiterals[i]);
+                Expression expr = myExpressions[i];
+                Object result = expr.evaluate(factory, beans);
+                logger.debug("  Replacing \"{}\" with \"{}\".", expr.myExpression, result);
+                if (result != null)
+                    buf.append(result.toString());
+            }
+            buf.append(myLiterals[myExpressions.length]);
+            return buf.toString();
+        }
+    }
+
 }
\ No newline at end of file
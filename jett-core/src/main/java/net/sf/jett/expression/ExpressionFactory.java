@@ -2,9 +2,13 @@ package net.sf.jett.expression;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
 
+import net.sf.jett.util.LruCache;
+
 /**
  * <p>An <code>ExpressionFactory</code> is a factory class that
  * creates and uses a <code>JexlEngine</code> to create JEXL
@@ -16,19 +20,42 @@ import org.apache.commons.jexl2.JexlEngine;
  *
  * <p>As of 0.9.0, this class is no longer a singleton, to allow concurrent
  * <code>ExcelTransformers</code> to avoid contention by having their own
- * <code>ExpressionFactories</code>.
+ * <code>ExpressionFactories</code>.</p>
+ *
+ * <p>As of 0.11.1, once configured, an <code>ExpressionFactory</code> may be
+ * used by many threads at once.  Its expression caches are concurrent, and
+ * it no longer toggles its "lenient" and "silent" flags during
+ * transformation.</p>
+ *
+ * <p>Its expression caches are bounded; when one is full, the least recently
+ * used expression is evicted.  Their hit, miss, and eviction counts may be
+ * used to choose their maximum size.</p>
  *
  * @author Randy Gettman
  */
 public class ExpressionFactory
 {
+    /**
+     * The default maximum number of expressions in each expression cache.
+     * @since 0.11.1
+     */
+    public static final int DEF_EXPRESSION_CACHE_SIZE = 10000;
+
     private JexlEngine myEngine;
+    private JexlEngine myQuietEngine;
     private Map<String, Object> myFuncs;
-    private Map<String, org.apache.commons.jexl2.Expression> myExpressionCache;
+    private volatile LruCache<String, org.apache.commons.jexl2.Expression> myExpressionCache;
+    private volatile LruCache<String, org.apache.commons.jexl2.Expression> myQuietExpressionCache;
+    private Map<String, Class<?>> myImports;
+    private volatile boolean amIClassNameFallback;
+    private ThreadLocal<ContextScope> myContextScope;
 
     /**
      * Constructs a <code>ExpressionFactory</code>.  Initializes an internal
-     * <code>JexlEngine</code> and initializes the functions map.
+     * <code>JexlEngine</code> and initializes the functions map.  A second,
+     * always lenient and silent <code>JexlEngine</code> shares the functions
+     * map; it's used to probe for implicit collections without changing the
+     * flags of the main engine, which may be in use by other threads.
      */
     public ExpressionFactory()
     {
@@ -36,11 +63,19 @@ public class ExpressionFactory
         myEngine.setLenient(true);
         myEngine.setSilent(false);
         myEngine.setDebug(false);
+        myQuietEngine = new JexlEngine();
+        myQuietEngine.setLenient(true);
+        myQuietEngine.setSilent(true);
+        myQuietEngine.setDebug(false);
         myFuncs = new HashMap<>();
         myEngine.setFunctions(myFuncs);
+        myQuietEngine.setFunctions(myFuncs);
         myFuncs.put("jagg", JaggFuncs.class);
         myFuncs.put("jett", JettFuncs.class);
-        myExpressionCache = new HashMap<>();
+        setExpressionCacheSize(DEF_EXPRESSION_CACHE_SIZE);
+        myImports = new ConcurrentHashMap<>();
+        amIClassNameFallback = true;
+        myContextScope = new ThreadLocal<>();
     }
 
     /**
@@ -93,6 +128,67 @@ public class ExpressionFactory
     public void setCache(int size)
     {
         myEngine.setCache(size);
+        myQuietEngine.setCache(size);
+    }
+
+    /**
+     * Replaces the caches of created JEXL <code>Expressions</code> with empty
+     * caches of the given maximum size.  This is separate from the JEXL
+     * Engine's own parse cache; see {@link #setCache(int)}.  This should be
+     * called before the factory is used, because cached expressions are lost.
+     * @param maxSize The maximum number of expressions in each expression
+     *    cache.
+     * @throws IllegalArgumentException If <code>maxSize</code> isn't
+     *    positive.
+     * @since 0.11.1
+     */
+    public void setExpressionCacheSize(int maxSize)
+    {
+        myExpressionCache = new LruCache<>(maxSize);
+        myQuietExpressionCache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * Returns the maximum number of expressions in each expression cache.
+     * @return The maximum number of expressions in each expression cache.
+     * @since 0.11.1
+     */
+    public int getExpressionCacheSize()
+    {
+        return myExpressionCache.getMaxSize();
+    }
+
+    /**
+     * Returns the number of lookups in the expression caches that found a
+     * cached expression.
+     * @return The number of hits.
+     * @since 0.11.1
+     */
+    public long getExpressionCacheNumHits()
+    {
+        return myExpressionCache.getNumHits() + myQuietExpressionCache.getNumHits();
+    }
+
+    /**
+     * Returns the number of lookups in the expression caches that didn't find
+     * a cached expression, so that an expression was created.
+     * @return The number of misses.
+     * @since 0.11.1
+     */
+    public long getExpressionCacheNumMisses()
+    {
+        return myExpressionCache.getNumMisses() + myQuietExpressionCache.getNumMisses();
+    }
+
+    /**
+     * Returns the number of expressions removed from the expression caches
+     * because they were full.
+     * @return The number of evictions.
+     * @since 0.11.1
+     */
+    public long getExpressionCacheNumEvictions()
+    {
+        return myExpressionCache.getNumEvictions() + myQuietExpressionCache.getNumEvictions();
     }
 
     /**
@@ -105,6 +201,7 @@ public class ExpressionFactory
     public void setDebug(boolean debug)
     {
         myEngine.setDebug(debug);
+        myQuietEngine.setDebug(debug);
     }
 
     /**
@@ -129,6 +226,103 @@ public class ExpressionFactory
         myFuncs.put(namespace, funcsObject);
     }
 
+    /**
+     * Imports the given <code>Class</code>, so that expressions may refer to
+     * it by its simple name or its fully qualified name, even if class name
+     * fallback is off, e.g. <code>String.format(...)</code> after importing
+     * <code>java.lang.String</code>.  Bean names take precedence over
+     * imported class names.
+     * @param cls The <code>Class</code> to import.
+     * @since 0.11.1
+     */
+    public void importClass(Class<?> cls)
+    {
+        myImports.put(cls.getSimpleName(), cls);
+        myImports.put(cls.getName(), cls);
+    }
+
+    /**
+     * Sets whether names that aren't beans or imported classes are resolved
+     * as fully qualified class names with <code>Class.forName</code>.
+     * Default is <code>true</code>.  Turning this off restricts expressions
+     * to beans and imported classes.
+     * @param classNameFallback Whether to resolve other class names.
+     * @since 0.11.1
+     */
+    public void setClassNameFallback(boolean classNameFallback)
+    {
+        amIClassNameFallback = classNameFallback;
+    }
+
+    /**
+     * Returns whether names that aren't beans or imported classes are
+     * resolved as fully qualified class names with <code>Class.forName</code>.
+     * @return Whether other class names are resolved.
+     * @since 0.11.1
+     */
+    public boolean isClassNameFallback()
+    {
+        return amIClassNameFallback;
+    }
+
+    /**
+     * Opens a context scope on the current thread, e.g. for the duration of
+     * a transformation.  Within the scope, the last <code>JexlContext</code>
+     * created on this thread is reused while it wraps the same beans
+     * <code>Map</code>.  Scopes may be nested; each call must be matched by a
+     * call to {@link #closeContextScope()}, usually in a <code>finally</code>
+     * block.
+     * @since 0.11.1
+     */
+    public void openContextScope()
+    {
+        ContextScope scope = myContextScope.get();
+        if (scope == null)
+        {
+            scope = new ContextScope();
+            myContextScope.set(scope);
+        }
+        scope.myDepth++;
+    }
+
+    /**
+     * Closes a context scope opened on the current thread by
+     * {@link #openContextScope()}.  Closing the outermost scope releases the
+     * reused <code>JexlContext</code>, so that this thread no longer refers
+     * to its beans.
+     * @since 0.11.1
+     */
+    public void closeContextScope()
+    {
+        ContextScope scope = myContextScope.get();
+        if (scope != null && --scope.myDepth <= 0)
+            myContextScope.remove();
+    }
+
+    /**
+     * Returns a <code>JexlContext</code> for the given <code>Map</code> of
+     * beans.  Within a context scope, the last context created on this thread
+     * is reused if it wraps the same <code>Map</code>, as is the case for all
+     * evaluations within the same tag scope.  Outside of a context scope, a
+     * new context is always returned.
+     * @param beans A <code>Map</code> of bean names to bean values.
+     * @return A <code>JexlContext</code>.
+     * @since 0.11.1
+     */
+    JexlContext getContext(Map<String, Object> beans)
+    {
+        ContextScope scope = myContextScope.get();
+        if (scope == null)
+            return new ClassAwareMapContext(beans, myImports, amIClassNameFallback);
+        ClassAwareMapContext context = scope.myLastContext;
+        if (context == null || !context.wraps(beans) || context.isClassNameFallback() != amIClassNameFallback)
+        {
+            context = new ClassAwareMapContext(beans, myImports, amIClassNameFallback);
+            scope.myLastContext = context;
+        }
+        return context;
+    }
+
     /**
      * Create a JEXL <code>Expression</code> from a string.
      * @param expression The expression as a <code>String</code>.
@@ -136,13 +330,45 @@ public class ExpressionFactory
      */
     public org.apache.commons.jexl2.Expression createExpression(String expression)
     {
-        org.apache.commons.jexl2.Expression jexlExpr = myExpressionCache.get(expression);
+        LruCache<String, org.apache.commons.jexl2.Expression> cache = myExpressionCache;
+        org.apache.commons.jexl2.Expression jexlExpr = cache.get(expression);
         if (jexlExpr == null)
         {
             jexlExpr = myEngine.createExpression(expression);
-            myExpressionCache.put(expression, jexlExpr);
+            cache.put(expression, jexlExpr);
+        }
+        return jexlExpr;
+    }
+
+    /**
+     * Create a JEXL <code>Expression</code> from a string that is always
+     * evaluated leniently and silently, regardless of the "lenient" and
+     * "silent" flags of this factory.  This is used to test whether parts of
+     * an expression refer to a <code>Collection</code>, where errors are
+     * expected and must not be reported.
+     * @param expression The expression as a <code>String</code>.
+     * @return A lenient, silent JEXL <code>Expression</code>.
+     * @since 0.11.1
+     */
+    public org.apache.commons.jexl2.Expression createQuietExpression(String expression)
+    {
+        LruCache<String, org.apache.commons.jexl2.Expression> cache = myQuietExpressionCache;
+        org.apache.commons.jexl2.Expression jexlExpr = cache.get(expression);
+        if (jexlExpr == null)
+        {
+            jexlExpr = myQuietEngine.createExpression(expression);
+            cache.put(expression, jexlExpr);
         }
         return jexlExpr;
     }
-}
 
+    /**
+     * The per-thread state of open context scopes: how deeply they are
+     * nested, and the last <code>JexlContext</code> created within them.
+     */
+    private static class ContextScope
+    {
+        private int myDepth;
+        private ClassAwareMapContext myLastContext;
+    }
+}
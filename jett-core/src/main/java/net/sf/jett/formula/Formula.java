@@ -23,6 +23,7 @@ public class Formula
 
     private String myFormulaText;
     private List<CellRef> myCellRefs;
+    private final FormulaTokens myTokens;
 
     /**
      * Creates a <code>Formula</code> with the given formula text and the given
@@ -34,6 +35,10 @@ public class Formula
     {
         myFormulaText = FormulaUtil.formatSheetNames(formulaText, cellRefs);
         myCellRefs = cellRefs;
+        String text = myFormulaText;
+        if (text.startsWith(BEGIN_FORMULA) && text.endsWith(END_FORMULA))
+            text = text.substring(BEGIN_FORMULA.length(), text.length() - END_FORMULA.length());
+        myTokens = new FormulaTokens(text, cellRefs);
     }
 
     /**
@@ -54,6 +59,18 @@ public class Formula
         return myCellRefs;
     }
 
+    /**
+     * Returns the text of this <code>Formula</code>, without the begin and end
+     * delimiters, split into literal text and slots for its
+     * <code>CellRefs</code> when it was created.
+     * @return The <code>FormulaTokens</code>.
+     * @since 0.11.1
+     */
+    public FormulaTokens getTokens()
+    {
+        return myTokens;
+    }
+
     /**
      * Returns the string representation.
      * @return The string representation.
@@ -0,0 +1,192 @@
+package net.sf.jett.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>A <code>FormulaTokens</code> is the text of a <code>Formula</code>,
+ * without its begin and end delimiters, split into literal text and slots for
+ * its original <code>CellRefs</code>, e.g. "SUM(C2) + C3" =&gt;
+ * "SUM(", C2, ") + ", C3, "".  Creating the Excel formula is then only a
+ * matter of concatenating the literal text and the translated cell references
+ * for each slot.</p>
+ *
+ * <p>A cell reference is only recognized if it isn't preceded by a letter and
+ * if it isn't followed by a letter or a digit, so that "A1" isn't found in
+ * "AA1" or "A10".  The <code>CellRefs</code> are searched in order, and a
+ * <code>CellRef</code> is never found inside the text of a
+ * <code>CellRef</code> found before it.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class FormulaTokens
+{
+    private final String myText;
+    private final String[] myLiterals;
+    private final int[] mySlots;
+
+    /**
+     * Splits the given formula text into literal text and slots for the given
+     * <code>CellRefs</code>.
+     * @param text The formula text, without the begin and end delimiters,
+     *    e.g. "SUM(C2)".
+     * @param cellRefs The <code>List</code> of original <code>CellRefs</code>
+     *    found in the formula text.
+     */
+    public FormulaTokens(String text, List<CellRef> cellRefs)
+    {
+        myText = text;
+        int length = text.length();
+        // The index of the CellRef whose text starts at each position, or -1,
+        // and the end of its text.
+        int[] slotAt = new int[length];
+        int[] endAt = new int[length];
+        boolean[] claimed = new boolean[length];
+        Arrays.fill(slotAt, -1);
+        int numSlots = 0;
+        for (int i = 0; i < cellRefs.size(); i++)
+        {
+            String cellRefText = cellRefs.get(i).formatAsStringWithDef();
+            int refLength = cellRefText.length();
+            if (refLength == 0)
+                continue;
+            int start = text.indexOf(cellRefText);
+            while (start != -1)
+            {
+                int end = start + refLength;
+                if (isStart(text, start) && isEnd(text, end) && !isClaimed(claimed, start, end))
+                {
+                    slotAt[start] = i;
+                    endAt[start] = end;
+                    for (int j = start; j < end; j++)
+                    {
+                        claimed[j] = true;
+                    }
+                    numSlots++;
+                    start = text.indexOf(cellRefText, end);
+                }
+                else
+                {
+                    start = text.indexOf(cellRefText, start + 1);
+                }
+            }
+        }
+
+        List<String> literals = new ArrayList<>(numSlots + 1);
+        mySlots = new int[numSlots];
+        int literalStart = 0;
+        int slot = 0;
+        int pos = 0;
+        while (pos < length)
+        {
+            if (slotAt[pos] != -1)
+            {
+                literals.add(text.substring(literalStart, pos));
+                mySlots[slot++] = slotAt[pos];
+                pos = endAt[pos];
+                literalStart = pos;
+            }
+            else
+            {
+                pos++;
+            }
+        }
+        literals.add(text.substring(literalStart));
+        myLiterals = literals.toArray(new String[literals.size()]);
+    }
+
+    /**
+     * Returns the formula text that was split.
+     * @return The formula text.
+     */
+    public String getText()
+    {
+        return myText;
+    }
+
+    /**
+     * Returns the number of cell reference slots in the formula text.
+     * @return The number of slots.
+     */
+    public int getNumSlots()
+    {
+        return mySlots.length;
+    }
+
+    /**
+     * Concatenates the literal text with the given replacement text for each
+     * <code>CellRef</code> in its slots.
+     * @param replacements The replacement text for each original
+     *    <code>CellRef</code>, indexed the same as the <code>List</code> of
+     *    <code>CellRefs</code> given to the constructor.
+     * @return The formula text with all cell references replaced.
+     */
+    public String format(String[] replacements)
+    {
+        StringBuilder buf = new StringBuilder(myText.length() + 16 * mySlots.length);
+        for (int i = 0; i < mySlots.length; i++)
+        {
+            buf.append(myLiterals[i]);
+            buf.append(replacements[mySlots[i]]);
+        }
+        buf.append(myLiterals[mySlots.length]);
+        return buf.toString();
+    }
+
+    /**
+     * Returns whether a cell reference may start at the given position, i.e.
+     * it's not preceded by a letter.
+     * @param text The formula text.
+     * @param start The start position.
+     * @return Whether a cell reference may start there.
+     */
+    private static boolean isStart(String text, int start)
+    {
+        return start == 0 || !isLetter(text.charAt(start - 1));
+    }
+
+    /**
+     * Returns whether a cell reference may end at the given (exclusive)
+     * position, i.e. it's not followed by a letter or a digit.
+     * @param text The formula text.
+     * @param end The end position, exclusive.
+     * @return Whether a cell reference may end there.
+     */
+    private static boolean isEnd(String text, int end)
+    {
+        if (end >= text.length())
+            return true;
+        char c = text.charAt(end);
+        return !isLetter(c) && !(c >= '0' && c <= '9');
+    }
+
+    /**
+     * Returns whether the given character is an ASCII letter.
+     * @param c The character.
+     * @return Whether it's an ASCII letter.
+     */
+    private static boolean isLetter(char c)
+    {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    /**
+     * Returns whether any position in the given range is already part of a
+     * cell reference.
+     * @param claimed Whether each position is part of a cell reference.
+     * @param start The start position, inclusive.
+     * @param end The end position, exclusive.
+     * @return Whether any position in the range is claimed.
+     */
+    private static boolean isClaimed(boolean[] claimed, int start, int end)
+    {
+        for (int i = start; i < end; i++)
+        {
+            if (claimed[i])
+                return true;
+        }
+        return false;
+    }
+}
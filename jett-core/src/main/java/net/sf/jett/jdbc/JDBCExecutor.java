@@ -20,23 +20,48 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
 /**
- * A <code>JDBCExecutor</code> has the capability of running SQL statements via
- * JDBC over a supplied <code>Connection</code>.
+ * <p>A <code>JDBCExecutor</code> has the capability of running SQL statements via
+ * JDBC over a supplied <code>Connection</code>.</p>
+ *
+ * <p>The <code>execQuery</code> methods read all rows into a
+ * <code>List</code>.  The <code>execQueryCursor</code> methods instead
+ * return a {@link ResultSetCursor} that reads each row from the open
+ * <code>ResultSet</code> only when it's needed, so that a large query can be
+ * streamed into a "forEach" tag without all rows being in memory at
+ * once.</p>
+ *
+ * <p>If a statement cache size is set, then the
+ * <code>PreparedStatements</code> used by <code>execQuery</code> with bind
+ * variables are kept open and reused for the same SQL, up to that many of
+ * the most recently used ones.  Then this <code>JDBCExecutor</code> should
+ * be closed when it's no longer needed, to close them.  To run several
+ * independent queries at the same time, see {@link NamedQueries}.</p>
+ *
+ * <p>If a {@link QueryResultCache} is set, then <code>execQuery</code>
+ * returns its cached rows for the same SQL and bind variable values, until
+ * they expire.</p>
  *
  * @author Randy Gettman
  * @since 0.6.0
  */
-public class JDBCExecutor
+public class JDBCExecutor implements AutoCloseable
 {
     private static final Logger logger = LogManager.getLogger();
 
+    private static final Object[] NO_BIND_VARIABLE_VALUES = new Object[0];
+
     private Connection myConnection;
+    private int myFetchSize;
+    private Map<String, PreparedStatement> myStatementCache;
+    private QueryResultCache myResultCache;
 
     /**
      * Constructs a <code>JDBCExecutor</code> that will operate over the given
@@ -48,6 +73,106 @@ public class JDBCExecutor
       myConnection = connection;
    }
 
+    /**
+     * Sets the number of rows that the JDBC driver is asked to fetch from the
+     * database at a time for the <code>ResultSets</code> behind
+     * <code>ResultSetCursors</code>.  This is only a hint to the driver.  Some
+     * drivers, e.g. PostgreSQL's, stream rows only when the fetch size is
+     * positive and auto-commit is off.
+     * @param fetchSize The fetch size, or <code>0</code> (the default) for the
+     *    driver's default fetch size.
+     * @throws IllegalArgumentException If <code>fetchSize</code> is negative.
+     * @since 0.11.1
+     */
+    public void setFetchSize(int fetchSize)
+    {
+        if (fetchSize < 0)
+            throw new IllegalArgumentException("Fetch size must not be negative: " + fetchSize);
+        myFetchSize = fetchSize;
+    }
+
+    /**
+     * Sets the maximum number of <code>PreparedStatements</code> to keep open
+     * for reuse by <code>execQuery</code> with bind variables.  The least
+     * recently used one is closed when another one is needed.  Any statements
+     * cached so far are closed.
+     * @param size The maximum number of cached statements, or <code>0</code>
+     *    (the default) to prepare a new statement for every query.
+     * @throws IllegalArgumentException If <code>size</code> is negative.
+     * @throws SQLException If there is a problem closing cached statements.
+     * @since 0.11.1
+     */
+    public synchronized void setStatementCacheSize(final int size) throws SQLException
+    {
+        if (size < 0)
+            throw new IllegalArgumentException("Statement cache size must not be negative: " + size);
+        close();
+        if (size == 0)
+        {
+            myStatementCache = null;
+        }
+        else
+        {
+            myStatementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest)
+                {
+                    if (size() > size)
+                    {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    /**
+     * Sets the <code>QueryResultCache</code> that <code>execQuery</code> looks
+     * up results in and adds results to.  It may be shared by many
+     * <code>JDBCExecutors</code>.  It isn't used by
+     * <code>execQueryCursor</code>.
+     * @param resultCache A <code>QueryResultCache</code>, or
+     *    <code>null</code> (the default) not to cache results.
+     * @since 0.11.1
+     */
+    public void setResultCache(QueryResultCache resultCache)
+    {
+        myResultCache = resultCache;
+    }
+
+    /**
+     * Closes all cached <code>PreparedStatements</code>.  This doesn't close
+     * the <code>Connection</code>.  This <code>JDBCExecutor</code> may still be
+     * used afterwards.
+     * @throws SQLException If there is a problem closing a statement.
+     * @since 0.11.1
+     */
+    @Override
+    public synchronized void close() throws SQLException
+    {
+        if (myStatementCache == null)
+            return;
+        SQLException first = null;
+        for (PreparedStatement ps : myStatementCache.values())
+        {
+            try
+            {
+                ps.close();
+            }
+            catch (SQLException e)
+            {
+                if (first == null)
+                    first = e;
+            }
+        }
+        myStatementCache.clear();
+        if (first != null)
+            throw first;
+    }
+
     /**
      * Executes the given SQL statement using a <code>Statement</code> to obtain
      * a <code>List</code> of <code>ResultSetRows</code>.  Execution of the
@@ -59,10 +184,19 @@ public class JDBCExecutor
      */
     public List<ResultSetRow> execQuery(String sql) throws SQLException
     {
+        QueryResultCache resultCache = myResultCache;
+        if (resultCache != null)
+        {
+            List<ResultSetRow> rows = resultCache.get(sql, NO_BIND_VARIABLE_VALUES);
+            if (rows != null)
+                return rows;
+        }
+        List<ResultSetRow> rows;
         try (Statement st = myConnection.createStatement(); ResultSet rs = st.executeQuery(sql))
         {
-            return processResultSet(rs);
+            rows = processResultSet(rs);
         }
+        return (resultCache != null) ? resultCache.put(sql, NO_BIND_VARIABLE_VALUES, rows) : rows;
     }
 
     /**
@@ -78,61 +212,211 @@ public class JDBCExecutor
      */
     public List<ResultSetRow> execQuery(String sql, Object... bindVariableValues) throws SQLException
     {
+        QueryResultCache resultCache = myResultCache;
+        if (resultCache != null)
+        {
+            List<ResultSetRow> rows = resultCache.get(sql, bindVariableValues);
+            if (rows != null)
+                return rows;
+        }
+        List<ResultSetRow> rows = execPreparedQuery(sql, bindVariableValues);
+        return (resultCache != null) ? resultCache.put(sql, bindVariableValues, rows) : rows;
+    }
+
+    /**
+     * Executes the given SQL statement using a <code>PreparedStatement</code>,
+     * which is cached if there is a statement cache.
+     * @param sql The SQL statement.
+     * @param bindVariableValues The bind variable values.
+     * @return A <code>List</code> of <code>ResultSetRows</code>.
+     * @throws SQLException If there was a problem executing the statement.
+     */
+    private List<ResultSetRow> execPreparedQuery(String sql, Object... bindVariableValues) throws SQLException
+    {
+        synchronized (this)
+        {
+            if (myStatementCache != null)
+                return execCachedQuery(sql, bindVariableValues);
+        }
         try (PreparedStatement ps = myConnection.prepareStatement(sql))
         {
-            for (int i = 0; i < bindVariableValues.length; i++)
+            setBindVariables(ps, bindVariableValues);
+            try (ResultSet rs = ps.executeQuery())
             {
-                // Set bind variables here.
-                // Try for most common first.
-                // Convert to 1-based JDBC index.
-                Object o = bindVariableValues[i];
-                if (o instanceof String)
-                    ps.setString(i + 1, (String) o);
-                else if (o instanceof Integer)
-                    ps.setInt(i + 1, (Integer) o);
-                else if (o instanceof Double)
-                    ps.setDouble(i + 1, (Double) o);
-                else if (o instanceof Boolean)
-                    ps.setBoolean(i + 1, (Boolean) o);
-                else if (o instanceof Float)
-                    ps.setFloat(i + 1, (Float) o);
-                else if (o instanceof Long)
-                    ps.setLong(i + 1, (Long) o);
-                else if (o instanceof Date)
-                    ps.setDate(i + 1, (Date) o);
-                else if (o instanceof Time)
-                    ps.setTime(i + 1, (Time) o);
-                else if (o instanceof Timestamp)
-                    ps.setTimestamp(i + 1, (Timestamp) o);
-                else if (o instanceof BigDecimal)
-                    ps.setBigDecimal(i + 1, (BigDecimal) o);
-                else if (o instanceof Short)
-                    ps.setShort(i + 1, (Short) o);
-                else if (o instanceof Byte)
-                    ps.setByte(i + 1, (Byte) o);
-                else if (o instanceof byte[])
-                    ps.setBytes(i + 1, (byte[]) o);
-                else if (o instanceof Clob)
-                    ps.setClob(i + 1, (Clob) o);
-                else if (o instanceof Blob)
-                    ps.setBlob(i + 1, (Blob) o);
-                else if (o instanceof Array)
-                    ps.setArray(i + 1, (Array) o);
-                else if (o instanceof SQLXML)
-                    ps.setSQLXML(i + 1, (SQLXML) o);
-                else if (o instanceof RowId)
-                    ps.setRowId(i + 1, (RowId) o);
-                else if (o instanceof URL)
-                    ps.setURL(i + 1, (URL) o);
-                // Should cover NULL as well.
-                else
-                    ps.setObject(i + 1, o);
+                return processResultSet(rs);
             }
+        }
+    }
+
+    /**
+     * Executes the given SQL statement using a cached
+     * <code>PreparedStatement</code>, preparing and caching it if necessary.
+     * A statement that fails is removed from the cache and closed, in case
+     * the failure left it unusable.
+     * @param sql The SQL statement.
+     * @param bindVariableValues The bind variable values.
+     * @return A <code>List</code> of <code>ResultSetRows</code>.
+     * @throws SQLException If there was a problem executing the statement.
+     */
+    private List<ResultSetRow> execCachedQuery(String sql, Object... bindVariableValues) throws SQLException
+    {
+        PreparedStatement ps = myStatementCache.get(sql);
+        if (ps == null)
+        {
+            logger.debug("Preparing and caching statement: {}", sql);
+            ps = myConnection.prepareStatement(sql);
+            myStatementCache.put(sql, ps);
+        }
+        else
+        {
+            ps.clearParameters();
+        }
+        try
+        {
+            setBindVariables(ps, bindVariableValues);
             try (ResultSet rs = ps.executeQuery())
             {
                 return processResultSet(rs);
             }
         }
+        catch (SQLException | RuntimeException e)
+        {
+            myStatementCache.remove(sql);
+            closeQuietly(ps);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the given <code>Statement</code>, logging any problem closing it.
+     * @param st A <code>Statement</code>.
+     */
+    private static void closeQuietly(Statement st)
+    {
+        try
+        {
+            st.close();
+        }
+        catch (SQLException e)
+        {
+            logger.warn("Unable to close statement: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Executes the given SQL statement using a forward-only, read-only
+     * <code>Statement</code> to obtain a <code>ResultSetCursor</code> over the
+     * rows of its <code>ResultSet</code>.  The cursor closes the
+     * <code>Statement</code> when its rows are exhausted or when it's closed.
+     * @param sql The SQL statement.
+     * @return A <code>ResultSetCursor</code> over the rows.
+     * @throws SQLException If there was a problem executing the statement.
+     * @since 0.11.1
+     */
+    public ResultSetCursor execQueryCursor(String sql) throws SQLException
+    {
+        Statement st = myConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try
+        {
+            if (myFetchSize > 0)
+                st.setFetchSize(myFetchSize);
+            return new ResultSetCursor(this, st, st.executeQuery(sql));
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            st.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes the given SQL statement using a forward-only, read-only
+     * <code>PreparedStatement</code> to obtain a <code>ResultSetCursor</code>
+     * over the rows of its <code>ResultSet</code>.  The cursor closes the
+     * <code>PreparedStatement</code> when its rows are exhausted or when it's
+     * closed.
+     * @param sql The SQL statement.
+     * @param bindVariableValues Optional bind variable values.  There must be
+     *    exactly one of these for every <code>?</code> in the SQL query.
+     * @return A <code>ResultSetCursor</code> over the rows.
+     * @throws SQLException If there was a problem executing the statement.
+     * @since 0.11.1
+     */
+    public ResultSetCursor execQueryCursor(String sql, Object... bindVariableValues) throws SQLException
+    {
+        PreparedStatement ps = myConnection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        try
+        {
+            if (myFetchSize > 0)
+                ps.setFetchSize(myFetchSize);
+            setBindVariables(ps, bindVariableValues);
+            return new ResultSetCursor(this, ps, ps.executeQuery());
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            ps.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the given bind variable values on the given
+     * <code>PreparedStatement</code>.
+     * @param ps A <code>PreparedStatement</code>.
+     * @param bindVariableValues The bind variable values.
+     * @throws SQLException If there was a problem setting a value.
+     */
+    private void setBindVariables(PreparedStatement ps, Object... bindVariableValues) throws SQLException
+    {
+        for (int i = 0; i < bindVariableValues.length; i++)
+        {
+            // Set bind variables here.
+            // Try for most common first.
+            // Convert to 1-based JDBC index.
+            Object o = bindVariableValues[i];
+            if (o instanceof String)
+                ps.setString(i + 1, (String) o);
+            else if (o instanceof Integer)
+                ps.setInt(i + 1, (Integer) o);
+            else if (o instanceof Double)
+                ps.setDouble(i + 1, (Double) o);
+            else if (o instanceof Boolean)
+                ps.setBoolean(i + 1, (Boolean) o);
+            else if (o instanceof Float)
+                ps.setFloat(i + 1, (Float) o);
+            else if (o instanceof Long)
+                ps.setLong(i + 1, (Long) o);
+            else if (o instanceof Date)
+                ps.setDate(i + 1, (Date) o);
+            else if (o instanceof Time)
+                ps.setTime(i + 1, (Time) o);
+            else if (o instanceof Timestamp)
+                ps.setTimestamp(i + 1, (Timestamp) o);
+            else if (o instanceof BigDecimal)
+                ps.setBigDecimal(i + 1, (BigDecimal) o);
+            else if (o instanceof Short)
+                ps.setShort(i + 1, (Short) o);
+            else if (o instanceof Byte)
+                ps.setByte(i + 1, (Byte) o);
+            else if (o instanceof byte[])
+                ps.setBytes(i + 1, (byte[]) o);
+            else if (o instanceof Clob)
+                ps.setClob(i + 1, (Clob) o);
+            else if (o instanceof Blob)
+                ps.setBlob(i + 1, (Blob) o);
+            else if (o instanceof Array)
+                ps.setArray(i + 1, (Array) o);
+            else if (o instanceof SQLXML)
+                ps.setSQLXML(i + 1, (SQLXML) o);
+            else if (o instanceof RowId)
+                ps.setRowId(i + 1, (RowId) o);
+            else if (o instanceof URL)
+                ps.setURL(i + 1, (URL) o);
+            // Should cover NULL as well.
+            else
+                ps.setObject(i + 1, o);
+        }
     }
 
     /**
@@ -146,128 +430,142 @@ public class JDBCExecutor
     {
         ResultSetMetaData rsmd = rs.getMetaData();
         List<Integer> types = getTypes(rsmd);
-        List<String> colNames = getColumnNames(rsmd);
+        ResultSetSchema schema = new ResultSetSchema(getColumnNames(rsmd));
         List<ResultSetRow> rows = new ArrayList<>();
         while (rs.next())
         {
-            ResultSetRow row = new ResultSetRow();
-            for (int i = 0; i < types.size(); i++)
-            {
-                // http://docs.oracle.com/javase/6/docs/technotes/guides/jdbc/getstart/mapping.html#996857
-                // gives the mappings between JDBC types and Java data types.
-                // Convert to 1-based JDBC index.
-                String colName = colNames.get(i);
-                logger.debug("pRS: i={}, colName={}", i, colNames.get(i));
+            rows.add(readRow(rs, types, schema));
+        }
 
-                switch(types.get(i))
+        return rows;
+    }
+
+    /**
+     * Reads all content of the current row of the given
+     * <code>ResultSet</code> into a new <code>ResultSetRow</code>.
+     * @param rs A <code>ResultSet</code>, positioned on a row.
+     * @param types The datatypes of the columns.
+     * @param schema The <code>ResultSetSchema</code> of the columns.
+     * @return A <code>ResultSetRow</code>.
+     * @throws SQLException If there is a problem reading the row.
+     * @since 0.11.1
+     */
+    ResultSetRow readRow(ResultSet rs, List<Integer> types, ResultSetSchema schema) throws SQLException
+    {
+        ResultSetRow row = new ResultSetRow(schema);
+        for (int i = 0; i < types.size(); i++)
+        {
+            // http://docs.oracle.com/javase/6/docs/technotes/guides/jdbc/getstart/mapping.html#996857
+            // gives the mappings between JDBC types and Java data types.
+            // Convert to 1-based JDBC index.
+            logger.debug("pRS: i={}, colName={}", i, schema.getColumnName(i));
+
+            switch(types.get(i))
+            {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+                row.setValue(i, rs.getString(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                row.setValue(i, rs.getBytes(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                row.setValue(i, rs.getBoolean(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+                row.setValue(i, rs.getShort(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.INTEGER:
+                row.setValue(i, rs.getInt(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.REAL:
+                row.setValue(i, rs.getFloat(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                row.setValue(i, rs.getDouble(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                row.setValue(i, rs.getBigDecimal(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.DATE:
+                row.setValue(i, rs.getDate(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.TIME:
+                row.setValue(i, rs.getTime(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+               break;
+            case Types.TIMESTAMP:
+                row.setValue(i, rs.getTimestamp(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.CLOB:
+            {
+                Clob clob = rs.getClob(i + 1);
+                if (rs.wasNull())
                 {
-                case Types.CHAR:
-                case Types.VARCHAR:
-                case Types.LONGVARCHAR:
-                    row.set(colName, rs.getString(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.BINARY:
-                case Types.VARBINARY:
-                case Types.LONGVARBINARY:
-                    row.set(colName, rs.getBytes(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.BIT:
-                case Types.BOOLEAN:
-                    row.set(colName, rs.getBoolean(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.TINYINT:
-                case Types.SMALLINT:
-                    row.set(colName, rs.getShort(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.INTEGER:
-                    row.set(colName, rs.getInt(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.REAL:
-                    row.set(colName, rs.getFloat(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.FLOAT:
-                case Types.DOUBLE:
-                    row.set(colName, rs.getDouble(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.DECIMAL:
-                case Types.NUMERIC:
-                    row.set(colName, rs.getBigDecimal(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.DATE:
-                    row.set(colName, rs.getDate(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.TIME:
-                    row.set(colName, rs.getTime(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                   break;
-                case Types.TIMESTAMP:
-                    row.set(colName, rs.getTimestamp(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.CLOB:
+                    row.setValue(i, null);
+                }
+                else
                 {
-                    Clob clob = rs.getClob(i + 1);
-                    if (rs.wasNull())
+                    BufferedReader r = new BufferedReader(clob.getCharacterStream());
+                    StringBuffer buf = new StringBuffer();
+                    String line;
+                    try
                     {
-                        row.set(colName, null);
-                    }
-                    else
-                    {
-                        BufferedReader r = new BufferedReader(clob.getCharacterStream());
-                        StringBuffer buf = new StringBuffer();
-                        String line;
-                        try
-                        {
-                            while ((line = r.readLine()) != null)
-                            {
-                                buf.append(line);
-                            }
-                            row.set(colName, buf.toString());
-                        }
-                        catch (IOException e)
+                        while ((line = r.readLine()) != null)
                         {
-                            row.set(colName, e.getMessage());
+                            buf.append(line);
                         }
-                     }
-                     break;
-                }
-                case Types.ARRAY:
-                    row.set(colName, rs.getArray(i + 1).getArray());
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                    break;
-                case Types.BLOB:
-                case Types.JAVA_OBJECT:
-                default:
-                    row.set(colName, rs.getObject(i + 1));
-                    if (rs.wasNull())
-                        row.set(colName, null);
-                }
+                        row.setValue(i, buf.toString());
+                    }
+                    catch (IOException e)
+                    {
+                        row.setValue(i, e.getMessage());
+                    }
+                 }
+                 break;
+            }
+            case Types.ARRAY:
+                row.setValue(i, rs.getArray(i + 1).getArray());
+                if (rs.wasNull())
+                    row.setValue(i, null);
+                break;
+            case Types.BLOB:
+            case Types.JAVA_OBJECT:
+            default:
+                row.setValue(i, rs.getObject(i + 1));
+                if (rs.wasNull())
+                    row.setValue(i, null);
             }
-            rows.add(row);
         }
-
-        return rows;
+        return row;
     }
 
     /**
@@ -278,7 +576,7 @@ public class JDBCExecutor
      * @throws SQLException If there is a problem accessing the metadata.
      * @see java.sql.Types
      */
-    private List<Integer> getTypes(ResultSetMetaData rsmd) throws SQLException
+    List<Integer> getTypes(ResultSetMetaData rsmd) throws SQLException
     {
         int numCols = rsmd.getColumnCount();
         List<Integer> types = new ArrayList<>(numCols);
@@ -297,7 +595,7 @@ public class JDBCExecutor
      *    column names.
      * @throws SQLException If there is a problem accessing the metadata.
     */
-    private List<String> getColumnNames(ResultSetMetaData rsmd) throws SQLException
+    List<String> getColumnNames(ResultSetMetaData rsmd) throws SQLException
     {
         int numCols = rsmd.getColumnCount();
         List<String> colNames = new ArrayList<>(numCols);
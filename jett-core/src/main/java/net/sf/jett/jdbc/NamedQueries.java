@@ -0,0 +1,224 @@
+package net.sf.jett.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * <p>A <code>NamedQueries</code> holds independent SQL queries, each with a
+ * bean name, and executes them all at the same time, each over its own
+ * <code>Connection</code> from a <code>DataSource</code>.  The result is a
+ * <code>Map</code> of bean names to <code>Lists</code> of
+ * <code>ResultSetRows</code>, ready to be added to the beans map, so that
+ * gathering the data for a report takes as long as its slowest query, not
+ * as long as all of its queries together.</p>
+ *
+ * <pre>
+ * NamedQueries queries = new NamedQueries();
+ * queries.addQuery("employees", "SELECT * FROM employee");
+ * queries.addQuery("managers", "SELECT * FROM employee WHERE is_a_manager = ?", "Y");
+ * beans.putAll(queries.execute(dataSource));
+ * </pre>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class NamedQueries
+{
+    private static final Logger logger = LogManager.getLogger();
+
+    private Map<String, NamedQuery> myQueries = new LinkedHashMap<>();
+    private QueryResultCache myResultCache;
+
+    /**
+     * Adds a query, replacing any query already added with the same name.
+     * @param name The bean name of the query's results.
+     * @param sql The SQL statement.
+     * @param bindVariableValues Optional bind variable values.  There must be
+     *    exactly one of these for every <code>?</code> in the SQL query.
+     */
+    public void addQuery(String name, String sql, Object... bindVariableValues)
+    {
+        myQueries.put(name, new NamedQuery(sql, bindVariableValues));
+    }
+
+    /**
+     * Sets the <code>QueryResultCache</code> that the queries look up results
+     * in and add results to.
+     * @param resultCache A <code>QueryResultCache</code>, or
+     *    <code>null</code> (the default) not to cache results.
+     */
+    public void setResultCache(QueryResultCache resultCache)
+    {
+        myResultCache = resultCache;
+    }
+
+    /**
+     * Returns the number of queries.
+     * @return The number of queries.
+     */
+    public int size()
+    {
+        return myQueries.size();
+    }
+
+    /**
+     * Executes all queries at the same time, on threads of a pool that is
+     * created for this call, with one thread per query.
+     * @param dataSource The <code>DataSource</code> that supplies a
+     *    <code>Connection</code> for each query.
+     * @return A <code>Map</code> of bean names to <code>Lists</code> of
+     *    <code>ResultSetRows</code>, in the order the queries were added.
+     * @throws SQLException If there was a problem executing any query.
+     */
+    public Map<String, Object> execute(DataSource dataSource) throws SQLException
+    {
+        if (myQueries.isEmpty())
+            return new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(myQueries.size());
+        try
+        {
+            return execute(dataSource, executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Executes all queries at the same time, on the given
+     * <code>Executor</code>.  If any query fails, then the first failure, in
+     * the order the queries were added, is thrown, and any queries still
+     * running are cancelled.
+     * @param dataSource The <code>DataSource</code> that supplies a
+     *    <code>Connection</code> for each query.
+     * @param executor The <code>Executor</code> that runs the queries.
+     * @return A <code>Map</code> of bean names to <code>Lists</code> of
+     *    <code>ResultSetRows</code>, in the order the queries were added.
+     * @throws SQLException If there was a problem executing any query.
+     */
+    public Map<String, Object> execute(DataSource dataSource, Executor executor) throws SQLException
+    {
+        List<String> names = new ArrayList<>(myQueries.keySet());
+        List<FutureTask<List<ResultSetRow>>> tasks = new ArrayList<>(names.size());
+        for (String name : names)
+        {
+            FutureTask<List<ResultSetRow>> task = new FutureTask<>(
+                    new QueryCallable(dataSource, myQueries.get(name), myResultCache));
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        try
+        {
+            for (int i = 0; i < names.size(); i++)
+            {
+                results.put(names.get(i), tasks.get(i).get());
+            }
+            return results;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while executing named queries.", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException)
+                throw (SQLException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new SQLException(cause);
+        }
+        finally
+        {
+            for (FutureTask<List<ResultSetRow>> task : tasks)
+            {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * A <code>NamedQuery</code> is the SQL and bind variable values of a query.
+     */
+    private static class NamedQuery
+    {
+        private String mySql;
+        private Object[] myBindVariableValues;
+
+        /**
+         * Constructs a <code>NamedQuery</code>.
+         * @param sql The SQL statement.
+         * @param bindVariableValues The bind variable values.
+         */
+        private NamedQuery(String sql, Object[] bindVariableValues)
+        {
+            mySql = sql;
+            myBindVariableValues = bindVariableValues;
+        }
+    }
+
+    /**
+     * A <code>QueryCallable</code> executes one <code>NamedQuery</code> over
+     * its own <code>Connection</code>, which it closes afterwards.
+     */
+    private static class QueryCallable implements Callable<List<ResultSetRow>>
+    {
+        private DataSource myDataSource;
+        private NamedQuery myQuery;
+        private QueryResultCache myResultCache;
+
+        /**
+         * Constructs a <code>QueryCallable</code>.
+         * @param dataSource The <code>DataSource</code>.
+         * @param query The <code>NamedQuery</code>.
+         * @param resultCache The <code>QueryResultCache</code>, or
+         *    <code>null</code>.
+         */
+        private QueryCallable(DataSource dataSource, NamedQuery query, QueryResultCache resultCache)
+        {
+            myDataSource = dataSource;
+            myQuery = query;
+            myResultCache = resultCache;
+        }
+
+        /**
+         * Executes the query.
+         * @return A <code>List</code> of <code>ResultSetRows</code>.
+         * @throws SQLException If there was a problem executing the query.
+         */
+        @Override
+        public List<ResultSetRow> call() throws SQLException
+        {
+            logger.debug("Executing named query: {}", myQuery.mySql);
+            try (Connection connection = myDataSource.getConnection())
+            {
+                JDBCExecutor jdbc = new JDBCExecutor(connection);
+                jdbc.setResultCache(myResultCache);
+                if (myQuery.myBindVariableValues.length == 0)
+                    return jdbc.execQuery(myQuery.mySql);
+                return jdbc.execQuery(myQuery.mySql, myQuery.myBindVariableValues);
+            }
+        }
+    }
+}
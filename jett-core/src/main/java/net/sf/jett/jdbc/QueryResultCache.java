@@ -0,0 +1,260 @@
+package net.sf.jett.jdbc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A <code>QueryResultCache</code> holds the results of queries, keyed by
+ * SQL text and bind variable values, so that <code>JDBCExecutors</code> that
+ * share it can return the rows of a repeated query without going back to the
+ * database, e.g. for reference data that many reports use.  It holds at most
+ * a maximum number of results, evicting the least recently used one first,
+ * and a result expires after a time to live.  It may be shared by many
+ * <code>JDBCExecutors</code> and threads.</p>
+ *
+ * <p>Cached results are unmodifiable <code>Lists</code> of read-only
+ * <code>ResultSetRows</code>, because they are shared by every caller.  Bind
+ * variable values are compared with <code>equals</code> (or element by
+ * element for arrays), so they must not be modified after the query.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ * @see JDBCExecutor#setResultCache(QueryResultCache)
+ */
+public class QueryResultCache
+{
+    private int myMaxSize;
+    private long myTimeToLiveNanos;
+    private Map<Key, CachedResult> myEntries;
+    private long myNumHits;
+    private long myNumMisses;
+    private long myNumEvictions;
+
+    /**
+     * Constructs a <code>QueryResultCache</code>.
+     * @param maxSize The maximum number of query results to hold.
+     * @param timeToLive How long a query result may be returned after it was
+     *    cached.
+     * @param unit The <code>TimeUnit</code> of <code>timeToLive</code>.
+     * @throws IllegalArgumentException If <code>maxSize</code> or
+     *    <code>timeToLive</code> isn't positive.
+     */
+    public QueryResultCache(int maxSize, long timeToLive, TimeUnit unit)
+    {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Maximum size must be positive: " + maxSize);
+        if (timeToLive <= 0)
+            throw new IllegalArgumentException("Time to live must be positive: " + timeToLive);
+        myMaxSize = maxSize;
+        myTimeToLiveNanos = unit.toNanos(timeToLive);
+        myEntries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest)
+            {
+                if (size() > myMaxSize)
+                {
+                    myNumEvictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached rows of the given query, if present and not
+     * expired, counting a hit or a miss.
+     * @param sql The SQL statement.
+     * @param bindVariableValues The bind variable values.
+     * @return An unmodifiable <code>List</code> of <code>ResultSetRows</code>,
+     *    or <code>null</code> if not cached.
+     */
+    synchronized List<ResultSetRow> get(String sql, Object[] bindVariableValues)
+    {
+        Key key = new Key(sql, bindVariableValues);
+        CachedResult entry = myEntries.get(key);
+        if (entry != null && System.nanoTime() - entry.myCachedNanos > myTimeToLiveNanos)
+        {
+            myEntries.remove(key);
+            myNumEvictions++;
+            entry = null;
+        }
+        if (entry == null)
+        {
+            myNumMisses++;
+            return null;
+        }
+        myNumHits++;
+        return entry.myRows;
+    }
+
+    /**
+     * Caches the rows of the given query, making them read-only.
+     * @param sql The SQL statement.
+     * @param bindVariableValues The bind variable values.
+     * @param rows The <code>ResultSetRows</code>.
+     * @return An unmodifiable <code>List</code> of the rows, to be returned to
+     *    the caller.
+     */
+    List<ResultSetRow> put(String sql, Object[] bindVariableValues, List<ResultSetRow> rows)
+    {
+        for (ResultSetRow row : rows)
+        {
+            row.setReadOnly();
+        }
+        List<ResultSetRow> shared = Collections.unmodifiableList(rows);
+        Key key = new Key(sql, bindVariableValues.clone());
+        synchronized (this)
+        {
+            myEntries.put(key, new CachedResult(shared, System.nanoTime()));
+        }
+        return shared;
+    }
+
+    /**
+     * Removes all cached results of the given SQL, for any bind variable
+     * values, e.g. after the underlying data has changed.
+     * @param sql The SQL statement.
+     */
+    public synchronized void invalidate(String sql)
+    {
+        for (Iterator<Key> itr = myEntries.keySet().iterator(); itr.hasNext(); )
+        {
+            if (itr.next().mySql.equals(sql))
+                itr.remove();
+        }
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public synchronized void invalidateAll()
+    {
+        myEntries.clear();
+    }
+
+    /**
+     * Returns the number of cached results, including any expired results
+     * that haven't been looked up since they expired.
+     * @return The number of cached results.
+     */
+    public synchronized int size()
+    {
+        return myEntries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a cached result.
+     * @return The number of hits.
+     */
+    public synchronized long getNumHits()
+    {
+        return myNumHits;
+    }
+
+    /**
+     * Returns the number of lookups that didn't find a cached result.
+     * @return The number of misses.
+     */
+    public synchronized long getNumMisses()
+    {
+        return myNumMisses;
+    }
+
+    /**
+     * Returns the number of results removed because the cache was full or
+     * because they expired.  Invalidated results aren't counted.
+     * @return The number of evictions.
+     */
+    public synchronized long getNumEvictions()
+    {
+        return myNumEvictions;
+    }
+
+    /**
+     * Returns a summary of the cache's size and counters.
+     * @return A <code>String</code> summary.
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return "QueryResultCache[size=" + myEntries.size() + ", maxSize=" + myMaxSize +
+                ", hits=" + myNumHits + ", misses=" + myNumMisses + ", evictions=" + myNumEvictions + "]";
+    }
+
+    /**
+     * A <code>Key</code> is the SQL text and the bind variable values of a
+     * query.
+     */
+    private static class Key
+    {
+        private String mySql;
+        private Object[] myBindVariableValues;
+        private int myHashCode;
+
+        /**
+         * Constructs a <code>Key</code>.
+         * @param sql The SQL statement.
+         * @param bindVariableValues The bind variable values.
+         */
+        private Key(String sql, Object[] bindVariableValues)
+        {
+            mySql = sql;
+            myBindVariableValues = bindVariableValues;
+            myHashCode = 31 * sql.hashCode() + Arrays.deepHashCode(bindVariableValues);
+        }
+
+        /**
+         * Returns the hash code.
+         * @return The hash code.
+         */
+        @Override
+        public int hashCode()
+        {
+            return myHashCode;
+        }
+
+        /**
+         * Returns whether the given object is a <code>Key</code> with the same
+         * SQL and bind variable values.
+         * @param obj Another object.
+         * @return Whether the given object is an equal <code>Key</code>.
+         */
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return myHashCode == other.myHashCode && mySql.equals(other.mySql) &&
+                    Arrays.deepEquals(myBindVariableValues, other.myBindVariableValues);
+        }
+    }
+
+    /**
+     * A <code>CachedResult</code> is a cached result and when it was cached.
+     */
+    private static class CachedResult
+    {
+        private List<ResultSetRow> myRows;
+        private long myCachedNanos;
+
+        /**
+         * Constructs a <code>CachedResult</code>.
+         * @param rows The unmodifiable rows.
+         * @param cachedNanos When the rows were cached, from
+         *    <code>System.nanoTime()</code>.
+         */
+        private CachedResult(List<ResultSetRow> rows, long cachedNanos)
+        {
+            myRows = rows;
+            myCachedNanos = cachedNanos;
+        }
+    }
+}
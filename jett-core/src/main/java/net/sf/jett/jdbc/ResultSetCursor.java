@@ -0,0 +1,197 @@
+package net.sf.jett.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import net.sf.jett.exception.TransformException;
+
+/**
+ * <p>A <code>ResultSetCursor</code> is an <code>Iterable</code> over the rows
+ * of an open <code>ResultSet</code>, which are read into
+ * <code>ResultSetRows</code> one at a time, only as they are iterated.  When
+ * used as the items of a "forEach" tag, rows stream from the database into
+ * the spreadsheet without all of them being in memory at once, e.g.</p>
+ *
+ * <code>&lt;jt:forEach items="${jdbc.execQueryCursor('SELECT * FROM employee')}" var="employee"&gt;</code>
+ *
+ * <p>A <code>ResultSetCursor</code> may be iterated only once.  It closes its
+ * <code>ResultSet</code> and <code>Statement</code> as soon as its rows are
+ * exhausted.  If iteration stops early, e.g. because of a "limit" or because
+ * the transformation failed, then it must be closed.  The "forEach" tag
+ * closes it when its loop is done.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ * @see JDBCExecutor#execQueryCursor(String)
+ */
+public class ResultSetCursor implements Iterable<ResultSetRow>, AutoCloseable
+{
+    private static final Logger logger = LogManager.getLogger();
+
+    private JDBCExecutor myExecutor;
+    private Statement myStatement;
+    private ResultSet myResultSet;
+    private List<Integer> myTypes;
+    private ResultSetSchema mySchema;
+    private boolean amIIterated;
+    private boolean amIOnRow;
+    private boolean amIClosed;
+
+    /**
+     * Constructs a <code>ResultSetCursor</code> over the given open
+     * <code>ResultSet</code>, which will be closed along with the given
+     * <code>Statement</code>.
+     * @param executor The <code>JDBCExecutor</code> that reads rows.
+     * @param statement The <code>Statement</code> that produced the
+     *    <code>ResultSet</code>.
+     * @param resultSet An unprocessed <code>ResultSet</code>.
+     * @throws SQLException If there is a problem accessing the metadata.
+     */
+    ResultSetCursor(JDBCExecutor executor, Statement statement, ResultSet resultSet) throws SQLException
+    {
+        myExecutor = executor;
+        myStatement = statement;
+        myResultSet = resultSet;
+        myTypes = executor.getTypes(resultSet.getMetaData());
+        mySchema = new ResultSetSchema(executor.getColumnNames(resultSet.getMetaData()));
+    }
+
+    /**
+     * Returns the <code>Iterator</code> over the rows.  This may only be
+     * called once.
+     * @return An <code>Iterator</code> over <code>ResultSetRows</code>.
+     * @throws IllegalStateException If this has already been iterated.
+     */
+    @Override
+    public Iterator<ResultSetRow> iterator()
+    {
+        if (amIIterated)
+            throw new IllegalStateException("A ResultSetCursor may only be iterated once.");
+        amIIterated = true;
+        return new ResultSetCursorIterator();
+    }
+
+    /**
+     * Returns whether this <code>ResultSetCursor</code> has been closed,
+     * either explicitly or because its rows were exhausted.
+     * @return Whether this <code>ResultSetCursor</code> has been closed.
+     */
+    public boolean isClosed()
+    {
+        return amIClosed;
+    }
+
+    /**
+     * Closes the <code>ResultSet</code> and the <code>Statement</code>, if not
+     * already closed.
+     * @throws SQLException If there is a problem closing them.
+     */
+    @Override
+    public void close() throws SQLException
+    {
+        if (amIClosed)
+            return;
+        amIClosed = true;
+        logger.debug("Closing ResultSetCursor.");
+        try
+        {
+            myResultSet.close();
+        }
+        finally
+        {
+            myStatement.close();
+        }
+    }
+
+    /**
+     * A <code>ResultSetCursorIterator</code> advances the
+     * <code>ResultSet</code> as rows are requested.
+     */
+    private class ResultSetCursorIterator implements Iterator<ResultSetRow>
+    {
+        /**
+         * Advances the <code>ResultSet</code> to the next row, if not already
+         * on an unread row.  Closes this cursor if there are no more rows.
+         * @return Whether there is another row.
+         * @throws TransformException If there is a problem reading the
+         *    <code>ResultSet</code>.
+         */
+        @Override
+        public boolean hasNext()
+        {
+            if (amIOnRow)
+                return true;
+            if (amIClosed)
+                return false;
+            try
+            {
+                amIOnRow = myResultSet.next();
+                if (!amIOnRow)
+                    close();
+                return amIOnRow;
+            }
+            catch (SQLException e)
+            {
+                closeQuietly();
+                throw new TransformException("Unable to read the next row from the ResultSet.", e);
+            }
+        }
+
+        /**
+         * Reads the next row.
+         * @return The next <code>ResultSetRow</code>.
+         * @throws NoSuchElementException If there are no more rows.
+         * @throws TransformException If there is a problem reading the
+         *    <code>ResultSet</code>.
+         */
+        @Override
+        public ResultSetRow next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException("ResultSetCursor: no more rows.");
+            amIOnRow = false;
+            try
+            {
+                return myExecutor.readRow(myResultSet, myTypes, mySchema);
+            }
+            catch (SQLException e)
+            {
+                closeQuietly();
+                throw new TransformException("Unable to read a row from the ResultSet.", e);
+            }
+        }
+
+        /**
+         * Rows can't be removed.
+         * @throws UnsupportedOperationException Always.
+         */
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException("ResultSetCursorIterator: Remove not supported!");
+        }
+
+        /**
+         * Closes this cursor after a failure, logging any problem closing it
+         * so that the original failure is the one reported.
+         */
+        private void closeQuietly()
+        {
+            try
+            {
+                close();
+            }
+            catch (SQLException e)
+            {
+                logger.warn("Unable to close ResultSetCursor: {}", e.getMessage());
+            }
+        }
+    }
+}
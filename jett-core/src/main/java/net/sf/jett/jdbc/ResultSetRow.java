@@ -4,37 +4,94 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * A <code>ResultSetRow</code> contains data from one row of a
+ * <p>A <code>ResultSetRow</code> contains data from one row of a
  * <code>ResultSet</code>.  Its {@link #get get} and
  * {@link #set set} methods allow easy property manipulation.
  * Plus, the <code>get</code> method allows dynamic properties to be accessed
  * in JETT via JEXL Expressions, e.g <code>${employee.first_name}</code> is
  * accessed via a call to <code>employee.get("first_name")</code>, since the
- * <code>getFirstName()</code> method would not be found.
+ * <code>getFirstName()</code> method would not be found.</p>
+ *
+ * <p>Rows read by a <code>JDBCExecutor</code> share one column name to index
+ * schema per <code>ResultSet</code>, and store only an array of values.
+ * Properties that aren't columns are kept in a <code>Map</code> that is
+ * created only when such a property is set.</p>
+ *
+ * <p>Rows held by a {@link QueryResultCache} are shared, so they are
+ * read-only.</p>
  *
  * @author Randy Gettman
  * @since 0.6.0
  */
 public class ResultSetRow
 {
-    private Map<String, Object> myValues;
+    private ResultSetSchema mySchema;
+    private Object[] myValues;
+    private Map<String, Object> myOtherValues;
+    private boolean amIReadOnly;
 
     /**
      * Constructs an empty <code>ResultSetRow</code>.
      */
     public ResultSetRow()
     {
-        myValues = new HashMap<>();
+        myOtherValues = new HashMap<>();
+    }
+
+    /**
+     * Constructs a <code>ResultSetRow</code> with a value for every column of
+     * the given <code>ResultSetSchema</code>, all initially <code>null</code>.
+     * @param schema The <code>ResultSetSchema</code>.
+     * @since 0.11.1
+     */
+    ResultSetRow(ResultSetSchema schema)
+    {
+        mySchema = schema;
+        myValues = new Object[schema.size()];
     }
 
     /**
      * Sets the given property string name to the given value.
      * @param property The property string name.
      * @param value The value.
+     * @throws UnsupportedOperationException If this row is read-only.
      */
     public void set(String property, Object value)
     {
-        myValues.put(property.toLowerCase(), value);
+        if (amIReadOnly)
+            throw new UnsupportedOperationException("This ResultSetRow is shared by a QueryResultCache and is read-only.");
+        if (mySchema != null)
+        {
+            int index = mySchema.indexOf(property);
+            if (index >= 0)
+            {
+                myValues[index] = value;
+                return;
+            }
+        }
+        if (myOtherValues == null)
+            myOtherValues = new HashMap<>();
+        myOtherValues.put(property.toLowerCase(), value);
+    }
+
+    /**
+     * Sets the value of the column at the given index of this row's schema.
+     * @param index The 0-based column index.
+     * @param value The value.
+     * @since 0.11.1
+     */
+    void setValue(int index, Object value)
+    {
+        myValues[index] = value;
+    }
+
+    /**
+     * Makes this row read-only, so that it may be shared.
+     * @since 0.11.1
+     */
+    void setReadOnly()
+    {
+        amIReadOnly = true;
     }
 
     /**
@@ -45,6 +102,14 @@ public class ResultSetRow
      */
     public Object get(String property)
     {
-        return myValues.get(property.toLowerCase());
+        if (mySchema != null)
+        {
+            int index = mySchema.indexOf(property);
+            if (index >= 0)
+                return myValues[index];
+        }
+        if (myOtherValues == null)
+            return null;
+        return myOtherValues.get(property.toLowerCase());
     }
 }
@@ -0,0 +1,89 @@
+package net.sf.jett.jdbc;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A <code>ResultSetSchema</code> maps the column names of one
+ * <code>ResultSet</code> to their 0-based indexes.  It is shared by all
+ * <code>ResultSetRows</code> read from that <code>ResultSet</code>, so that
+ * each row stores only an array of values.  Column names are matched case
+ * insensitively.  The names as given, lower-cased, and upper-cased are all
+ * registered up front, so that the usual lookups don't need to create a
+ * lower-cased <code>String</code>.  Every spelling of a name maps to the same
+ * column, whichever case it's looked up in.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+class ResultSetSchema
+{
+    private String[] myColNames;
+    private Map<String, Integer> myIndexes;
+
+    /**
+     * Constructs a <code>ResultSetSchema</code> for the given column names.
+     * If a column name is repeated, ignoring case, the last such column wins,
+     * just as if its value were set last, for lookups in any case.
+     * @param colNames The column names, in order.
+     */
+    ResultSetSchema(List<String> colNames)
+    {
+        myColNames = colNames.toArray(new String[colNames.size()]);
+        myIndexes = new HashMap<>(myColNames.length * 4);
+        // Find the last column for each lower-cased name first, so that all
+        // spellings of a repeated name map to that column.
+        Map<String, Integer> lastIndexes = new HashMap<>(myColNames.length * 2);
+        for (int i = 0; i < myColNames.length; i++)
+        {
+            lastIndexes.put(myColNames[i].toLowerCase(), i);
+        }
+        for (String colName : myColNames)
+        {
+            String lowerName = colName.toLowerCase();
+            Integer index = lastIndexes.get(lowerName);
+            myIndexes.put(colName, index);
+            myIndexes.put(lowerName, index);
+            myIndexes.put(colName.toUpperCase(), index);
+        }
+    }
+
+    /**
+     * Returns the number of columns.
+     * @return The number of columns.
+     */
+    int size()
+    {
+        return myColNames.length;
+    }
+
+    /**
+     * Returns the column name at the given index, as given.
+     * @param index The 0-based index.
+     * @return The column name.
+     */
+    String getColumnName(int index)
+    {
+        return myColNames[index];
+    }
+
+    /**
+     * Returns the index of the given column name, ignoring case.
+     * @param colName A column name.
+     * @return The 0-based index, or <code>-1</code> if there is no such
+     *    column.
+     */
+    int indexOf(String colName)
+    {
+        Integer index = myIndexes.get(colName);
+        if (index == null)
+        {
+            // Mixed case that doesn't match the column name as given.
+            index = myIndexes.get(colName.toLowerCase());
+            if (index == null)
+                return -1;
+        }
+        return index;
+    }
+}
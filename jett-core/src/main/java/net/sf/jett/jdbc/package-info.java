@@ -10,6 +10,13 @@
  * <code>JDBCExecutor</code>.  It is not seen directly, but <code>JDBCExecutor</code>'s
  * <code>execQuery</code> method returns a <code>List</code> of <code>ResultSetRows</code>.</p>
  *
+ * <p>The <code>ResultSetCursor</code>, returned by <code>JDBCExecutor</code>'s
+ * <code>execQueryCursor</code> method, reads <code>ResultSetRows</code> one at
+ * a time from an open <code>ResultSet</code>, so large queries can be
+ * streamed into a "forEach" tag:</p>
+ *
+ * <code>&lt;jt:forEach items="${jdbc.execQueryCursor('SELECT * FROM employee')}" var="employee"&gt;</code>
+ *
  * @author Randy Gettman
  * @since 0.6.0
  */
@@ -86,13 +86,31 @@ public class BaseLoopTagStatus implements LoopTagStatus
 
     /**
      * Returns the number of iterations.
-     * @return The number of iterations.
+     * @return The number of iterations, or <code>-1</code> if a loop over
+     *    lazily consumed items hasn't reached its last iteration yet.
      */
     public int getNumIterations()
     {
         return myNumIterations;
     }
 
+    /**
+     * Sets the number of iterations, if the given tag is this object's parent
+     * tag.  A loop over lazily consumed items calls this once it knows that
+     * the current iteration is the last one.
+     * @param tag The parent tag.
+     * @param numIterations The total number of iterations.
+     * @since 0.11.1
+     */
+    public void setNumIterations(Tag tag, int numIterations)
+    {
+        if (tag == null || tag != myParentTag)
+        {
+            throw new IllegalArgumentException("Tag given is not this object's parent tag!");
+        }
+        myNumIterations = numIterations;
+    }
+
     /**
      * Increments the current index, if the given tag is this object's parent
      * tag.  This check is so only the <code>Tag</code> that owns this object
@@ -0,0 +1,306 @@
+package net.sf.jett.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.sf.jett.formula.CellRef;
+import net.sf.jett.util.FormulaUtil;
+
+/**
+ * <p>A <code>CellRefIndex</code> is a spatial index over the
+ * <code>CellRefs</code> in a cell reference map, so that shifting or copying
+ * the cell references in a range of <code>Cells</code> only looks at the cell
+ * keys that have cell references in that range, instead of at all cell keys.
+ * </p>
+ *
+ * <p><code>CellRefs</code> that name a sheet are indexed under that sheet
+ * name.  Implicit <code>CellRefs</code> without a sheet name are indexed
+ * under the sheet name in their cell key, and explicit ones are indexed
+ * separately, because they match any sheet.  Within a sheet, they are indexed
+ * by row.</p>
+ *
+ * <p>The cell reference map must only be changed through this index, or
+ * else the index must be discarded with
+ * {@link WorkbookContext#invalidateCellRefIndex()}.  The only exception is
+ * replacing the <code>List</code> for a cell key; entries for the old
+ * <code>List</code> are recognized as stale and dropped.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class CellRefIndex
+{
+    private Map<String, List<CellRef>> myCellRefMap;
+    private Map<String, CellKey> myCellKeys;
+    private Map<String, TreeMap<Integer, List<Entry>>> myBySheetName;
+    private Map<String, TreeMap<Integer, List<Entry>>> myByKeySheetName;
+    private TreeMap<Integer, List<Entry>> myExplicitLocal;
+
+    /**
+     * Constructs a <code>CellRefIndex</code> over all <code>CellRefs</code>
+     * currently in the given cell reference map.
+     * @param cellRefMap The cell reference map, a <code>Map</code> of cell key
+     *    strings to <code>Lists</code> of <code>CellRefs</code>.
+     */
+    public CellRefIndex(Map<String, List<CellRef>> cellRefMap)
+    {
+        myCellRefMap = cellRefMap;
+        myCellKeys = new HashMap<>();
+        myBySheetName = new HashMap<>();
+        myByKeySheetName = new HashMap<>();
+        myExplicitLocal = new TreeMap<>();
+        for (Map.Entry<String, List<CellRef>> entry : cellRefMap.entrySet())
+        {
+            String cellKey = entry.getKey();
+            List<CellRef> cellRefs = entry.getValue();
+            for (CellRef cellRef : cellRefs)
+            {
+                add(cellKey, cellRefs, cellRef);
+            }
+        }
+    }
+
+    /**
+     * Indexes the given <code>CellRef</code>, which has been added to the
+     * <code>List</code> for the given cell key.
+     * @param cellKey The cell key.
+     * @param cellRef The <code>CellRef</code>.
+     */
+    public void add(String cellKey, CellRef cellRef)
+    {
+        add(cellKey, myCellRefMap.get(cellKey), cellRef);
+    }
+
+    /**
+     * Stops indexing the given <code>CellRef</code>, which has been removed
+     * from the <code>List</code> for the given cell key.
+     * @param cellKey The cell key.
+     * @param cellRef The <code>CellRef</code>.
+     */
+    public void remove(String cellKey, CellRef cellRef)
+    {
+        CellKey key = getCellKey(cellKey);
+        TreeMap<Integer, List<Entry>> rows = getRows(key, cellRef, false);
+        if (rows == null)
+            return;
+        List<Entry> entries = rows.get(cellRef.getRow());
+        if (entries == null)
+            return;
+        Iterator<Entry> itr = entries.iterator();
+        while (itr.hasNext())
+        {
+            Entry entry = itr.next();
+            if (entry.myCellRef == cellRef && entry.myCellKey == key)
+            {
+                itr.remove();
+                break;
+            }
+        }
+        if (entries.isEmpty())
+            rows.remove(cellRef.getRow());
+    }
+
+    /**
+     * Finds the cell keys that have at least one <code>CellRef</code> in the
+     * given range on the given sheet.  These are the cell keys whose
+     * <code>CellRefs</code> in that range are shifted or copied along with
+     * that range.
+     * @param sheetName The name of the <code>Sheet</code>.
+     * @param templateSheetName The name of the template sheet from which the
+     *    <code>Sheet</code> came, or <code>null</code> if not known.
+     * @param left The 0-based index of the leftmost column.
+     * @param right The 0-based index of the rightmost column.
+     * @param top The 0-based index of the top row.
+     * @param bottom The 0-based index of the bottom row.
+     * @return A <code>Set</code> of cell keys, possibly empty.
+     */
+    public Set<String> findCellKeys(String sheetName, String templateSheetName,
+                                    int left, int right, int top, int bottom)
+    {
+        Set<String> cellKeys = new LinkedHashSet<>();
+        if (top > bottom || left > right)
+            return cellKeys;
+        // CellRefs naming this sheet, from keys that match this sheet.
+        find(myBySheetName.get(sheetName), sheetName, templateSheetName, left, right, top, bottom, cellKeys);
+        // CellRefs local to the sheet in their implicit key.
+        find(myByKeySheetName.get(sheetName), null, null, left, right, top, bottom, cellKeys);
+        if (templateSheetName != null && !templateSheetName.equals(sheetName))
+            find(myByKeySheetName.get(templateSheetName), null, null, left, right, top, bottom, cellKeys);
+        // Local CellRefs from explicit keys match any sheet.
+        find(myExplicitLocal, null, null, left, right, top, bottom, cellKeys);
+        return cellKeys;
+    }
+
+    /**
+     * Adds the cell keys of the entries in the given range in the given rows
+     * to the given <code>Set</code>, dropping stale entries along the way.
+     * @param rows The entries by row, possibly <code>null</code>.
+     * @param sheetName If not <code>null</code>, then only implicit cell keys
+     *    on this sheet or the template sheet match.
+     * @param templateSheetName The template sheet name, possibly
+     *    <code>null</code>.
+     * @param left The 0-based index of the leftmost column.
+     * @param right The 0-based index of the rightmost column.
+     * @param top The 0-based index of the top row.
+     * @param bottom The 0-based index of the bottom row.
+     * @param cellKeys Cell keys found are added to this <code>Set</code>.
+     */
+    private void find(TreeMap<Integer, List<Entry>> rows, String sheetName, String templateSheetName,
+                      int left, int right, int top, int bottom, Set<String> cellKeys)
+    {
+        if (rows == null)
+            return;
+        Iterator<List<Entry>> rowsItr = rows.subMap(top, true, bottom, true).values().iterator();
+        while (rowsItr.hasNext())
+        {
+            List<Entry> entries = rowsItr.next();
+            Iterator<Entry> itr = entries.iterator();
+            while (itr.hasNext())
+            {
+                Entry entry = itr.next();
+                CellKey key = entry.myCellKey;
+                if (myCellRefMap.get(key.myCellKey) != entry.myCellRefs)
+                {
+                    itr.remove();
+                    continue;
+                }
+                int col = entry.myCellRef.getCol();
+                if (col < left || col > right)
+                    continue;
+                if (sheetName != null && !key.amIExplicit &&
+                        !key.mySheetName.equals(sheetName) && !key.mySheetName.equals(templateSheetName))
+                    continue;
+                cellKeys.add(key.myCellKey);
+            }
+            if (entries.isEmpty())
+                rowsItr.remove();
+        }
+    }
+
+    /**
+     * Indexes the given <code>CellRef</code> in the given <code>List</code>
+     * for the given cell key.
+     * @param cellKey The cell key.
+     * @param cellRefs The <code>List</code> of <code>CellRefs</code> mapped by
+     *    the cell key.
+     * @param cellRef The <code>CellRef</code>.
+     */
+    private void add(String cellKey, List<CellRef> cellRefs, CellRef cellRef)
+    {
+        CellKey key = getCellKey(cellKey);
+        TreeMap<Integer, List<Entry>> rows = getRows(key, cellRef, true);
+        List<Entry> entries = rows.get(cellRef.getRow());
+        if (entries == null)
+        {
+            entries = new ArrayList<>(2);
+            rows.put(cellRef.getRow(), entries);
+        }
+        entries.add(new Entry(key, cellRefs, cellRef));
+    }
+
+    /**
+     * Returns the entries by row in which the given <code>CellRef</code> for
+     * the given cell key is indexed.
+     * @param key The <code>CellKey</code>.
+     * @param cellRef The <code>CellRef</code>.
+     * @param create Whether to create the entries by row if they don't exist.
+     * @return The entries by row, or <code>null</code> if they don't exist
+     *    and <code>create</code> is <code>false</code>.
+     */
+    private TreeMap<Integer, List<Entry>> getRows(CellKey key, CellRef cellRef, boolean create)
+    {
+        String cellRefSheetName = cellRef.getSheetName();
+        Map<String, TreeMap<Integer, List<Entry>>> bySheetName;
+        String sheetName;
+        if (cellRefSheetName != null)
+        {
+            bySheetName = myBySheetName;
+            sheetName = cellRefSheetName;
+        }
+        else if (key.amIExplicit)
+        {
+            return myExplicitLocal;
+        }
+        else
+        {
+            bySheetName = myByKeySheetName;
+            sheetName = key.mySheetName;
+        }
+        TreeMap<Integer, List<Entry>> rows = bySheetName.get(sheetName);
+        if (rows == null && create)
+        {
+            rows = new TreeMap<>();
+            bySheetName.put(sheetName, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the parsed <code>CellKey</code> for the given cell key string,
+     * parsing it only the first time.
+     * @param cellKey The cell key, e.g. "i/Sheet1!B2[0,1]".
+     * @return The <code>CellKey</code>.
+     */
+    private CellKey getCellKey(String cellKey)
+    {
+        CellKey key = myCellKeys.get(cellKey);
+        if (key == null)
+        {
+            key = new CellKey(cellKey);
+            myCellKeys.put(cellKey, key);
+        }
+        return key;
+    }
+
+    /**
+     * A cell key, with the parts that determine which sheets it matches
+     * already parsed out.
+     */
+    private static class CellKey
+    {
+        private final String myCellKey;
+        private final boolean amIExplicit;
+        private final String mySheetName;
+
+        /**
+         * Parses the given cell key.
+         * @param cellKey The cell key, e.g. "i/Sheet1!B2[0,1]".
+         */
+        private CellKey(String cellKey)
+        {
+            myCellKey = cellKey;
+            amIExplicit = cellKey.startsWith(FormulaUtil.EXPLICIT_REF_PREFIX);
+            // Bypass the explicit/implicit indicator.
+            mySheetName = cellKey.substring(2, cellKey.indexOf("!"));
+        }
+    }
+
+    /**
+     * A <code>CellRef</code> in the <code>List</code> mapped by a cell key.
+     */
+    private static class Entry
+    {
+        private final CellKey myCellKey;
+        private final List<CellRef> myCellRefs;
+        private final CellRef myCellRef;
+
+        /**
+         * Constructs an <code>Entry</code>.
+         * @param cellKey The <code>CellKey</code>.
+         * @param cellRefs The <code>List</code> mapped by the cell key.
+         * @param cellRef The <code>CellRef</code>.
+         */
+        private Entry(CellKey cellKey, List<CellRef> cellRefs, CellRef cellRef)
+        {
+            myCellKey = cellKey;
+            myCellRefs = cellRefs;
+            myCellRef = cellRef;
+        }
+    }
+}
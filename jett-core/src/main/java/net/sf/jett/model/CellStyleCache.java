@@ -1,5 +1,6 @@
 package net.sf.jett.model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -15,11 +16,9 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFFont;
 
-import net.sf.jett.util.SheetUtil;
-
 /**
  * <p>A <code>CellStyleCache</code> is used internally to keep track of
- * <code>CellStyles</code>.  It defines and uses a string format for declaring
+ * <code>CellStyles</code>.  It uses a <code>CellStyleKey</code> to identify
  * all possible style values that can be defined in a <code>CellStyle</code>,
  * even <code>Font</code> characteristics.  Its lifetime is meant to last only
  * during a single transformation.  When created, it reads in all pre-existing
@@ -32,10 +31,9 @@ public class CellStyleCache
 {
     private static final Logger logger = LogManager.getLogger();
 
-    private static final String PROP_SEP = "|";
-
     private Workbook myWorkbook;
-    private Map<String, CellStyle> myCellStyleMap;
+    private Map<CellStyleKey, CellStyle> myCellStyleMap;
+    private Map<CellStyleKey, Integer> myPreExistingIndexes;
 
     /**
      * Constructs a <code>CellStyleCache</code> on a <code>Workbook</code>.
@@ -47,9 +45,31 @@ public class CellStyleCache
     {
         myWorkbook = workbook;
         myCellStyleMap = new HashMap<>();
+        myPreExistingIndexes = Collections.emptyMap();
         cachePreExistingCellStyles();
     }
 
+    /**
+     * Constructs a <code>CellStyleCache</code> on a <code>Workbook</code>,
+     * using an index of pre-existing <code>CellStyles</code> that was already
+     * built on an identical <code>Workbook</code>, e.g. another copy of the
+     * same template, by <code>getCellStyleIndexes</code>.  The
+     * <code>Workbook</code> isn't scanned; each pre-existing
+     * <code>CellStyle</code> is looked up by its index the first time it's
+     * retrieved.
+     *
+     * @param workbook A <code>Workbook</code>.
+     * @param preExistingIndexes A <code>Map</code> of
+     *    <code>CellStyleKeys</code> to cell style indexes.  It isn't modified.
+     * @since 0.11.1
+     */
+    public CellStyleCache(Workbook workbook, Map<CellStyleKey, Integer> preExistingIndexes)
+    {
+        myWorkbook = workbook;
+        myCellStyleMap = new HashMap<>();
+        myPreExistingIndexes = preExistingIndexes;
+    }
+
     /**
      * Cache all <code>CellStyles</code> found within the workbook.
      */
@@ -71,7 +91,57 @@ public class CellStyleCache
      */
     public int getNumEntries()
     {
-        return myCellStyleMap.size();
+        int numEntries = myPreExistingIndexes.size();
+        for (CellStyleKey key : myCellStyleMap.keySet())
+        {
+            if (!myPreExistingIndexes.containsKey(key))
+                numEntries++;
+        }
+        return numEntries;
+    }
+
+    /**
+     * Returns a new <code>Map</code> of the <code>CellStyleKeys</code> of all
+     * cached <code>CellStyles</code> to their indexes in the
+     * <code>Workbook</code>.  This can be passed to the constructor of another
+     * <code>CellStyleCache</code> on an identical <code>Workbook</code>.
+     *
+     * @return A <code>Map</code> of <code>CellStyleKeys</code> to cell style
+     *    indexes.
+     * @since 0.11.1
+     */
+    public Map<CellStyleKey, Integer> getCellStyleIndexes()
+    {
+        Map<CellStyleKey, Integer> indexes = new HashMap<>(myPreExistingIndexes);
+        for (Map.Entry<CellStyleKey, CellStyle> entry : myCellStyleMap.entrySet())
+        {
+            indexes.put(entry.getKey(), (int) entry.getValue().getIndex());
+        }
+        return indexes;
+    }
+
+    /**
+     * Looks up a <code>CellStyle</code> by its <code>CellStyleKey</code>,
+     * resolving a pre-existing <code>CellStyle</code> by its index if
+     * necessary.
+     *
+     * @param key The <code>CellStyleKey</code>.
+     * @return The <code>CellStyle</code>, or <code>null</code> if it's not
+     *    cached.
+     */
+    private CellStyle lookup(CellStyleKey key)
+    {
+        CellStyle cs = myCellStyleMap.get(key);
+        if (cs == null)
+        {
+            Integer index = myPreExistingIndexes.get(key);
+            if (index != null)
+            {
+                cs = myWorkbook.getCellStyleAt(index);
+                myCellStyleMap.put(key, cs);
+            }
+        }
+        return cs;
     }
 
     /**
@@ -116,19 +186,20 @@ public class CellStyleCache
                                        short indention, short rotation, Color bottomBorderColor, Color leftBorderColor, Color rightBorderColor,
                                        Color topBorderColor, int fontCharset, short fontTypeOffset, boolean locked, boolean hidden)
     {
-        String representation = getRepresentation(fontBoldweight, fontItalic, fontColor, fontName, fontHeightInPoints,
-                alignment, borderBottom, borderLeft, borderRight, borderTop, dataFormat, fontUnderline, fontStrikeout,
-                wrapText, fillBackgroundColor, fillForegroundColor, fillPattern, verticalAlignment, indention, rotation,
-                bottomBorderColor, leftBorderColor, rightBorderColor, topBorderColor, fontCharset, fontTypeOffset, locked,
+        FontKey fontKey = new FontKey(fontBoldweight, fontItalic, fontColor, fontName, fontHeightInPoints,
+                fontUnderline, fontStrikeout, fontCharset, fontTypeOffset);
+        CellStyleKey key = new CellStyleKey(fontKey, alignment, borderBottom, borderLeft, borderRight, borderTop,
+                dataFormat, wrapText, fillBackgroundColor, fillForegroundColor, fillPattern, verticalAlignment,
+                indention, rotation, bottomBorderColor, leftBorderColor, rightBorderColor, topBorderColor, locked,
                 hidden
         );
-        CellStyle cs = myCellStyleMap.get(representation);
+        CellStyle cs = lookup(key);
         if (logger.isTraceEnabled())
         {
             if (cs != null)
-                logger.trace("CSCache hit  : {}", representation);
+                logger.trace("CSCache hit  : {}", key);
             else
-                logger.trace("CSCache miss!: {}", representation);
+                logger.trace("CSCache miss!: {}", key);
         }
         return cs;
     }
@@ -140,9 +211,9 @@ public class CellStyleCache
      */
     public void cacheCellStyle(CellStyle cs)
     {
-        String representation = getRepresentation(cs);
-        logger.trace("Caching cs   : {}", representation);
-        myCellStyleMap.put(representation, cs);
+        CellStyleKey key = getKey(cs);
+        logger.trace("Caching cs   : {}", key);
+        myCellStyleMap.put(key, cs);
     }
 
     /**
@@ -159,33 +230,32 @@ public class CellStyleCache
      */
     public CellStyle findCellStyleWithFont(CellStyle cs, Font f)
     {
-        String representation = getRepresentation(cs, f);
-        return myCellStyleMap.get(representation);
+        return lookup(getKey(cs, f));
     }
 
     /**
-     * Gets the string representation of the given <code>CellStyle</code>, using
-     * its own font characteristics.
+     * Gets the <code>CellStyleKey</code> of the given <code>CellStyle</code>,
+     * using its own font characteristics.
      * @param cs A <code>CellStyle</code>.
-     * @return The string representation.
+     * @return The <code>CellStyleKey</code>.
      */
-    private String getRepresentation(CellStyle cs)
+    private CellStyleKey getKey(CellStyle cs)
     {
-        return getRepresentation(cs, myWorkbook.getFontAt(cs.getFontIndex()));
+        return getKey(cs, myWorkbook.getFontAt(cs.getFontIndex()));
     }
 
     /**
-     * Gets the string representation of the given <code>CellStyle</code>, using
-     * the cell style characteristics of the <code>CellStyle</code> and the font
+     * Gets the <code>CellStyleKey</code> of the given <code>CellStyle</code>,
+     * using the cell style characteristics of the <code>CellStyle</code> and the font
      * characteristics of the given <code>Font</code>.
      * @param cs The <code>CellStyle</code>.  Cell style characteristics are
      *    used, but the font characteristics are not used.
      * @param f The <code>Font</code>.  These font characteristics are used
      *    instead of the font characteristics on the <code>CellStyle</code>.
-     * @return The string representation.
+     * @return The <code>CellStyleKey</code>.
      * @since 0.10.0
      */
-    private String getRepresentation(CellStyle cs, Font f)
+    private CellStyleKey getKey(CellStyle cs, Font f)
     {
         // Colors that need an instanceof check
         Color fontColor;
@@ -220,107 +290,12 @@ public class CellStyleCache
         else
             throw new IllegalArgumentException("Bad CellStyle type: " + cs.getClass().getName());
 
-        return getRepresentation(f.getBoldweight(), f.getItalic(), fontColor, f.getFontName(),
-                f.getFontHeightInPoints(), cs.getAlignment(), cs.getBorderBottom(), cs.getBorderLeft(), cs.getBorderRight(),
-                cs.getBorderTop(), cs.getDataFormatString(), f.getUnderline(), f.getStrikeout(), cs.getWrapText(),
+        FontKey fontKey = new FontKey(f.getBoldweight(), f.getItalic(), fontColor, f.getFontName(),
+                f.getFontHeightInPoints(), f.getUnderline(), f.getStrikeout(), f.getCharSet(), f.getTypeOffset());
+        return new CellStyleKey(fontKey, cs.getAlignment(), cs.getBorderBottom(), cs.getBorderLeft(), cs.getBorderRight(),
+                cs.getBorderTop(), cs.getDataFormatString(), cs.getWrapText(),
                 cs.getFillBackgroundColorColor(), cs.getFillForegroundColorColor(), cs.getFillPattern(), cs.getVerticalAlignment(),
                 cs.getIndention(), cs.getRotation(), bottomColor, leftColor, rightColor,
-                topColor, f.getCharSet(), f.getTypeOffset(), cs.getLocked(), cs.getHidden());
-    }
-
-    /**
-     * Return the string representation of a <code>CellStyle</code> with the
-     * given properties.
-     * @param fontBoldweight The font boldweight.
-     * @param fontItalic Whether the font is italic.
-     * @param fontColor The font color.
-     * @param fontName The font name.
-     * @param fontHeightInPoints The font height in points.
-     * @param alignment The horizontal alignment.
-     * @param borderBottom The bottom border type.
-     * @param borderLeft The left border type.
-     * @param borderRight The right border type.
-     * @param borderTop The top border type.
-     * @param dataFormat The data format string.
-     * @param fontUnderline The font underline.
-     * @param fontStrikeout Whether the font is in strikeout.
-     * @param wrapText Whether text is wrapped.
-     * @param fillBackgroundColor The fill background color.
-     * @param fillForegroundColor The fill foreground color.
-     * @param fillPattern The fill pattern.
-     * @param verticalAlignment The vertical alignment.
-     * @param indention How many characters the text is indented.
-     * @param rotation How many degrees the text is rotated.
-     * @param bottomBorderColor The bottom border color.
-     * @param leftBorderColor The left border color.
-     * @param rightBorderColor The right border color.
-     * @param topBorderColor The top border color.
-     * @param fontCharset The font charset.
-     * @param fontTypeOffset The font type offset.
-     * @param locked Whether the cell is "locked".
-     * @param hidden Whether the cell is "hidden".
-     * @return The string representation.
-     */
-    private String getRepresentation(short fontBoldweight, boolean fontItalic, Color fontColor, String fontName,
-                                     short fontHeightInPoints, short alignment, short borderBottom, short borderLeft, short borderRight,
-                                     short borderTop, String dataFormat, byte fontUnderline, boolean fontStrikeout, boolean wrapText,
-                                     Color fillBackgroundColor, Color fillForegroundColor, short fillPattern, short verticalAlignment,
-                                     short indention, short rotation, Color bottomBorderColor, Color leftBorderColor, Color rightBorderColor,
-                                     Color topBorderColor, int fontCharset, short fontTypeOffset, boolean locked, boolean hidden)
-    {
-        StringBuilder buf = new StringBuilder();
-
-        buf.append(fontBoldweight).append(PROP_SEP);
-        // Font italic
-        buf.append(fontItalic).append(PROP_SEP);
-        // Font color
-        buf.append(SheetUtil.getColorHexString(fontColor));
-        // Font name
-        buf.append(PROP_SEP).append(fontName);
-        // Font height in points
-        buf.append(PROP_SEP).append(fontHeightInPoints);
-        // Alignment
-        buf.append(PROP_SEP).append(alignment);
-        // Borders: Bottom, Left, Right, Top
-        buf.append(PROP_SEP).append(borderBottom);
-        buf.append(PROP_SEP).append(borderLeft);
-        buf.append(PROP_SEP).append(borderRight);
-        buf.append(PROP_SEP).append(borderTop);
-        // Data format
-        buf.append(PROP_SEP).append(dataFormat);
-        // Font underline
-        buf.append(PROP_SEP).append(fontUnderline);
-        // Font strikeout
-        buf.append(PROP_SEP).append(fontStrikeout);
-        // Wrap text
-        buf.append(PROP_SEP).append(wrapText);
-        // Fill bg/fg color
-        buf.append(PROP_SEP).append(SheetUtil.getColorHexString(fillBackgroundColor));
-        buf.append(PROP_SEP).append(SheetUtil.getColorHexString(fillForegroundColor));
-        // Fill pattern
-        buf.append(PROP_SEP).append(fillPattern);
-        // Vertical alignment
-        buf.append(PROP_SEP).append(verticalAlignment);
-        // Indention
-        buf.append(PROP_SEP).append(indention);
-        // Rotation
-        buf.append(PROP_SEP).append(rotation);
-        // DO NOT DO Column width in chars
-        // DO NOT DO row height in points
-        // Border Colors: Bottom, Left, Right, Top
-        buf.append(PROP_SEP).append(SheetUtil.getColorHexString(bottomBorderColor));
-        buf.append(PROP_SEP).append(SheetUtil.getColorHexString(leftBorderColor));
-        buf.append(PROP_SEP).append(SheetUtil.getColorHexString(rightBorderColor));
-        buf.append(PROP_SEP).append(SheetUtil.getColorHexString(topBorderColor));
-        // Font charset
-        buf.append(PROP_SEP).append(fontCharset);
-        // Font type offset
-        buf.append(PROP_SEP).append(fontTypeOffset);
-        // Locked
-        buf.append(PROP_SEP).append(locked);
-        // Hidden
-        buf.append(PROP_SEP).append(hidden);
-
-        return buf.toString();
+                topColor, cs.getLocked(), cs.getHidden());
     }
 }
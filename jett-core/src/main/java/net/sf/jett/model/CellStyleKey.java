@@ -0,0 +1,196 @@
+package net.sf.jett.model;
+
+import org.apache.poi.ss.usermodel.Color;
+
+import net.sf.jett.util.SheetUtil;
+
+/**
+ * <p>A <code>CellStyleKey</code> is an immutable key that identifies all
+ * possible style values that can be defined in a <code>CellStyle</code>,
+ * including its <code>Font</code> characteristics as a <code>FontKey</code>.
+ * Colors are kept as RGB values and the hash code is computed once, so that
+ * a <code>CellStyleCache</code> lookup doesn't need to build a string.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public final class CellStyleKey
+{
+    private static final String PROP_SEP = "|";
+
+    private final FontKey myFontKey;
+    private final short myAlignment;
+    private final short myBorderBottom;
+    private final short myBorderLeft;
+    private final short myBorderRight;
+    private final short myBorderTop;
+    private final String myDataFormat;
+    private final boolean amIWrapText;
+    private final int myFillBackgroundColor;
+    private final int myFillForegroundColor;
+    private final short myFillPattern;
+    private final short myVerticalAlignment;
+    private final short myIndention;
+    private final short myRotation;
+    private final int myBottomBorderColor;
+    private final int myLeftBorderColor;
+    private final int myRightBorderColor;
+    private final int myTopBorderColor;
+    private final boolean amILocked;
+    private final boolean amIHidden;
+    private final int myHashCode;
+
+    /**
+     * Constructs a <code>CellStyleKey</code> with the given properties.
+     * @param fontKey The <code>FontKey</code> of the font characteristics.
+     * @param alignment The horizontal alignment.
+     * @param borderBottom The bottom border type.
+     * @param borderLeft The left border type.
+     * @param borderRight The right border type.
+     * @param borderTop The top border type.
+     * @param dataFormat The data format string.
+     * @param wrapText Whether text is wrapped.
+     * @param fillBackgroundColor The fill background color.
+     * @param fillForegroundColor The fill foreground color.
+     * @param fillPattern The fill pattern.
+     * @param verticalAlignment The vertical alignment.
+     * @param indention How many characters the text is indented.
+     * @param rotation How many degrees the text is rotated.
+     * @param bottomBorderColor The bottom border color.
+     * @param leftBorderColor The left border color.
+     * @param rightBorderColor The right border color.
+     * @param topBorderColor The top border color.
+     * @param locked Whether the cell is "locked".
+     * @param hidden Whether the cell is "hidden".
+     */
+    CellStyleKey(FontKey fontKey, short alignment, short borderBottom, short borderLeft, short borderRight,
+                 short borderTop, String dataFormat, boolean wrapText,
+                 Color fillBackgroundColor, Color fillForegroundColor, short fillPattern, short verticalAlignment,
+                 short indention, short rotation, Color bottomBorderColor, Color leftBorderColor, Color rightBorderColor,
+                 Color topBorderColor, boolean locked, boolean hidden)
+    {
+        myFontKey = fontKey;
+        myAlignment = alignment;
+        myBorderBottom = borderBottom;
+        myBorderLeft = borderLeft;
+        myBorderRight = borderRight;
+        myBorderTop = borderTop;
+        myDataFormat = dataFormat;
+        amIWrapText = wrapText;
+        myFillBackgroundColor = SheetUtil.getColorRgb(fillBackgroundColor);
+        myFillForegroundColor = SheetUtil.getColorRgb(fillForegroundColor);
+        myFillPattern = fillPattern;
+        myVerticalAlignment = verticalAlignment;
+        myIndention = indention;
+        myRotation = rotation;
+        // DO NOT DO Column width in chars
+        // DO NOT DO row height in points
+        myBottomBorderColor = SheetUtil.getColorRgb(bottomBorderColor);
+        myLeftBorderColor = SheetUtil.getColorRgb(leftBorderColor);
+        myRightBorderColor = SheetUtil.getColorRgb(rightBorderColor);
+        myTopBorderColor = SheetUtil.getColorRgb(topBorderColor);
+        amILocked = locked;
+        amIHidden = hidden;
+
+        int hash = myFontKey.hashCode();
+        hash = 31 * hash + myAlignment;
+        hash = 31 * hash + myBorderBottom;
+        hash = 31 * hash + myBorderLeft;
+        hash = 31 * hash + myBorderRight;
+        hash = 31 * hash + myBorderTop;
+        hash = 31 * hash + ((myDataFormat == null) ? 0 : myDataFormat.hashCode());
+        hash = 31 * hash + (amIWrapText ? 1 : 0);
+        hash = 31 * hash + myFillBackgroundColor;
+        hash = 31 * hash + myFillForegroundColor;
+        hash = 31 * hash + myFillPattern;
+        hash = 31 * hash + myVerticalAlignment;
+        hash = 31 * hash + myIndention;
+        hash = 31 * hash + myRotation;
+        hash = 31 * hash + myBottomBorderColor;
+        hash = 31 * hash + myLeftBorderColor;
+        hash = 31 * hash + myRightBorderColor;
+        hash = 31 * hash + myTopBorderColor;
+        hash = 31 * hash + (amILocked ? 1 : 0);
+        hash = 31 * hash + (amIHidden ? 1 : 0);
+        myHashCode = hash;
+    }
+
+    /**
+     * Returns the hash code, which was computed when this key was constructed.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode()
+    {
+        return myHashCode;
+    }
+
+    /**
+     * Returns whether the given object is a <code>CellStyleKey</code> with
+     * the same style values and font values.
+     * @param obj Another object.
+     * @return Whether the given object is an equal <code>CellStyleKey</code>.
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof CellStyleKey))
+            return false;
+        CellStyleKey other = (CellStyleKey) obj;
+        return myHashCode == other.myHashCode &&
+                myAlignment == other.myAlignment &&
+                myBorderBottom == other.myBorderBottom &&
+                myBorderLeft == other.myBorderLeft &&
+                myBorderRight == other.myBorderRight &&
+                myBorderTop == other.myBorderTop &&
+                amIWrapText == other.amIWrapText &&
+                myFillBackgroundColor == other.myFillBackgroundColor &&
+                myFillForegroundColor == other.myFillForegroundColor &&
+                myFillPattern == other.myFillPattern &&
+                myVerticalAlignment == other.myVerticalAlignment &&
+                myIndention == other.myIndention &&
+                myRotation == other.myRotation &&
+                myBottomBorderColor == other.myBottomBorderColor &&
+                myLeftBorderColor == other.myLeftBorderColor &&
+                myRightBorderColor == other.myRightBorderColor &&
+                myTopBorderColor == other.myTopBorderColor &&
+                amILocked == other.amILocked &&
+                amIHidden == other.amIHidden &&
+                ((myDataFormat == null) ? other.myDataFormat == null : myDataFormat.equals(other.myDataFormat)) &&
+                myFontKey.equals(other.myFontKey);
+    }
+
+    /**
+     * Returns the string representation of the font values and style values,
+     * for logging.
+     * @return The string representation.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder buf = new StringBuilder();
+        myFontKey.appendTo(buf);
+        buf.append(PROP_SEP).append(myAlignment);
+        buf.append(PROP_SEP).append(myBorderBottom);
+        buf.append(PROP_SEP).append(myBorderLeft);
+        buf.append(PROP_SEP).append(myBorderRight);
+        buf.append(PROP_SEP).append(myBorderTop);
+        buf.append(PROP_SEP).append(myDataFormat);
+        buf.append(PROP_SEP).append(amIWrapText);
+        buf.append(PROP_SEP).append(SheetUtil.getRgbHexString(myFillBackgroundColor));
+        buf.append(PROP_SEP).append(SheetUtil.getRgbHexString(myFillForegroundColor));
+        buf.append(PROP_SEP).append(myFillPattern);
+        buf.append(PROP_SEP).append(myVerticalAlignment);
+        buf.append(PROP_SEP).append(myIndention);
+        buf.append(PROP_SEP).append(myRotation);
+        buf.append(PROP_SEP).append(SheetUtil.getRgbHexString(myBottomBorderColor));
+        buf.append(PROP_SEP).append(SheetUtil.getRgbHexString(myLeftBorderColor));
+        buf.append(PROP_SEP).append(SheetUtil.getRgbHexString(myRightBorderColor));
+        buf.append(PROP_SEP).append(SheetUtil.getRgbHexString(myTopBorderColor));
+        buf.append(PROP_SEP).append(amILocked);
+        buf.append(PROP_SEP).append(amIHidden);
+        return buf.toString();
+    }
+}
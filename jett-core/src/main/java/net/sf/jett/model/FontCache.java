@@ -1,5 +1,6 @@
 package net.sf.jett.model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,12 +13,10 @@ import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFFont;
 
-import net.sf.jett.util.SheetUtil;
-
 /**
  * <p>A <code>FontCache</code> is used internally to keep track of
- * <code>Fonts</code>.  It defines and uses a string format for declaring
- * all possible font values that can be defined in a <code>Font</code>.  Its
+ * <code>Fonts</code>.  It uses a <code>FontKey</code> to identify all
+ * possible font values that can be defined in a <code>Font</code>.  Its
  * lifetime is meant to last only during a single transformation.  When
  * created, it reads in all pre-existing <code>Font</code> information and
  * caches it for later reference.</p>
@@ -29,10 +28,9 @@ public class FontCache
 {
     private static final Logger logger = LogManager.getLogger();
 
-    private static final String PROP_SEP = "|";
-
     private Workbook myWorkbook;
-    private Map<String, Font> myFontMap;
+    private Map<FontKey, Font> myFontMap;
+    private Map<FontKey, Short> myPreExistingIndexes;
 
     /**
      * Constructs a <code>FontCache</code> on a <code>Workbook</code>.
@@ -43,9 +41,29 @@ public class FontCache
     {
         myWorkbook = workbook;
         myFontMap = new HashMap<>();
+        myPreExistingIndexes = Collections.emptyMap();
         cachePreExistingFonts();
     }
 
+    /**
+     * Constructs a <code>FontCache</code> on a <code>Workbook</code>, using an
+     * index of pre-existing <code>Fonts</code> that was already built on an
+     * identical <code>Workbook</code>, e.g. another copy of the same template,
+     * by <code>getFontIndexes</code>.  The <code>Workbook</code> isn't
+     * scanned; each pre-existing <code>Font</code> is looked up by its index
+     * the first time it's retrieved.
+     * @param workbook A <code>Workbook</code>.
+     * @param preExistingIndexes A <code>Map</code> of <code>FontKeys</code>
+     *    to font indexes.  It isn't modified.
+     * @since 0.11.1
+     */
+    public FontCache(Workbook workbook, Map<FontKey, Short> preExistingIndexes)
+    {
+        myWorkbook = workbook;
+        myFontMap = new HashMap<>();
+        myPreExistingIndexes = preExistingIndexes;
+    }
+
     /**
      * Cache all <code>Fonts</code> found within the workbook.
      */
@@ -66,7 +84,52 @@ public class FontCache
      */
     public int getNumEntries()
     {
-        return myFontMap.size();
+        int numEntries = myPreExistingIndexes.size();
+        for (FontKey key : myFontMap.keySet())
+        {
+            if (!myPreExistingIndexes.containsKey(key))
+                numEntries++;
+        }
+        return numEntries;
+    }
+
+    /**
+     * Returns a new <code>Map</code> of the <code>FontKeys</code> of all
+     * cached <code>Fonts</code> to their indexes in the <code>Workbook</code>.
+     * This can be passed to the constructor of another <code>FontCache</code>
+     * on an identical <code>Workbook</code>.
+     * @return A <code>Map</code> of <code>FontKeys</code> to font indexes.
+     * @since 0.11.1
+     */
+    public Map<FontKey, Short> getFontIndexes()
+    {
+        Map<FontKey, Short> indexes = new HashMap<>(myPreExistingIndexes);
+        for (Map.Entry<FontKey, Font> entry : myFontMap.entrySet())
+        {
+            indexes.put(entry.getKey(), entry.getValue().getIndex());
+        }
+        return indexes;
+    }
+
+    /**
+     * Looks up a <code>Font</code> by its <code>FontKey</code>, resolving a
+     * pre-existing <code>Font</code> by its index if necessary.
+     * @param key The <code>FontKey</code>.
+     * @return The <code>Font</code>, or <code>null</code> if it's not cached.
+     */
+    private Font lookup(FontKey key)
+    {
+        Font f = myFontMap.get(key);
+        if (f == null)
+        {
+            Short index = myPreExistingIndexes.get(key);
+            if (index != null)
+            {
+                f = myWorkbook.getFontAt(index);
+                myFontMap.put(key, f);
+            }
+        }
+        return f;
     }
 
     /**
@@ -87,16 +150,16 @@ public class FontCache
     public Font retrieveFont(short fontBoldweight, boolean fontItalic, Color fontColor, String fontName,
                              short fontHeightInPoints, byte fontUnderline, boolean fontStrikeout, int fontCharset, short fontTypeOffset)
     {
-        String representation = getRepresentation(fontBoldweight, fontItalic, fontColor, fontName, fontHeightInPoints,
+        FontKey key = new FontKey(fontBoldweight, fontItalic, fontColor, fontName, fontHeightInPoints,
                 fontUnderline, fontStrikeout, fontCharset, fontTypeOffset
         );
-        Font f = myFontMap.get(representation);
+        Font f = lookup(key);
         if (logger.isTraceEnabled())
         {
             if (f != null)
-                logger.trace("FCache hit   : {}", representation);
+                logger.trace("FCache hit   : {}", key);
             else
-                logger.trace("FCache miss! : {}", representation);
+                logger.trace("FCache miss! : {}", key);
         }
         return f;
     }
@@ -107,9 +170,9 @@ public class FontCache
      */
     public void cacheFont(Font f)
     {
-        String representation = getRepresentation(f);
-        logger.trace("Caching  f   : {}", representation);
-        myFontMap.put(representation, f);
+        FontKey key = getKey(f);
+        logger.trace("Caching  f   : {}", key);
+        myFontMap.put(key, f);
     }
 
     /**
@@ -122,16 +185,15 @@ public class FontCache
      */
     public Font findFont(Font f)
     {
-        String representation = getRepresentation(f);
-        return myFontMap.get(representation);
+        return lookup(getKey(f));
     }
 
     /**
-     * Gets the string representation of the given <code>Font</code>.
+     * Gets the <code>FontKey</code> of the given <code>Font</code>.
      * @param f A <code>Font</code>.
-     * @return The string representation.
+     * @return The <code>FontKey</code>.
      */
-    private String getRepresentation(Font f)
+    private FontKey getKey(Font f)
     {
         // Colors that need an instanceof check
         Color fontColor;
@@ -148,47 +210,7 @@ public class FontCache
         else
             throw new IllegalArgumentException("Bad Font type: " + f.getClass().getName());
 
-        return getRepresentation(f.getBoldweight(), f.getItalic(), fontColor, f.getFontName(),
+        return new FontKey(f.getBoldweight(), f.getItalic(), fontColor, f.getFontName(),
                 f.getFontHeightInPoints(), f.getUnderline(), f.getStrikeout(), f.getCharSet(), f.getTypeOffset());
     }
-
-    /**
-     * Return the string representation of a <code>Font</code> with the
-     * given properties.
-     * @param fontBoldweight The font boldweight.
-     * @param fontItalic Whether the font is italic.
-     * @param fontColor The font color.
-     * @param fontName The font name.
-     * @param fontHeightInPoints The font height in points.
-     * @param fontUnderline The font underline.
-     * @param fontStrikeout Whether the font is in strikeout.
-     * @param fontCharset The font charset.
-     * @param fontTypeOffset The font type offset.
-     * @return The string representation.
-     */
-    private String getRepresentation(short fontBoldweight, boolean fontItalic, Color fontColor, String fontName,
-                                     short fontHeightInPoints, byte fontUnderline, boolean fontStrikeout, int fontCharset, short fontTypeOffset)
-    {
-        StringBuilder buf = new StringBuilder();
-
-        buf.append(fontBoldweight).append(PROP_SEP);
-        // Font italic
-        buf.append(fontItalic).append(PROP_SEP);
-        // Font color
-        buf.append(SheetUtil.getColorHexString(fontColor));
-        // Font name
-        buf.append(PROP_SEP).append(fontName);
-        // Font height in points
-        buf.append(PROP_SEP).append(fontHeightInPoints);
-        // Font underline
-        buf.append(PROP_SEP).append(fontUnderline);
-        // Font strikeout
-        buf.append(PROP_SEP).append(fontStrikeout);
-        // Font charset
-        buf.append(PROP_SEP).append(fontCharset);
-        // Font type offset
-        buf.append(PROP_SEP).append(fontTypeOffset);
-
-        return buf.toString();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package net.sf.jett.model;
+
+import org.apache.poi.ss.usermodel.Color;
+
+import net.sf.jett.util.SheetUtil;
+
+/**
+ * <p>A <code>FontKey</code> is an immutable key that identifies all possible
+ * font values that can be defined in a <code>Font</code>.  Colors are kept
+ * as RGB values and the hash code is computed once, so that a
+ * <code>FontCache</code> lookup doesn't need to build a string.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public final class FontKey
+{
+    private static final String PROP_SEP = "|";
+
+    private final short myBoldweight;
+    private final boolean amIItalic;
+    private final int myColor;
+    private final String myName;
+    private final short myHeightInPoints;
+    private final byte myUnderline;
+    private final boolean amIStrikeout;
+    private final int myCharset;
+    private final short myTypeOffset;
+    private final int myHashCode;
+
+    /**
+     * Constructs a <code>FontKey</code> with the given properties.
+     * @param fontBoldweight The font boldweight.
+     * @param fontItalic Whether the font is italic.
+     * @param fontColor The font color.
+     * @param fontName The font name.
+     * @param fontHeightInPoints The font height in points.
+     * @param fontUnderline The font underline.
+     * @param fontStrikeout Whether the font is in strikeout.
+     * @param fontCharset The font charset.
+     * @param fontTypeOffset The font type offset.
+     */
+    FontKey(short fontBoldweight, boolean fontItalic, Color fontColor, String fontName,
+            short fontHeightInPoints, byte fontUnderline, boolean fontStrikeout, int fontCharset, short fontTypeOffset)
+    {
+        myBoldweight = fontBoldweight;
+        amIItalic = fontItalic;
+        myColor = SheetUtil.getColorRgb(fontColor);
+        myName = fontName;
+        myHeightInPoints = fontHeightInPoints;
+        myUnderline = fontUnderline;
+        amIStrikeout = fontStrikeout;
+        myCharset = fontCharset;
+        myTypeOffset = fontTypeOffset;
+
+        int hash = myBoldweight;
+        hash = 31 * hash + (amIItalic ? 1 : 0);
+        hash = 31 * hash + myColor;
+        hash = 31 * hash + ((myName == null) ? 0 : myName.hashCode());
+        hash = 31 * hash + myHeightInPoints;
+        hash = 31 * hash + myUnderline;
+        hash = 31 * hash + (amIStrikeout ? 1 : 0);
+        hash = 31 * hash + myCharset;
+        hash = 31 * hash + myTypeOffset;
+        myHashCode = hash;
+    }
+
+    /**
+     * Returns the hash code, which was computed when this key was constructed.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode()
+    {
+        return myHashCode;
+    }
+
+    /**
+     * Returns whether the given object is a <code>FontKey</code> with the same
+     * font values.
+     * @param obj Another object.
+     * @return Whether the given object is an equal <code>FontKey</code>.
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof FontKey))
+            return false;
+        FontKey other = (FontKey) obj;
+        return myHashCode == other.myHashCode &&
+                myBoldweight == other.myBoldweight &&
+                amIItalic == other.amIItalic &&
+                myColor == other.myColor &&
+                myHeightInPoints == other.myHeightInPoints &&
+                myUnderline == other.myUnderline &&
+                amIStrikeout == other.amIStrikeout &&
+                myCharset == other.myCharset &&
+                myTypeOffset == other.myTypeOffset &&
+                ((myName == null) ? other.myName == null : myName.equals(other.myName));
+    }
+
+    /**
+     * Returns the string representation of the font values, for logging.
+     * @return The string representation.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder buf = new StringBuilder();
+        appendTo(buf);
+        return buf.toString();
+    }
+
+    /**
+     * Appends the font values to the given <code>StringBuilder</code>.
+     * @param buf A <code>StringBuilder</code>.
+     */
+    void appendTo(StringBuilder buf)
+    {
+        buf.append(myBoldweight).append(PROP_SEP);
+        buf.append(amIItalic).append(PROP_SEP);
+        buf.append(SheetUtil.getRgbHexString(myColor));
+        buf.append(PROP_SEP).append(myName);
+        buf.append(PROP_SEP).append(myHeightInPoints);
+        buf.append(PROP_SEP).append(myUnderline);
+        buf.append(PROP_SEP).append(amIStrikeout);
+        buf.append(PROP_SEP).append(myCharset);
+        buf.append(PROP_SEP).append(myTypeOffset);
+    }
+}
@@ -0,0 +1,410 @@
+package net.sf.jett.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * <p>A <code>MergedRegions</code> holds the merged regions of a
+ * <code>Sheet</code> while it is being transformed.  All merged region
+ * manipulation for a <code>Sheet</code> goes through it, instead of the
+ * <code>Sheet</code> itself, for performance reasons.</p>
+ *
+ * <p>Regions are indexed by their first row, so that finding, translating,
+ * copying, or removing the regions wholly contained in a range of
+ * <code>Cells</code> only looks at the regions that start in that range of
+ * rows, instead of at all regions on the <code>Sheet</code>.  Iteration is
+ * in order of first row, then in order of addition.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class MergedRegions implements Iterable<CellRangeAddress>
+{
+    private TreeMap<Integer, List<CellRangeAddress>> myRegionsByFirstRow;
+    private int mySize;
+
+    /**
+     * Constructs an empty <code>MergedRegions</code>.
+     */
+    public MergedRegions()
+    {
+        myRegionsByFirstRow = new TreeMap<>();
+        mySize = 0;
+    }
+
+    /**
+     * Adds the given merged region.
+     * @param region A <code>CellRangeAddress</code>.
+     */
+    public void add(CellRangeAddress region)
+    {
+        List<CellRangeAddress> regions = myRegionsByFirstRow.get(region.getFirstRow());
+        if (regions == null)
+        {
+            regions = new ArrayList<>(2);
+            myRegionsByFirstRow.put(region.getFirstRow(), regions);
+        }
+        regions.add(region);
+        mySize++;
+    }
+
+    /**
+     * Removes the given merged region, if present.
+     * @param region A <code>CellRangeAddress</code>.
+     * @return Whether the merged region was present.
+     */
+    public boolean remove(CellRangeAddress region)
+    {
+        List<CellRangeAddress> regions = myRegionsByFirstRow.get(region.getFirstRow());
+        if (regions == null || !regions.remove(region))
+            return false;
+        if (regions.isEmpty())
+            myRegionsByFirstRow.remove(region.getFirstRow());
+        mySize--;
+        return true;
+    }
+
+    /**
+     * Returns the merged region whose top-left corner is at the given column
+     * and row indexes.
+     * @param col The 0-based column index of the top-left corner.
+     * @param row The 0-based row index of the top-left corner.
+     * @return The <code>CellRangeAddress</code>, or <code>null</code> if
+     *    there is none.
+     */
+    public CellRangeAddress findAt(int col, int row)
+    {
+        List<CellRangeAddress> regions = myRegionsByFirstRow.get(row);
+        if (regions != null)
+        {
+            for (CellRangeAddress candidate : regions)
+            {
+                if (candidate.getFirstColumn() == col)
+                    return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all merged regions wholly contained in the given range.
+     * @param left The 0-based index of the leftmost column.
+     * @param right The 0-based index of the rightmost column.
+     * @param top The 0-based index of the top row.
+     * @param bottom The 0-based index of the bottom row.
+     * @return A <code>List</code> of <code>CellRangeAddresses</code>,
+     *    possibly empty.
+     */
+    public List<CellRangeAddress> findWhollyContained(int left, int right, int top, int bottom)
+    {
+        List<CellRangeAddress> contained = new ArrayList<>();
+        if (top > bottom)
+            return contained;
+        for (List<CellRangeAddress> regions : myRegionsByFirstRow.subMap(top, true, bottom, true).values())
+        {
+            for (CellRangeAddress region : regions)
+            {
+                if (region.getLastRow() <= bottom &&
+                        region.getFirstColumn() >= left && region.getLastColumn() <= right)
+                    contained.add(region);
+            }
+        }
+        return contained;
+    }
+
+    /**
+     * Translates all merged regions wholly contained in the given range by
+     * the given number of columns and rows.
+     * @param left The 0-based index of the leftmost column.
+     * @param right The 0-based index of the rightmost column.
+     * @param top The 0-based index of the top row.
+     * @param bottom The 0-based index of the bottom row.
+     * @param numCols The number of columns to translate (can be negative).
+     * @param numRows The number of rows to translate (can be negative).
+     * @return The number of translated merged regions.
+     */
+    public int translate(int left, int right, int top, int bottom, int numCols, int numRows)
+    {
+        List<CellRangeAddress> contained = removeWhollyContained(left, right, top, bottom);
+        for (CellRangeAddress region : contained)
+        {
+            add(translated(region, numCols, numRows));
+        }
+        return contained.size();
+    }
+
+    /**
+     * Copies all merged regions wholly contained in the given range into each
+     * of the given number of consecutive blocks, each translated by the given
+     * number of columns and rows further than the last.
+     * @param left The 0-based index of the leftmost column.
+     * @param right The 0-based index of the rightmost column.
+     * @param top The 0-based index of the top row.
+     * @param bottom The 0-based index of the bottom row.
+     * @param numCols The number of columns between copies.
+     * @param numRows The number of rows between copies.
+     * @param numCopies The number of blocks, including the original range.
+     * @return The number of merged regions copied.
+     */
+    public int copy(int left, int right, int top, int bottom, int numCols, int numRows, int numCopies)
+    {
+        List<CellRangeAddress> contained = findWhollyContained(left, right, top, bottom);
+        for (int i = 1; i < numCopies; i++)
+        {
+            for (CellRangeAddress region : contained)
+            {
+                add(translated(region, i * numCols, i * numRows));
+            }
+        }
+        return contained.size();
+    }
+
+    /**
+     * Removes all merged regions wholly contained in the given range.
+     * @param left The 0-based index of the leftmost column.
+     * @param right The 0-based index of the rightmost column.
+     * @param top The 0-based index of the top row.
+     * @param bottom The 0-based index of the bottom row.
+     * @return A <code>List</code> of the removed
+     *    <code>CellRangeAddresses</code>, possibly empty.
+     */
+    public List<CellRangeAddress> removeWhollyContained(int left, int right, int top, int bottom)
+    {
+        List<CellRangeAddress> removed = new ArrayList<>();
+        if (top > bottom)
+            return removed;
+        Iterator<List<CellRangeAddress>> rowsItr =
+                myRegionsByFirstRow.subMap(top, true, bottom, true).values().iterator();
+        while (rowsItr.hasNext())
+        {
+            List<CellRangeAddress> regions = rowsItr.next();
+            Iterator<CellRangeAddress> itr = regions.iterator();
+            while (itr.hasNext())
+            {
+                CellRangeAddress region = itr.next();
+                if (region.getLastRow() <= bottom &&
+                        region.getFirstColumn() >= left && region.getLastColumn() <= right)
+                {
+                    removed.add(region);
+                    itr.remove();
+                }
+            }
+            if (regions.isEmpty())
+                rowsItr.remove();
+        }
+        mySize -= removed.size();
+        return removed;
+    }
+
+    /**
+     * Ensures that no two merged regions overlap, by sweeping the regions in
+     * order of first row.
+     * @throws IllegalStateException If two merged regions overlap.
+     */
+    public void validate()
+    {
+        List<CellRangeAddress> active = new ArrayList<>();
+        for (Map.Entry<Integer, List<CellRangeAddress>> entry : myRegionsByFirstRow.entrySet())
+        {
+            int row = entry.getKey();
+            // Forget the regions that end above this row.
+            Iterator<CellRangeAddress> itr = active.iterator();
+            while (itr.hasNext())
+            {
+                if (itr.next().getLastRow() < row)
+                    itr.remove();
+            }
+            for (CellRangeAddress region : entry.getValue())
+            {
+                for (CellRangeAddress other : active)
+                {
+                    if (region.getFirstColumn() <= other.getLastColumn() &&
+                            other.getFirstColumn() <= region.getLastColumn())
+                    {
+                        throw new IllegalStateException("Merged region " + region.formatAsString() +
+                                " overlaps merged region " + other.formatAsString() + ".");
+                    }
+                }
+                active.add(region);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of merged regions.
+     * @return The number of merged regions.
+     */
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Returns an <code>Iterator</code> over the merged regions, in order of
+     * first row.  It doesn't support removal.
+     * @return An <code>Iterator</code> over <code>CellRangeAddresses</code>.
+     */
+    @Override
+    public Iterator<CellRangeAddress> iterator()
+    {
+        final Iterator<List<CellRangeAddress>> rowsItr = myRegionsByFirstRow.values().iterator();
+        return new Iterator<CellRangeAddress>()
+        {
+            private Iterator<CellRangeAddress> myItr = null;
+
+            @Override
+            public boolean hasNext()
+            {
+                while ((myItr == null || !myItr.hasNext()) && rowsItr.hasNext())
+                {
+                    myItr = rowsItr.next().iterator();
+                }
+                return myItr != null && myItr.hasNext();
+            }
+
+            @Override
+            public CellRangeAddress next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return myItr.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException("Use MergedRegions.remove.");
+            }
+        };
+    }
+
+    /**
+     * Returns a <code>List</code> view of the merged regions, in order of
+     * first row.  Changes to the view are written through to this
+     * <code>MergedRegions</code> and vice versa.  Adding a region to the view
+     * ignores the requested position, and indexed access takes linear time.
+     * This exists only for the deprecated <code>List</code> accessors of
+     * merged regions.
+     * @return A <code>List</code> view of <code>CellRangeAddresses</code>.
+     */
+    public List<CellRangeAddress> asList()
+    {
+        return new RegionList(this);
+    }
+
+    /**
+     * Returns the <code>MergedRegions</code> behind the given
+     * <code>List</code> if it is a view returned by {@link #asList()},
+     * else a new <code>MergedRegions</code> containing the regions of the
+     * given <code>List</code>.
+     * @param regions A <code>List</code> of <code>CellRangeAddresses</code>,
+     *    or <code>null</code>.
+     * @return A <code>MergedRegions</code>, or <code>null</code> if the given
+     *    <code>List</code> is <code>null</code>.
+     */
+    public static MergedRegions of(List<CellRangeAddress> regions)
+    {
+        if (regions == null)
+            return null;
+        if (regions instanceof RegionList)
+            return ((RegionList) regions).myMergedRegions;
+        MergedRegions mergedRegions = new MergedRegions();
+        for (CellRangeAddress region : regions)
+        {
+            mergedRegions.add(region);
+        }
+        return mergedRegions;
+    }
+
+    /**
+     * Returns a new <code>CellRangeAddress</code> that is the given one
+     * translated by the given number of columns and rows.
+     * @param region A <code>CellRangeAddress</code>.
+     * @param numCols The number of columns to translate.
+     * @param numRows The number of rows to translate.
+     * @return A new <code>CellRangeAddress</code>.
+     */
+    private static CellRangeAddress translated(CellRangeAddress region, int numCols, int numRows)
+    {
+        return new CellRangeAddress(
+                region.getFirstRow() + numRows,
+                region.getLastRow() + numRows,
+                region.getFirstColumn() + numCols,
+                region.getLastColumn() + numCols);
+    }
+
+    /**
+     * A <code>List</code> view of a <code>MergedRegions</code>.
+     */
+    private static class RegionList extends AbstractList<CellRangeAddress>
+    {
+        private MergedRegions myMergedRegions;
+
+        private RegionList(MergedRegions mergedRegions)
+        {
+            myMergedRegions = mergedRegions;
+        }
+
+        @Override
+        public CellRangeAddress get(int index)
+        {
+            if (index < 0 || index >= myMergedRegions.size())
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + myMergedRegions.size());
+            Iterator<CellRangeAddress> itr = myMergedRegions.iterator();
+            for (int i = 0; i < index; i++)
+            {
+                itr.next();
+            }
+            return itr.next();
+        }
+
+        @Override
+        public int size()
+        {
+            return myMergedRegions.size();
+        }
+
+        @Override
+        public void add(int index, CellRangeAddress region)
+        {
+            myMergedRegions.add(region);
+            modCount++;
+        }
+
+        @Override
+        public CellRangeAddress set(int index, CellRangeAddress region)
+        {
+            CellRangeAddress old = get(index);
+            myMergedRegions.remove(old);
+            myMergedRegions.add(region);
+            return old;
+        }
+
+        @Override
+        public CellRangeAddress remove(int index)
+        {
+            CellRangeAddress old = get(index);
+            myMergedRegions.remove(old);
+            modCount++;
+            return old;
+        }
+
+        @Override
+        public boolean remove(Object o)
+        {
+            if (!(o instanceof CellRangeAddress))
+                return false;
+            boolean removed = myMergedRegions.remove((CellRangeAddress) o);
+            if (removed)
+                modCount++;
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package net.sf.jett.model;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellReference;
+
+import net.sf.jett.util.SheetUtil;
+
+/**
+ * <p>A <code>ProcessedCells</code> keeps track of which <code>Cells</code> of a
+ * <code>Sheet</code> have already been processed, so that they aren't
+ * processed again.</p>
+ *
+ * <p>It is a bitmap, indexed by row, of processed column indexes.  Checking
+ * or marking a <code>Cell</code> doesn't allocate anything, and each row
+ * takes only one bit per column up to its rightmost processed column.  As
+ * <code>Cells</code> are shifted, copied, or removed, their bits must be
+ * moved, copied, or cleared along with them.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class ProcessedCells
+{
+    private static final int INITIAL_ROWS = 64;
+
+    private long[][] myRows;
+
+    /**
+     * Constructs a <code>ProcessedCells</code> in which no <code>Cells</code>
+     * have been processed.
+     */
+    public ProcessedCells()
+    {
+        myRows = new long[INITIAL_ROWS][];
+    }
+
+    /**
+     * Returns whether the given <code>Cell</code> has been processed.
+     * @param cell The <code>Cell</code>.
+     * @return Whether the <code>Cell</code> has been processed.
+     */
+    public boolean contains(Cell cell)
+    {
+        return contains(cell.getRowIndex(), cell.getColumnIndex());
+    }
+
+    /**
+     * Returns whether the <code>Cell</code> at the given position has been
+     * processed.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @return Whether the <code>Cell</code> has been processed.
+     */
+    public boolean contains(int rowNum, int colNum)
+    {
+        if (rowNum < 0 || rowNum >= myRows.length || colNum < 0)
+            return false;
+        long[] bits = myRows[rowNum];
+        int word = colNum >>> 6;
+        return bits != null && word < bits.length && (bits[word] & (1L << colNum)) != 0;
+    }
+
+    /**
+     * Marks the given <code>Cell</code> as processed.
+     * @param cell The <code>Cell</code>.
+     */
+    public void add(Cell cell)
+    {
+        add(cell.getRowIndex(), cell.getColumnIndex());
+    }
+
+    /**
+     * Marks the <code>Cell</code> at the given position as processed.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     */
+    public void add(int rowNum, int colNum)
+    {
+        if (rowNum >= myRows.length)
+            myRows = Arrays.copyOf(myRows, Math.max(rowNum + 1, myRows.length * 2));
+        long[] bits = myRows[rowNum];
+        int word = colNum >>> 6;
+        if (bits == null)
+        {
+            bits = new long[word + 1];
+            myRows[rowNum] = bits;
+        }
+        else if (word >= bits.length)
+        {
+            bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+            myRows[rowNum] = bits;
+        }
+        bits[word] |= 1L << colNum;
+    }
+
+    /**
+     * Forgets that the given <code>Cell</code> was processed.
+     * @param cell The <code>Cell</code>.
+     */
+    public void remove(Cell cell)
+    {
+        remove(cell.getRowIndex(), cell.getColumnIndex());
+    }
+
+    /**
+     * Forgets that the <code>Cell</code> at the given position was processed.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     */
+    public void remove(int rowNum, int colNum)
+    {
+        if (rowNum < 0 || rowNum >= myRows.length || colNum < 0)
+            return;
+        long[] bits = myRows[rowNum];
+        int word = colNum >>> 6;
+        if (bits != null && word < bits.length)
+            bits[word] &= ~(1L << colNum);
+    }
+
+    /**
+     * Forgets all processed <code>Cells</code> in the given row, e.g. when the
+     * row is no longer in memory.
+     * @param rowNum The 0-based row index.
+     */
+    public void removeRow(int rowNum)
+    {
+        if (rowNum >= 0 && rowNum < myRows.length)
+            myRows[rowNum] = null;
+    }
+
+    /**
+     * Forgets all processed <code>Cells</code> in the given range.
+     * @param left The 0-based index of the leftmost column.
+     * @param right The 0-based index of the rightmost column.
+     * @param top The 0-based index of the top row.
+     * @param bottom The 0-based index of the bottom row.
+     */
+    public void remove(int left, int right, int top, int bottom)
+    {
+        for (int rowNum = top; rowNum <= bottom && rowNum < myRows.length; rowNum++)
+        {
+            if (myRows[rowNum] == null)
+                continue;
+            for (int colNum = left; colNum <= right; colNum++)
+            {
+                remove(rowNum, colNum);
+            }
+        }
+    }
+
+    /**
+     * Marks the <code>Cell</code> at the new position as processed if and
+     * only if the <code>Cell</code> at the given position has been processed.
+     * This is for a <code>Cell</code> that has been copied.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @param newRowNum The new 0-based row index.
+     * @param newColNum The new 0-based column index.
+     */
+    public void copy(int rowNum, int colNum, int newRowNum, int newColNum)
+    {
+        if (contains(rowNum, colNum))
+            add(newRowNum, newColNum);
+        else
+            remove(newRowNum, newColNum);
+    }
+
+    /**
+     * Like {@link #copy(int, int, int, int)}, but also forgets that the
+     * <code>Cell</code> at the given position was processed.  This is for a
+     * <code>Cell</code> that has been shifted.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @param newRowNum The new 0-based row index.
+     * @param newColNum The new 0-based column index.
+     */
+    public void move(int rowNum, int colNum, int newRowNum, int newColNum)
+    {
+        copy(rowNum, colNum, newRowNum, newColNum);
+        if (rowNum != newRowNum || colNum != newColNum)
+            remove(rowNum, colNum);
+    }
+
+    /**
+     * Returns the number of processed <code>Cells</code>.
+     * @return The number of processed <code>Cells</code>.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (long[] bits : myRows)
+        {
+            if (bits != null)
+            {
+                for (long word : bits)
+                {
+                    size += Long.bitCount(word);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns a <code>Map</code> view of the processed <code>Cells</code> on
+     * the given <code>Sheet</code>, keyed by cell key strings, e.g.
+     * "Sheet1!B1", as returned by <code>SheetUtil.getCellKey</code>.  Gets,
+     * puts, and removes are written through to this
+     * <code>ProcessedCells</code>; the entry set is a read-only snapshot.
+     * This exists only for the deprecated <code>Map</code> accessors of
+     * processed cells.
+     * @param sheet The <code>Sheet</code> whose <code>Cells</code> are
+     *    tracked.
+     * @return A <code>Map</code> view of cell keys to <code>Cells</code>.
+     */
+    public Map<String, Cell> asMap(Sheet sheet)
+    {
+        return new CellMap(this, sheet);
+    }
+
+    /**
+     * Returns the <code>ProcessedCells</code> behind the given
+     * <code>Map</code> if it is a view returned by {@link #asMap(Sheet)},
+     * else a new <code>ProcessedCells</code> containing the
+     * <code>Cells</code> of the given <code>Map</code>.
+     * @param cells A <code>Map</code> of cell keys to <code>Cells</code>, or
+     *    <code>null</code>.
+     * @return A <code>ProcessedCells</code>, or <code>null</code> if the given
+     *    <code>Map</code> is <code>null</code>.
+     */
+    public static ProcessedCells of(Map<String, Cell> cells)
+    {
+        if (cells == null)
+            return null;
+        if (cells instanceof CellMap)
+            return ((CellMap) cells).myProcessedCells;
+        ProcessedCells processedCells = new ProcessedCells();
+        for (Cell cell : cells.values())
+        {
+            if (cell != null)
+                processedCells.add(cell);
+        }
+        return processedCells;
+    }
+
+    /**
+     * A <code>Map</code> view of a <code>ProcessedCells</code> on a
+     * <code>Sheet</code>.
+     */
+    private static class CellMap extends AbstractMap<String, Cell>
+    {
+        private ProcessedCells myProcessedCells;
+        private Sheet mySheet;
+
+        private CellMap(ProcessedCells processedCells, Sheet sheet)
+        {
+            myProcessedCells = processedCells;
+            mySheet = sheet;
+        }
+
+        /**
+         * Parses the given cell key.
+         * @param key A cell key, e.g. "Sheet1!B1".
+         * @return A <code>CellReference</code>, or <code>null</code> if the
+         *    key isn't a cell key on this view's <code>Sheet</code>.
+         */
+        private CellReference parse(Object key)
+        {
+            if (!(key instanceof String))
+                return null;
+            String cellKey = (String) key;
+            int bang = cellKey.lastIndexOf('!');
+            if (bang < 0 || !cellKey.substring(0, bang).equals(mySheet.getSheetName()))
+                return null;
+            try
+            {
+                return new CellReference(cellKey.substring(bang + 1));
+            }
+            catch (IllegalArgumentException e)
+            {
+                return null;
+            }
+        }
+
+        /**
+         * Returns the <code>Cell</code> at the given reference, if it exists.
+         * @param ref A <code>CellReference</code>.
+         * @return The <code>Cell</code>, or <code>null</code> if it doesn't
+         *    exist.
+         */
+        private Cell getCell(CellReference ref)
+        {
+            Row row = mySheet.getRow(ref.getRow());
+            return (row == null) ? null : row.getCell(ref.getCol());
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            CellReference ref = parse(key);
+            return ref != null && myProcessedCells.contains(ref.getRow(), ref.getCol());
+        }
+
+        @Override
+        public Cell get(Object key)
+        {
+            CellReference ref = parse(key);
+            if (ref == null || !myProcessedCells.contains(ref.getRow(), ref.getCol()))
+                return null;
+            return getCell(ref);
+        }
+
+        @Override
+        public Cell put(String key, Cell cell)
+        {
+            CellReference ref = parse(key);
+            if (ref == null)
+                throw new IllegalArgumentException("Not a cell key on sheet \"" + mySheet.getSheetName() + "\": " + key);
+            Cell old = get(key);
+            myProcessedCells.add(ref.getRow(), ref.getCol());
+            return old;
+        }
+
+        @Override
+        public Cell remove(Object key)
+        {
+            CellReference ref = parse(key);
+            if (ref == null)
+                return null;
+            Cell old = get(key);
+            myProcessedCells.remove(ref.getRow(), ref.getCol());
+            return old;
+        }
+
+        @Override
+        public int size()
+        {
+            return myProcessedCells.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Cell>> entrySet()
+        {
+            Map<String, Cell> snapshot = new LinkedHashMap<>();
+            for (Row row : mySheet)
+            {
+                for (Cell cell : row)
+                {
+                    if (myProcessedCells.contains(cell))
+                        snapshot.put(SheetUtil.getCellKey(cell), cell);
+                }
+            }
+            return Collections.unmodifiableSet(snapshot.entrySet());
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package net.sf.jett.model;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.util.CellReference;
+
+import net.sf.jett.util.CellKeyMap;
+
+/**
+ * <p>A <code>TagLocations</code> maps the current locations of tags to their
+ * original locations in the template, e.g. "Sheet1!B1", as tags are shifted
+ * and copied.  This is currently used only to identify original tag
+ * locations for exception messages.</p>
+ *
+ * <p>Locations are kept per sheet name, keyed by packed row and column
+ * indexes, so that looking them up as cells are shifted and copied doesn't
+ * build a cell reference string for every cell.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class TagLocations
+{
+    private Map<String, CellKeyMap<String>> mySheetLocations;
+
+    /**
+     * Constructs an empty <code>TagLocations</code>.
+     */
+    public TagLocations()
+    {
+        mySheetLocations = new HashMap<>();
+    }
+
+    /**
+     * Constructs a <code>TagLocations</code> with the same locations as the
+     * given <code>TagLocations</code>.
+     * @param other Another <code>TagLocations</code>.
+     */
+    public TagLocations(TagLocations other)
+    {
+        mySheetLocations = new HashMap<>();
+        for (Map.Entry<String, CellKeyMap<String>> entry : other.mySheetLocations.entrySet())
+        {
+            mySheetLocations.put(entry.getKey(), new CellKeyMap<>(entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns the original location of the tag currently at the given
+     * location.
+     * @param sheetName The name of the <code>Sheet</code>.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @return The original cell reference, or <code>null</code> if no tag
+     *    is known at the given location.
+     */
+    public String get(String sheetName, int rowNum, int colNum)
+    {
+        CellKeyMap<String> locations = mySheetLocations.get(sheetName);
+        return (locations == null) ? null : locations.get(rowNum, colNum);
+    }
+
+    /**
+     * Returns the original location of the tag currently in the given
+     * <code>Cell</code>.
+     * @param cell The <code>Cell</code>.
+     * @return The original cell reference, or <code>null</code> if no tag
+     *    is known in the given <code>Cell</code>.
+     */
+    public String get(Cell cell)
+    {
+        return get(cell.getSheet().getSheetName(), cell.getRowIndex(), cell.getColumnIndex());
+    }
+
+    /**
+     * Records that the tag currently at the given location was originally at
+     * the given cell reference.
+     * @param sheetName The name of the <code>Sheet</code>.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @param origCellRef The original cell reference, e.g. "Sheet1!B1".
+     */
+    public void put(String sheetName, int rowNum, int colNum, String origCellRef)
+    {
+        CellKeyMap<String> locations = mySheetLocations.get(sheetName);
+        if (locations == null)
+        {
+            locations = new CellKeyMap<>();
+            mySheetLocations.put(sheetName, locations);
+        }
+        locations.put(rowNum, colNum, origCellRef);
+    }
+
+    /**
+     * Forgets any tag at the given location.
+     * @param sheetName The name of the <code>Sheet</code>.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @return The original cell reference of the tag that was there, or
+     *    <code>null</code> if there was none.
+     */
+    public String remove(String sheetName, int rowNum, int colNum)
+    {
+        CellKeyMap<String> locations = mySheetLocations.get(sheetName);
+        return (locations == null) ? null : locations.remove(rowNum, colNum);
+    }
+
+    /**
+     * Moves any tag at the given location to the given new location.
+     * @param sheetName The name of the <code>Sheet</code>.
+     * @param rowNum The current 0-based row index.
+     * @param colNum The current 0-based column index.
+     * @param newRowNum The new 0-based row index.
+     * @param newColNum The new 0-based column index.
+     * @return The original cell reference of the moved tag, or
+     *    <code>null</code> if there was no tag at the given location.
+     */
+    public String move(String sheetName, int rowNum, int colNum, int newRowNum, int newColNum)
+    {
+        CellKeyMap<String> locations = mySheetLocations.get(sheetName);
+        if (locations == null)
+            return null;
+        String origCellRef = locations.remove(rowNum, colNum);
+        if (origCellRef != null)
+            locations.put(newRowNum, newColNum, origCellRef);
+        return origCellRef;
+    }
+
+    /**
+     * Returns the number of known tag locations.
+     * @return The number of known tag locations.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (CellKeyMap<String> locations : mySheetLocations.values())
+        {
+            size += locations.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns all tag locations as a new <code>Map</code> of current cell
+     * reference strings, e.g. "Sheet1!B1", to original cell reference
+     * strings.
+     * @return A <code>Map</code> of current cell references to original cell
+     *    references.
+     */
+    public Map<String, String> toMap()
+    {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (Map.Entry<String, CellKeyMap<String>> entry : mySheetLocations.entrySet())
+        {
+            CellKeyMap<String> locations = entry.getValue();
+            for (long key : locations.keys())
+            {
+                String cellRef = new CellReference(entry.getKey(), CellKeyMap.getRowNum(key),
+                        CellKeyMap.getColNum(key), false, false).formatAsString();
+                map.put(cellRef, locations.get(key));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Returns a <code>Map</code> view of the tag locations, keyed by cell key
+     * strings, e.g. "Sheet1!B1", as returned by
+     * <code>SheetUtil.getCellKey</code>.  Gets, puts, and removes are written
+     * through to this <code>TagLocations</code>; the entry set is a read-only
+     * snapshot.  This exists only for the deprecated <code>Map</code>
+     * accessors of tag locations.
+     * @return A <code>Map</code> view of current cell keys to original cell
+     *    references.
+     */
+    public Map<String, String> asMap()
+    {
+        return new LocationMap(this);
+    }
+
+    /**
+     * Returns the <code>TagLocations</code> behind the given <code>Map</code>
+     * if it is a view returned by {@link #asMap()}, else a new
+     * <code>TagLocations</code> containing the locations of the given
+     * <code>Map</code>.
+     * @param locations A <code>Map</code> of current cell keys to original
+     *    cell references, or <code>null</code>.
+     * @return A <code>TagLocations</code>, or <code>null</code> if the given
+     *    <code>Map</code> is <code>null</code>.
+     */
+    public static TagLocations of(Map<String, String> locations)
+    {
+        if (locations == null)
+            return null;
+        if (locations instanceof LocationMap)
+            return ((LocationMap) locations).myTagLocations;
+        TagLocations tagLocations = new TagLocations();
+        Map<String, String> view = tagLocations.asMap();
+        for (Map.Entry<String, String> entry : locations.entrySet())
+        {
+            view.put(entry.getKey(), entry.getValue());
+        }
+        return tagLocations;
+    }
+
+    /**
+     * A <code>Map</code> view of a <code>TagLocations</code>.
+     */
+    private static class LocationMap extends AbstractMap<String, String>
+    {
+        private TagLocations myTagLocations;
+
+        private LocationMap(TagLocations tagLocations)
+        {
+            myTagLocations = tagLocations;
+        }
+
+        /**
+         * Parses the given cell key.
+         * @param key A cell key, e.g. "Sheet1!B1".
+         * @return A <code>CellReference</code> with a sheet name, or
+         *    <code>null</code> if the key isn't a cell key.
+         */
+        private CellReference parse(Object key)
+        {
+            if (!(key instanceof String))
+                return null;
+            String cellKey = (String) key;
+            int bang = cellKey.lastIndexOf('!');
+            if (bang < 0)
+                return null;
+            try
+            {
+                CellReference ref = new CellReference(cellKey.substring(bang + 1));
+                return new CellReference(cellKey.substring(0, bang), ref.getRow(), ref.getCol(), false, false);
+            }
+            catch (IllegalArgumentException e)
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return get(key) != null;
+        }
+
+        @Override
+        public String get(Object key)
+        {
+            CellReference ref = parse(key);
+            return (ref == null) ? null : myTagLocations.get(ref.getSheetName(), ref.getRow(), ref.getCol());
+        }
+
+        @Override
+        public String put(String key, String origCellRef)
+        {
+            CellReference ref = parse(key);
+            if (ref == null)
+                throw new IllegalArgumentException("Not a cell key: " + key);
+            String old = get(key);
+            myTagLocations.put(ref.getSheetName(), ref.getRow(), ref.getCol(), origCellRef);
+            return old;
+        }
+
+        @Override
+        public String remove(Object key)
+        {
+            CellReference ref = parse(key);
+            return (ref == null) ? null : myTagLocations.remove(ref.getSheetName(), ref.getRow(), ref.getCol());
+        }
+
+        @Override
+        public int size()
+        {
+            return myTagLocations.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet()
+        {
+            Map<String, String> snapshot = new LinkedHashMap<>();
+            for (Map.Entry<String, CellKeyMap<String>> entry : myTagLocations.mySheetLocations.entrySet())
+            {
+                CellKeyMap<String> locations = entry.getValue();
+                for (long key : locations.keys())
+                {
+                    int rowNum = CellKeyMap.getRowNum(key);
+                    int colNum = CellKeyMap.getColNum(key);
+                    snapshot.put(entry.getKey() + "!" + CellReference.convertNumToColString(colNum) + (rowNum + 1),
+                            locations.get(key));
+                }
+            }
+            return Collections.unmodifiableSet(snapshot.entrySet());
+        }
+    }
+}
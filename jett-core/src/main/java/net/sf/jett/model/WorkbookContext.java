@@ -1,6 +1,7 @@
 package net.sf.jett.model;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,8 +26,9 @@ public class WorkbookContext
     private List<String> myFixedSizeCollectionNames;
     private List<String> myNoImplicitProcessingCollectionNames;
     private Map<String, Formula> myFormulaMap;
-    private Map<String, String> myTagLocationsMap;
+    private TagLocations myTagLocations;
     private Map<String, List<CellRef>> myCellRefMap;
+    private CellRefIndex myCellRefIndex;
     private int mySequenceNbr;
     private CellStyleCache myCellStyleCache;
     private FontCache myFontCache;
@@ -35,6 +37,8 @@ public class WorkbookContext
     private List<String> mySheetNames;
     private ExpressionFactory myExpressionFactory;
     private List<Map<String, Object>> myBeansMaps;
+    private boolean amIStreaming;
+    private Map<String, String> myExpressionToCollNamesMap;
 
     /**
      * Initializes things to null/0.
@@ -48,6 +52,7 @@ public class WorkbookContext
         myNoImplicitProcessingCollectionNames = null;
         myFormulaMap = null;
         myCellRefMap = null;
+        myCellRefIndex = null;
         mySequenceNbr = 0;
         myCellStyleCache = null;
         myFontCache = null;
@@ -56,6 +61,8 @@ public class WorkbookContext
         mySheetNames = null;
         myExpressionFactory = null;
         myBeansMaps = null;
+        amIStreaming = false;
+        myExpressionToCollNamesMap = new HashMap<>();
     }
 
     /**
@@ -180,31 +187,59 @@ public class WorkbookContext
     }
 
     /**
-     * Returns the tag locations map, a <code>Map</code> of current tag location
-     * cell references to original tag location cell references, with the cell
-     * references being in the format "Sheet!B1".  This is currently used only to
-     * identify original tag locations for exception messages.
-     * @return A <code>Map</code> of current tag location cell references to
-     *    original tag location cell references.
-     * @since 0.9.0
+     * Returns the tag locations, which map current tag locations to original
+     * tag location cell references, with the cell references being in the
+     * format "Sheet!B1".  This is currently used only to identify original tag
+     * locations for exception messages.
+     * @return The <code>TagLocations</code>.
+     * @since 0.11.1
+     */
+    public TagLocations getTagLocations()
+    {
+        return myTagLocations;
+    }
+
+    /**
+     * Sets the tag locations, which map current tag locations to original tag
+     * location cell references, with the cell references being in the format
+     * "Sheet!B1".  This is currently used only to identify original tag
+     * locations for exception messages.
+     * @param tagLocations The <code>TagLocations</code>.
+     * @since 0.11.1
      */
+    public void setTagLocations(TagLocations tagLocations)
+    {
+        myTagLocations = tagLocations;
+    }
+
+    /**
+     * Returns a <code>Map</code> view of the tag locations, which maps current
+     * tag location cell references to original tag location cell references,
+     * with the cell references being in the format "Sheet!B1".
+     * @return A <code>Map</code> of cell references, or <code>null</code> if
+     *    there are no <code>TagLocations</code>.
+     * @deprecated Use {@link #getTagLocations()}.  The returned view writes
+     *    gets, puts, and removes through to it.
+     */
+    @Deprecated
     public Map<String, String> getTagLocationsMap()
     {
-        return myTagLocationsMap;
+        return (myTagLocations == null) ? null : myTagLocations.asMap();
     }
 
     /**
-     * Sets the tag locations map, a <code>Map</code> of current tag location
-     * cell references to original tag location cell references, with the cell
-     * references being in the format "Sheet!B1".  This is currently used only to
-     * identify original tag locations for exception messages.
-     * @param tagLocationsMap A <code>Map</code> of current tag location cell
-     *    references to original tag location cell references.
-     * @since 0.9.0
+     * Sets the tag locations map, which maps current tag location cell
+     * references to original tag location cell references, with the cell
+     * references being in the format "Sheet!B1".
+     * @param tagLocationsMap A <code>Map</code> of cell references.
+     * @deprecated Use {@link #setTagLocations(TagLocations)}.  A
+     *    <code>Map</code> returned by {@link #getTagLocationsMap()} is shared;
+     *    any other <code>Map</code> is copied.
      */
+    @Deprecated
     public void setTagLocationsMap(Map<String, String> tagLocationsMap)
     {
-        myTagLocationsMap = tagLocationsMap;
+        myTagLocations = TagLocations.of(tagLocationsMap);
     }
 
     /**
@@ -231,6 +266,32 @@ public class WorkbookContext
     public void setCellRefMap(Map<String, List<CellRef>> cellRefMap)
     {
         myCellRefMap = cellRefMap;
+        myCellRefIndex = null;
+    }
+
+    /**
+     * Returns the <code>CellRefIndex</code> over the cell reference map,
+     * building it first if necessary.
+     * @return The <code>CellRefIndex</code>.
+     * @since 0.11.1
+     */
+    public CellRefIndex getCellRefIndex()
+    {
+        if (myCellRefIndex == null)
+            myCellRefIndex = new CellRefIndex(myCellRefMap);
+        return myCellRefIndex;
+    }
+
+    /**
+     * Discards the <code>CellRefIndex</code>, so that it's rebuilt from the
+     * cell reference map the next time it's needed.  This must be called after
+     * changing cell keys or the sheet names of <code>CellRefs</code> in the
+     * cell reference map other than through the <code>CellRefIndex</code>.
+     * @since 0.11.1
+     */
+    public void invalidateCellRefIndex()
+    {
+        myCellRefIndex = null;
     }
 
     /**
@@ -390,4 +451,42 @@ public class WorkbookContext
     {
         myBeansMaps = new ArrayList<>(beansMaps);
     }
+
+    /**
+     * Returns whether finished rows are being streamed out of the
+     * <code>Workbook</code> during transformation.
+     * @return Whether finished rows are being streamed.
+     * @since 0.11.1
+     */
+    public boolean isStreaming()
+    {
+        return amIStreaming;
+    }
+
+    /**
+     * Sets whether finished rows are streamed out of the <code>Workbook</code>
+     * during transformation.
+     * @param streaming Whether finished rows are streamed.
+     * @since 0.11.1
+     */
+    public void setStreaming(boolean streaming)
+    {
+        amIStreaming = streaming;
+    }
+
+    /**
+     * Returns the <code>Map</code> that caches the collection names found in
+     * expression texts during this transformation.  If it is known that there
+     * are no collection names, then the value is an empty String, to
+     * distinguish from the case in which the result is not known yet, in which
+     * case the result is <code>null</code>.  Clear it when a different beans
+     * <code>Map</code> starts being used, which would render the cache
+     * useless.
+     * @return The <code>Map</code> of expression texts to collection names.
+     * @since 0.11.1
+     */
+    public Map<String, String> getExpressionToCollNamesMap()
+    {
+        return myExpressionToCollNamesMap;
+    }
 }
@@ -18,7 +18,9 @@ import net.sf.jett.model.BaseLoopTagStatus;
 import net.sf.jett.model.Block;
 import net.sf.jett.model.PastEndAction;
 import net.sf.jett.model.WorkbookContext;
+import net.sf.jett.transform.BlockStamper;
 import net.sf.jett.transform.BlockTransformer;
+import net.sf.jett.transform.RowSpooler;
 import net.sf.jett.util.AttributeUtil;
 import net.sf.jett.util.SheetUtil;
 
@@ -353,8 +355,15 @@ public abstract class BaseLoopTag extends BaseTag
      * </ol>
      * </li>
      * </ol>
+     * <p>If <code>isLazy()</code> returns <code>true</code>, then the number
+     * of iterations isn't determined, and each iteration's <code>Block</code>
+     * is copied only when the iterator has another item.  The same happens
+     * if the rows of each iteration can be spooled out of memory as soon as
+     * it's transformed, so that the copies for all iterations don't have to
+     * exist at once.</p>
      * @return Whether the first <code>Cell</code> in the <code>Block</code>
      *    associated with this <code>Tag</code> was processed.
+     * @see #isLazy
      * @see #getCollectionNames
      * @see #getVarNames
      * @see #getNumIterations
@@ -404,38 +413,21 @@ public abstract class BaseLoopTag extends BaseTag
             fixed = !fixedSizeCollNames.isEmpty();
         }
 
+        RowSpooler spooler = getRowSpooler();
+        if (isLazy() || spooler != null)
+            return processLazily(fixed, spooler);
+
         int numIterations = getNumIterations();
         List<String> varNames = getVarNames();
         logger.debug("BaseLoopTag: numIterations={}", numIterations);
         if (numIterations == 0)
         {
-            // If fixed, no shifting is to occur for the removed block.
-            if (fixed)
-            {
-                switch(myPastEndAction)
-                {
-                case CLEAR_CELL:
-                    clearBlock();
-                    break;
-                case REMOVE_CELL:
-                    deleteBlock();
-                    break;
-                case REPLACE_EXPR:
-                    SheetUtil.takePastEndAction(sheet, block, varNames, myPastEndAction, myReplaceExprValue);
-                    block.collapse();
-                    break;
-                default:
-                    throw new IllegalStateException("BaseLoopTag: Unknown PastEndAction: " + myPastEndAction);
-                }
-            }
-            else
-                removeBlock();
+            removeEmptyBlock(fixed, varNames);
             return false;
         }
         else
         {
             BlockTransformer transformer = new BlockTransformer();
-            List<Block> blocksToProcess = new ArrayList<>(numIterations);
             // Create room for the additional Blocks; the Block knows the proper
             // direction (right or down).
             // Don't create room if the collection is "fixed size", i.e. we can
@@ -443,14 +435,26 @@ public abstract class BaseLoopTag extends BaseTag
             if (!fixed)
                 shiftForBlock();
 
-            // Copy the Block.
-            for (int i = 0; i < numIterations; i++)
+            // A Block without tags is stamped with values for each item, instead
+            // of copied for all iterations and then transformed.  Past end
+            // actions and TagLoopListeners work on copied Cells.
+            BlockStamper stamper = null;
+            if (isStampable() && myTagLoopListener == null && numIterations == getCollectionSize())
             {
-                Block copy = copyBlock(i);
-                logger.debug("  Adding copied block: {}", copy);
-                blocksToProcess.add(copy);
+                stamper = new BlockStamper(context, workbookContext);
+                if (!stamper.isStampable())
+                    stamper = null;
             }
 
+            // Copy the Block, once for all iterations.
+            List<Block> blocksToProcess;
+            if (stamper != null)
+                blocksToProcess = stamper.layOutBlocks(numIterations);
+            else
+                blocksToProcess = SheetUtil.copyBlocks(sheet, context, context.getBlock(),
+                        workbookContext, numIterations);
+            logger.debug("  Added copied blocks: {}", blocksToProcess);
+
             int index = 0;
             Iterator<?> iterator = getLoopIterator();
             BaseLoopTagStatus status = null;
@@ -469,22 +473,7 @@ public abstract class BaseLoopTag extends BaseTag
 
                 // Off the end of the collection!
                 if (index >= getCollectionSize())
-                {
-                    switch(myPastEndAction)
-                    {
-                    case CLEAR_CELL:
-                        SheetUtil.clearBlock(sheet, currBlock, getWorkbookContext());
-                        break;
-                    case REMOVE_CELL:
-                        SheetUtil.deleteBlock(sheet, context, currBlock, getWorkbookContext());
-                        break;
-                    case REPLACE_EXPR:
-                        SheetUtil.takePastEndAction(sheet, currBlock, varNames, myPastEndAction, myReplaceExprValue);
-                        break;
-                    default:
-                        throw new IllegalStateException("BaseLoopTag: Unknown PastEndAction: " + myPastEndAction);
-                    }
-                }
+                    takePastEndAction(currBlock, varNames);
 
                 // Before Block Processing.
                 beforeBlockProcessed(context, currBlock, item, index);
@@ -493,23 +482,27 @@ public abstract class BaseLoopTag extends BaseTag
                 // Block Processing occurs.
                 if (fireBeforeTagLoopProcessedEvent(currBlock, index))
                 {
-                    // Process the block.
-                    TagContext blockContext = new TagContext();
-                    blockContext.setSheet(sheet);
-                    blockContext.setBeans(beans);
-                    blockContext.setBlock(currBlock);
-                    blockContext.setProcessedCellsMap(context.getProcessedCellsMap());
-                    blockContext.setDrawing(context.getDrawing());
-                    blockContext.setMergedRegions(context.getMergedRegions());
-                    blockContext.setCurrentTag(this);
-                    String suffix = context.getFormulaSuffix() + "[" + seqNbr + "," + index + "]";
-                    blockContext.setFormulaSuffix(suffix);
+                    // Implicit collections can only be detected with an item
+                    // exposed.  They must be transformed from copied Cells.
+                    if (stamper != null && index == 0 && stamper.hasImplicitCollections(beans))
+                    {
+                        logger.debug("  Implicit collection found; copying instead of stamping.");
+                        for (int i = 0; i < numIterations; i++)
+                        {
+                            stamper.copy(blocksToProcess.get(i), i);
+                        }
+                        stamper = null;
+                    }
 
+                    // Process the block.
                     logger.debug("  Block Before: {}", currBlock);
                     right = currBlock.getRightColNum();
                     bottom = currBlock.getBottomRowNum();
 
-                    transformer.transform(blockContext, workbookContext);
+                    if (stamper != null)
+                        stamper.stamp(currBlock, index, beans);
+                    else
+                        transformBlock(transformer, currBlock, seqNbr, index);
                     // See if the block transformation grew or shrunk the current block.
                     logger.debug("  Block After: {}", currBlock);
                     colGrowth = currBlock.getRightColNum() - right;
@@ -561,6 +554,240 @@ public abstract class BaseLoopTag extends BaseTag
         return true;
     }
 
+    /**
+     * Processes this loop one item at a time, pulling one item from the loop
+     * iterator at a time.  Instead of copying the <code>Block</code> for all
+     * iterations up front, the <code>Block</code> for the next iteration is
+     * copied from the current, not yet transformed, <code>Block</code> only
+     * if the iterator has another item, so only two iteration
+     * <code>Blocks</code> exist at any time.  If there is a
+     * <code>RowSpooler</code>, then the rows above the next iteration's
+     * <code>Block</code> are spooled after each iteration.
+     * <p>Unless it needs to know which iteration is the last, a lazy loop
+     * copies the next <code>Block</code> before it knows whether there is
+     * another item, so that it doesn't ask the iterator for another item
+     * until the current one is transformed; the copy is removed if there
+     * isn't one.</p>
+     * @param fixed Whether other content is not to be shifted out of the way.
+     * @param spooler The <code>RowSpooler</code>, or <code>null</code> not to
+     *    spool any rows.
+     * @return Whether the first <code>Cell</code> in the <code>Block</code>
+     *    associated with this <code>Tag</code> was processed.
+     * @see #isLazy
+     * @see #getRowSpooler
+     * @since 0.11.1
+     */
+    private boolean processLazily(boolean fixed, RowSpooler spooler)
+    {
+        TagContext context = getContext();
+        Block block = context.getBlock();
+        WorkbookContext workbookContext = getWorkbookContext();
+        int seqNbr = workbookContext.getSequenceNbr();
+        Sheet sheet = context.getSheet();
+        Map<String, Object> beans = context.getBeans();
+        List<String> varNames = getVarNames();
+
+        Iterator<?> iterator = getLoopIterator();
+        if (!iterator.hasNext())
+        {
+            logger.debug("BaseLoopTag: no lazy items.");
+            removeEmptyBlock(fixed, varNames);
+            return false;
+        }
+
+        // With a known number of iterations, create room for all of them at
+        // once.
+        boolean lazy = isLazy();
+        if (!lazy && !fixed)
+            shiftForBlock();
+
+        BlockTransformer transformer = new BlockTransformer();
+        BaseLoopTagStatus status = null;
+        if (myVarStatusName != null && !myVarStatusName.isEmpty())
+        {
+            status = getLoopTagStatus();
+            beans.put(myVarStatusName, status);
+        }
+        boolean deferring = lazy && !fixed && status == null;
+        int width = block.getRightColNum() - block.getLeftColNum();
+        int height = block.getBottomRowNum() - block.getTopRowNum();
+        Block currBlock = copyBlock(0);
+        Block lastBlock = currBlock;
+        int index = 0;
+        int right, bottom, colGrowth, rowGrowth;
+        int maxRight = 0;
+        int maxBottom = 0;
+        while (currBlock != null)
+        {
+            Object item = iterator.next();
+
+            // Make room for and copy the next Block while the current Block is
+            // still untransformed.
+            Block nextBlock = null;
+            // The current Block may have already grown to match the previous
+            // Block's growth, but only the template's area has been copied.
+            if (deferring || iterator.hasNext())
+            {
+                int left = currBlock.getLeftColNum();
+                int top = currBlock.getTopRowNum();
+                Block copied = new Block(currBlock.getParent(), left, left + width, top, top + height, index);
+                copied.setDirection(currBlock.getDirection());
+                if (lazy && !fixed)
+                    SheetUtil.shiftForBlock(sheet, context, copied, workbookContext, 2);
+                nextBlock = SheetUtil.copyBlock(sheet, context, copied, workbookContext, 1, index + 1);
+                logger.debug("  Adding copied block: {}", nextBlock);
+            }
+            else if (status != null)
+            {
+                status.setNumIterations(this, index + 1);
+            }
+
+            // Off the end of the collection!
+            if (index >= getCollectionSize())
+                takePastEndAction(currBlock, varNames);
+
+            beforeBlockProcessed(context, currBlock, item, index);
+            if (fireBeforeTagLoopProcessedEvent(currBlock, index))
+            {
+                right = currBlock.getRightColNum();
+                bottom = currBlock.getBottomRowNum();
+                transformBlock(transformer, currBlock, seqNbr, index);
+                colGrowth = currBlock.getRightColNum() - right;
+                rowGrowth = currBlock.getBottomRowNum() - bottom;
+                if (nextBlock != null && (colGrowth != 0 || rowGrowth != 0))
+                {
+                    logger.trace("  colGrowth is {}, rowGrowth is {}", colGrowth, rowGrowth);
+                    nextBlock.reactToGrowth(currBlock, colGrowth, rowGrowth);
+                }
+                if (currBlock.getRightColNum() > maxRight)
+                    maxRight = currBlock.getRightColNum();
+                if (currBlock.getBottomRowNum() > maxBottom)
+                    maxBottom = currBlock.getBottomRowNum();
+
+                fireTagLoopProcessedEvent(currBlock, index);
+            }
+            afterBlockProcessed(context, currBlock, item, index);
+
+            if (status != null)
+            {
+                status.incrementIndex(this);
+            }
+
+            if (deferring && !iterator.hasNext())
+            {
+                // The next Block isn't needed after all.
+                logger.debug("  Removing unneeded block: {}", nextBlock);
+                SheetUtil.removeBlock(sheet, context, nextBlock, workbookContext);
+                nextBlock = null;
+            }
+
+            // Nothing can touch the rows above the next Block any more.
+            if (spooler != null)
+                spooler.spoolProcessedRowsBefore((nextBlock != null) ?
+                        nextBlock.getTopRowNum() : currBlock.getBottomRowNum() + 1);
+            lastBlock = currBlock;
+            currBlock = nextBlock;
+            index++;
+        }
+
+        if (status != null)
+        {
+            beans.remove(myVarStatusName);
+        }
+
+        // Expand the tag block.
+        block.expand(maxRight - block.getRightColNum(), maxBottom - block.getBottomRowNum());
+
+        groupRowsOrCols(sheet, block, lastBlock);
+        return true;
+    }
+
+    /**
+     * Clears, deletes, or removes this tag's <code>Block</code> when there
+     * are no iterations, depending on whether it's "fixed" and on the "past
+     * end action".
+     * @param fixed Whether other content is not to be shifted into the space
+     *    left by the <code>Block</code>.
+     * @param varNames The names of the looping variables.
+     */
+    private void removeEmptyBlock(boolean fixed, List<String> varNames)
+    {
+        // If fixed, no shifting is to occur for the removed block.
+        if (fixed)
+        {
+            switch(myPastEndAction)
+            {
+            case CLEAR_CELL:
+                clearBlock();
+                break;
+            case REMOVE_CELL:
+                deleteBlock();
+                break;
+            case REPLACE_EXPR:
+                TagContext context = getContext();
+                Block block = context.getBlock();
+                SheetUtil.takePastEndAction(context.getSheet(), block, varNames, myPastEndAction, myReplaceExprValue);
+                block.collapse();
+                break;
+            default:
+                throw new IllegalStateException("BaseLoopTag: Unknown PastEndAction: " + myPastEndAction);
+            }
+        }
+        else
+            removeBlock();
+    }
+
+    /**
+     * Takes the "past end action" on the given iteration <code>Block</code>,
+     * whose iteration is past the end of the collection.
+     * @param currBlock The iteration <code>Block</code>.
+     * @param varNames The names of the looping variables.
+     */
+    private void takePastEndAction(Block currBlock, List<String> varNames)
+    {
+        TagContext context = getContext();
+        Sheet sheet = context.getSheet();
+        switch(myPastEndAction)
+        {
+        case CLEAR_CELL:
+            SheetUtil.clearBlock(sheet, currBlock, getWorkbookContext());
+            break;
+        case REMOVE_CELL:
+            SheetUtil.deleteBlock(sheet, context, currBlock, getWorkbookContext());
+            break;
+        case REPLACE_EXPR:
+            SheetUtil.takePastEndAction(sheet, currBlock, varNames, myPastEndAction, myReplaceExprValue);
+            break;
+        default:
+            throw new IllegalStateException("BaseLoopTag: Unknown PastEndAction: " + myPastEndAction);
+        }
+    }
+
+    /**
+     * Transforms the given iteration <code>Block</code> with the given
+     * <code>BlockTransformer</code>.
+     * @param transformer The <code>BlockTransformer</code>.
+     * @param currBlock The iteration <code>Block</code>.
+     * @param seqNbr The sequence number of this loop, for formula suffixes.
+     * @param index The zero-based loop index.
+     */
+    private void transformBlock(BlockTransformer transformer, Block currBlock, int seqNbr, int index)
+    {
+        TagContext context = getContext();
+        TagContext blockContext = new TagContext();
+        blockContext.setSheet(context.getSheet());
+        blockContext.setBeans(context.getBeans());
+        blockContext.setBlock(currBlock);
+        blockContext.setProcessedCells(context.getProcessedCells());
+        blockContext.setDrawing(context.getDrawing());
+        blockContext.setSheetMergedRegions(context.getSheetMergedRegions());
+        blockContext.setCurrentTag(this);
+        String suffix = context.getFormulaSuffix() + "[" + seqNbr + "," + index + "]";
+        blockContext.setFormulaSuffix(suffix);
+
+        transformer.transform(blockContext, getWorkbookContext());
+    }
+
     /**
      * If there is a <code>TagLoopListener</code>, then create and fire a
      * <code>TagLoopEvent</code>, with beans and sheet taken from this
@@ -631,6 +858,27 @@ public abstract class BaseLoopTag extends BaseTag
         }
     }
 
+    /**
+     * Returns the <code>RowSpooler</code> with which to spool the rows of
+     * each iteration as soon as it's transformed, if that's safe.  Only a
+     * loop at the top level of the sheet gets one in its
+     * <code>TagContext</code>.  The loop must also copy its
+     * <code>Block</code> down, and it must not need its rows again after all
+     * iterations, to group them or to pass them to a
+     * <code>TagListener</code>.
+     * @return The <code>RowSpooler</code>, or <code>null</code> not to spool
+     *    any rows.
+     */
+    private RowSpooler getRowSpooler()
+    {
+        TagContext context = getContext();
+        RowSpooler spooler = context.getRowSpooler();
+        if (spooler == null || context.getBlock().getDirection() != Block.Direction.VERTICAL ||
+                myGroupDir != Block.Direction.NONE || getTagListener() != null)
+            return null;
+        return spooler;
+    }
+
     /**
      * Shifts cells out of the way of where copied blocks will go.
      */
@@ -687,6 +935,37 @@ public abstract class BaseLoopTag extends BaseTag
      */
     protected abstract int getCollectionSize();
 
+    /**
+     * Returns whether this loop consumes its items lazily, without knowing
+     * the number of iterations in advance.  If so, <code>getNumIterations
+     * </code> isn't called, <code>getLoopIterator</code> must supply exactly
+     * the items to iterate, <code>getCollectionSize</code> must return the
+     * number of collection items consumed so far, and only the
+     * <code>Block</code> of the current iteration and of the next iteration
+     * exist at any time.  This defaults to <code>false</code>.
+     * @return Whether this loop consumes its items lazily.
+     * @since 0.11.1
+     */
+    protected boolean isLazy()
+    {
+        return false;
+    }
+
+    /**
+     * Returns whether this loop's <code>Block</code>, if it contains no tags,
+     * may be stamped with values for each item by a <code>BlockStamper</code>,
+     * instead of copied for every iteration up front and then transformed.
+     * This must be <code>false</code> if <code>beforeBlockProcessed</code>
+     * modifies the <code>Cells</code> of the <code>Block</code>.  This
+     * defaults to <code>true</code>.
+     * @return Whether this loop's <code>Block</code> may be stamped.
+     * @since 0.11.1
+     */
+    protected boolean isStampable()
+    {
+        return true;
+    }
+
     /**
      * Returns a <code>BaseLoopTagStatus</code> that will be exposed in the
      * beans map if the appropriate attribute is given.  Subclasses may want to
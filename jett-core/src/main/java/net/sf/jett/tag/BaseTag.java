@@ -149,6 +149,17 @@ public abstract class BaseTag implements Tag
         myParent = parent;
     }
 
+    /**
+     * Returns the <code>TagListener</code> specified by the attribute
+     * <code>ATTR_ON_PROCESSED</code>, if any.
+     * @return The <code>TagListener</code>, or <code>null</code> if none.
+     * @since 0.11.1
+     */
+    protected TagListener getTagListener()
+    {
+        return myTagListener;
+    }
+
     /**
      * Sets whether this <code>Tag</code> is bodiless.
      * @param bodiless <code>true</code> if this tag does not have a body,
@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -38,11 +39,26 @@ import net.sf.jett.util.OrderByComparator;
  * collection, then blank blocks will result, with the exact result dependent
  * on "past end action" rules.</p>
  *
+ * <p>The items may also be an <code>Iterable</code> that isn't a
+ * <code>Collection</code>, or an <code>Iterator</code>, e.g. from a
+ * <code>Stream</code> or a database cursor.  Such items are consumed lazily:
+ * one item is pulled at a time and its <code>Block</code> is transformed
+ * before the next item is pulled, so the items are never all in memory at
+ * once.  The "where" condition is applied as items are pulled.  If there is
+ * an "orderBy", a "groupBy", or a "varStatus" attribute, or if the block
+ * is copied to the right, the items must all be known, so they are first
+ * copied into a <code>List</code>.  Without a "limit", there is one
+ * iteration per item.  If lazily consumed items are
+ * <code>AutoCloseable</code>, e.g. a
+ * {@link net.sf.jett.jdbc.ResultSetCursor}, then they are closed when the
+ * loop is done, even if it fails.</p>
+ *
  * <br>Attributes:
  * <ul>
  * <li><em>Inherits all attributes from {@link BaseTag}.</em></li>
  * <li><em>Inherits all attributes from {@link BaseLoopTag}.</em></li>
- * <li>items (required): <code>Collection</code></li>
+ * <li>items (required): <code>Collection</code>, <code>Iterable</code>, or
+ * <code>Iterator</code></li>
  * <li>var (required): <code>String</code></li>
  * <li>indexVar (optional): <code>String</code></li>
  * <li>where (optional): <code>boolean</code></li>
@@ -100,6 +116,10 @@ public class ForEachTag extends BaseLoopTag
                     ATTR_INDEXVAR, ATTR_WHERE, ATTR_LIMIT, ATTR_GROUP_BY, ATTR_ORDER_BY));
 
     private Collection<Object> myCollection = null;
+    private Iterator<?> myLazyItems = null;
+    private AutoCloseable myLazyCloseable = null;
+    private int myNumItemsConsumed = 0;
+    private boolean amILimited = false;
     private String myCollectionName = null;
     private String myVarName = null;
     private String myIndexVarName = null;
@@ -142,8 +162,9 @@ public class ForEachTag extends BaseLoopTag
 
     /**
      * Validates the attributes for this <code>Tag</code>.  The "items"
-     * attribute must be a <code>Collection</code>.  The "limit", if present,
-     * must be a non-negative integer.
+     * attribute must be a <code>Collection</code>, an <code>Iterable</code>,
+     * or an <code>Iterator</code>.  The "limit", if present, must be a
+     * non-negative integer.
      */
     @Override
     @SuppressWarnings("unchecked")
@@ -157,8 +178,45 @@ public class ForEachTag extends BaseLoopTag
         Map<String, Object> beans = context.getBeans();
 
         Map<String, RichTextString> attributes = getAttributes();
-        myCollection = AttributeUtil.evaluateObject(this, attributes.get(ATTR_ITEMS), beans, ATTR_ITEMS, Collection.class,
+        myLazyItems = null;
+        myLazyCloseable = null;
+        Object items = AttributeUtil.evaluateObject(this, attributes.get(ATTR_ITEMS), beans, ATTR_ITEMS, Object.class,
                 new ArrayList<>(0));
+        if (items instanceof Collection)
+        {
+            myCollection = (Collection<Object>) items;
+        }
+        else if (items instanceof Iterable || items instanceof Iterator)
+        {
+            Iterator<?> itr = (items instanceof Iterable) ? ((Iterable<?>) items).iterator() : (Iterator<?>) items;
+            if (attributes.get(ATTR_ORDER_BY) != null || attributes.get(ATTR_GROUP_BY) != null ||
+                    attributes.get(ATTR_VAR_STATUS) != null ||
+                    context.getBlock().getDirection() == Block.Direction.HORIZONTAL)
+            {
+                // Sorting and grouping need all items, and the loop status
+                // exposes the number of iterations.  Copying right needs all
+                // copies in place before any is transformed, so that vertical
+                // growth shifts content below them only once.
+                List<Object> list = new ArrayList<>();
+                while (itr.hasNext())
+                {
+                    list.add(itr.next());
+                }
+                myCollection = list;
+            }
+            else
+            {
+                myLazyItems = itr;
+                if (items instanceof AutoCloseable)
+                    myLazyCloseable = (AutoCloseable) items;
+            }
+        }
+        else
+        {
+            // Reports the unexpected type, or instantiates a class name.
+            myCollection = AttributeUtil.evaluateObject(this, attributes.get(ATTR_ITEMS), beans, ATTR_ITEMS,
+                    Collection.class, new ArrayList<>(0));
+        }
 
         // Collection name.
         String attrItems = attributes.get(ATTR_ITEMS).getString();
@@ -170,12 +228,25 @@ public class ForEachTag extends BaseLoopTag
                     Expression.BEGIN_EXPR.length(), endExprIdx);
         }
 
-        logger.debug("Collection \"{}\" has size {}", attrItems, myCollection.size());
-
         myVarName = AttributeUtil.evaluateString(this, attributes.get(ATTR_VAR), beans, null);
 
         myIndexVarName = AttributeUtil.evaluateString(this, attributes.get(ATTR_INDEXVAR), beans, null);
 
+        if (myLazyItems != null)
+        {
+            logger.debug("Items \"{}\" are consumed lazily.", attrItems);
+            RichTextString rtsCondition = attributes.get(ATTR_WHERE);
+            if (rtsCondition != null)
+                myLazyItems = new WhereIterator(myLazyItems, rtsCondition);
+            myNumItemsConsumed = 0;
+            amILimited = attributes.get(ATTR_LIMIT) != null;
+            myLimit = AttributeUtil.evaluateNonNegativeInt(this, attributes.get(ATTR_LIMIT), beans, ATTR_LIMIT, 0);
+            logger.debug("vA: myLimit={}, limited: {}", myLimit, amILimited);
+            return;
+        }
+
+        logger.debug("Collection \"{}\" has size {}", attrItems, myCollection.size());
+
         RichTextString rtsCondition = attributes.get(ATTR_WHERE);
         if (rtsCondition != null)
         {
@@ -242,24 +313,71 @@ public class ForEachTag extends BaseLoopTag
         return Arrays.asList(myVarName);
     }
 
+    /**
+     * Processes the loop, then closes the items if they are consumed lazily
+     * and are <code>AutoCloseable</code>, whether the loop completed, stopped
+     * at its "limit", or failed.
+     * @return Whether the first <code>Cell</code> in the <code>Block</code>
+     *    associated with this <code>Tag</code> was processed.
+     * @since 0.11.1
+     */
+    @Override
+    public boolean process()
+    {
+        try
+        {
+            return super.process();
+        }
+        finally
+        {
+            if (myLazyCloseable != null)
+            {
+                try
+                {
+                    myLazyCloseable.close();
+                }
+                catch (Exception e)
+                {
+                    logger.warn("Unable to close items{}: {}", getLocation(), e.getMessage());
+                }
+                myLazyCloseable = null;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the items are consumed lazily, because they are an
+     * <code>Iterable</code> or an <code>Iterator</code> that isn't a
+     * <code>Collection</code>.
+     * @return Whether the items are consumed lazily.
+     * @since 0.11.1
+     */
+    @Override
+    protected boolean isLazy()
+    {
+        return myLazyItems != null;
+    }
+
     /**
      * Returns the number of iterations.
-     * @return The number of iterations.
+     * @return The number of iterations, or <code>-1</code> if the items are
+     *    consumed lazily.
      */
     @Override
     protected int getNumIterations()
     {
-        return myLimit;
+        return (myLazyItems != null) ? -1 : myLimit;
     }
 
     /**
-     * Returns the size of the collection being iterated.
+     * Returns the size of the collection being iterated.  If the items are
+     * consumed lazily, this is the number of items consumed so far.
      * @return The size of the collection being iterated.
      */
     @Override
     protected int getCollectionSize()
     {
-        return myCollection.size();
+        return (myLazyItems != null) ? myNumItemsConsumed : myCollection.size();
     }
 
     /**
@@ -270,6 +388,8 @@ public class ForEachTag extends BaseLoopTag
     @Override
     protected Iterator<Object> getLoopIterator()
     {
+        if (myLazyItems != null)
+            return new LazyForEachTagIterator();
         return new ForEachTagIterator();
     }
 
@@ -434,5 +554,152 @@ public class ForEachTag extends BaseLoopTag
             return myIndex < myLimit;
         }
     }
+    /**
+     * The <code>Iterator</code> over lazily consumed items, which can be
+     * extended by a larger limit to return <code>nulls</code> beyond the last
+     * item, or cut short by a smaller limit.
+     * @since 0.11.1
+     */
+    private class LazyForEachTagIterator implements Iterator<Object>
+    {
+        private int myIndex;
+
+        /**
+         * Construct a <code>LazyForEachTagIterator</code> whose index is
+         * initialized to zero.
+         */
+        private LazyForEachTagIterator()
+        {
+            myIndex = 0;
+        }
+
+        /**
+         * It doesn't make sense to remove values.
+         */
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException("LazyForEachTagIterator: Remove not supported!");
+        }
+
+        /**
+         * Returns the next item, or <code>null</code> if the items are
+         * exhausted but the limit hasn't been reached.
+         * @return The next value.
+         */
+        @Override
+        public Object next()
+        {
+            myIndex++;
+            if (myLazyItems.hasNext())
+            {
+                myNumItemsConsumed++;
+                return myLazyItems.next();
+            }
+            return null;
+        }
+
+        /**
+         * Determines if there are any items left, possibly <code>null</code>
+         * items if the limit is larger than the number of items.
+         * @return <code>true</code> if there are more items to process;
+         *    <code>false</code> otherwise.
+         */
+        @Override
+        public boolean hasNext()
+        {
+            if (amILimited)
+                return myIndex < myLimit;
+            return myLazyItems.hasNext();
+        }
+    }
+
+    /**
+     * An <code>Iterator</code> that filters lazily consumed items by the
+     * "where" condition as they are pulled.
+     * @since 0.11.1
+     */
+    private class WhereIterator implements Iterator<Object>
+    {
+        private Iterator<?> myItems;
+        private RichTextString myCondition;
+        private Object myNext;
+        private boolean amIReady;
+
+        /**
+         * Constructs a <code>WhereIterator</code>.
+         * @param items The unfiltered items.
+         * @param condition The "where" condition.
+         */
+        private WhereIterator(Iterator<?> items, RichTextString condition)
+        {
+            myItems = items;
+            myCondition = condition;
+            amIReady = false;
+        }
+
+        /**
+         * It doesn't make sense to remove values.
+         */
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException("WhereIterator: Remove not supported!");
+        }
+
+        /**
+         * Finds the next item that satisfies the condition, if not already
+         * found.  The looping variable is restored afterwards, because the
+         * loop looks ahead while the current item is exposed.
+         * @return <code>true</code> if there is such an item;
+         *    <code>false</code> otherwise.
+         */
+        @Override
+        public boolean hasNext()
+        {
+            if (amIReady)
+                return true;
+            Map<String, Object> beans = getContext().getBeans();
+            boolean hadVar = beans.containsKey(myVarName);
+            Object current = beans.get(myVarName);
+            try
+            {
+                while (myItems.hasNext())
+                {
+                    Object item = myItems.next();
+                    beans.put(myVarName, item);
+                    if (AttributeUtil.evaluateBoolean(ForEachTag.this, myCondition, beans, true))
+                    {
+                        myNext = item;
+                        amIReady = true;
+                        return true;
+                    }
+                }
+                return false;
+            }
+            finally
+            {
+                if (hadVar)
+                    beans.put(myVarName, current);
+                else
+                    beans.remove(myVarName);
+            }
+        }
+
+        /**
+         * Returns the next item that satisfies the condition.
+         * @return The next item.
+         */
+        @Override
+        public Object next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException("WhereIterator: No more items!");
+            amIReady = false;
+            Object next = myNext;
+            myNext = null;
+            return next;
+        }
+    }
 }
 
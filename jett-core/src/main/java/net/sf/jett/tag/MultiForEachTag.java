@@ -297,6 +297,19 @@ public class MultiForEachTag extends BaseLoopTag
         return myMaxSize;
     }
 
+    /**
+     * A <code>MultiForEachTag</code> can't be stamped, because it takes past
+     * end actions on the <code>Cells</code> of its <code>Block</code> when one
+     * of its collections is exhausted before the others.
+     * @return <code>false</code>.
+     * @since 0.11.1
+     */
+    @Override
+    protected boolean isStampable()
+    {
+        return false;
+    }
+
     /**
      * Returns an <code>Iterator</code> that iterates over all the items of all
      * specified <code>Collections</code> of values.  Its item is a
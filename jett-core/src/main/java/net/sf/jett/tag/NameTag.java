@@ -250,6 +250,7 @@ public class NameTag extends BaseTag
                 }
             }
         }
+        workbookContext.invalidateCellRefIndex();
 
         // Clear the cell; there is no cell-visible result.
         clearBlock();
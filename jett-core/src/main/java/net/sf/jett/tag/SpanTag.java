@@ -23,6 +23,7 @@ import net.sf.jett.exception.TagParseException;
 import net.sf.jett.model.Block;
 import net.sf.jett.model.CellStyleCache;
 import net.sf.jett.model.ExcelColor;
+import net.sf.jett.model.MergedRegions;
 import net.sf.jett.model.WorkbookContext;
 import net.sf.jett.transform.BlockTransformer;
 import net.sf.jett.util.AttributeUtil;
@@ -180,18 +181,17 @@ public class SpanTag extends BaseTag
         int height = 1;
         int width = 1;
 
-        List<CellRangeAddress> sheetMergedRegions = context.getMergedRegions();
-        int index = findMergedRegionAtCell(sheetMergedRegions, left, top);
-        if (index != -1)
+        MergedRegions sheetMergedRegions = context.getSheetMergedRegions();
+        CellRangeAddress existing = sheetMergedRegions.findAt(left, top);
+        if (existing != null)
         {
             // Get the height/width and remove the old merged region.
-            CellRangeAddress remove = sheetMergedRegions.get(index);
-            right = remove.getLastColumn();
-            bottom = remove.getLastRow();
-            height = remove.getLastRow() - remove.getFirstRow() + 1;
-            width = remove.getLastColumn() - remove.getFirstColumn() + 1;
-            logger.debug("  Removing region: {}, height={}, width={}", remove, height, width);
-            sheetMergedRegions.remove(index);
+            right = existing.getLastColumn();
+            bottom = existing.getLastRow();
+            height = existing.getLastRow() - existing.getFirstRow() + 1;
+            width = existing.getLastColumn() - existing.getFirstColumn() + 1;
+            logger.debug("  Removing region: {}, height={}, width={}", existing, height, width);
+            sheetMergedRegions.remove(existing);
         }
 
         short borderBottomType = CellStyle.BORDER_NONE;
@@ -347,28 +347,6 @@ public class SpanTag extends BaseTag
         return true;
     }
 
-    /**
-     * Identify the merged region on the given <code>Sheet</code> whose top-left
-     * corner is at the specified column and row indexes.
-     * @param sheetMergedRegions A <code>List</code> of
-     *    <code>CellRangeAddress</code>es.
-     * @param col The 0-based column index of the top-left corner.
-     * @param row The 0-based row index of the top-left corner.
-     * @return A 0-based index into the <code>Sheet's</code> list of merged
-     *    regions, or -1 if not found.
-     */
-    private int findMergedRegionAtCell(List<CellRangeAddress> sheetMergedRegions, int col, int row)
-    {
-        int numMergedRegions = sheetMergedRegions.size();
-        for (int i = 0; i < numMergedRegions; i++)
-        {
-            CellRangeAddress candidate = sheetMergedRegions.get(i);
-            if (candidate.getFirstRow() == row && candidate.getFirstColumn() == col)
-                return i;
-        }
-        return -1;
-    }
-
     /**
      * Remove all borders from all cells in the region described by the left,
      * right, top, and bottom bounds.
@@ -9,6 +9,9 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.CellRangeAddress;
 
 import net.sf.jett.model.Block;
+import net.sf.jett.model.MergedRegions;
+import net.sf.jett.model.ProcessedCells;
+import net.sf.jett.transform.RowSpooler;
 
 /**
  * A <code>TagContext</code> object represents the context associated with a
@@ -21,12 +24,13 @@ public class TagContext
     private Sheet mySheet;
     private Block myBlock;
     private Map<String, Object> myBeans;
-    private Map<String, Cell> myProcessedCells;
+    private ProcessedCells myProcessedCells;
     private Drawing myDrawing;
-    private List<CellRangeAddress> myMergedRegions;
+    private MergedRegions myMergedRegions;
     private List<List<CellRangeAddress>> myConditionalFormattingRegions;
     private Tag myCurrTag;
     private String myFormulaSuffix;
+    private RowSpooler myRowSpooler;
 
     /**
      * Construct a <code>TagContext</code>, initializing things to null.
@@ -40,6 +44,7 @@ public class TagContext
         myMergedRegions = null;
         myConditionalFormattingRegions = null;
         myFormulaSuffix = "";
+        myRowSpooler = null;
     }
 
     /**
@@ -97,23 +102,78 @@ public class TagContext
     }
 
     /**
-     * Returns the <code>Map</code> of <code>Cells</code> that have already been
-     * processed.
-     * @return A <code>Map</code> of <code>Cells</code>.
+     * Returns the <code>ProcessedCells</code> that tracks the
+     * <code>Cells</code> that have already been processed.
+     * @return The <code>ProcessedCells</code>.
+     * @since 0.11.1
      */
-    public Map<String, Cell> getProcessedCellsMap()
+    public ProcessedCells getProcessedCells()
     {
         return myProcessedCells;
     }
 
+    /**
+     * Sets the <code>ProcessedCells</code> that tracks the <code>Cells</code>
+     * that have already been processed.
+     * @param processedCells The <code>ProcessedCells</code>.
+     * @since 0.11.1
+     */
+    public void setProcessedCells(ProcessedCells processedCells)
+    {
+        myProcessedCells = processedCells;
+    }
+
+    /**
+     * Returns the <code>RowSpooler</code> that moves finished rows of the
+     * <code>Sheet</code> out of memory in streaming mode.  Only tags at the
+     * top level of the <code>Sheet</code> receive it.
+     * @return The <code>RowSpooler</code>, or <code>null</code> if rows
+     *    aren't spooled.
+     * @since 0.11.1
+     */
+    public RowSpooler getRowSpooler()
+    {
+        return myRowSpooler;
+    }
+
+    /**
+     * Sets the <code>RowSpooler</code> that moves finished rows of the
+     * <code>Sheet</code> out of memory in streaming mode.
+     * @param rowSpooler The <code>RowSpooler</code>, or <code>null</code> if
+     *    rows aren't spooled.
+     * @since 0.11.1
+     */
+    public void setRowSpooler(RowSpooler rowSpooler)
+    {
+        myRowSpooler = rowSpooler;
+    }
+
+    /**
+     * Returns a <code>Map</code> view of the <code>Cells</code> that have
+     * already been processed, keyed by <code>SheetUtil.getCellKey</code>.
+     * @return A <code>Map</code> of <code>Cells</code>, or <code>null</code>
+     *    if there is no <code>ProcessedCells</code>.
+     * @deprecated Use {@link #getProcessedCells()}.  The returned view writes
+     *    gets, puts, and removes through to it.
+     */
+    @Deprecated
+    public Map<String, Cell> getProcessedCellsMap()
+    {
+        return (myProcessedCells == null) ? null : myProcessedCells.asMap(mySheet);
+    }
+
     /**
      * Sets the <code>Map</code> of <code>Cells</code> that have already been
      * processed.
      * @param processedCells A <code>Map</code> of <code>Cells</code>.
+     * @deprecated Use {@link #setProcessedCells(ProcessedCells)}.  A
+     *    <code>Map</code> returned by {@link #getProcessedCellsMap()} is
+     *    shared; any other <code>Map</code> is copied.
      */
+    @Deprecated
     public void setProcessedCellsMap(Map<String, Cell> processedCells)
     {
-        myProcessedCells = processedCells;
+        myProcessedCells = ProcessedCells.of(processedCells);
     }
 
     /**
@@ -181,31 +241,61 @@ public class TagContext
     }
 
     /**
-     * Sets the <code>List</code> of <code>CellRangeAddress</code> objects to be
-     * manipulated through this <code>TagContext</code>.  All merged region
-     * manipulation for a <code>Sheet</code> goes through this list, instead of
-     * the <code>Sheet</code> itself, for performance reasons.
+     * Sets the <code>MergedRegions</code> to be manipulated through this
+     * <code>TagContext</code>.  All merged region manipulation for a
+     * <code>Sheet</code> goes through it, instead of the <code>Sheet</code>
+     * itself, for performance reasons.
+     * @param mergedRegions The <code>MergedRegions</code>.
+     * @since 0.11.1
+     */
+    public void setSheetMergedRegions(MergedRegions mergedRegions)
+    {
+        myMergedRegions = mergedRegions;
+    }
+
+    /**
+     * Returns the <code>MergedRegions</code> on the current
+     * <code>Sheet</code>.  For performance reasons, the
+     * <code>SheetTransformer</code> reads all merged regions into it before
+     * transformation, all manipulations are done to it, and after
+     * transformation, its regions are re-applied to the <code>Sheet</code>.
+     * @return The <code>MergedRegions</code>.
+     * @since 0.11.1
+     */
+    public MergedRegions getSheetMergedRegions()
+    {
+        return myMergedRegions;
+    }
+
+    /**
+     * Sets the <code>List</code> of <code>CellRangeAddress</code> objects to
+     * be manipulated through this <code>TagContext</code>.
      * @param mergedRegions A <code>List</code> of
      *    <code>CellRangeAddress</code>es.
      * @since 0.8.0
+     * @deprecated Use {@link #setSheetMergedRegions(MergedRegions)}.  A
+     *    <code>List</code> returned by {@link #getMergedRegions()} is shared;
+     *    any other <code>List</code> is copied.
      */
+    @Deprecated
     public void setMergedRegions(List<CellRangeAddress> mergedRegions)
     {
-        myMergedRegions = mergedRegions;
+        myMergedRegions = MergedRegions.of(mergedRegions);
     }
 
     /**
-     * Returns the <code>List</code> of <code>CellRangeAddress</code> objects on
-     * the current <code>Sheet</code>.  For performance reasons, the
-     * <code>SheetTransformer</code> reads all merged regions into this list
-     * before transformation, all manipulations are done to this list, and after
-     * transformation, the list is re-applied to the <code>Sheet</code>.
-     * @return A <code>List</code> of <code>CellRangeAddress</code>es.
+     * Returns a <code>List</code> view of the <code>CellRangeAddress</code>
+     * objects on the current <code>Sheet</code>.
+     * @return A <code>List</code> of <code>CellRangeAddress</code>es, or
+     *    <code>null</code> if there is no <code>MergedRegions</code>.
      * @since 0.8.0
+     * @deprecated Use {@link #getSheetMergedRegions()}.  The returned view
+     *    writes changes through to it, but indexed access takes linear time.
      */
+    @Deprecated
     public List<CellRangeAddress> getMergedRegions()
     {
-        return myMergedRegions;
+        return (myMergedRegions == null) ? null : myMergedRegions.asList();
     }
 
     /**
@@ -0,0 +1,167 @@
+package net.sf.jett.transform;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A <code>BatchResult</code> reports the outcome of a batch transformation:
+ * how many items were transformed, how long each item took, and which items
+ * failed and why.  Item indexes are 0-based, in the order in which the beans
+ * maps were supplied.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ * @see ExcelTransformer#transformBatch(CompiledTemplate, java.util.Iterator, OutputStreamFactory, java.util.concurrent.Executor, int)
+ */
+public class BatchResult
+{
+    private long[] myLatencies;
+    private int myNumItems;
+    private Map<Integer, Exception> myFailures;
+    private long myElapsedNanos;
+
+    /**
+     * Constructs an empty <code>BatchResult</code>.
+     */
+    BatchResult()
+    {
+        myLatencies = new long[16];
+        myNumItems = 0;
+        myFailures = new TreeMap<>();
+        myElapsedNanos = 0;
+    }
+
+    /**
+     * Records the outcome of one item.
+     * @param index The 0-based index of the item.
+     * @param latencyNanos How long the item took, in nanoseconds.
+     * @param failure The <code>Exception</code> that made the item fail, or
+     *    <code>null</code> if it succeeded.
+     */
+    void record(int index, long latencyNanos, Exception failure)
+    {
+        if (index >= myLatencies.length)
+            myLatencies = Arrays.copyOf(myLatencies, Math.max(index + 1, 2 * myLatencies.length));
+        myLatencies[index] = latencyNanos;
+        myNumItems = Math.max(myNumItems, index + 1);
+        if (failure != null)
+            myFailures.put(index, failure);
+    }
+
+    /**
+     * Sets the elapsed time of the whole batch.
+     * @param elapsedNanos The elapsed time, in nanoseconds.
+     */
+    void setElapsedNanos(long elapsedNanos)
+    {
+        myElapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the number of items in the batch.
+     * @return The number of items.
+     */
+    public int getNumItems()
+    {
+        return myNumItems;
+    }
+
+    /**
+     * Returns the number of items that were transformed and written
+     * successfully.
+     * @return The number of successful items.
+     */
+    public int getNumSucceeded()
+    {
+        return myNumItems - myFailures.size();
+    }
+
+    /**
+     * Returns the number of items that failed.
+     * @return The number of failed items.
+     */
+    public int getNumFailed()
+    {
+        return myFailures.size();
+    }
+
+    /**
+     * Returns the failed items, as a <code>Map</code> of item indexes, in
+     * ascending order, to the <code>Exceptions</code> that made them fail.
+     * @return An unmodifiable <code>Map</code> of failures.
+     */
+    public Map<Integer, Exception> getFailures()
+    {
+        return Collections.unmodifiableMap(myFailures);
+    }
+
+    /**
+     * Returns how long the given item took to transform and write, in
+     * nanoseconds.
+     * @param index The 0-based index of the item.
+     * @return The latency of the item, in nanoseconds.
+     * @throws IndexOutOfBoundsException If there is no such item.
+     */
+    public long getLatencyNanos(int index)
+    {
+        if (index < 0 || index >= myNumItems)
+            throw new IndexOutOfBoundsException("Item " + index + " of " + myNumItems);
+        return myLatencies[index];
+    }
+
+    /**
+     * Returns the longest latency of any item, in nanoseconds.
+     * @return The maximum latency, in nanoseconds, or <code>0</code> if the
+     *    batch was empty.
+     */
+    public long getMaxLatencyNanos()
+    {
+        long max = 0;
+        for (int i = 0; i < myNumItems; i++)
+        {
+            max = Math.max(max, myLatencies[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the mean latency of the items, in nanoseconds.
+     * @return The mean latency, in nanoseconds, or <code>0</code> if the
+     *    batch was empty.
+     */
+    public long getMeanLatencyNanos()
+    {
+        if (myNumItems == 0)
+            return 0;
+        long total = 0;
+        for (int i = 0; i < myNumItems; i++)
+        {
+            total += myLatencies[i];
+        }
+        return total / myNumItems;
+    }
+
+    /**
+     * Returns the elapsed time of the whole batch, in nanoseconds.
+     * @return The elapsed time, in nanoseconds.
+     */
+    public long getElapsedNanos()
+    {
+        return myElapsedNanos;
+    }
+
+    /**
+     * Returns a summary of this <code>BatchResult</code>.
+     * @return A summary string.
+     */
+    @Override
+    public String toString()
+    {
+        return "BatchResult[items=" + myNumItems + ", failed=" + myFailures.size() +
+                ", meanLatencyMs=" + getMeanLatencyNanos() / 1000000 +
+                ", maxLatencyMs=" + getMaxLatencyNanos() / 1000000 +
+                ", elapsedMs=" + myElapsedNanos / 1000000 + "]";
+    }
+}
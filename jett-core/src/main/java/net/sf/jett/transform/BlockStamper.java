@@ -0,0 +1,358 @@
+package net.sf.jett.transform;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import net.sf.jett.expression.Expression;
+import net.sf.jett.expression.ExpressionFactory;
+import net.sf.jett.formula.Formula;
+import net.sf.jett.model.Block;
+import net.sf.jett.model.ProcessedCells;
+import net.sf.jett.model.WorkbookContext;
+import net.sf.jett.parser.TagParser;
+import net.sf.jett.tag.TagContext;
+import net.sf.jett.util.SheetUtil;
+
+/**
+ * <p>A <code>BlockStamper</code> renders the iterations of a loop whose
+ * <code>Block</code> contains no tags.  It analyzes the template
+ * <code>Block</code> once, then for each item writes the evaluated values
+ * straight into the <code>Cells</code> of that item's <code>Block</code>.
+ * The template <code>Cells</code> aren't copied for every iteration first,
+ * and the copied <code>Cells</code> aren't each parsed for tags and probed
+ * for implicit collections by a <code>CellTransformer</code>.</p>
+ *
+ * <p>A <code>Block</code> can't be stamped if it contains a tag, or if any
+ * <code>CellListeners</code> are registered, because they may inspect or veto
+ * the processing of individual <code>Cells</code>.  Whether an expression
+ * refers to an implicit collection can only be known once an item is
+ * exposed; if one does, then the loop must {@link #copy copy} the template
+ * into its <code>Blocks</code> and transform them after all.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class BlockStamper
+{
+    private static final Logger logger = LogManager.getLogger();
+
+    private TagContext myContext;
+    private WorkbookContext myWorkbookContext;
+    private int myLeft;
+    private int myTop;
+    private int mySeqNbr;
+    private TemplateCell[][] myTemplateCells;
+
+    /**
+     * Constructs a <code>BlockStamper</code> that analyzes the
+     * <code>Block</code> of the given <code>TagContext</code>.
+     * @param context The <code>TagContext</code> of the loop tag.
+     * @param workbookContext The <code>WorkbookContext</code>.
+     */
+    public BlockStamper(TagContext context, WorkbookContext workbookContext)
+    {
+        myContext = context;
+        myWorkbookContext = workbookContext;
+        mySeqNbr = workbookContext.getSequenceNbr();
+        Block block = context.getBlock();
+        myLeft = block.getLeftColNum();
+        myTop = block.getTopRowNum();
+        if (!workbookContext.getCellListeners().isEmpty() ||
+                (block.getDirection() != Block.Direction.VERTICAL && block.getDirection() != Block.Direction.HORIZONTAL))
+            return;
+
+        Sheet sheet = context.getSheet();
+        TemplateCell[][] templateCells = new TemplateCell[block.getBottomRowNum() - myTop + 1][block.getRightColNum() - myLeft + 1];
+        for (int r = myTop; r <= block.getBottomRowNum(); r++)
+        {
+            Row row = sheet.getRow(r);
+            if (row == null)
+                row = sheet.createRow(r);
+            for (int c = myLeft; c <= block.getRightColNum(); c++)
+            {
+                Cell cell = row.getCell(c);
+                if (cell == null)
+                    cell = row.createCell(c);
+                if (cell.getCellType() == Cell.CELL_TYPE_STRING)
+                {
+                    TagParser parser = new TagParser(cell);
+                    parser.parse();
+                    if (parser.isTag())
+                    {
+                        logger.debug("BlockStamper: Tag found in {}; can't stamp.", block);
+                        return;
+                    }
+                }
+                templateCells[r - myTop][c - myLeft] = new TemplateCell(cell);
+            }
+        }
+        myTemplateCells = templateCells;
+    }
+
+    /**
+     * Returns whether the <code>Block</code> can be stamped, i.e. it contains
+     * no tags and there are no <code>CellListeners</code>.
+     * @return Whether the <code>Block</code> can be stamped.
+     */
+    public boolean isStampable()
+    {
+        return myTemplateCells != null;
+    }
+
+    /**
+     * Lays out the given number of <code>Blocks</code> for the iterations of
+     * the loop, copying everything except the <code>Cells</code> themselves:
+     * merged regions, row heights or column widths, tag locations, and cell
+     * references.
+     * @param numIterations The number of iterations.
+     * @return A <code>List</code> of the <code>Blocks</code>, one per
+     *    iteration, the first of which is the template <code>Block</code>.
+     */
+    public List<Block> layOutBlocks(int numIterations)
+    {
+        return SheetUtil.copyBlocks(myContext.getSheet(), myContext, myContext.getBlock(), myWorkbookContext,
+                numIterations, false);
+    }
+
+    /**
+     * Determines whether any expression in the template refers to an
+     * implicit collection, given the beans of an iteration.
+     * @param beans The <code>Map</code> of bean names to values, with the
+     *    iteration's item exposed.
+     * @return Whether any expression refers to an implicit collection.
+     */
+    public boolean hasImplicitCollections(Map<String, Object> beans)
+    {
+        for (TemplateCell[] row : myTemplateCells)
+        {
+            for (TemplateCell templateCell : row)
+            {
+                if (templateCell.amIEvaluated && !Expression.getImplicitCollectionExpr(
+                        templateCell.myRichString.getString(), beans, myWorkbookContext).isEmpty())
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stamps the template into the given iteration's <code>Block</code>,
+     * evaluating any expressions with the given beans, and marks its
+     * <code>Cells</code> as processed.
+     * @param block The <code>Block</code> of the iteration.
+     * @param index The 0-based iteration index.
+     * @param beans The <code>Map</code> of bean names to values, with the
+     *    iteration's item exposed.
+     */
+    public void stamp(Block block, int index, Map<String, Object> beans)
+    {
+        logger.debug("Stamping block: {}", block);
+        Sheet sheet = myContext.getSheet();
+        ProcessedCells processedCells = myContext.getProcessedCells();
+        CreationHelper helper = sheet.getWorkbook().getCreationHelper();
+        ExpressionFactory factory = myWorkbookContext.getExpressionFactory();
+        String suffix = getSuffix(index);
+        boolean isCopy = (block.getLeftColNum() != myLeft || block.getTopRowNum() != myTop);
+        for (int r = 0; r < myTemplateCells.length; r++)
+        {
+            Row row = getOrCreateRow(sheet, block.getTopRowNum() + r);
+            for (int c = 0; c < myTemplateCells[r].length; c++)
+            {
+                Cell cell = getOrCreateCell(row, block.getLeftColNum() + c);
+                if (processedCells.contains(cell))
+                    continue;
+                beans.put("cell", cell);
+
+                TemplateCell templateCell = myTemplateCells[r][c];
+                if (isCopy)
+                    templateCell.copyTo(cell);
+                if (templateCell.amIEvaluated)
+                {
+                    RichTextString richString = (templateCell.amIJettFormula) ?
+                            helper.createRichTextString(templateCell.myRichString.getString() + suffix) :
+                            templateCell.myRichString;
+                    Object result = Expression.evaluateString(richString, helper, factory, beans);
+                    SheetUtil.setCellValue(myWorkbookContext, cell, result, richString);
+                }
+                else if (templateCell.amIJettFormula)
+                {
+                    SheetUtil.setCellValue(myWorkbookContext, cell, templateCell.myRichString.getString() + suffix);
+                }
+                processedCells.add(cell);
+            }
+        }
+    }
+
+    /**
+     * Copies the template into the given iteration's <code>Block</code>
+     * without evaluating anything, appending the iteration's "[loop,iter]"
+     * suffix to JETT formulas, so that it may be transformed like a copied
+     * <code>Block</code>.
+     * @param block The <code>Block</code> of the iteration.
+     * @param index The 0-based iteration index.
+     */
+    public void copy(Block block, int index)
+    {
+        Sheet sheet = myContext.getSheet();
+        String suffix = getSuffix(index);
+        boolean isCopy = (block.getLeftColNum() != myLeft || block.getTopRowNum() != myTop);
+        for (int r = 0; r < myTemplateCells.length; r++)
+        {
+            Row row = getOrCreateRow(sheet, block.getTopRowNum() + r);
+            for (int c = 0; c < myTemplateCells[r].length; c++)
+            {
+                Cell cell = getOrCreateCell(row, block.getLeftColNum() + c);
+                TemplateCell templateCell = myTemplateCells[r][c];
+                if (isCopy)
+                    templateCell.copyTo(cell);
+                if (templateCell.amIJettFormula)
+                    SheetUtil.setCellValue(myWorkbookContext, cell, templateCell.myRichString.getString() + suffix);
+            }
+        }
+    }
+
+    /**
+     * Returns the "[loop,iter]" suffix appended to JETT formulas in the given
+     * iteration.
+     * @param index The 0-based iteration index.
+     * @return The suffix.
+     */
+    private String getSuffix(int index)
+    {
+        return "[" + mySeqNbr + "," + index + "]";
+    }
+
+    /**
+     * Returns the <code>Row</code> at the given index, creating it if needed.
+     * @param sheet The <code>Sheet</code>.
+     * @param rowNum The 0-based row index.
+     * @return The <code>Row</code>.
+     */
+    private static Row getOrCreateRow(Sheet sheet, int rowNum)
+    {
+        Row row = sheet.getRow(rowNum);
+        if (row == null)
+            row = sheet.createRow(rowNum);
+        return row;
+    }
+
+    /**
+     * Returns the <code>Cell</code> at the given index, creating it if needed.
+     * @param row The <code>Row</code>.
+     * @param colNum The 0-based column index.
+     * @return The <code>Cell</code>.
+     */
+    private static Cell getOrCreateCell(Row row, int colNum)
+    {
+        Cell cell = row.getCell(colNum);
+        if (cell == null)
+            cell = row.createCell(colNum);
+        return cell;
+    }
+
+    /**
+     * A <code>TemplateCell</code> is what a <code>BlockStamper</code> needs to
+     * know about a template <code>Cell</code>: its style, hyperlink, and value,
+     * and whether its value has expressions to evaluate or is a JETT formula.
+     */
+    private static class TemplateCell
+    {
+        private CellStyle myStyle;
+        private Hyperlink myHyperlink;
+        private int myCellType;
+        private RichTextString myRichString;
+        private double myNumericValue;
+        private String myFormula;
+        private boolean myBooleanValue;
+        private byte myErrorValue;
+        private boolean amIEvaluated;
+        private boolean amIJettFormula;
+
+        /**
+         * Constructs a <code>TemplateCell</code> from a template
+         * <code>Cell</code>.
+         * @param cell The template <code>Cell</code>.
+         */
+        private TemplateCell(Cell cell)
+        {
+            myStyle = cell.getCellStyle();
+            myHyperlink = cell.getHyperlink();
+            myCellType = cell.getCellType();
+            switch (myCellType)
+            {
+            case Cell.CELL_TYPE_STRING:
+                myRichString = cell.getRichStringCellValue();
+                String value = myRichString.getString();
+                amIEvaluated = value.contains(Expression.BEGIN_EXPR);
+                int startIdx = value.indexOf(Formula.BEGIN_FORMULA);
+                int endIdx = value.lastIndexOf(Formula.END_FORMULA);
+                amIJettFormula = (startIdx != -1 && endIdx != -1 && startIdx < endIdx);
+                break;
+            case Cell.CELL_TYPE_NUMERIC:
+                myNumericValue = cell.getNumericCellValue();
+                break;
+            case Cell.CELL_TYPE_FORMULA:
+                myFormula = cell.getCellFormula();
+                break;
+            case Cell.CELL_TYPE_BOOLEAN:
+                myBooleanValue = cell.getBooleanCellValue();
+                break;
+            case Cell.CELL_TYPE_ERROR:
+                myErrorValue = cell.getErrorCellValue();
+                break;
+            default:
+                break;
+            }
+        }
+
+        /**
+         * Copies the style, hyperlink, and value of the template
+         * <code>Cell</code> to the given <code>Cell</code>.
+         * @param cell The <code>Cell</code> to copy to.
+         */
+        private void copyTo(Cell cell)
+        {
+            cell.setCellStyle(myStyle);
+            if (myHyperlink != null)
+            {
+                CreationHelper helper = cell.getSheet().getWorkbook().getCreationHelper();
+                Hyperlink hyperlink = helper.createHyperlink(myHyperlink.getType());
+                hyperlink.setAddress(myHyperlink.getAddress());
+                cell.setHyperlink(hyperlink);
+            }
+            switch (myCellType)
+            {
+            case Cell.CELL_TYPE_STRING:
+                cell.setCellValue(myRichString);
+                break;
+            case Cell.CELL_TYPE_NUMERIC:
+                cell.setCellValue(myNumericValue);
+                break;
+            case Cell.CELL_TYPE_BLANK:
+                cell.setCellType(Cell.CELL_TYPE_BLANK);
+                break;
+            case Cell.CELL_TYPE_FORMULA:
+                cell.setCellFormula(myFormula);
+                break;
+            case Cell.CELL_TYPE_BOOLEAN:
+                cell.setCellValue(myBooleanValue);
+                break;
+            case Cell.CELL_TYPE_ERROR:
+                cell.setCellErrorValue(myErrorValue);
+                break;
+            default:
+                break;
+            }
+        }
+    }
+}
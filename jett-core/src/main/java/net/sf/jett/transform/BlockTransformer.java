@@ -1,7 +1,5 @@
 package net.sf.jett.transform;
 
-import java.util.Map;
-
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 import org.apache.poi.ss.usermodel.Cell;
@@ -9,9 +7,9 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 
 import net.sf.jett.model.Block;
+import net.sf.jett.model.ProcessedCells;
 import net.sf.jett.model.WorkbookContext;
 import net.sf.jett.tag.TagContext;
-import net.sf.jett.util.SheetUtil;
 
 /**
  * A <code>BlockTransformer</code> knows how to transform a <code>Block</code>
@@ -24,6 +22,28 @@ public class BlockTransformer
 {
     private static final Logger logger = LogManager.getLogger();
 
+    private RowSpooler myRowSpooler;
+
+    /**
+     * Constructs a <code>BlockTransformer</code>.
+     */
+    public BlockTransformer()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructs a <code>BlockTransformer</code> for the top-level block of a
+     * sheet that spools finished rows with the given <code>RowSpooler</code>.
+     * @param spooler The <code>RowSpooler</code>, or <code>null</code> not to
+     *    spool any rows.
+     * @since 0.11.1
+     */
+    BlockTransformer(RowSpooler spooler)
+    {
+        myRowSpooler = spooler;
+    }
+
     /**
      * Transforms the given <code>Sheet</code>, using the given <code>Map</code>
      * of bean names to bean objects.
@@ -43,19 +63,22 @@ public class BlockTransformer
      *    and the <code>Map</code> of bean names to values.
      * @param workbookContext The <code>WorkbookContext</code>.
      * @param process Whether to process the <code>Cells</code>; regardless,
-     *    they are added to the processed cells <code>Map</code>.
+     *    they are added to the <code>ProcessedCells</code>.
      */
     public void transform(TagContext context, WorkbookContext workbookContext, boolean process)
     {
         Sheet sheet = context.getSheet();
         Block block = context.getBlock();
-        Map<String, Cell> processedCells = context.getProcessedCellsMap();
+        ProcessedCells processedCells = context.getProcessedCells();
         CellTransformer transformer = new CellTransformer();
 
         logger.trace("Transforming block: {}", block);
 
         for (int rowNum = block.getTopRowNum(); rowNum <= block.getBottomRowNum(); rowNum++)
         {
+            // All rows above this one are finished.
+            if (myRowSpooler != null)
+                myRowSpooler.spoolRowsBefore(rowNum);
             Row row = sheet.getRow(rowNum);
             if (row != null)
             {
@@ -73,15 +96,19 @@ public class BlockTransformer
                             cellProcessed = transformer.transform(cell, workbookContext, context);
                         else
                         {
-                            // Don't process, but place it in the Map to mark it as
-                            // processed anyway.
+                            // Don't process, but mark it as processed anyway.
                             cellProcessed = true;
-                            processedCells.put(SheetUtil.getCellKey(cell), cell);
+                            processedCells.add(cell);
                         }
                     }
                     else
                         cellProcessed = true;
 
+                    // A loop tag may have spooled this row, once all of its
+                    // cells were processed.
+                    if (myRowSpooler != null && sheet.getRow(rowNum) != row)
+                        break;
+
                     // It's possible that the block shrank during processing.
                     // Don't run off the Block!
                     endCellNum = block.getRightColNum();
@@ -21,6 +21,7 @@ import net.sf.jett.exception.TagParseException;
 import net.sf.jett.exception.TransformException;
 import net.sf.jett.expression.Expression;
 import net.sf.jett.model.Block;
+import net.sf.jett.model.ProcessedCells;
 import net.sf.jett.model.WorkbookContext;
 import net.sf.jett.parser.TagParser;
 import net.sf.jett.tag.Tag;
@@ -61,11 +62,12 @@ public class CellTransformer
     public boolean transform(Cell cell, WorkbookContext workbookContext, TagContext cellContext)
     {
         Map<String, Object> beans = cellContext.getBeans();
-        Map<String, Cell> processedCells = cellContext.getProcessedCellsMap();
+        ProcessedCells processedCells = cellContext.getProcessedCells();
 
         // Make sure this Cell hasn't already been processed.
-        String key = SheetUtil.getCellKey(cell);
-        if (processedCells.containsKey(key))
+        int rowNum = cell.getRowIndex();
+        int colNum = cell.getColumnIndex();
+        if (processedCells.contains(rowNum, colNum))
             return true;
 
         exposeCell(beans, cell);
@@ -99,7 +101,7 @@ public class CellTransformer
         if (!fireBeforeCellProcessedEvent(workbookContext, cell, beans, oldValue))
         {
             // Mark as processed without actually processing it.
-            processedCells.put(key, cell);
+            processedCells.add(rowNum, colNum);
             return true;
         }
 
@@ -169,7 +171,7 @@ public class CellTransformer
         {
             fireCellProcessedEvent(workbookContext, cell, beans, oldValue, newValue);
             // Only mark it as processed if the Cell has actually been processed.
-            processedCells.put(key, cell);
+            processedCells.add(rowNum, colNum);
         }
         return cellProcessed;
     }
@@ -241,7 +243,7 @@ public class CellTransformer
         TagLibraryRegistry registry = workbookContext.getRegistry();
         Map<String, Object> beans = cellContext.getBeans();
         Sheet sheet = cellContext.getSheet();
-        Map<String, Cell> processedCells = cellContext.getProcessedCellsMap();
+        ProcessedCells processedCells = cellContext.getProcessedCells();
         String value = cell.getStringCellValue();
         RichTextString richTextString = cell.getRichStringCellValue();
         Block newBlock;
@@ -273,18 +275,20 @@ public class CellTransformer
             context.setBeans(beans);
             context.setBlock(newBlock);
             context.setSheet(sheet);
-            context.setProcessedCellsMap(processedCells);
+            context.setProcessedCells(processedCells);
             context.setDrawing(cellContext.getDrawing());
-            context.setMergedRegions(cellContext.getMergedRegions());
+            context.setSheetMergedRegions(cellContext.getSheetMergedRegions());
             context.setFormulaSuffix(cellContext.getFormulaSuffix());
+            // Only tags at the top level of the sheet may spool rows.
+            if (cellContext.getCurrentTag() == null)
+                context.setRowSpooler(cellContext.getRowSpooler());
 
             tag = registry.createTag(parser, context, workbookContext);
             if (tag == null)
             {
-                Map<String, String> tagLocationsMap = workbookContext.getTagLocationsMap();
                 String cellRef = SheetUtil.getCellKey(cell);
                 String location = " at " + cellRef;
-                String origCellRef = tagLocationsMap.get(cellRef);
+                String origCellRef = workbookContext.getTagLocations().get(cell);
                 if (origCellRef != null)
                 {
                     location += " (originally located at " + origCellRef + ")";
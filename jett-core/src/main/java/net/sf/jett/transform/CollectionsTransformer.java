@@ -18,6 +18,7 @@ import net.sf.jett.exception.TagParseException;
 import net.sf.jett.expression.Expression;
 import net.sf.jett.expression.ExpressionFactory;
 import net.sf.jett.model.Block;
+import net.sf.jett.model.ProcessedCells;
 import net.sf.jett.model.WorkbookContext;
 import net.sf.jett.parser.MetadataParser;
 import net.sf.jett.tag.BaseLoopTag;
@@ -58,7 +59,7 @@ public class CollectionsTransformer
     {
         Block parentBlock = cellContext.getBlock();
         Map<String, Object> beans = cellContext.getBeans();
-        Map<String, Cell> processedCells = cellContext.getProcessedCellsMap();
+        ProcessedCells processedCells = cellContext.getProcessedCells();
         Sheet sheet = cellContext.getSheet();
         CreationHelper helper = sheet.getWorkbook().getCreationHelper();
         ExpressionFactory factory = workbookContext.getExpressionFactory();
@@ -215,9 +216,9 @@ public class CollectionsTransformer
         context.setBeans(beans);
         context.setBlock(containingBlock);
         context.setSheet(sheet);
-        context.setProcessedCellsMap(processedCells);
+        context.setProcessedCells(processedCells);
         context.setDrawing(cellContext.getDrawing());
-        context.setMergedRegions(cellContext.getMergedRegions());
+        context.setSheetMergedRegions(cellContext.getSheetMergedRegions());
         context.setFormulaSuffix(cellContext.getFormulaSuffix());
 
         // Create an implicit MultiForEach tag.
@@ -363,7 +364,6 @@ public class CollectionsTransformer
     private List<String> findCollectionsInBlock(Cell startTag, Block block,
                                                 WorkbookContext context, Map<String, Object> beans)
     {
-        ExpressionFactory factory = context.getExpressionFactory();
         int startColumnIndex = startTag.getColumnIndex();
         int startRowIndex = startTag.getRowIndex();
         int left = block.getLeftColNum();
@@ -373,14 +373,10 @@ public class CollectionsTransformer
                 block, startRowIndex, startColumnIndex);
         List<String> collectionNames = new ArrayList<>();
 
-        // Don't report errors for some expressions whose identifiers haven't
-        // been defined yet, e.g. a looping variable defined in a subsequent
-        // forEach tag.  Store the current silent/lenient flags for restoration
-        // later.
-        boolean lenient = factory.isLenient();
-        boolean silent = factory.isSilent();
-        factory.setLenient(true);
-        factory.setSilent(true);
+        // Errors aren't reported for some expressions whose identifiers
+        // haven't been defined yet, e.g. a looping variable defined in a
+        // subsequent forEach tag, because the implicit collection probes are
+        // evaluated quietly.
 
         Row startRow = startTag.getRow();
         int startCellNum = startColumnIndex;
@@ -435,10 +431,6 @@ public class CollectionsTransformer
             }
         }  // End loop through rows.
 
-        // Restore old settings.
-        factory.setLenient(lenient);
-        factory.setSilent(silent);
-
         return collectionNames;
     }
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package net.sf.jett.transform;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.util.IOUtils;
+
+import net.sf.jett.formula.CellRef;
+import net.sf.jett.formula.Formula;
+import net.sf.jett.model.CellStyleCache;
+import net.sf.jett.model.CellStyleKey;
+import net.sf.jett.model.FontCache;
+import net.sf.jett.model.FontKey;
+import net.sf.jett.model.TagLocations;
+import net.sf.jett.util.FormulaUtil;
+
+/**
+ * <p>A <code>CompiledTemplate</code> is a template spreadsheet that has been
+ * read and scanned once, so that it can be transformed many times without
+ * reading the template file again or scanning it for JETT formulas and tag
+ * locations again.  It holds the raw bytes of the template spreadsheet, plus
+ * the <code>Map</code> of JETT formulas, the <code>Map</code> of tag
+ * locations, the <code>Map</code> of cell references, and the indexes of the
+ * pre-existing cell styles and fonts that are normally gathered at the start
+ * of every transformation.</p>
+ *
+ * <p>A <code>CompiledTemplate</code> is immutable, so it may be shared among
+ * threads.  Each transformation receives its own <code>Workbook</code>
+ * created from the template bytes, and its own copies of the gathered
+ * <code>Maps</code>, which are modified as the transformation proceeds.
+ * Pass it to <code>ExcelTransformer.transform(CompiledTemplate, Map)</code>
+ * or <code>ExcelTransformer.transform(CompiledTemplate, OutputStream, Map)
+ * </code>.</p>
+ *
+ * <p>Because JETT transforms a <code>Workbook</code> in place, cells are still
+ * walked and evaluated during every transformation; compiling saves the
+ * template read and the up-front scan of the template.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public final class CompiledTemplate
+{
+    private static final Logger logger = LogManager.getLogger();
+
+    private final byte[] myTemplateBytes;
+    private final Map<String, Formula> myFormulaMap;
+    private final TagLocations myTagLocations;
+    private final Map<String, List<CellRef>> myCellRefMap;
+    private final Map<CellStyleKey, Integer> myCellStyleIndexes;
+    private final Map<FontKey, Short> myFontIndexes;
+
+    /**
+     * Constructs a <code>CompiledTemplate</code> with already gathered
+     * information.
+     * @param templateBytes The bytes of the template spreadsheet.
+     * @param formulaMap The <code>Map</code> of formula keys to
+     *    <code>Formulas</code>.
+     * @param tagLocations The <code>TagLocations</code> of tags in the
+     *    template.
+     * @param cellRefMap The <code>Map</code> of cell keys to
+     *    <code>CellRefs</code>.
+     * @param cellStyleIndexes The <code>Map</code> of
+     *    <code>CellStyleKeys</code> to cell style indexes.
+     * @param fontIndexes The <code>Map</code> of <code>FontKeys</code> to font
+     *    indexes.
+     */
+    private CompiledTemplate(byte[] templateBytes, Map<String, Formula> formulaMap,
+                             TagLocations tagLocations, Map<String, List<CellRef>> cellRefMap,
+                             Map<CellStyleKey, Integer> cellStyleIndexes, Map<FontKey, Short> fontIndexes)
+    {
+        myTemplateBytes = templateBytes;
+        myFormulaMap = Collections.unmodifiableMap(formulaMap);
+        myTagLocations = tagLocations;
+        Map<String, List<CellRef>> cellRefs = new HashMap<>();
+        for (Map.Entry<String, List<CellRef>> entry : cellRefMap.entrySet())
+        {
+            cellRefs.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+        }
+        myCellRefMap = Collections.unmodifiableMap(cellRefs);
+        myCellStyleIndexes = Collections.unmodifiableMap(cellStyleIndexes);
+        myFontIndexes = Collections.unmodifiableMap(fontIndexes);
+    }
+
+    /**
+     * Compiles the template spreadsheet represented by the given filename.
+     * @param inFilename The template spreadsheet filename.
+     * @return A <code>CompiledTemplate</code>.
+     * @throws IOException If there is a problem reading the template
+     *    spreadsheet.
+     * @throws InvalidFormatException If there is a problem creating a
+     *    <code>Workbook</code> object.
+     */
+    public static CompiledTemplate compile(String inFilename) throws IOException, InvalidFormatException
+    {
+        try (InputStream fileIn = new BufferedInputStream(new FileInputStream(inFilename)))
+        {
+            return compile(fileIn);
+        }
+    }
+
+    /**
+     * Compiles the template spreadsheet represented by the given
+     * <code>InputStream</code>.  The stream is read fully but not closed.
+     * @param is The <code>InputStream</code> from the template spreadsheet.
+     * @return A <code>CompiledTemplate</code>.
+     * @throws IOException If there is a problem reading the template
+     *    spreadsheet.
+     * @throws InvalidFormatException If there is a problem creating a
+     *    <code>Workbook</code> object.
+     */
+    public static CompiledTemplate compile(InputStream is) throws IOException, InvalidFormatException
+    {
+        logger.info("Compiling a template from an InputStream.");
+        byte[] templateBytes = IOUtils.toByteArray(is);
+        Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(templateBytes));
+
+        SheetTransformer transformer = new SheetTransformer();
+        Map<String, Formula> formulaMap = new HashMap<>();
+        TagLocations tagLocations = new TagLocations();
+        for (int i = 0; i < workbook.getNumberOfSheets(); i++)
+        {
+            Sheet sheet = workbook.getSheetAt(i);
+            transformer.gatherFormulasAndTagLocations(sheet, formulaMap, tagLocations);
+        }
+        Map<String, List<CellRef>> cellRefMap = FormulaUtil.createCellRefMap(formulaMap);
+        Map<CellStyleKey, Integer> cellStyleIndexes = new CellStyleCache(workbook).getCellStyleIndexes();
+        Map<FontKey, Short> fontIndexes = new FontCache(workbook).getFontIndexes();
+        logger.info("Done compiling a template: {} formulas, {} tag locations, {} cell styles, {} fonts.",
+                formulaMap.size(), tagLocations.size(), cellStyleIndexes.size(), fontIndexes.size());
+        return new CompiledTemplate(templateBytes, formulaMap, tagLocations, cellRefMap,
+                cellStyleIndexes, fontIndexes);
+    }
+
+    /**
+     * Creates a new <code>Workbook</code> from the template bytes.
+     * @return A new <code>Workbook</code>.
+     * @throws IOException If there is a problem reading the template bytes.
+     * @throws InvalidFormatException If there is a problem creating a
+     *    <code>Workbook</code> object.
+     */
+    Workbook createWorkbook() throws IOException, InvalidFormatException
+    {
+        return WorkbookFactory.create(new ByteArrayInputStream(myTemplateBytes));
+    }
+
+    /**
+     * Returns a new, modifiable copy of the <code>Map</code> of formula keys
+     * to <code>Formulas</code>.
+     * @return A copy of the formula map.
+     */
+    Map<String, Formula> copyFormulaMap()
+    {
+        return new HashMap<>(myFormulaMap);
+    }
+
+    /**
+     * Returns a new, modifiable copy of the <code>TagLocations</code> of tags
+     * in the template.
+     * @return A copy of the tag locations.
+     */
+    TagLocations copyTagLocations()
+    {
+        return new TagLocations(myTagLocations);
+    }
+
+    /**
+     * Returns a new, modifiable copy of the <code>Map</code> of cell keys to
+     * <code>CellRefs</code>, including copies of the <code>Lists</code>.
+     * @return A copy of the cell ref map.
+     */
+    Map<String, List<CellRef>> copyCellRefMap()
+    {
+        Map<String, List<CellRef>> cellRefMap = new HashMap<>();
+        for (Map.Entry<String, List<CellRef>> entry : myCellRefMap.entrySet())
+        {
+            cellRefMap.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return cellRefMap;
+    }
+
+    /**
+     * Creates a <code>CellStyleCache</code> on a <code>Workbook</code> created
+     * from this template, without scanning its <code>CellStyles</code> again.
+     * @param workbook A <code>Workbook</code> created by
+     *    <code>createWorkbook</code>.
+     * @return A <code>CellStyleCache</code>.
+     */
+    CellStyleCache createCellStyleCache(Workbook workbook)
+    {
+        return new CellStyleCache(workbook, myCellStyleIndexes);
+    }
+
+    /**
+     * Creates a <code>FontCache</code> on a <code>Workbook</code> created
+     * from this template, without scanning its <code>Fonts</code> again.
+     * @param workbook A <code>Workbook</code> created by
+     *    <code>createWorkbook</code>.
+     * @return A <code>FontCache</code>.
+     */
+    FontCache createFontCache(Workbook workbook)
+    {
+        return new FontCache(workbook, myFontIndexes);
+    }
+
+    /**
+     * Returns the number of JETT formulas found in the template.
+     * @return The number of JETT formulas.
+     */
+    public int getNumFormulas()
+    {
+        return myFormulaMap.size();
+    }
+}
@@ -2,16 +2,37 @@ package net.sf.jett.transform;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -20,10 +41,12 @@ import org.apache.poi.ss.usermodel.Name;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import net.sf.jett.event.CellListener;
 import net.sf.jett.event.SheetListener;
-import net.sf.jett.expression.Expression;
+import net.sf.jett.exception.TransformException;
 import net.sf.jett.expression.ExpressionFactory;
 import net.sf.jett.formula.CellRef;
 import net.sf.jett.formula.Formula;
@@ -31,6 +54,7 @@ import net.sf.jett.formula.Formula;
 import net.sf.jett.model.CellStyleCache;
 import net.sf.jett.model.FontCache;
 import net.sf.jett.model.Style;
+import net.sf.jett.model.TagLocations;
 import net.sf.jett.model.WorkbookContext;
 import net.sf.jett.parser.StyleParser;
 import net.sf.jett.tag.JtTagLibrary;
@@ -84,6 +108,18 @@ import net.sf.jett.util.FormulaUtil;
  * transformed spreadsheet, which can be written to a file if desired.</p>
  * <p>The sixth method performs the actual transformation on a
  * <code>Workbook</code>, applying specific bean values to specific sheets.</p>
+ * <p>When the same template is transformed many times, it can be compiled
+ * once into a {@link CompiledTemplate} and passed to
+ * <code>transform(CompiledTemplate, Map)</code> or
+ * <code>transform(CompiledTemplate, OutputStream, Map)</code>, which skip
+ * reading and scanning the template file on every call.  The
+ * <code>transformBatch</code> methods transform a <code>CompiledTemplate</code>
+ * once for each of many <code>Maps</code> of beans, on many threads, writing
+ * each result to its own <code>OutputStream</code>.  The
+ * <code>transformAsync</code> methods run one transformation on a given
+ * <code>Executor</code> and return a {@link TransformFuture} of its result,
+ * which runs listeners when it's done, so that no thread has to wait for
+ * it.</p>
  * <p>The <code>ExcelTransformer</code>'s settings can be changed with the
  * other public methods of this class, including recognizing custom tag
  * libraries, adding <code>CellListeners</code>, using fixed size collections,
@@ -93,6 +129,13 @@ import net.sf.jett.util.FormulaUtil;
  * register custom functions in the JEXL Engine, and passing CSS files/text to
  * be recognized by the {@link net.sf.jett.tag.StyleTag} later.</p>
  *
+ * <p>Once configured, an <code>ExcelTransformer</code> may be shared by many
+ * threads, each calling <code>transform</code> concurrently on its own
+ * template or <code>Workbook</code>.  All state that changes during a
+ * transformation, including the cache of collection names found in
+ * expressions, is kept in a <code>WorkbookContext</code> created for that
+ * transformation.</p>
+ *
  * @author Randy Gettman
  */
 public class ExcelTransformer
@@ -105,10 +148,13 @@ public class ExcelTransformer
     private List<String> myFixedSizeCollectionNames;
     private List<String> myNoImplicitProcessingCollectionNames;
     private Map<String, Style> myStyleMap;
-    private boolean amIEvaluatingFormulas;
-    private boolean amIForcingRecalculationOnOpening;
-    private boolean amIChangingForcingRecalculation;
+    private volatile boolean amIEvaluatingFormulas;
+    private volatile boolean amIForcingRecalculationOnOpening;
+    private volatile boolean amIChangingForcingRecalculation;
     private ExpressionFactory myExpressionFactory;
+    private volatile int myStreamingWindowSize;
+    private volatile int mySheetParallelism;
+    private volatile AsyncLimiter myAsyncLimiter;
 
     /**
      * Construct an <code>ExcelTransformer</code>.
@@ -117,15 +163,18 @@ public class ExcelTransformer
     {
         myRegistry = new TagLibraryRegistry();
         registerTagLibrary("jt", JtTagLibrary.getJtTagLibrary());
-        myCellListeners = new ArrayList<>();
-        mySheetListeners = new ArrayList<>();
-        myFixedSizeCollectionNames = new ArrayList<>();
-        myNoImplicitProcessingCollectionNames = new ArrayList<>();
-        myStyleMap = new HashMap<>();
+        myCellListeners = new CopyOnWriteArrayList<>();
+        mySheetListeners = new CopyOnWriteArrayList<>();
+        myFixedSizeCollectionNames = new CopyOnWriteArrayList<>();
+        myNoImplicitProcessingCollectionNames = new CopyOnWriteArrayList<>();
+        myStyleMap = new ConcurrentHashMap<>();
         amIEvaluatingFormulas = false;
         amIForcingRecalculationOnOpening = false;
         amIChangingForcingRecalculation = false;
         myExpressionFactory = new ExpressionFactory();
+        myStreamingWindowSize = 0;
+        mySheetParallelism = 1;
+        myAsyncLimiter = null;
     }
 
     /**
@@ -221,6 +270,33 @@ public class ExcelTransformer
         myExpressionFactory.setCache(size);
     }
 
+    /**
+     * Sets the maximum number of JEXL Expressions that are kept once created
+     * from expression text.  When full, the least recently used expression is
+     * evicted.  Default is
+     * {@link ExpressionFactory#DEF_EXPRESSION_CACHE_SIZE}.  Its hit, miss, and
+     * eviction counts are available from {@link #getExpressionFactory()}.
+     * @param maxSize The maximum number of cached JEXL Expressions.
+     * @throws IllegalArgumentException If <code>maxSize</code> isn't
+     *    positive.
+     * @since 0.11.1
+     */
+    public void setExpressionCacheSize(int maxSize)
+    {
+        myExpressionFactory.setExpressionCacheSize(maxSize);
+    }
+
+    /**
+     * Returns the <code>ExpressionFactory</code> that creates and caches the
+     * JEXL Expressions for this <code>ExcelTransformer</code>.
+     * @return The <code>ExpressionFactory</code>.
+     * @since 0.11.1
+     */
+    public ExpressionFactory getExpressionFactory()
+    {
+        return myExpressionFactory;
+    }
+
     /**
      * Sets whether the JEXL "debug" flag is set.  Default is
      * <code>false</code>.
@@ -332,6 +408,100 @@ public class ExcelTransformer
         amIForcingRecalculationOnOpening = forceRecalc;
     }
 
+    /**
+     * <p>Turns on streaming mode for the <code>transform</code> methods that
+     * write the resultant spreadsheet to an output filename.  In streaming
+     * mode, for .xlsx spreadsheets, rows that JETT has finished transforming
+     * are moved out of memory to a temporary file as the transformation
+     * progresses, and all rows are written out through a sliding window of
+     * the given number of rows.  A row is finished once JETT has moved past
+     * it at the top level of its sheet.  A loop tag at the top level of a
+     * sheet that copies its block down also finishes the rows of each
+     * iteration as it goes, so a single loop over many items doesn't keep
+     * all of its rows in memory, unless it groups its rows, has an
+     * "onProcessed" listener, or has cells beside it that haven't been
+     * processed yet.  This defaults to <code>0</code>, which turns off
+     * streaming mode.  This has no effect on .xls spreadsheets.</p>
+     *
+     * <p>Streaming mode has the following limitations.  JETT formulas aren't
+     * replaced until all sheets are transformed, so rows at and after the
+     * first row containing a JETT formula stay in memory, as do rows at and
+     * after the first row containing rich text with formatting runs or an
+     * array formula.  Formulas in streamed rows can't be evaluated by JETT,
+     * so if any rows were streamed, the workbook is instead marked for Excel
+     * to recalculate formulas when it's opened.  <code>SheetListeners</code>
+     * will only see the rows that haven't been streamed.</p>
+     * @param windowSize The number of rows to keep in memory when writing,
+     *    or <code>0</code> to turn off streaming mode.
+     * @throws IllegalArgumentException If <code>windowSize</code> is
+     *    negative.
+     * @since 0.11.1
+     */
+    public void setStreamingWindowSize(int windowSize)
+    {
+        if (windowSize < 0)
+            throw new IllegalArgumentException("Streaming window size must not be negative: " + windowSize);
+        myStreamingWindowSize = windowSize;
+    }
+
+    /**
+     * <p>Sets the number of threads that transform sheets concurrently in the
+     * <code>transform</code> methods that take sheet specific beans.  This
+     * defaults to <code>1</code>, which transforms all sheets one after
+     * another in the calling thread.</p>
+     *
+     * <p>With more than one thread, the template is copied into one
+     * <code>Workbook</code> per thread, each thread transforms a contiguous
+     * range of the resulting sheets in its own <code>Workbook</code>, and the
+     * transformed sheets are then copied into the resultant
+     * <code>Workbook</code>, with any new cell styles and fonts matched or
+     * created there.  This only happens when the sheets are independent of
+     * each other: no sheet name may contain an expression, e.g. for implicit
+     * cloning, each sheet must have its own beans map, no formula may refer
+     * to another sheet, and the sheets must not contain pictures, comments,
+     * hyperlinks, conditional formatting, or data validations.  Otherwise,
+     * or if a transformed sheet turns out to contain any pictures or
+     * comments, all sheets are transformed one after another as usual.</p>
+     *
+     * <p><code>CellListeners</code> and <code>SheetListeners</code> are
+     * called concurrently from the transforming threads, with the cells and
+     * sheets of the per-thread <code>Workbooks</code>, and the "workbook" bean
+     * refers to the per-thread <code>Workbook</code> during transformation.
+     * Streaming mode doesn't apply to sheets transformed concurrently.</p>
+     * @param numThreads The number of threads that transform sheets.
+     * @throws IllegalArgumentException If <code>numThreads</code> is less
+     *    than <code>1</code>.
+     * @since 0.11.1
+     */
+    public void setSheetParallelism(int numThreads)
+    {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Sheet parallelism must be at least 1: " + numThreads);
+        mySheetParallelism = numThreads;
+    }
+
+    /**
+     * <p>Limits the number of transformations started by the
+     * <code>transformAsync</code> methods that may run at the same time, so
+     * that a burst of requests doesn't hold more <code>Workbooks</code> in
+     * memory than the heap can hold.  A task over the limit is queued by this
+     * <code>ExcelTransformer</code>, and handed to its <code>Executor</code>
+     * when another one finishes, so neither the calling thread nor any
+     * <code>Executor</code> thread waits for a permit.  This defaults to <code>0</code>, which means no
+     * limit.  Changing the limit doesn't affect tasks already submitted.</p>
+     * @param maxTransforms The maximum number of asynchronous
+     *    transformations running at once, or <code>0</code> for no limit.
+     * @throws IllegalArgumentException If <code>maxTransforms</code> is
+     *    negative.
+     * @since 0.11.1
+     */
+    public void setMaxAsyncTransforms(int maxTransforms)
+    {
+        if (maxTransforms < 0)
+            throw new IllegalArgumentException("Maximum asynchronous transforms must not be negative: " + maxTransforms);
+        myAsyncLimiter = (maxTransforms > 0) ? new AsyncLimiter(maxTransforms) : null;
+    }
+
     /**
      * Transforms the template Excel spreadsheet represented by the given input
      * filename.  Applies the given <code>Map</code> of beans to all sheets.
@@ -352,8 +522,9 @@ public class ExcelTransformer
         try (FileOutputStream fileOut = new FileOutputStream(outFilename))
         {
             Workbook workbook = WorkbookFactory.create(new File(inFilename));
-            transform(workbook, beans);
-            workbook.write(fileOut);
+            SheetTransformer sheetTransformer = new SheetTransformer();
+            transform(workbook, beans, sheetTransformer, null, myStreamingWindowSize > 0);
+            write(workbook, sheetTransformer, fileOut);
         }
         logger.info("Done transforming file \"{}\" into file \"{}\".", inFilename, outFilename);
     }
@@ -391,20 +562,577 @@ public class ExcelTransformer
      */
     public void transform(Workbook workbook, Map<String, Object> beans)
     {
-        logger.info("Transforming a Workbook.");
-        // This is done for performance reasons, related to identifying
-        // collection names in expression text, which may vary from beans
-        // map to beans map.
-        Expression.clearExpressionToCollNamesMap();
+        transform(workbook, beans, new SheetTransformer(), null, false);
+    }
+
+    /**
+     * Transforms a new <code>Workbook</code> created from the given
+     * <code>CompiledTemplate</code>.  Applies the given <code>Map</code> of
+     * beans to all sheets.  The template isn't read or scanned again.
+     * @param template A <code>CompiledTemplate</code>.
+     * @param beans The <code>Map</code> of bean names to bean objects.
+     * @return A new <code>Workbook</code> object capable of being written to an
+     *    <code>OutputStream</code>.
+     * @throws IOException If there is a problem creating the
+     *    <code>Workbook</code> from the template bytes.
+     * @throws InvalidFormatException If there is a problem creating a
+     *    <code>Workbook</code> object.
+     * @since 0.11.1
+     */
+    public Workbook transform(CompiledTemplate template, Map<String, Object> beans)
+            throws IOException, InvalidFormatException
+    {
+        logger.info("Creating a Workbook from a CompiledTemplate.");
+        Workbook workbook = template.createWorkbook();
+        transform(workbook, beans, new SheetTransformer(), template, false);
+        return workbook;
+    }
+
+    /**
+     * Transforms a new <code>Workbook</code> created from the given
+     * <code>CompiledTemplate</code>.  Applies the given <code>Map</code> of
+     * beans to all sheets.  Writes the resultant Excel spreadsheet to the
+     * given <code>OutputStream</code>, streaming it if a streaming window size
+     * has been set.  The template isn't read or scanned again.
+     * @param template A <code>CompiledTemplate</code>.
+     * @param out The <code>OutputStream</code> to which to write the resultant
+     *    spreadsheet.  It is not closed.
+     * @param beans The <code>Map</code> of bean names to bean objects.
+     * @throws IOException If there is a problem creating or writing any Excel
+     *    spreadsheet.
+     * @throws InvalidFormatException If there is a problem creating a
+     *    <code>Workbook</code> object.
+     * @see #setStreamingWindowSize(int)
+     * @since 0.11.1
+     */
+    public void transform(CompiledTemplate template, OutputStream out, Map<String, Object> beans)
+            throws IOException, InvalidFormatException
+    {
+        logger.info("Transforming a CompiledTemplate to an OutputStream.");
+        Workbook workbook = template.createWorkbook();
         SheetTransformer sheetTransformer = new SheetTransformer();
-        WorkbookContext context = createContext(workbook, sheetTransformer);
-        exposeWorkbook(beans, workbook);
-        for (int s = 0; s < workbook.getNumberOfSheets(); s++)
+        transform(workbook, beans, sheetTransformer, template, myStreamingWindowSize > 0);
+        write(workbook, sheetTransformer, out);
+        logger.info("Done transforming a CompiledTemplate to an OutputStream.");
+    }
+
+    /**
+     * Transforms the given <code>CompiledTemplate</code> once for each
+     * <code>Map</code> of beans supplied by the given <code>Iterator</code>,
+     * like a mail merge, using one thread per available processor.  See
+     * <code>transformBatch(CompiledTemplate, Iterator, OutputStreamFactory,
+     * Executor)</code>.
+     * @param template A <code>CompiledTemplate</code>.
+     * @param beansIterator An <code>Iterator</code> over the <code>Maps</code>
+     *    of beans, one for each resultant spreadsheet.
+     * @param outFactory The <code>OutputStreamFactory</code> that supplies the
+     *    <code>OutputStream</code> for each resultant spreadsheet.
+     * @return A <code>BatchResult</code> with the latency of each item and any
+     *    failures.
+     * @since 0.11.1
+     */
+    public BatchResult transformBatch(CompiledTemplate template, Iterator<Map<String, Object>> beansIterator,
+                                      OutputStreamFactory outFactory)
+    {
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try
+        {
+            return transformBatch(template, beansIterator, outFactory, executor, 2 * numThreads);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * <p>Transforms the given <code>CompiledTemplate</code> once for each
+     * <code>Map</code> of beans supplied by the given <code>Iterator</code>,
+     * like a mail merge, writing each resultant spreadsheet to an
+     * <code>OutputStream</code> from the given
+     * <code>OutputStreamFactory</code>, which is closed afterwards.  The
+     * template is neither read nor scanned again for any item.</p>
+     *
+     * <p>The items are transformed by tasks run on the given
+     * <code>Executor</code>, which is not shut down.  The
+     * <code>Iterator</code> is only used by the calling thread, and only a few
+     * items more than the number of tasks that may run at once are taken from
+     * it ahead of time, so it may lazily supply a very large number of
+     * <code>Maps</code>.  This method returns when all items are done.</p>
+     *
+     * <p>A failed item doesn't stop the batch; its <code>Exception</code> is
+     * reported in the <code>BatchResult</code>.  An <code>Error</code> stops
+     * the batch and is rethrown, as is any exception thrown by the
+     * <code>Iterator</code>.  When the batch stops, items not yet started are
+     * skipped, and this method waits for the items already started before
+     * rethrowing, so that no task is left writing.  If the calling thread is
+     * interrupted, the items already started are cancelled instead of waited
+     * for.</p>
+     * @param template A <code>CompiledTemplate</code>.
+     * @param beansIterator An <code>Iterator</code> over the <code>Maps</code>
+     *    of beans, one for each resultant spreadsheet.
+     * @param outFactory The <code>OutputStreamFactory</code> that supplies the
+     *    <code>OutputStream</code> for each resultant spreadsheet.
+     * @param executor The <code>Executor</code> that runs the
+     *    transformations.
+     * @param maxInFlight The maximum number of items submitted to the
+     *    <code>Executor</code> and not yet done.  This should be at least the
+     *    number of threads of the <code>Executor</code>.
+     * @return A <code>BatchResult</code> with the latency of each item and any
+     *    failures.
+     * @throws TransformException If the calling thread is interrupted.
+     * @since 0.11.1
+     */
+    public BatchResult transformBatch(final CompiledTemplate template, Iterator<Map<String, Object>> beansIterator,
+                                      final OutputStreamFactory outFactory, Executor executor, int maxInFlight)
+    {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("The maximum number of items in flight must be at least 1: " + maxInFlight);
+        logger.info("Transforming a batch from a CompiledTemplate.");
+        long start = System.nanoTime();
+        BatchResult result = new BatchResult();
+        CompletionService<BatchItem> completionService = new ExecutorCompletionService<>(executor);
+        Set<Future<BatchItem>> pending = new HashSet<>();
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        int numSubmitted = 0;
+        int numDone = 0;
+        boolean completed = false;
+        try
+        {
+            while (beansIterator.hasNext() || numDone < numSubmitted)
+            {
+                if (beansIterator.hasNext() && numSubmitted - numDone < maxInFlight)
+                {
+                    final int index = numSubmitted;
+                    final Map<String, Object> beans = beansIterator.next();
+                    pending.add(completionService.submit(new Callable<BatchItem>()
+                    {
+                        @Override
+                        public BatchItem call()
+                        {
+                            if (stopped.get())
+                                return new BatchItem(index, 0, null);
+                            long itemStart = System.nanoTime();
+                            Exception failure = null;
+                            try (OutputStream out = outFactory.createOutputStream(index, beans))
+                            {
+                                transform(template, out, beans);
+                            }
+                            catch (Exception e)
+                            {
+                                logger.warn("Item {} of the batch failed: {}", index, e.getMessage());
+                                failure = e;
+                            }
+                            return new BatchItem(index, System.nanoTime() - itemStart, failure);
+                        }
+                    }));
+                    numSubmitted++;
+                }
+                else
+                {
+                    Future<BatchItem> future = completionService.take();
+                    pending.remove(future);
+                    BatchItem item = future.get();
+                    result.record(item.myIndex, item.myLatencyNanos, item.myFailure);
+                    numDone++;
+                }
+            }
+            completed = true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new TransformException("Interrupted while transforming a batch.", e);
+        }
+        catch (ExecutionException e)
+        {
+            // Items catch their Exceptions, so this can only be an Error.
+            Throwable cause = e.getCause();
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new TransformException(cause.getMessage(), cause);
+        }
+        finally
+        {
+            if (!completed)
+            {
+                stopped.set(true);
+                stopBatch(completionService, pending);
+            }
+        }
+        result.setElapsedNanos(System.nanoTime() - start);
+        logger.info("Done transforming a batch: {}", result);
+        return result;
+    }
+
+    /**
+     * Waits for the items of a stopped batch that are still pending, so that
+     * none of them is left writing.  Items that haven't started yet skip
+     * themselves.  If the calling thread is, or becomes, interrupted, the
+     * pending items are cancelled instead, and the interrupt is kept.
+     * @param completionService The <code>CompletionService</code> of the
+     *    batch.
+     * @param pending The <code>Set</code> of <code>Futures</code> of items
+     *    submitted and not yet taken.
+     * @since 0.11.1
+     */
+    private static void stopBatch(CompletionService<BatchItem> completionService, Set<Future<BatchItem>> pending)
+    {
+        while (!pending.isEmpty())
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                for (Future<BatchItem> future : pending)
+                {
+                    future.cancel(true);
+                }
+                return;
+            }
+            try
+            {
+                pending.remove(completionService.take());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Transforms a new <code>Workbook</code> created from the given
+     * <code>CompiledTemplate</code> on the given <code>Executor</code>, like
+     * <code>transform(CompiledTemplate, Map)</code>, without waiting for it.
+     * @param template A <code>CompiledTemplate</code>.
+     * @param beans The <code>Map</code> of bean names to bean objects.
+     * @param executor The <code>Executor</code> that runs the
+     *    transformation.
+     * @return A <code>TransformFuture</code> of the resultant
+     *    <code>Workbook</code>, to which listeners may be added.  Its
+     *    <code>get</code> method throws an <code>ExecutionException</code>
+     *    wrapping any exception thrown by the transformation.
+     * @see #setMaxAsyncTransforms(int)
+     * @since 0.11.1
+     */
+    public TransformFuture<Workbook> transformAsync(final CompiledTemplate template, final Map<String, Object> beans,
+                                                    Executor executor)
+    {
+        return submitAsync(new Callable<Workbook>()
+        {
+            @Override
+            public Workbook call() throws IOException, InvalidFormatException
+            {
+                return transform(template, beans);
+            }
+        }, executor);
+    }
+
+    /**
+     * Transforms a new <code>Workbook</code> created from the given
+     * <code>CompiledTemplate</code> on the given <code>Executor</code>, and
+     * writes it to the given <code>OutputStream</code>, like
+     * <code>transform(CompiledTemplate, OutputStream, Map)</code>, without
+     * waiting for it.
+     * @param template A <code>CompiledTemplate</code>.
+     * @param out The <code>OutputStream</code> to which to write the resultant
+     *    spreadsheet.  It is not closed.
+     * @param beans The <code>Map</code> of bean names to bean objects.
+     * @param executor The <code>Executor</code> that runs the
+     *    transformation.
+     * @return A <code>TransformFuture</code> that is done when the resultant
+     *    spreadsheet has been written, to which listeners may be added.  Its
+     *    <code>get</code> method throws an <code>ExecutionException</code>
+     *    wrapping any exception thrown by the transformation.
+     * @see #setMaxAsyncTransforms(int)
+     * @since 0.11.1
+     */
+    public TransformFuture<Void> transformAsync(final CompiledTemplate template, final OutputStream out,
+                                                final Map<String, Object> beans, Executor executor)
+    {
+        return submitAsync(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws IOException, InvalidFormatException
+            {
+                transform(template, out, beans);
+                return null;
+            }
+        }, executor);
+    }
+
+    /**
+     * Transforms the template Excel spreadsheet represented by the given input
+     * filename on the given <code>Executor</code>, and writes it to the given
+     * output filename, like <code>transform(String, String, Map)</code>,
+     * without waiting for it.
+     * @param inFilename The template spreadsheet filename.
+     * @param outFilename The resultant spreadsheet filename.
+     * @param beans The <code>Map</code> of bean names to bean objects.
+     * @param executor The <code>Executor</code> that runs the
+     *    transformation.
+     * @return A <code>TransformFuture</code> that is done when the resultant
+     *    spreadsheet has been written, to which listeners may be added.  Its
+     *    <code>get</code> method throws an <code>ExecutionException</code>
+     *    wrapping any exception thrown by the transformation.
+     * @see #setMaxAsyncTransforms(int)
+     * @since 0.11.1
+     */
+    public TransformFuture<Void> transformAsync(final String inFilename, final String outFilename,
+                                                final Map<String, Object> beans, Executor executor)
+    {
+        return submitAsync(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws IOException, InvalidFormatException
+            {
+                transform(inFilename, outFilename, beans);
+                return null;
+            }
+        }, executor);
+    }
+
+    /**
+     * Runs the given task on the given <code>Executor</code>, right away, or,
+     * if the number of asynchronous transformations is limited and reached,
+     * once another one finishes.
+     * @param task The task.
+     * @param executor The <code>Executor</code>.
+     * @param <T> The type of the task's result.
+     * @return A <code>TransformFuture</code> of the task's result.
+     * @throws RejectedExecutionException If the <code>Executor</code> rejects
+     *    a task that is run right away.
+     */
+    private <T> TransformFuture<T> submitAsync(Callable<T> task, Executor executor)
+    {
+        TransformFuture<T> future = new TransformFuture<>(task);
+        // Tasks are released to the AsyncLimiter they were submitted to, even
+        // if the limit is changed meanwhile.
+        AsyncLimiter limiter = myAsyncLimiter;
+        if (limiter == null)
+            executor.execute(future);
+        else
+            limiter.submit(future, executor);
+        return future;
+    }
+
+    /**
+     * The outcome of one item of a batch transformation.
+     */
+    private static class BatchItem
+    {
+        private final int myIndex;
+        private final long myLatencyNanos;
+        private final Exception myFailure;
+
+        /**
+         * Constructs a <code>BatchItem</code>.
+         * @param index The 0-based index of the item.
+         * @param latencyNanos How long the item took, in nanoseconds.
+         * @param failure The <code>Exception</code> that made the item fail, or
+         *    <code>null</code> if it succeeded.
+         */
+        private BatchItem(int index, long latencyNanos, Exception failure)
+        {
+            myIndex = index;
+            myLatencyNanos = latencyNanos;
+            myFailure = failure;
+        }
+    }
+
+    /**
+     * An <code>AsyncLimiter</code> limits the number of asynchronous
+     * transformations running at once.  Tasks over the limit are queued here,
+     * not on an <code>Executor</code>, and each finishing task hands the next
+     * queued task to its <code>Executor</code>, so no thread ever blocks
+     * waiting for a permit.  If an <code>Executor</code> runs tasks on the
+     * calling thread, queued tasks are started one after another by the
+     * outermost release on that thread, instead of each from inside the
+     * release of the one before, so that a long queue doesn't overflow the
+     * stack.
+     */
+    private static class AsyncLimiter
+    {
+        private final int myMaxRunning;
+        private final Queue<Runnable> myWaiting;
+        private int myNumRunning;
+        private final ThreadLocal<Queue<Runnable>> myHandoffs;
+
+        /**
+         * Constructs an <code>AsyncLimiter</code>.
+         * @param maxRunning The maximum number of tasks running at once.
+         */
+        private AsyncLimiter(int maxRunning)
+        {
+            myMaxRunning = maxRunning;
+            myWaiting = new ArrayDeque<>();
+            myNumRunning = 0;
+            myHandoffs = new ThreadLocal<>();
+        }
+
+        /**
+         * Runs the given task on the given <code>Executor</code> if the limit
+         * isn't reached, else queues it.
+         * @param future The task.
+         * @param executor The <code>Executor</code> that runs the task.
+         * @throws RejectedExecutionException If the <code>Executor</code>
+         *    rejects a task that is run right away.
+         */
+        private void submit(FutureTask<?> future, Executor executor)
+        {
+            Runnable starter = createStarter(future, executor);
+            synchronized (this)
+            {
+                if (myNumRunning >= myMaxRunning)
+                {
+                    myWaiting.add(starter);
+                    return;
+                }
+                myNumRunning++;
+            }
+            try
+            {
+                executor.execute(createReleasing(future));
+            }
+            catch (RejectedExecutionException e)
+            {
+                release();
+                throw e;
+            }
+        }
+
+        /**
+         * Creates a <code>Runnable</code> that hands a queued task to its
+         * <code>Executor</code>, failing the task if the
+         * <code>Executor</code> rejects it.
+         * @param future The task.
+         * @param executor The <code>Executor</code> that runs the task.
+         * @return A <code>Runnable</code>.
+         */
+        private Runnable createStarter(final FutureTask<?> future, final Executor executor)
+        {
+            return new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        executor.execute(createReleasing(future));
+                    }
+                    catch (RejectedExecutionException e)
+                    {
+                        logger.warn("Executor rejected a queued asynchronous transformation: {}", e.getMessage());
+                        future.cancel(false);
+                        release();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Creates a <code>Runnable</code> that runs the task, then releases
+         * its place, even if the task was cancelled before it ran.
+         * @param future The task.
+         * @return A <code>Runnable</code>.
+         */
+        private Runnable createReleasing(final FutureTask<?> future)
+        {
+            return new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        future.run();
+                    }
+                    finally
+                    {
+                        release();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Releases the place of a finished task, handing the next queued
+         * task, if any, to its <code>Executor</code>.  If this thread is
+         * already starting queued tasks further up the stack, the next one is
+         * handed off to that loop instead.
+         */
+        private void release()
         {
-            Sheet sheet = workbook.getSheetAt(s);
-            sheetTransformer.transform(sheet, context, beans);
+            Runnable next;
+            synchronized (this)
+            {
+                next = myWaiting.poll();
+                if (next == null)
+                {
+                    myNumRunning--;
+                    return;
+                }
+            }
+            Queue<Runnable> handoffs = myHandoffs.get();
+            if (handoffs != null)
+            {
+                handoffs.add(next);
+                return;
+            }
+            handoffs = new ArrayDeque<>();
+            myHandoffs.set(handoffs);
+            try
+            {
+                while (next != null)
+                {
+                    next.run();
+                    next = handoffs.poll();
+                }
+            }
+            finally
+            {
+                myHandoffs.remove();
+            }
+        }
+    }
+
+    /**
+     * Transforms the template Excel spreadsheet represented by the given
+     * <code>Workbook</code>, using the given <code>SheetTransformer</code>.
+     * Applies the given <code>Map</code> of beans to all sheets.
+     * @param workbook A <code>Workbook</code> object.  Transformation is
+     *    performed directly on this object.
+     * @param beans The <code>Map</code> of bean names to bean objects.
+     * @param sheetTransformer The <code>SheetTransformer</code>.
+     * @param template The <code>CompiledTemplate</code> from which the
+     *    <code>Workbook</code> was created, or <code>null</code> if the
+     *    <code>Workbook</code> must be scanned.
+     * @param streaming Whether finished rows may be streamed out of the
+     *    <code>Workbook</code>.
+     * @since 0.11.1
+     */
+    private void transform(Workbook workbook, Map<String, Object> beans, SheetTransformer sheetTransformer,
+                           CompiledTemplate template, boolean streaming)
+    {
+        logger.info("Transforming a Workbook.");
+        myExpressionFactory.openContextScope();
+        try
+        {
+            WorkbookContext context = createContext(workbook, sheetTransformer, new ArrayList<String>(),
+                    new ArrayList<String>(), new ArrayList<Map<String, Object>>(), template);
+            context.setStreaming(streaming);
+            exposeWorkbook(beans, workbook);
+            for (int s = 0; s < workbook.getNumberOfSheets(); s++)
+            {
+                Sheet sheet = workbook.getSheetAt(s);
+                sheetTransformer.transform(sheet, context, beans);
+            }
+            postTransformation(workbook, context, sheetTransformer);
+        }
+        finally
+        {
+            myExpressionFactory.closeContextScope();
         }
-        postTransformation(workbook, context, sheetTransformer);
         logger.info("Done transforming a Workbook.");
     }
 
@@ -438,8 +1166,11 @@ public class ExcelTransformer
         try (FileOutputStream fileOut = new FileOutputStream(outFilename);
              InputStream fileIn = new BufferedInputStream(new FileInputStream(inFilename)))
         {
-            Workbook workbook = transform(fileIn, templateSheetNamesList, newSheetNamesList, beansList);
-            workbook.write(fileOut);
+            Workbook workbook = WorkbookFactory.create(fileIn);
+            SheetTransformer sheetTransformer = new SheetTransformer();
+            transform(workbook, templateSheetNamesList, newSheetNamesList, beansList, sheetTransformer,
+                    myStreamingWindowSize > 0);
+            write(workbook, sheetTransformer, fileOut);
         }
         logger.info("Done transforming file \"{}\" into file \"{}\" with Sheet Specific Beans.", inFilename, outFilename);
     }
@@ -496,16 +1227,85 @@ public class ExcelTransformer
      */
     public void transform(Workbook workbook, List<String> templateSheetNamesList,
                           List<String> newSheetNamesList, List<Map<String, Object>> beansList)
+    {
+        transform(workbook, templateSheetNamesList, newSheetNamesList, beansList, new SheetTransformer(), false);
+    }
+
+    /**
+     * Transforms the template Excel spreadsheet represented by the given
+     * <code>Workbook</code> with sheet specific beans, using the given
+     * <code>SheetTransformer</code>.
+     * @param workbook A <code>Workbook</code> object.  Transformation is
+     *    performed directly on this object.
+     * @param templateSheetNamesList A <code>List</code> of template sheet
+     *    names, with duplicates indicating to clone sheets.
+     * @param newSheetNamesList A <code>List</code> of resulting sheet names
+     *    corresponding to the template sheet names list.
+     * @param beansList A <code>List</code> of <code>Maps</code> representing
+     *    the beans map exposed to each resulting sheet.
+     * @param sheetTransformer The <code>SheetTransformer</code>.
+     * @param streaming Whether finished rows may be streamed out of the
+     *    <code>Workbook</code>.
+     * @since 0.11.1
+     */
+    private void transform(Workbook workbook, List<String> templateSheetNamesList,
+                           List<String> newSheetNamesList, List<Map<String, Object>> beansList,
+                           SheetTransformer sheetTransformer, boolean streaming)
     {
         logger.info("Transforming a Workbook with Sheet Specific Beans.");
         logger.debug("templateSheetNamesList.size()={}", templateSheetNamesList.size());
         logger.debug("newSheetNamesList.size()={}", newSheetNamesList.size());
         logger.debug("beansList.size()={}", beansList.size());
+        int parallelism = Math.min(mySheetParallelism, templateSheetNamesList.size());
+        if (parallelism > 1 &&
+                SheetAssembler.areIndependent(templateSheetNamesList, newSheetNamesList, beansList) &&
+                transformInParallel(workbook, templateSheetNamesList, newSheetNamesList, beansList, parallelism))
+        {
+            logger.info("Done transforming a Workbook with Sheet Specific Beans in parallel.");
+            return;
+        }
+
+        myExpressionFactory.openContextScope();
+        try
+        {
+            WorkbookContext context = transformSheets(workbook, templateSheetNamesList, newSheetNamesList, beansList,
+                    sheetTransformer, streaming);
+            postTransformation(workbook, context, sheetTransformer);
+        }
+        finally
+        {
+            myExpressionFactory.closeContextScope();
+        }
+        logger.info("Done transforming a Workbook with Sheet Specific Beans.");
+    }
+
+    /**
+     * Clones the sheets of the given <code>Workbook</code> for sheet specific
+     * beans and transforms them, one after another, without any
+     * post-transformation processing.
+     * @param workbook A <code>Workbook</code> object.  Transformation is
+     *    performed directly on this object.
+     * @param templateSheetNamesList A <code>List</code> of template sheet
+     *    names, with duplicates indicating to clone sheets.
+     * @param newSheetNamesList A <code>List</code> of resulting sheet names
+     *    corresponding to the template sheet names list.
+     * @param beansList A <code>List</code> of <code>Maps</code> representing
+     *    the beans map exposed to each resulting sheet.
+     * @param sheetTransformer The <code>SheetTransformer</code>.
+     * @param streaming Whether finished rows may be streamed out of the
+     *    <code>Workbook</code>.
+     * @return The <code>WorkbookContext</code> used.
+     * @since 0.11.1
+     */
+    private WorkbookContext transformSheets(Workbook workbook, List<String> templateSheetNamesList,
+                                            List<String> newSheetNamesList, List<Map<String, Object>> beansList,
+                                            SheetTransformer sheetTransformer, boolean streaming)
+    {
         SheetCloner cloner = new SheetCloner(workbook);
         cloner.cloneForSheetSpecificBeans(templateSheetNamesList, newSheetNamesList);
 
-        SheetTransformer sheetTransformer = new SheetTransformer();
         WorkbookContext context = createContext(workbook, sheetTransformer, templateSheetNamesList, newSheetNamesList, beansList);
+        context.setStreaming(streaming);
         FormulaUtil.updateSheetNameRefsAfterClone(context);
         logger.debug("number of Sheets={}", workbook.getNumberOfSheets());
 
@@ -525,13 +1325,175 @@ public class ExcelTransformer
                 // This is done for performance reasons, related to identifying
                 // collection names in expression text, which may vary from beans
                 // map to beans map.
-                Expression.clearExpressionToCollNamesMap();
+                context.getExpressionToCollNamesMap().clear();
                 sheetTransformer.transform(sheet, context, beans, cloner);
             }
             numItemsProcessed++;
         }
-        postTransformation(workbook, context, sheetTransformer);
-        logger.info("Done transforming a Workbook with Sheet Specific Beans.");
+        return context;
+    }
+
+    /**
+     * Transforms ranges of the sheet specific beans sheets concurrently, each
+     * in its own copy of the template <code>Workbook</code>, then assembles
+     * the transformed sheets into the given <code>Workbook</code>.  Whether
+     * the sheets can be assembled is decided from the template, before
+     * anything is transformed, so that the beans are never transformed twice.
+     * @param workbook The template <code>Workbook</code>, which becomes the
+     *    resultant <code>Workbook</code>.
+     * @param templateSheetNamesList A <code>List</code> of template sheet
+     *    names, with duplicates indicating to clone sheets.
+     * @param newSheetNamesList A <code>List</code> of resulting sheet names
+     *    corresponding to the template sheet names list.
+     * @param beansList A <code>List</code> of <code>Maps</code> representing
+     *    the beans map exposed to each resulting sheet.
+     * @param parallelism The number of threads.
+     * @return <code>true</code> if the sheets were transformed and assembled,
+     *    <code>false</code> if they must be transformed one after another,
+     *    in which case nothing has been transformed.
+     * @throws TransformException If the template <code>Workbook</code> can't
+     *    be copied, if a thread is interrupted, or if a transformed sheet
+     *    unexpectedly can't be assembled.
+     * @since 0.11.1
+     */
+    private boolean transformInParallel(Workbook workbook, List<String> templateSheetNamesList,
+                                        List<String> newSheetNamesList, List<Map<String, Object>> beansList,
+                                        int parallelism)
+    {
+        final byte[] templateBytes;
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            templateBytes = out.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new TransformException("Unable to copy the template Workbook: " + e.getMessage(), e);
+        }
+        if (!canAssemble(templateBytes, templateSheetNamesList))
+        {
+            logger.info("Sheets can't be assembled; transforming them one after another.");
+            return false;
+        }
+
+        int numSheets = templateSheetNamesList.size();
+        int[] starts = new int[parallelism + 1];
+        for (int i = 0; i <= parallelism; i++)
+        {
+            starts[i] = i * numSheets / parallelism;
+        }
+        List<Workbook> chunks = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try
+        {
+            List<Future<Workbook>> futures = new ArrayList<>();
+            for (int i = 0; i < parallelism; i++)
+            {
+                final List<String> templateSheetNames = new ArrayList<>(templateSheetNamesList.subList(starts[i], starts[i + 1]));
+                final List<String> newSheetNames = new ArrayList<>(newSheetNamesList.subList(starts[i], starts[i + 1]));
+                final List<Map<String, Object>> beansMaps = new ArrayList<>(beansList.subList(starts[i], starts[i + 1]));
+                futures.add(executor.submit(new Callable<Workbook>()
+                {
+                    @Override
+                    public Workbook call() throws IOException, InvalidFormatException
+                    {
+                        Workbook chunk = WorkbookFactory.create(new ByteArrayInputStream(templateBytes));
+                        SheetTransformer sheetTransformer = new SheetTransformer();
+                        myExpressionFactory.openContextScope();
+                        try
+                        {
+                            WorkbookContext context = transformSheets(chunk, templateSheetNames, newSheetNames,
+                                    beansMaps, sheetTransformer, false);
+                            if (!context.getFormulaMap().isEmpty())
+                                replaceFormulas(chunk, context, sheetTransformer);
+                        }
+                        finally
+                        {
+                            myExpressionFactory.closeContextScope();
+                        }
+                        for (int s = 0; s < templateSheetNames.size(); s++)
+                        {
+                            if (!SheetAssembler.canAssemble(chunk.getSheetAt(s)))
+                            {
+                                // The beans have been consumed; don't silently
+                                // transform them again.
+                                throw new TransformException("Transformed sheet \"" + chunk.getSheetAt(s).getSheetName() +
+                                        "\" has a drawing and can't be assembled; turn off sheet parallelism for this template.");
+                            }
+                        }
+                        return chunk;
+                    }
+                }));
+            }
+            for (Future<Workbook> future : futures)
+            {
+                chunks.add(future.get());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new TransformException("Interrupted while transforming sheets in parallel.", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new TransformException(cause.getMessage(), cause);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        SheetAssembler assembler = new SheetAssembler(workbook);
+        SheetCloner cloner = new SheetCloner(workbook);
+        cloner.cloneForSheetSpecificBeans(templateSheetNamesList, newSheetNamesList);
+        SheetTransformer.AfterOffSheetProperties missingProperties = cloner.getMissingPropertiesSetter();
+        for (int i = 0; i < parallelism; i++)
+        {
+            Workbook chunk = chunks.get(i);
+            for (int s = starts[i]; s < starts[i + 1]; s++)
+            {
+                Sheet sheet = workbook.getSheetAt(s);
+                assembler.assemble(chunk.getSheetAt(s - starts[i]), sheet);
+                missingProperties.applySettings(sheet);
+                Map<String, Object> beans = beansList.get(s);
+                exposeWorkbook(beans, workbook);
+                // Don't leave the per-thread sheet referenced by the beans.
+                beans.put("sheet", sheet);
+            }
+            assembler.assembleNames(chunk, starts[i + 1] - starts[i], starts[i]);
+        }
+        recalculateFormulas(workbook, false);
+        return true;
+    }
+
+    /**
+     * Determines, on a copy of the template, whether the template sheets
+     * with the given names can be transformed separately and assembled.
+     * @param templateBytes The bytes of the template <code>Workbook</code>.
+     * @param templateSheetNames The <code>List</code> of template sheet names.
+     * @return Whether the template sheets can be transformed separately and
+     *    assembled.
+     * @throws TransformException If the copy can't be read.
+     * @since 0.11.1
+     */
+    private boolean canAssemble(byte[] templateBytes, List<String> templateSheetNames)
+    {
+        try
+        {
+            Workbook copy = WorkbookFactory.create(new ByteArrayInputStream(templateBytes));
+            return SheetAssembler.canAssemble(copy, templateSheetNames);
+        }
+        catch (IOException | InvalidFormatException e)
+        {
+            throw new TransformException("Unable to copy the template Workbook: " + e.getMessage(), e);
+        }
     }
 
     /**
@@ -551,13 +1513,86 @@ public class ExcelTransformer
         {
             replaceFormulas(workbook, context, sheetTransformer);
         }
-        if (amIEvaluatingFormulas)
+        recalculateFormulas(workbook, sheetTransformer.hasSpooledRows());
+    }
+
+    /**
+     * Recalculates all formulas and/or marks the workbook to be recalculated
+     * when Excel opens it, as configured.
+     * @param workbook The <code>Workbook</code>.
+     * @param streamed Whether any rows were streamed out of the
+     *    <code>Workbook</code>.
+     * @since 0.11.1
+     */
+    private void recalculateFormulas(Workbook workbook, boolean streamed)
+    {
+        if (streamed)
         {
-            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            // Formulas referring to streamed rows can't be evaluated here.
+            if (amIEvaluatingFormulas)
+                logger.warn("Rows were streamed; formulas will be recalculated when the workbook is opened instead.");
+            workbook.setForceFormulaRecalculation(true);
         }
-        if (amIChangingForcingRecalculation)
+        else
         {
-            workbook.setForceFormulaRecalculation(amIForcingRecalculationOnOpening);
+            if (amIEvaluatingFormulas)
+            {
+                workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            }
+            if (amIChangingForcingRecalculation)
+            {
+                workbook.setForceFormulaRecalculation(amIForcingRecalculationOnOpening);
+            }
+        }
+    }
+
+    /**
+     * Writes the transformed <code>Workbook</code> to the given
+     * <code>OutputStream</code>.  If any rows were streamed out of the
+     * <code>Workbook</code> during transformation, then all rows are written
+     * through an <code>SXSSFWorkbook</code>.
+     * @param workbook The transformed <code>Workbook</code>.
+     * @param sheetTransformer The <code>SheetTransformer</code> used to
+     *    transform the sheets.
+     * @param out The <code>OutputStream</code>.
+     * @throws IOException If there is a problem writing the spreadsheet.
+     * @since 0.11.1
+     */
+    private void write(Workbook workbook, SheetTransformer sheetTransformer, OutputStream out)
+            throws IOException
+    {
+        if (!sheetTransformer.hasSpooledRows())
+        {
+            workbook.write(out);
+            return;
+        }
+
+        List<RowSpooler> spoolers = sheetTransformer.getRowSpoolers();
+        SXSSFWorkbook streamingWorkbook = null;
+        try
+        {
+            // SXSSF only appends rows after any rows still in the sheet, so
+            // spool all remaining rows first, then replay them all in order.
+            for (RowSpooler spooler : spoolers)
+            {
+                if (spooler.getNumSpooledRows() > 0)
+                    spooler.spoolRemainingRows();
+            }
+            streamingWorkbook = new SXSSFWorkbook((XSSFWorkbook) workbook, myStreamingWindowSize, true, true);
+            for (RowSpooler spooler : spoolers)
+            {
+                spooler.replay(streamingWorkbook);
+            }
+            streamingWorkbook.write(out);
+        }
+        finally
+        {
+            if (streamingWorkbook != null)
+                streamingWorkbook.dispose();
+            for (RowSpooler spooler : spoolers)
+            {
+                spooler.dispose();
+            }
         }
     }
 
@@ -587,6 +1622,31 @@ public class ExcelTransformer
      */
     public WorkbookContext createContext(Workbook workbook, SheetTransformer transformer,
                                          List<String> templateSheetNames, List<String> sheetNames, List<Map<String, Object>> beansMaps)
+    {
+        return createContext(workbook, transformer, templateSheetNames, sheetNames, beansMaps, null);
+    }
+
+    /**
+     * Creates a <code>WorkbookContext</code> for a <code>Workbook</code>,
+     * taking the formulas, tag locations, and cell references from the given
+     * <code>CompiledTemplate</code> instead of scanning the
+     * <code>Workbook</code>, if it's available.
+     * @param workbook The <code>Workbook</code>.
+     * @param transformer A <code>SheetTransformer</code>.
+     * @param templateSheetNames A <code>List</code> of template sheet names,
+     *    from the <code>transform</code> method.
+     * @param sheetNames A <code>List</code> of sheet names, from the
+     *    <code>transform</code> method.
+     * @param beansMaps A <code>List</code> of beans maps, from the
+     *    <code>transform</code> method.
+     * @param template The <code>CompiledTemplate</code> from which the
+     *    <code>Workbook</code> was created, or <code>null</code>.
+     * @return A <code>WorkbookContext</code>.
+     * @since 0.11.1
+     */
+    private WorkbookContext createContext(Workbook workbook, SheetTransformer transformer,
+                                          List<String> templateSheetNames, List<String> sheetNames, List<Map<String, Object>> beansMaps,
+                                          CompiledTemplate template)
     {
         WorkbookContext context = new WorkbookContext();
         context.setCellListeners(myCellListeners);
@@ -594,17 +1654,35 @@ public class ExcelTransformer
         context.setRegistry(myRegistry);
         context.setFixedSizeCollectionNames(myFixedSizeCollectionNames);
         context.setNoImplicitCollectionProcessingNames(myNoImplicitProcessingCollectionNames);
-        Map<String, Formula> formulaMap = new HashMap<>();
-        Map<String, String> tagLocationsMap = new HashMap<>();
-        createFormulaAndCellMaps(workbook, transformer, formulaMap, tagLocationsMap);
+        Map<String, Formula> formulaMap;
+        TagLocations tagLocations;
+        Map<String, List<CellRef>> cellRefMap;
+        if (template != null)
+        {
+            formulaMap = template.copyFormulaMap();
+            tagLocations = template.copyTagLocations();
+            cellRefMap = template.copyCellRefMap();
+        }
+        else
+        {
+            formulaMap = new HashMap<>();
+            tagLocations = new TagLocations();
+            createFormulaAndCellMaps(workbook, transformer, formulaMap, tagLocations);
+            cellRefMap = FormulaUtil.createCellRefMap(formulaMap);
+        }
         context.setFormulaMap(formulaMap);
-        context.setTagLocationsMap(tagLocationsMap);
-        Map<String, List<CellRef>> cellRefMap = FormulaUtil.createCellRefMap(formulaMap);
+        context.setTagLocations(tagLocations);
         context.setCellRefMap(cellRefMap);
-        CellStyleCache csCache = new CellStyleCache(workbook);
-        context.setCellStyleCache(csCache);
-        FontCache fCache = new FontCache(workbook);
-        context.setFontCache(fCache);
+        if (template != null)
+        {
+            context.setCellStyleCache(template.createCellStyleCache(workbook));
+            context.setFontCache(template.createFontCache(workbook));
+        }
+        else
+        {
+            context.setCellStyleCache(new CellStyleCache(workbook));
+            context.setFontCache(new FontCache(workbook));
+        }
         context.setStyleMap(myStyleMap);
         context.setTemplateSheetNames(templateSheetNames);
         context.setSheetNames(sheetNames);
@@ -622,9 +1700,9 @@ public class ExcelTransformer
         logger.debug("Tag Locations Map:");
         if (logger.isDebugEnabled())
         {
-            for (String cellRef : tagLocationsMap.keySet())
+            for (Map.Entry<String, String> entry : tagLocations.toMap().entrySet())
             {
-                logger.debug("  {} => {}", cellRef, tagLocationsMap.get(cellRef));
+                logger.debug("  {} => {}", entry.getKey(), entry.getValue());
             }
         }
         logger.debug("Cell Ref Map:");
@@ -659,17 +1737,16 @@ public class ExcelTransformer
      * @param formulaMap Stores map entries of strings to <code>Formulas</code>
      *    in this <code>Map</code>.  The keys are strings of the format
      *    "sheetName!formulaText".
-     * @param tagLocationsMap Stores map entries of current cell reference
-     *    strings to original cell reference strings, e.g. "Sheet1!B1" =>
-     *    "Sheet1!B1".
+     * @param tagLocations Stores current tag locations mapped to original
+     *    cell reference strings, e.g. "Sheet1!B1".
      */
     private void createFormulaAndCellMaps(Workbook workbook, SheetTransformer transformer,
-                                          Map<String, Formula> formulaMap, Map<String, String> tagLocationsMap)
+                                          Map<String, Formula> formulaMap, TagLocations tagLocations)
     {
         for (int i = 0; i < workbook.getNumberOfSheets(); i++)
         {
             Sheet sheet = workbook.getSheetAt(i);
-            transformer.gatherFormulasAndTagLocations(sheet, formulaMap, tagLocationsMap);
+            transformer.gatherFormulasAndTagLocations(sheet, formulaMap, tagLocations);
         }
     }
 
@@ -685,6 +1762,7 @@ public class ExcelTransformer
         Map<String, Formula> formulaMap = context.getFormulaMap();
         Map<String, List<CellRef>> cellRefMap = context.getCellRefMap();
         FormulaUtil.findAndReplaceCellRanges(cellRefMap);
+        context.invalidateCellRefIndex();
 
         logger.debug("Formula Map after transformation:");
         if (logger.isDebugEnabled())
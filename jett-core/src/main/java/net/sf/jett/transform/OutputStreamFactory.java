@@ -0,0 +1,28 @@
+package net.sf.jett.transform;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * An <code>OutputStreamFactory</code> supplies the <code>OutputStream</code>
+ * to which each resultant spreadsheet of a batch transformation is written,
+ * e.g. a <code>FileOutputStream</code> named after a customer found in the
+ * beans.  It may be called from many threads at the same time.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ * @see ExcelTransformer#transformBatch(CompiledTemplate, java.util.Iterator, OutputStreamFactory, java.util.concurrent.Executor, int)
+ */
+public interface OutputStreamFactory
+{
+    /**
+     * Creates the <code>OutputStream</code> for the resultant spreadsheet of
+     * the given item.  The batch transformation closes it after writing.
+     * @param index The 0-based index of the item in the batch.
+     * @param beans The <code>Map</code> of beans used to transform the item.
+     * @return An <code>OutputStream</code>.
+     * @throws IOException If the <code>OutputStream</code> can't be created.
+     */
+    public OutputStream createOutputStream(int index, Map<String, Object> beans) throws IOException;
+}
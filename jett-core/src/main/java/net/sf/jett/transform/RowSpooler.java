@@ -0,0 +1,400 @@
+package net.sf.jett.transform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+
+import net.sf.jett.formula.Formula;
+import net.sf.jett.model.ProcessedCells;
+
+/**
+ * <p>A <code>RowSpooler</code> moves finished <code>Rows</code> out of an
+ * <code>XSSFSheet</code> and into a temporary file while the sheet is being
+ * transformed, so that the in-memory size of the sheet doesn't grow with the
+ * number of rows generated.  When the <code>Workbook</code> is written, the
+ * spooled rows are replayed through an <code>SXSSFWorkbook</code>, which
+ * keeps only a sliding window of rows in memory.</p>
+ *
+ * <p>A row is finished once the top-level walk of the sheet has moved past
+ * it; no tag or shift can touch it again.  A loop tag at the top level of the
+ * sheet also finishes the rows of each iteration as it goes, as long as all
+ * of their cells have been processed, so that the rows generated by a single
+ * loop don't pile up in memory.  Spooling stops for the rest of the
+ * sheet at the first row that still needs in-memory post-processing: a row
+ * with a JETT formula that hasn't been replaced yet, a cell that is part of
+ * an array formula, or a rich text string with formatting runs, which SXSSF
+ * cannot write.  Those rows, and all rows after them, stay in the
+ * <code>XSSFSheet</code> until the workbook is written.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class RowSpooler
+{
+    private static final Logger logger = LogManager.getLogger();
+
+    private static final byte TYPE_BLANK = 0;
+    private static final byte TYPE_NUMERIC = 1;
+    private static final byte TYPE_STRING = 2;
+    private static final byte TYPE_FORMULA = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_ERROR = 5;
+
+    private XSSFSheet mySheet;
+    private ProcessedCells myProcessedCells;
+    private boolean amIBlocked;
+    private File mySpoolFile;
+    private DataOutputStream mySpoolOut;
+    private int myNumSpooledRows;
+
+    /**
+     * Constructs a <code>RowSpooler</code> on the given <code>XSSFSheet</code>.
+     * @param sheet The <code>XSSFSheet</code> being transformed.
+     * @param processedCells The <code>ProcessedCells</code> for the sheet;
+     *    spooled cells are removed from it.
+     */
+    RowSpooler(XSSFSheet sheet, ProcessedCells processedCells)
+    {
+        mySheet = sheet;
+        myProcessedCells = processedCells;
+        amIBlocked = false;
+        mySpoolFile = null;
+        mySpoolOut = null;
+        myNumSpooledRows = 0;
+    }
+
+    /**
+     * Returns the <code>XSSFSheet</code> whose rows are spooled.
+     * @return The <code>XSSFSheet</code>.
+     */
+    XSSFSheet getSheet()
+    {
+        return mySheet;
+    }
+
+    /**
+     * Returns the number of rows spooled so far.
+     * @return The number of rows spooled.
+     */
+    int getNumSpooledRows()
+    {
+        return myNumSpooledRows;
+    }
+
+    /**
+     * Spools all rows before the given row index, stopping early if a row
+     * that must remain in memory is encountered.
+     * @param rowNum The 0-based row index; all rows above it are finished.
+     */
+    void spoolRowsBefore(int rowNum)
+    {
+        spoolRowsBefore(rowNum, false);
+    }
+
+    /**
+     * Spools the rows before the given row index whose cells have all been
+     * processed, stopping early if a row that must remain in memory is
+     * encountered.  Spooling pauses at the first row with a cell that hasn't
+     * been processed yet, e.g. beside a loop's <code>Block</code>, until a
+     * later call finds it processed.
+     * @param rowNum The 0-based row index; no tag or shift can touch the rows
+     *    above it again.
+     */
+    public void spoolProcessedRowsBefore(int rowNum)
+    {
+        spoolRowsBefore(rowNum, true);
+    }
+
+    /**
+     * Spools rows before the given row index.
+     * @param rowNum The 0-based row index.
+     * @param processedOnly Whether to pause at the first row with a cell that
+     *    hasn't been processed.
+     */
+    private void spoolRowsBefore(int rowNum, boolean processedOnly)
+    {
+        while (!amIBlocked && mySheet.getPhysicalNumberOfRows() > 0)
+        {
+            int firstRowNum = mySheet.getFirstRowNum();
+            if (firstRowNum >= rowNum)
+                break;
+            XSSFRow row = mySheet.getRow(firstRowNum);
+            if (processedOnly && !isProcessed(row))
+                break;
+            if (!isSpoolable(row))
+            {
+                logger.debug("Row {} of sheet {} must stay in memory; no more rows will be spooled.",
+                        firstRowNum, mySheet.getSheetName());
+                amIBlocked = true;
+                break;
+            }
+            spool(row);
+        }
+    }
+
+    /**
+     * Spools all rows that remain in the sheet, regardless of their content.
+     * This must be done only after all post-processing on the sheet is
+     * finished.
+     */
+    void spoolRemainingRows()
+    {
+        while (mySheet.getPhysicalNumberOfRows() > 0)
+        {
+            spool(mySheet.getRow(mySheet.getFirstRowNum()));
+        }
+    }
+
+    /**
+     * Replays all spooled rows, in order, into the corresponding sheet of the
+     * given <code>SXSSFWorkbook</code>, which must wrap the same
+     * <code>XSSFWorkbook</code>.  All rows must have been spooled first.
+     * @param streamingWorkbook The <code>SXSSFWorkbook</code>.
+     * @throws IOException If there is a problem reading the spool file.
+     */
+    void replay(SXSSFWorkbook streamingWorkbook) throws IOException
+    {
+        if (mySpoolFile == null)
+            return;
+        mySpoolOut.close();
+        mySpoolOut = null;
+
+        Sheet streamingSheet = streamingWorkbook.getSheet(mySheet.getSheetName());
+        int numCellStyles = streamingWorkbook.getNumCellStyles();
+        List<CellStyle> cellStyles = new ArrayList<>(numCellStyles);
+        for (int i = 0; i < numCellStyles; i++)
+        {
+            cellStyles.add(streamingWorkbook.getCellStyleAt(i));
+        }
+
+        logger.debug("Replaying {} spooled rows into sheet {}.", myNumSpooledRows, mySheet.getSheetName());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mySpoolFile))))
+        {
+            for (int r = 0; r < myNumSpooledRows; r++)
+            {
+                int rowNum = in.readInt();
+                Row row = streamingSheet.createRow(rowNum);
+                short height = in.readShort();
+                if (height >= 0)
+                    row.setHeight(height);
+                row.setZeroHeight(in.readBoolean());
+                int rowStyleIndex = in.readInt();
+                if (rowStyleIndex >= 0)
+                    row.setRowStyle(cellStyles.get(rowStyleIndex));
+                int outlineLevel = in.readInt();
+                for (int level = 0; level < outlineLevel; level++)
+                {
+                    streamingSheet.groupRow(rowNum, rowNum);
+                }
+
+                int numCells = in.readInt();
+                for (int c = 0; c < numCells; c++)
+                {
+                    int colNum = in.readInt();
+                    Cell cell = row.createCell(colNum);
+                    cell.setCellStyle(cellStyles.get(in.readInt()));
+                    byte type = in.readByte();
+                    switch (type)
+                    {
+                    case TYPE_NUMERIC:
+                        cell.setCellValue(in.readDouble());
+                        break;
+                    case TYPE_STRING:
+                        cell.setCellValue(readString(in));
+                        break;
+                    case TYPE_FORMULA:
+                        cell.setCellFormula(readString(in));
+                        break;
+                    case TYPE_BOOLEAN:
+                        cell.setCellValue(in.readBoolean());
+                        break;
+                    case TYPE_ERROR:
+                        cell.setCellErrorValue(in.readByte());
+                        break;
+                    default:
+                        // Blank; the style is all there is.
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes the spool file, if any.
+     */
+    void dispose()
+    {
+        if (mySpoolOut != null)
+        {
+            try
+            {
+                mySpoolOut.close();
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to close spool file {}: {}", mySpoolFile, e.getMessage());
+            }
+            mySpoolOut = null;
+        }
+        if (mySpoolFile != null)
+        {
+            if (!mySpoolFile.delete())
+                logger.warn("Unable to delete spool file {}.", mySpoolFile);
+            mySpoolFile = null;
+        }
+    }
+
+    /**
+     * Determines whether all <code>Cells</code> in the given <code>Row</code>
+     * have been processed.
+     * @param row The <code>Row</code>.
+     * @return <code>true</code> if all cells have been processed, else
+     *    <code>false</code>.
+     */
+    private boolean isProcessed(XSSFRow row)
+    {
+        for (Cell cell : row)
+        {
+            if (!myProcessedCells.contains(cell))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the given <code>Row</code> can be spooled now.
+     * @param row The <code>Row</code>.
+     * @return <code>true</code> if the row can be spooled, <code>false</code>
+     *    if it must stay in memory.
+     */
+    private boolean isSpoolable(XSSFRow row)
+    {
+        for (Cell cell : row)
+        {
+            if (((XSSFCell) cell).isPartOfArrayFormulaGroup())
+                return false;
+            if (cell.getCellType() == Cell.CELL_TYPE_STRING)
+            {
+                RichTextString rts = cell.getRichStringCellValue();
+                if (rts.numFormattingRuns() > 0)
+                    return false;
+                String value = rts.getString();
+                if (value.startsWith(Formula.BEGIN_FORMULA) && value.endsWith(Formula.END_FORMULA))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the given <code>Row</code> to the spool file and removes it from
+     * the sheet.
+     * @param row The <code>Row</code>.
+     */
+    private void spool(XSSFRow row)
+    {
+        try
+        {
+            if (mySpoolOut == null)
+            {
+                mySpoolFile = TempFile.createTempFile("jett-rows", ".tmp");
+                mySpoolOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mySpoolFile)));
+                logger.debug("Spooling rows of sheet {} to {}.", mySheet.getSheetName(), mySpoolFile);
+            }
+            DataOutputStream out = mySpoolOut;
+            out.writeInt(row.getRowNum());
+            out.writeShort(row.getCTRow().isSetHt() ? row.getHeight() : -1);
+            out.writeBoolean(row.getZeroHeight());
+            out.writeInt(row.isFormatted() ? row.getRowStyle().getIndex() : -1);
+            out.writeInt(row.getOutlineLevel());
+            out.writeInt(row.getPhysicalNumberOfCells());
+            for (Cell cell : row)
+            {
+                out.writeInt(cell.getColumnIndex());
+                out.writeInt(cell.getCellStyle().getIndex());
+                switch (cell.getCellType())
+                {
+                case Cell.CELL_TYPE_NUMERIC:
+                    out.writeByte(TYPE_NUMERIC);
+                    out.writeDouble(cell.getNumericCellValue());
+                    break;
+                case Cell.CELL_TYPE_STRING:
+                    out.writeByte(TYPE_STRING);
+                    writeString(out, cell.getStringCellValue());
+                    break;
+                case Cell.CELL_TYPE_FORMULA:
+                    out.writeByte(TYPE_FORMULA);
+                    writeString(out, cell.getCellFormula());
+                    break;
+                case Cell.CELL_TYPE_BOOLEAN:
+                    out.writeByte(TYPE_BOOLEAN);
+                    out.writeBoolean(cell.getBooleanCellValue());
+                    break;
+                case Cell.CELL_TYPE_ERROR:
+                    out.writeByte(TYPE_ERROR);
+                    out.writeByte(cell.getErrorCellValue());
+                    break;
+                default:
+                    out.writeByte(TYPE_BLANK);
+                    break;
+                }
+            }
+            myProcessedCells.removeRow(row.getRowNum());
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to spool row " + row.getRowNum() + " of sheet " +
+                    mySheet.getSheetName() + ": " + e.getMessage(), e);
+        }
+        mySheet.removeRow(row);
+        myNumSpooledRows++;
+    }
+
+    /**
+     * Writes a string of any length as UTF-8 bytes.
+     * @param out The <code>DataOutputStream</code>.
+     * @param value The string.
+     * @throws IOException If there is a problem writing.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by <code>writeString</code>.
+     * @param in The <code>DataInputStream</code>.
+     * @return The string.
+     * @throws IOException If there is a problem reading.
+     */
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
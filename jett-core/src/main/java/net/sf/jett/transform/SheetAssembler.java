@@ -0,0 +1,685 @@
+package net.sf.jett.transform;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFFont;
+import org.apache.poi.hssf.usermodel.HSSFPatriarch;
+import org.apache.poi.hssf.usermodel.HSSFRichTextString;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Color;
+import org.apache.poi.ss.usermodel.Drawing;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.HeaderFooter;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFDrawing;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+
+import net.sf.jett.expression.Expression;
+import net.sf.jett.formula.Formula;
+import net.sf.jett.model.CellStyleCache;
+import net.sf.jett.model.FontCache;
+import net.sf.jett.parser.TagParser;
+import net.sf.jett.tag.NameTag;
+import net.sf.jett.util.SheetUtil;
+
+/**
+ * <p>A <code>SheetAssembler</code> copies <code>Sheets</code> that have been
+ * transformed in separate <code>Workbooks</code> into the corresponding
+ * <code>Sheets</code> of the resultant <code>Workbook</code>.  All of the
+ * <code>Workbooks</code> must have been created from the same template
+ * spreadsheet, so cell styles and fonts that existed in the template have the
+ * same indexes everywhere.  Only cell styles and fonts created during
+ * transformation are looked up, or created, in the resultant
+ * <code>Workbook</code>.</p>
+ *
+ * <p>Cell values, formulas, cell styles, rich text, rows, columns, merged
+ * regions, row and column groups, page breaks, hyperlinks, headers and
+ * footers, hidden states, and named range formulas are copied.  Sheets with
+ * drawings, comments, conditional formatting, or data validations can't be
+ * assembled, nor can sheets with tags that may create drawings or comments;
+ * see <code>canAssemble</code>.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+class SheetAssembler
+{
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The namespace of the built-in JETT tag library.
+     */
+    private static final String JETT_NAMESPACE = "jt";
+    /**
+     * Matches the start of a tag, capturing its namespace and its name.
+     */
+    private static final Pattern TAG_START_PATTERN =
+            Pattern.compile(Pattern.quote(TagParser.BEGIN_START_TAG) + "([^\\s=<>\"/:]+):([^\\s=<>\"/]+)");
+
+    private Workbook myWorkbook;
+    private int myNumTemplateCellStyles;
+    private short myNumTemplateFonts;
+    private Map<String, String> myTemplateNameFormulas;
+    private CellStyleCache myCellStyleCache;
+    private FontCache myFontCache;
+    private Workbook mySourceWorkbook;
+    private Map<Integer, CellStyle> myCellStyleMap;
+    private Map<Short, Short> myFontIndexMap;
+
+    /**
+     * Constructs a <code>SheetAssembler</code> that will copy
+     * <code>Sheets</code> into the given <code>Workbook</code>.  It must be
+     * constructed before any <code>Sheets</code> are cloned in the
+     * <code>Workbook</code>.
+     * @param workbook The resultant <code>Workbook</code>, still in its
+     *    template state.
+     */
+    SheetAssembler(Workbook workbook)
+    {
+        myWorkbook = workbook;
+        myNumTemplateCellStyles = workbook.getNumCellStyles();
+        myNumTemplateFonts = workbook.getNumberOfFonts();
+        myTemplateNameFormulas = new HashMap<>();
+        for (int i = 0; i < workbook.getNumberOfNames(); i++)
+        {
+            Name name = workbook.getNameAt(i);
+            if (name.getSheetIndex() == -1 && !name.isFunctionName())
+                myTemplateNameFormulas.put(name.getNameName(), name.getRefersToFormula());
+        }
+        myCellStyleCache = new CellStyleCache(workbook);
+        myFontCache = new FontCache(workbook);
+        myCellStyleMap = new HashMap<>();
+        myFontIndexMap = new HashMap<>();
+    }
+
+    /**
+     * Determines whether the sheets of a sheet specific beans transformation
+     * with the given lists are independent of each other, so they can be
+     * transformed in separate <code>Workbooks</code> and assembled.  This
+     * requires one beans map per sheet, no beans map used for more than one
+     * sheet, and no sheet name with an expression or metadata, so no sheet is
+     * renamed or implicitly cloned during transformation.
+     * @param templateSheetNames The <code>List</code> of template sheet names.
+     * @param newSheetNames The <code>List</code> of new sheet names.
+     * @param beansList The <code>List</code> of beans maps.
+     * @return Whether the sheets are independent of each other.
+     */
+    static boolean areIndependent(List<String> templateSheetNames, List<String> newSheetNames,
+                                  List<Map<String, Object>> beansList)
+    {
+        if (templateSheetNames.size() != newSheetNames.size() || templateSheetNames.size() != beansList.size())
+            return false;
+        for (int i = 0; i < templateSheetNames.size(); i++)
+        {
+            if (isExpressionSheetName(templateSheetNames.get(i)) || isExpressionSheetName(newSheetNames.get(i)))
+                return false;
+        }
+        for (int i = 0; i < beansList.size(); i++)
+        {
+            for (int j = i + 1; j < beansList.size(); j++)
+            {
+                if (beansList.get(i) == beansList.get(j))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the template sheets with the given names, in the
+     * given template <code>Workbook</code>, can be transformed separately and
+     * assembled.  This requires that no JETT formula or Excel formula refers
+     * to another sheet, that JETT formulas are only on sheets to be
+     * transformed, and that the sheets to be transformed have no drawings,
+     * comments, hyperlinks, conditional formatting, or data validations, and
+     * no tags that may create drawings or comments.  This must be decided
+     * before anything is transformed, so that nothing is transformed twice.
+     * Because POI may add empty internal records to an .xls sheet when
+     * looking for some of these, this must only be called on a copy of the
+     * template.
+     * @param workbook A copy of the template <code>Workbook</code>.
+     * @param templateSheetNames The <code>List</code> of template sheet names.
+     * @return Whether the template sheets can be transformed separately and
+     *    assembled.
+     */
+    static boolean canAssemble(Workbook workbook, List<String> templateSheetNames)
+    {
+        for (int s = 0; s < workbook.getNumberOfSheets(); s++)
+        {
+            Sheet sheet = workbook.getSheetAt(s);
+            boolean isTransformed = templateSheetNames.contains(sheet.getSheetName());
+            if (isTransformed && (!canAssemble(sheet) ||
+                    sheet.getSheetConditionalFormatting().getNumConditionalFormattings() > 0 ||
+                    !sheet.getDataValidations().isEmpty() ||
+                    !sheet.getHyperlinkList().isEmpty()))
+            {
+                logger.debug("Sheet \"{}\" can't be assembled.", sheet.getSheetName());
+                return false;
+            }
+            for (Row row : sheet)
+            {
+                for (Cell cell : row)
+                {
+                    if (!canAssemble(cell, isTransformed))
+                    {
+                        logger.debug("Cell {} can't be assembled.", SheetUtil.getCellLocation(cell));
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the given transformed <code>Sheet</code> can be
+     * copied by a <code>SheetAssembler</code>, i.e. its drawing, which
+     * contains pictures and comments, is missing or empty.  POI creates an
+     * empty drawing on an .xls sheet when it looks for comments while
+     * shifting or removing cells.
+     * @param sheet A <code>Sheet</code>.
+     * @return Whether the <code>Sheet</code> can be assembled.
+     */
+    static boolean canAssemble(Sheet sheet)
+    {
+        Drawing drawing = sheet.getDrawingPatriarch();
+        if (drawing instanceof HSSFPatriarch)
+            return ((HSSFPatriarch) drawing).getChildren().isEmpty();
+        if (drawing instanceof XSSFDrawing)
+            return ((XSSFDrawing) drawing).getShapes().isEmpty();
+        return drawing == null;
+    }
+
+    /**
+     * Determines whether the given template <code>Cell</code> allows
+     * assembly.
+     * @param cell A template <code>Cell</code>.
+     * @param isTransformed Whether the <code>Cell</code>'s sheet will be
+     *    transformed.
+     * @return Whether the <code>Cell</code> allows assembly.
+     */
+    private static boolean canAssemble(Cell cell, boolean isTransformed)
+    {
+        int cellType = cell.getCellType();
+        if (cellType == Cell.CELL_TYPE_FORMULA)
+            return cell.getCellFormula().indexOf('!') == -1;
+        if (cellType == Cell.CELL_TYPE_STRING)
+        {
+            String value = cell.getStringCellValue();
+            int formulaStart = value.indexOf(Formula.BEGIN_FORMULA);
+            if (formulaStart != -1 && (!isTransformed || value.indexOf('!', formulaStart) != -1))
+                return false;
+            if (isTransformed && mayCreateDrawing(value))
+                return false;
+        }
+        // HSSF comments are found with the drawing; looking for an HSSF
+        // comment creates a drawing.
+        return !isTransformed || cell instanceof HSSFCell || cell.getCellComment() == null;
+    }
+
+    /**
+     * Determines whether the given cell text contains a tag that may create a
+     * drawing or a comment, i.e. an image tag, a comment tag, or a tag from a
+     * custom tag library, which isn't known not to.
+     * @param value The cell text.
+     * @return Whether the cell text contains a tag that may create a drawing.
+     */
+    private static boolean mayCreateDrawing(String value)
+    {
+        if (!value.contains(TagParser.BEGIN_START_TAG))
+            return false;
+        Matcher matcher = TAG_START_PATTERN.matcher(value);
+        while (matcher.find())
+        {
+            String namespace = matcher.group(1);
+            String tagName = matcher.group(2);
+            if (!JETT_NAMESPACE.equals(namespace) || "image".equals(tagName) || "comment".equals(tagName))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether the given sheet name may change during
+     * transformation, because it contains an expression or metadata.
+     * @param sheetName A sheet name.
+     * @return Whether the sheet name contains an expression or metadata.
+     */
+    private static boolean isExpressionSheetName(String sheetName)
+    {
+        return sheetName.contains(Expression.BEGIN_EXPR) || sheetName.contains(SheetCloner.BEGIN_METADATA);
+    }
+
+    /**
+     * Copies the transformed source <code>Sheet</code>, from another
+     * <code>Workbook</code>, into the target <code>Sheet</code>, replacing
+     * its contents.
+     * @param source The transformed <code>Sheet</code>.
+     * @param target The <code>Sheet</code> in the resultant
+     *    <code>Workbook</code>.
+     */
+    void assemble(Sheet source, Sheet target)
+    {
+        logger.debug("Assembling sheet \"{}\".", target.getSheetName());
+        setSourceWorkbook(source.getWorkbook());
+        int lastCol = Math.max(SheetUtil.getLastPopulatedColIndex(source), SheetUtil.getLastPopulatedColIndex(target));
+
+        clear(target);
+        for (Row sourceRow : source)
+        {
+            copyRow(sourceRow, target.createRow(sourceRow.getRowNum()));
+        }
+        for (CellRangeAddress region : source.getMergedRegions())
+        {
+            target.addMergedRegion(region.copy());
+        }
+        copyColumns(source, target, lastCol);
+        for (int rowBreak : source.getRowBreaks())
+        {
+            target.setRowBreak(rowBreak);
+        }
+        for (int colBreak : source.getColumnBreaks())
+        {
+            target.setColumnBreak(colBreak);
+        }
+        for (Hyperlink hyperlink : source.getHyperlinkList())
+        {
+            copyHyperlink(hyperlink, target);
+        }
+        copyHeaderFooter(source.getHeader(), target.getHeader());
+        copyHeaderFooter(source.getFooter(), target.getFooter());
+
+        Workbook sourceWorkbook = source.getWorkbook();
+        int sourceIndex = sourceWorkbook.getSheetIndex(source);
+        int targetIndex = myWorkbook.getSheetIndex(target);
+        int state = getSheetState(sourceWorkbook, sourceIndex);
+        if (state != getSheetState(myWorkbook, targetIndex))
+            myWorkbook.setSheetHidden(targetIndex, state);
+    }
+
+    /**
+     * Copies the formulas of named ranges that were changed during
+     * transformation, e.g. by name tags, from the given <code>Workbook</code>.
+     * Named ranges scoped to the first <code>numSheets</code> sheets of the
+     * source <code>Workbook</code> are copied to the named ranges scoped to
+     * the corresponding sheets, starting at the given index.  Workbook-scoped
+     * named ranges are copied if their formulas differ from the template.
+     * @param source The <code>Workbook</code> in which sheets were
+     *    transformed.
+     * @param numSheets The number of transformed sheets at the start of the
+     *    source <code>Workbook</code>.
+     * @param firstSheetIndex The 0-based index of the sheet in the resultant
+     *    <code>Workbook</code> that corresponds to the first sheet in the
+     *    source <code>Workbook</code>.
+     */
+    void assembleNames(Workbook source, int numSheets, int firstSheetIndex)
+    {
+        for (int i = 0; i < source.getNumberOfNames(); i++)
+        {
+            Name name = source.getNameAt(i);
+            int scope = name.getSheetIndex();
+            if (scope >= numSheets || name.isFunctionName() || NameTag.EXCEL_BUILT_IN_NAMES.contains(name.getNameName()))
+                continue;
+            String formula = name.getRefersToFormula();
+            if (scope == -1 && formula != null && formula.equals(myTemplateNameFormulas.get(name.getNameName())))
+                continue;
+            int targetScope = (scope == -1) ? -1 : firstSheetIndex + scope;
+            for (int j = 0; j < myWorkbook.getNumberOfNames(); j++)
+            {
+                Name targetName = myWorkbook.getNameAt(j);
+                if (targetName.getSheetIndex() == targetScope && targetName.getNameName().equals(name.getNameName()))
+                {
+                    if (formula != null && !formula.equals(targetName.getRefersToFormula()))
+                        targetName.setRefersToFormula(formula);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts mapping cell styles and fonts from the given source
+     * <code>Workbook</code>, if it's not the current source.
+     * @param sourceWorkbook The source <code>Workbook</code>.
+     */
+    private void setSourceWorkbook(Workbook sourceWorkbook)
+    {
+        if (sourceWorkbook != mySourceWorkbook)
+        {
+            mySourceWorkbook = sourceWorkbook;
+            myCellStyleMap.clear();
+            myFontIndexMap.clear();
+        }
+    }
+
+    /**
+     * Removes all rows, merged regions, and page breaks from the given
+     * <code>Sheet</code>.
+     * @param sheet A <code>Sheet</code>.
+     */
+    private void clear(Sheet sheet)
+    {
+        for (int i = sheet.getNumMergedRegions() - 1; i >= 0; i--)
+        {
+            sheet.removeMergedRegion(i);
+        }
+        List<Row> rows = new ArrayList<>();
+        for (Row row : sheet)
+        {
+            rows.add(row);
+        }
+        for (Row row : rows)
+        {
+            sheet.removeRow(row);
+        }
+        for (int rowBreak : sheet.getRowBreaks())
+        {
+            sheet.removeRowBreak(rowBreak);
+        }
+        for (int colBreak : sheet.getColumnBreaks())
+        {
+            sheet.removeColumnBreak(colBreak);
+        }
+    }
+
+    /**
+     * Copies a row's properties and cells.
+     * @param source The source <code>Row</code>.
+     * @param target The new target <code>Row</code>.
+     */
+    private void copyRow(Row source, Row target)
+    {
+        boolean customHeight;
+        if (source instanceof XSSFRow)
+            customHeight = ((XSSFRow) source).getCTRow().isSetHt();
+        else
+            customHeight = source.getHeight() != source.getSheet().getDefaultRowHeight();
+        if (customHeight)
+            target.setHeight(source.getHeight());
+        if (source.getZeroHeight())
+            target.setZeroHeight(true);
+        if (source.isFormatted())
+            target.setRowStyle(getCellStyle(source.getRowStyle()));
+        int rowNum = source.getRowNum();
+        for (int level = 0; level < source.getOutlineLevel(); level++)
+        {
+            target.getSheet().groupRow(rowNum, rowNum);
+        }
+
+        for (Cell sourceCell : source)
+        {
+            Cell cell = target.createCell(sourceCell.getColumnIndex());
+            cell.setCellStyle(getCellStyle(sourceCell.getCellStyle()));
+            switch (sourceCell.getCellType())
+            {
+            case Cell.CELL_TYPE_STRING:
+                cell.setCellValue(copyRichTextString(sourceCell.getRichStringCellValue()));
+                break;
+            case Cell.CELL_TYPE_NUMERIC:
+                cell.setCellValue(sourceCell.getNumericCellValue());
+                break;
+            case Cell.CELL_TYPE_BOOLEAN:
+                cell.setCellValue(sourceCell.getBooleanCellValue());
+                break;
+            case Cell.CELL_TYPE_ERROR:
+                cell.setCellErrorValue(sourceCell.getErrorCellValue());
+                break;
+            case Cell.CELL_TYPE_FORMULA:
+                cell.setCellFormula(sourceCell.getCellFormula());
+                break;
+            default:
+                // Blank; the cell style is all there is.
+                break;
+            }
+        }
+    }
+
+    /**
+     * Copies column widths, hidden columns, column styles, and column groups.
+     * @param source The source <code>Sheet</code>.
+     * @param target The target <code>Sheet</code>.
+     * @param lastCol The 0-based index of the last column to copy.
+     */
+    private void copyColumns(Sheet source, Sheet target, int lastCol)
+    {
+        for (int c = 0; c <= lastCol; c++)
+        {
+            int width = source.getColumnWidth(c);
+            for (int level = target.getColumnOutlineLevel(c); level < source.getColumnOutlineLevel(c); level++)
+            {
+                target.groupColumn(c, c);
+            }
+            // Grouping may change column widths.
+            if (target.getColumnWidth(c) != width)
+                target.setColumnWidth(c, width);
+            if (target.isColumnHidden(c) != source.isColumnHidden(c))
+                target.setColumnHidden(c, source.isColumnHidden(c));
+            CellStyle columnStyle = source.getColumnStyle(c);
+            if (columnStyle != null)
+                target.setDefaultColumnStyle(c, getCellStyle(columnStyle));
+        }
+    }
+
+    /**
+     * Copies a hyperlink to the corresponding cell in the target
+     * <code>Sheet</code>.
+     * @param source The source <code>Hyperlink</code>.
+     * @param target The target <code>Sheet</code>.
+     */
+    private void copyHyperlink(Hyperlink source, Sheet target)
+    {
+        Row row = target.getRow(source.getFirstRow());
+        if (row == null)
+            row = target.createRow(source.getFirstRow());
+        Cell cell = row.getCell(source.getFirstColumn());
+        if (cell == null)
+            cell = row.createCell(source.getFirstColumn());
+        Hyperlink hyperlink = myWorkbook.getCreationHelper().createHyperlink(source.getType());
+        hyperlink.setAddress(source.getAddress());
+        if (source.getLabel() != null)
+            hyperlink.setLabel(source.getLabel());
+        cell.setHyperlink(hyperlink);
+    }
+
+    /**
+     * Copies the text of a header or footer.
+     * @param source The source <code>Header</code> or <code>Footer</code>.
+     * @param target The target <code>Header</code> or <code>Footer</code>.
+     */
+    private void copyHeaderFooter(HeaderFooter source, HeaderFooter target)
+    {
+        if (!source.getLeft().equals(target.getLeft()))
+            target.setLeft(source.getLeft());
+        if (!source.getCenter().equals(target.getCenter()))
+            target.setCenter(source.getCenter());
+        if (!source.getRight().equals(target.getRight()))
+            target.setRight(source.getRight());
+    }
+
+    /**
+     * Returns the visibility state of the sheet at the given index.
+     * @param workbook A <code>Workbook</code>.
+     * @param index The 0-based sheet index.
+     * @return One of <code>Workbook.SHEET_STATE_VISIBLE</code>,
+     *    <code>Workbook.SHEET_STATE_HIDDEN</code>, or
+     *    <code>Workbook.SHEET_STATE_VERY_HIDDEN</code>.
+     */
+    private static int getSheetState(Workbook workbook, int index)
+    {
+        if (workbook.isSheetVeryHidden(index))
+            return Workbook.SHEET_STATE_VERY_HIDDEN;
+        if (workbook.isSheetHidden(index))
+            return Workbook.SHEET_STATE_HIDDEN;
+        return Workbook.SHEET_STATE_VISIBLE;
+    }
+
+    /**
+     * Copies a string value, mapping the fonts of any formatting runs.
+     * @param source The source <code>RichTextString</code>.
+     * @return A <code>RichTextString</code> for the resultant
+     *    <code>Workbook</code>.
+     */
+    private RichTextString copyRichTextString(RichTextString source)
+    {
+        String text = source.getString();
+        if (source.numFormattingRuns() == 0)
+            return myWorkbook.getCreationHelper().createRichTextString(text);
+        if (source instanceof XSSFRichTextString)
+        {
+            // XSSF formatting runs carry their own font properties.
+            return new XSSFRichTextString((CTRst) ((XSSFRichTextString) source).getCTRst().copy());
+        }
+        HSSFRichTextString hssfSource = (HSSFRichTextString) source;
+        HSSFRichTextString target = new HSSFRichTextString(text);
+        int numRuns = hssfSource.numFormattingRuns();
+        for (int i = 0; i < numRuns; i++)
+        {
+            int start = hssfSource.getIndexOfFormattingRun(i);
+            int end = (i + 1 < numRuns) ? hssfSource.getIndexOfFormattingRun(i + 1) : text.length();
+            if (start < end)
+                target.applyFont(start, end, getFontIndex(hssfSource.getFontOfFormattingRun(i)));
+        }
+        return target;
+    }
+
+    /**
+     * Returns the cell style in the resultant <code>Workbook</code> that
+     * matches the given cell style from the source <code>Workbook</code>,
+     * creating it if necessary.
+     * @param source A <code>CellStyle</code> from the source
+     *    <code>Workbook</code>.
+     * @return The matching <code>CellStyle</code> in the resultant
+     *    <code>Workbook</code>.
+     */
+    private CellStyle getCellStyle(CellStyle source)
+    {
+        int index = source.getIndex();
+        CellStyle cs = myCellStyleMap.get(index);
+        if (cs != null)
+            return cs;
+        if (index < myNumTemplateCellStyles)
+        {
+            cs = myWorkbook.getCellStyleAt(index);
+        }
+        else
+        {
+            Font sourceFont = mySourceWorkbook.getFontAt(source.getFontIndex());
+            cs = myCellStyleCache.findCellStyleWithFont(source, sourceFont);
+            if (cs == null)
+            {
+                cs = createCellStyle(source);
+                cs.setFont(myWorkbook.getFontAt(getFontIndex(source.getFontIndex())));
+                myCellStyleCache.cacheCellStyle(cs);
+            }
+        }
+        myCellStyleMap.put(index, cs);
+        return cs;
+    }
+
+    /**
+     * Creates a cell style in the resultant <code>Workbook</code> with the
+     * properties of the given cell style, except for its font.
+     * @param source A <code>CellStyle</code> from the source
+     *    <code>Workbook</code>.
+     * @return A new <code>CellStyle</code>.
+     */
+    private CellStyle createCellStyle(CellStyle source)
+    {
+        CellStyle cs = myWorkbook.createCellStyle();
+        cs.setAlignment(source.getAlignment());
+        cs.setBorderBottom(source.getBorderBottom());
+        cs.setBorderLeft(source.getBorderLeft());
+        cs.setBorderRight(source.getBorderRight());
+        cs.setBorderTop(source.getBorderTop());
+        cs.setDataFormat(myWorkbook.getCreationHelper().createDataFormat().getFormat(source.getDataFormatString()));
+        cs.setHidden(source.getHidden());
+        cs.setIndention(source.getIndention());
+        cs.setLocked(source.getLocked());
+        cs.setRotation(source.getRotation());
+        cs.setVerticalAlignment(source.getVerticalAlignment());
+        cs.setWrapText(source.getWrapText());
+        if (cs instanceof XSSFCellStyle)
+        {
+            XSSFCellStyle xcs = (XSSFCellStyle) cs;
+            XSSFCellStyle xSource = (XSSFCellStyle) source;
+            if (xSource.getBottomBorderXSSFColor() != null)
+                xcs.setBottomBorderColor(xSource.getBottomBorderXSSFColor());
+            if (xSource.getLeftBorderXSSFColor() != null)
+                xcs.setLeftBorderColor(xSource.getLeftBorderXSSFColor());
+            if (xSource.getRightBorderXSSFColor() != null)
+                xcs.setRightBorderColor(xSource.getRightBorderXSSFColor());
+            if (xSource.getTopBorderXSSFColor() != null)
+                xcs.setTopBorderColor(xSource.getTopBorderXSSFColor());
+            // Per POI Javadocs, set foreground color first!
+            if (xSource.getFillForegroundXSSFColor() != null)
+                xcs.setFillForegroundColor(xSource.getFillForegroundXSSFColor());
+            if (xSource.getFillBackgroundXSSFColor() != null)
+                xcs.setFillBackgroundColor(xSource.getFillBackgroundXSSFColor());
+        }
+        else
+        {
+            // HSSF colors are palette indexes, and the palette is the
+            // template's palette in both Workbooks.
+            cs.setBottomBorderColor(source.getBottomBorderColor());
+            cs.setLeftBorderColor(source.getLeftBorderColor());
+            cs.setRightBorderColor(source.getRightBorderColor());
+            cs.setTopBorderColor(source.getTopBorderColor());
+            cs.setFillForegroundColor(source.getFillForegroundColor());
+            cs.setFillBackgroundColor(source.getFillBackgroundColor());
+        }
+        cs.setFillPattern(source.getFillPattern());
+        return cs;
+    }
+
+    /**
+     * Returns the index of the font in the resultant <code>Workbook</code>
+     * that matches the font at the given index in the source
+     * <code>Workbook</code>, creating it if necessary.
+     * @param sourceIndex A font index in the source <code>Workbook</code>.
+     * @return The matching font index in the resultant <code>Workbook</code>.
+     */
+    private short getFontIndex(short sourceIndex)
+    {
+        if (sourceIndex < myNumTemplateFonts)
+            return sourceIndex;
+        Short index = myFontIndexMap.get(sourceIndex);
+        if (index != null)
+            return index;
+        Font source = mySourceWorkbook.getFontAt(sourceIndex);
+        Font font = myFontCache.findFont(source);
+        if (font == null)
+        {
+            Color fontColor;
+            if (source instanceof HSSFFont)
+                fontColor = ((HSSFFont) source).getHSSFColor((HSSFWorkbook) mySourceWorkbook);
+            else
+                fontColor = ((XSSFFont) source).getXSSFColor();
+            font = SheetUtil.createFont(myWorkbook, source.getBoldweight(), source.getItalic(), fontColor,
+                    source.getFontName(), source.getFontHeightInPoints(), source.getUnderline(), source.getStrikeout(),
+                    source.getCharSet(), source.getTypeOffset());
+            myFontCache.cacheFont(font);
+        }
+        myFontIndexMap.put(sourceIndex, font.getIndex());
+        return font.getIndex();
+    }
+}
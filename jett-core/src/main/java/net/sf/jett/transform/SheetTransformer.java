@@ -1,7 +1,6 @@
 package net.sf.jett.transform;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -18,6 +17,7 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.SheetConditionalFormatting;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
 
 import net.sf.jett.event.SheetEvent;
 import net.sf.jett.event.SheetListener;
@@ -25,6 +25,9 @@ import net.sf.jett.expression.Expression;
 import net.sf.jett.expression.ExpressionFactory;
 import net.sf.jett.formula.Formula;
 import net.sf.jett.model.Block;
+import net.sf.jett.model.MergedRegions;
+import net.sf.jett.model.ProcessedCells;
+import net.sf.jett.model.TagLocations;
 import net.sf.jett.model.WorkbookContext;
 import net.sf.jett.parser.FormulaParser;
 import net.sf.jett.parser.TagParser;
@@ -47,6 +50,8 @@ public class SheetTransformer
 {
     private static final Logger logger = LogManager.getLogger();
 
+    private List<RowSpooler> myRowSpoolers = new ArrayList<>();
+
     /**
      * Specifies a callback interface that is called after all off-sheet
      * properties are set.  This is only necessary so the
@@ -139,20 +144,55 @@ public class SheetTransformer
         tagContext.setSheet(sheet);
         tagContext.setBlock(block);
         tagContext.setBeans(beans);
-        tagContext.setProcessedCellsMap(new HashMap<String, Cell>());
-        List<CellRangeAddress> mergedRegions = new ArrayList<>();
-        tagContext.setMergedRegions(mergedRegions);
+        tagContext.setProcessedCells(new ProcessedCells());
+        MergedRegions mergedRegions = new MergedRegions();
+        tagContext.setSheetMergedRegions(mergedRegions);
         readMergedRegions(sheet, mergedRegions);
         List<List<CellRangeAddress>> conditionalFormattingRegions = new ArrayList<>();
         tagContext.setConditionalFormattingRegions(conditionalFormattingRegions);
         readConditionalFormattingRegions(sheet, conditionalFormattingRegions);
-        BlockTransformer transformer = new BlockTransformer();
+        RowSpooler spooler = null;
+        if (context.isStreaming() && sheet instanceof XSSFSheet)
+        {
+            spooler = new RowSpooler((XSSFSheet) sheet, tagContext.getProcessedCells());
+            myRowSpoolers.add(spooler);
+            tagContext.setRowSpooler(spooler);
+        }
+        BlockTransformer transformer = new BlockTransformer(spooler);
         transformer.transform(tagContext, context);
         writeMergedRegions(sheet, mergedRegions);
 
         fireSheetProcessedEvent(context, sheet, beans);
     }
 
+    /**
+     * Returns the <code>RowSpoolers</code> created for the sheets transformed
+     * in streaming mode.
+     * @return A <code>List</code> of <code>RowSpoolers</code>, possibly empty.
+     * @since 0.11.1
+     */
+    List<RowSpooler> getRowSpoolers()
+    {
+        return myRowSpoolers;
+    }
+
+    /**
+     * Determines whether any rows were spooled out of any sheet transformed
+     * in streaming mode.
+     * @return <code>true</code> if any rows were spooled, else
+     *    <code>false</code>.
+     * @since 0.11.1
+     */
+    boolean hasSpooledRows()
+    {
+        for (RowSpooler spooler : myRowSpoolers)
+        {
+            if (spooler.getNumSpooledRows() > 0)
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Transform any expressions in "off-sheet" properties, including header/
      * footer and the sheet name itself.
@@ -241,17 +281,17 @@ public class SheetTransformer
      * Searches for all <code>Formulas</code> contained on the given
      * <code>Sheet</code>.  Adds them to the given formula map.  Searches for
      * tags on the given <code>Sheet</code>.  Adds them to the given tag
-     * locations map.
+     * locations.
      *
      * @param sheet The <code>Sheet</code> on which to search for
      *    <code>Formulas</code>.
      * @param formulaMap A <code>Map</code> of strings to <code>Formulas</code>,
      *    with the keys of the format "sheetName!formulaText".
-     * @param tagLocationsMap A <code>Map</code> of cell reference strings to
-     *    original cell reference strings.
+     * @param tagLocations The <code>TagLocations</code> to which to add tag
+     *    locations.
      */
     public void gatherFormulasAndTagLocations(Sheet sheet, Map<String, Formula> formulaMap,
-                                              Map<String, String> tagLocationsMap)
+                                              TagLocations tagLocations)
     {
         int top = sheet.getFirstRowNum();
         int bottom = sheet.getLastRowNum();
@@ -308,10 +348,10 @@ public class SheetTransformer
                                 if (!Character.isWhitespace(next) &&
                                         "=<>\"/".indexOf(next) == -1)
                                 {
-                                    String cellRef = new CellReference(sheet.getSheetName(),
+                                    String cellRef = new CellReference(sheetName,
                                             cell.getRowIndex(), cell.getColumnIndex(), false, false).formatAsString();
                                     logger.debug("gF: Tag text found: {} for {}", cellText, cellRef);
-                                    tagLocationsMap.put(cellRef, cellRef);
+                                    tagLocations.put(sheetName, cell.getRowIndex(), cell.getColumnIndex(), cellRef);
                                 }
                             }
                         }  // End if cell text isn't null
@@ -429,15 +469,14 @@ public class SheetTransformer
 
     /**
      * Reads all merged regions from the given <code>Sheet</code> and populates
-     * the given <code>List</code> with them.  All transformation that
+     * the given <code>MergedRegions</code> with them.  All transformation that
      * manipulates merged regions will be done on this cache of merged regions,
      * instead of directly on the <code>Sheet</code>, for performance reasons.
      * @param sheet The <code>Sheet</code>.
-     * @param mergedRegions A <code>List</code> of
-     *    <code>CellRangeAddress</code>es, which is modified.
+     * @param mergedRegions The <code>MergedRegions</code>, which is modified.
      * @since 0.8.0
      */
-    private void readMergedRegions(Sheet sheet, List<CellRangeAddress> mergedRegions)
+    private void readMergedRegions(Sheet sheet, MergedRegions mergedRegions)
     {
         int numMergedRegions = sheet.getNumMergedRegions();
         for (int i = 0; i < numMergedRegions; i++)
@@ -448,27 +487,54 @@ public class SheetTransformer
 
     /**
      * Clears all merged regions on the given <code>Sheet</code> and populates
-     * the <code>Sheet</code> with the given <code>List</code> of merged
-     * regions.
+     * the <code>Sheet</code> with the given merged regions.  The regions are
+     * validated as one batch, so that on an <code>XSSFSheet</code> they can
+     * be added without POI validating each region against all regions added
+     * before it.
      * @param sheet The <code>Sheet</code>.
-     * @param mergedRegions A <code>List</code> of
-     *    <code>CellRangeAddresses</code>.
+     * @param mergedRegions The <code>MergedRegions</code>.
+     * @throws IllegalStateException If two merged regions overlap.
      * @since 0.8.0
      */
-    private void writeMergedRegions(Sheet sheet, List<CellRangeAddress> mergedRegions)
+    private void writeMergedRegions(Sheet sheet, MergedRegions mergedRegions)
     {
-        // Clear the existing merged regions on the sheet.
-        // Remove them last item first, in an attempt to avoid internal ArrayList
-        // shifting.
-        for (int i = sheet.getNumMergedRegions() - 1; i >= 0; i--)
+        mergedRegions.validate();
+        int numMergedRegions = sheet.getNumMergedRegions();
+        if (sheet instanceof XSSFSheet)
         {
-            sheet.removeMergedRegion(i);
+            XSSFSheet xssfSheet = (XSSFSheet) sheet;
+            // Clear the existing merged regions on the sheet, all at once.
+            if (numMergedRegions > 0)
+            {
+                List<Integer> indexes = new ArrayList<>(numMergedRegions);
+                for (int i = 0; i < numMergedRegions; i++)
+                {
+                    indexes.add(i);
+                }
+                xssfSheet.removeMergedRegions(indexes);
+            }
+            // Send in the new, already validated regions.
+            for (CellRangeAddress mergedRegion : mergedRegions)
+            {
+                xssfSheet.addMergedRegionUnsafe(mergedRegion);
+            }
         }
-        // Send in the new regions.
-        for (CellRangeAddress mergedRegion : mergedRegions)
+        else
         {
-            sheet.addMergedRegion(mergedRegion);
+            // Clear the existing merged regions on the sheet.
+            // Remove them last item first, in an attempt to avoid internal ArrayList
+            // shifting.
+            for (int i = numMergedRegions - 1; i >= 0; i--)
+            {
+                sheet.removeMergedRegion(i);
+            }
+            // Send in the new regions.
+            for (CellRangeAddress mergedRegion : mergedRegions)
+            {
+                sheet.addMergedRegion(mergedRegion);
+            }
         }
+        logger.debug("Wrote {} merged regions on sheet {}.", mergedRegions.size(), sheet.getSheetName());
     }
 
     /**
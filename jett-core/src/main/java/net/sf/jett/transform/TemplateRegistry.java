@@ -0,0 +1,131 @@
+package net.sf.jett.transform;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+
+/**
+ * <p>A <code>TemplateRegistry</code> keeps <code>CompiledTemplates</code> in
+ * memory by name, so that each template spreadsheet is read from disk,
+ * parsed for formulas and tag locations, and scanned for cell styles and
+ * fonts only once.  Every transformation of a registered template then starts
+ * from the in-memory template bytes with pre-built style and font cache
+ * indexes, e.g.:</p>
+ *
+ * <pre>
+ * TemplateRegistry registry = new TemplateRegistry();
+ * ...
+ * CompiledTemplate template = registry.getTemplate("templates/report.xlsx");
+ * transformer.transform(template, outputStream, beans);
+ * </pre>
+ *
+ * <p>A <code>TemplateRegistry</code> may be shared among threads.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class TemplateRegistry
+{
+    private static final Logger logger = LogManager.getLogger();
+
+    private ConcurrentMap<String, CompiledTemplate> myTemplates;
+
+    /**
+     * Constructs an empty <code>TemplateRegistry</code>.
+     */
+    public TemplateRegistry()
+    {
+        myTemplates = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the <code>CompiledTemplate</code> for the template spreadsheet
+     * with the given filename, compiling and registering it under that
+     * filename if it hasn't been registered yet.
+     * @param inFilename The template spreadsheet filename.
+     * @return The <code>CompiledTemplate</code>.
+     * @throws IOException If there is a problem reading the template
+     *    spreadsheet.
+     * @throws InvalidFormatException If there is a problem creating a
+     *    <code>Workbook</code> object.
+     */
+    public CompiledTemplate getTemplate(String inFilename) throws IOException, InvalidFormatException
+    {
+        CompiledTemplate template = myTemplates.get(inFilename);
+        if (template == null)
+        {
+            logger.debug("Loading template \"{}\".", inFilename);
+            template = CompiledTemplate.compile(inFilename);
+            // Another thread may have loaded it in the meantime; keep the first.
+            CompiledTemplate existing = myTemplates.putIfAbsent(inFilename, template);
+            if (existing != null)
+                template = existing;
+        }
+        return template;
+    }
+
+    /**
+     * Compiles the template spreadsheet from the given
+     * <code>InputStream</code> and registers it under the given name,
+     * replacing any template already registered under that name.
+     * @param name The name under which to register the template.
+     * @param is The <code>InputStream</code> from the template spreadsheet.
+     *    It is read fully but not closed.
+     * @return The new <code>CompiledTemplate</code>.
+     * @throws IOException If there is a problem reading the template
+     *    spreadsheet.
+     * @throws InvalidFormatException If there is a problem creating a
+     *    <code>Workbook</code> object.
+     */
+    public CompiledTemplate register(String name, InputStream is) throws IOException, InvalidFormatException
+    {
+        CompiledTemplate template = CompiledTemplate.compile(is);
+        myTemplates.put(name, template);
+        return template;
+    }
+
+    /**
+     * Returns the <code>CompiledTemplate</code> registered under the given
+     * name, without loading anything.
+     * @param name The name of the template.
+     * @return The <code>CompiledTemplate</code>, or <code>null</code> if none
+     *    has been registered under that name.
+     */
+    public CompiledTemplate get(String name)
+    {
+        return myTemplates.get(name);
+    }
+
+    /**
+     * Removes the template registered under the given name, e.g. after the
+     * template spreadsheet has changed.  The next call to
+     * <code>getTemplate</code> with that name will load it again.
+     * @param name The name of the template.
+     */
+    public void remove(String name)
+    {
+        myTemplates.remove(name);
+    }
+
+    /**
+     * Removes all registered templates.
+     */
+    public void clear()
+    {
+        myTemplates.clear();
+    }
+
+    /**
+     * Returns the number of registered templates.
+     * @return The number of registered templates.
+     */
+    public int size()
+    {
+        return myTemplates.size();
+    }
+}
@@ -0,0 +1,107 @@
+package net.sf.jett.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>A <code>TransformFuture</code> is the result of an asynchronous
+ * transformation.  Besides waiting for it with <code>get</code>, callers may
+ * register listeners that are run when it's done, so that no thread has to
+ * wait for it, e.g.</p>
+ *
+ * <pre>
+ * final TransformFuture&lt;Workbook&gt; future = transformer.transformAsync(template, beans, executor);
+ * future.addListener(new Runnable() {
+ *     public void run() {
+ *         // Doesn't block; the future is done.
+ *         Workbook workbook = future.get();
+ *         ...
+ *     }
+ * });
+ * </pre>
+ *
+ * <p>A listener runs once, on the thread that completes the transformation,
+ * or cancels it, or, if the transformation is already done when the listener
+ * is added, on the thread that adds it.  Listeners should be quick; any
+ * <code>RuntimeException</code> they throw is logged and ignored.</p>
+ *
+ * @param <V> The type of the result.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ * @see ExcelTransformer#transformAsync(CompiledTemplate, java.util.Map, java.util.concurrent.Executor)
+ */
+public class TransformFuture<V> extends FutureTask<V>
+{
+    private static final Logger logger = LogManager.getLogger();
+
+    private List<Runnable> myListeners;
+
+    /**
+     * Constructs a <code>TransformFuture</code> that runs the given task.
+     * @param task The task.
+     */
+    TransformFuture(Callable<V> task)
+    {
+        super(task);
+        myListeners = new ArrayList<>(1);
+    }
+
+    /**
+     * Registers a listener to be run when this <code>TransformFuture</code> is
+     * done, whether it succeeded, failed, or was cancelled.  If it's already
+     * done, the listener is run right away.
+     * @param listener The listener.
+     */
+    public void addListener(Runnable listener)
+    {
+        synchronized (this)
+        {
+            if (myListeners != null)
+            {
+                myListeners.add(listener);
+                return;
+            }
+        }
+        runListener(listener);
+    }
+
+    /**
+     * Runs the registered listeners.
+     */
+    @Override
+    protected void done()
+    {
+        List<Runnable> listeners;
+        synchronized (this)
+        {
+            listeners = myListeners;
+            myListeners = null;
+        }
+        for (Runnable listener : listeners)
+        {
+            runListener(listener);
+        }
+    }
+
+    /**
+     * Runs the given listener, logging anything it throws.
+     * @param listener The listener.
+     */
+    private static void runListener(Runnable listener)
+    {
+        try
+        {
+            listener.run();
+        }
+        catch (RuntimeException e)
+        {
+            logger.error("TransformFuture listener threw an exception.", e);
+        }
+    }
+}
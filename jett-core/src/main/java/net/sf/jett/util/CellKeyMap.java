@@ -0,0 +1,293 @@
+package net.sf.jett.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>A <code>CellKeyMap</code> maps cell positions on one <code>Sheet</code>
+ * to values.  A position's row and column indexes are packed into a primitive
+ * <code>long</code> key, and keys are stored in an open addressing hash table
+ * with linear probing, so that looking up, adding, and removing an entry
+ * don't allocate anything, unlike keying a <code>Map</code> by a cell
+ * reference string such as "Sheet1!C17".</p>
+ *
+ * <p><code>null</code> values aren't supported.  This class isn't thread
+ * safe.</p>
+ *
+ * @param <V> The type of the values.
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class CellKeyMap<V>
+{
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] myKeys;
+    private Object[] myValues;
+    private int mySize;
+    private int myMask;
+    private int myThreshold;
+
+    /**
+     * Constructs an empty <code>CellKeyMap</code>.
+     */
+    public CellKeyMap()
+    {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructs a <code>CellKeyMap</code> with the same entries as the given
+     * <code>CellKeyMap</code>.
+     * @param other Another <code>CellKeyMap</code>.
+     */
+    public CellKeyMap(CellKeyMap<? extends V> other)
+    {
+        myKeys = other.myKeys.clone();
+        myValues = other.myValues.clone();
+        mySize = other.mySize;
+        myMask = other.myMask;
+        myThreshold = other.myThreshold;
+    }
+
+    /**
+     * Packs the given row and column indexes into a key.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @return The key.
+     */
+    public static long key(int rowNum, int colNum)
+    {
+        return ((long) rowNum << 32) | (colNum & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the row index packed into the given key.
+     * @param key The key.
+     * @return The 0-based row index.
+     */
+    public static int getRowNum(long key)
+    {
+        return (int) (key >>> 32);
+    }
+
+    /**
+     * Returns the column index packed into the given key.
+     * @param key The key.
+     * @return The 0-based column index.
+     */
+    public static int getColNum(long key)
+    {
+        return (int) key;
+    }
+
+    /**
+     * Returns the value at the given position.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @return The value, or <code>null</code> if there is none.
+     */
+    public V get(int rowNum, int colNum)
+    {
+        return get(key(rowNum, colNum));
+    }
+
+    /**
+     * Returns the value for the given key.
+     * @param key The key.
+     * @return The value, or <code>null</code> if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        int slot = findSlot(key);
+        return (V) myValues[slot];
+    }
+
+    /**
+     * Returns whether there is a value at the given position.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @return Whether there is a value at the given position.
+     */
+    public boolean containsKey(int rowNum, int colNum)
+    {
+        return myValues[findSlot(key(rowNum, colNum))] != null;
+    }
+
+    /**
+     * Maps the given position to the given value.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @param value The value, which may not be <code>null</code>.
+     * @return The previous value, or <code>null</code> if there was none.
+     * @throws NullPointerException If <code>value</code> is <code>null</code>.
+     */
+    public V put(int rowNum, int colNum, V value)
+    {
+        return put(key(rowNum, colNum), value);
+    }
+
+    /**
+     * Maps the given key to the given value.
+     * @param key The key.
+     * @param value The value, which may not be <code>null</code>.
+     * @return The previous value, or <code>null</code> if there was none.
+     * @throws NullPointerException If <code>value</code> is <code>null</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        if (value == null)
+            throw new NullPointerException("CellKeyMap values may not be null.");
+        int slot = findSlot(key);
+        V old = (V) myValues[slot];
+        myKeys[slot] = key;
+        myValues[slot] = value;
+        if (old == null && ++mySize > myThreshold)
+            allocate(myKeys.length * 2);
+        return old;
+    }
+
+    /**
+     * Removes the value at the given position.
+     * @param rowNum The 0-based row index.
+     * @param colNum The 0-based column index.
+     * @return The removed value, or <code>null</code> if there was none.
+     */
+    public V remove(int rowNum, int colNum)
+    {
+        return remove(key(rowNum, colNum));
+    }
+
+    /**
+     * Removes the value for the given key.  Later entries of the same probe
+     * sequence are shifted back, so that no "deleted" markers are needed.
+     * @param key The key.
+     * @return The removed value, or <code>null</code> if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key)
+    {
+        int slot = findSlot(key);
+        V old = (V) myValues[slot];
+        if (old == null)
+            return null;
+        myValues[slot] = null;
+        mySize--;
+
+        int gap = slot;
+        int next = (gap + 1) & myMask;
+        while (myValues[next] != null)
+        {
+            int home = hash(myKeys[next]);
+            // Move the entry into the gap if the gap is between its home slot
+            // and its current slot, cyclically.
+            if (((next - home) & myMask) >= ((next - gap) & myMask))
+            {
+                myKeys[gap] = myKeys[next];
+                myValues[gap] = myValues[next];
+                myValues[next] = null;
+                gap = next;
+            }
+            next = (next + 1) & myMask;
+        }
+        return old;
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return The number of entries.
+     */
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Returns whether there are no entries.
+     * @return Whether there are no entries.
+     */
+    public boolean isEmpty()
+    {
+        return mySize == 0;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear()
+    {
+        Arrays.fill(myValues, null);
+        mySize = 0;
+    }
+
+    /**
+     * Returns all keys, in no particular order.
+     * @return An array of keys.
+     */
+    public long[] keys()
+    {
+        long[] keys = new long[mySize];
+        int i = 0;
+        for (int slot = 0; slot < myValues.length; slot++)
+        {
+            if (myValues[slot] != null)
+                keys[i++] = myKeys[slot];
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the slot that contains the given key, or else the empty slot at
+     * which the key's probe sequence ends.
+     * @param key The key.
+     * @return The slot index.
+     */
+    private int findSlot(long key)
+    {
+        int slot = hash(key);
+        while (myValues[slot] != null && myKeys[slot] != key)
+        {
+            slot = (slot + 1) & myMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the home slot of the given key.
+     * @param key The key.
+     * @return The slot index.
+     */
+    private int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & myMask;
+    }
+
+    /**
+     * Allocates tables of the given capacity, re-adding any existing entries.
+     * @param capacity The new capacity, a power of 2.
+     */
+    private void allocate(int capacity)
+    {
+        long[] oldKeys = myKeys;
+        Object[] oldValues = myValues;
+        myKeys = new long[capacity];
+        myValues = new Object[capacity];
+        myMask = capacity - 1;
+        // Keep the load factor at most one half.
+        myThreshold = capacity / 2;
+        if (oldValues != null)
+        {
+            for (int slot = 0; slot < oldValues.length; slot++)
+            {
+                if (oldValues[slot] != null)
+                {
+                    int newSlot = findSlot(oldKeys[slot]);
+                    myKeys[newSlot] = oldKeys[slot];
+                    myValues[newSlot] = oldValues[slot];
+                }
+            }
+        }
+    }
+}
@@ -15,6 +15,8 @@ import org.apache.poi.ss.formula.SheetNameFormatter;
 import net.sf.jett.formula.CellRef;
 import net.sf.jett.formula.CellRefRange;
 import net.sf.jett.formula.Formula;
+import net.sf.jett.formula.FormulaTokens;
+import net.sf.jett.model.CellRefIndex;
 import net.sf.jett.model.WorkbookContext;
 
 /**
@@ -27,11 +29,6 @@ public class FormulaUtil
 {
     private static final Logger logger = LogManager.getLogger();
 
-    // Prevents a mapping of "A1" => "A21" and "A2" => "A22" from yielding
-    // "A1 + A2" => "A21 + A2" => "A221 + A22".
-    private static final String NEGATIVE_LOOKBEHIND_ALPHA = "(?<![A-Za-z])";
-    private static final String NEGATIVE_LOOKAHEAD_ALPHAN = "(?![A-Za-z0-9])";
-
     // Prefixes for cell keys in the cell ref map.
     /**
      * Prefix for explicit cell map references.
@@ -202,8 +199,19 @@ public class FormulaUtil
         logger.debug("cEFS: Formula text:\"{}\" on sheet {}", formulaText, sheetName);
         logger.debug("  excelFormula: \"{}\"", excelFormula);
 
-        for (CellRef origCellRef : origCellRefs)
+        // Look up translated cells with the suffix first, then removing
+        // suffixes one at a time, e.g. "[0,1][2,0]", "[0,1]", "", if the cell
+        // key represents a formula cell reference outside of a looping tag.
+        List<String> suffixes = new ArrayList<>();
+        for (int end = suffix.length(); end != -1; end = (end > 0) ? suffix.lastIndexOf("[", end - 1) : -1)
+        {
+            suffixes.add(suffix.substring(0, end));
+        }
+
+        String[] replacements = new String[origCellRefs.size()];
+        for (int i = 0; i < replacements.length; i++)
         {
+            CellRef origCellRef = origCellRefs.get(i);
             logger.debug("  Original cell ref: {}", origCellRef.formatAsString());
 
             // Look up the translated cells by cell key, which requires a sheet name.
@@ -217,33 +225,20 @@ public class FormulaUtil
             {
                 cellKey = EXPLICIT_REF_PREFIX + cellKey;
             }
-            // Append the suffix to the cell key to look up the correct references.
-            cellKey += suffix;
 
             // Find the appropriate cell references.
-            // It may be necessary to remove suffixes iteratively, if the cell key
-            // represents a formula cell reference outside of a looping tag.
-            List<CellRef> transCellRefs;
-            do
+            List<CellRef> transCellRefs = null;
+            for (String keySuffix : suffixes)
             {
-                transCellRefs = cellRefMap.get(cellKey);
-                logger.debug("  cellKey: {} => {}", cellKey, transCellRefs);
-
-                // Remove suffixes, one at a time if it's not found.
-                if (transCellRefs == null)
-                {
-                    int lastSuffixIdx = cellKey.lastIndexOf("[");
-                    if (lastSuffixIdx != -1)
-                    {
-                        cellKey = cellKey.substring(0, lastSuffixIdx);
-                    }
-                    else
-                    {
-                        throw new IllegalStateException("Unable to find cell references for cell key \"" + cellKey + "\"!");
-                    }
-                }
+                transCellRefs = cellRefMap.get(cellKey + keySuffix);
+                logger.debug("  cellKey: {} => {}", cellKey + keySuffix, transCellRefs);
+                if (transCellRefs != null)
+                    break;
+            }
+            if (transCellRefs == null)
+            {
+                throw new IllegalStateException("Unable to find cell references for cell key \"" + cellKey + "\"!");
             }
-            while (transCellRefs == null);
 
             // Construct the replacement string.
             String cellRefs;
@@ -253,11 +248,11 @@ public class FormulaUtil
             logger.debug("  Number of translated cell refs: {}", numCellRefs);
             if (numCellRefs > 0)
             {
-                for (int i = 0; i < numCellRefs; i++)
+                for (int j = 0; j < numCellRefs; j++)
                 {
-                    if (i > 0)
+                    if (j > 0)
                         buf.append(",");
-                    String cellRef = transCellRefs.get(i).formatAsString();
+                    String cellRef = transCellRefs.get(j).formatAsString();
                     logger.debug("    Appending cell ref string: \"{}\".", cellRef);
                     buf.append(cellRef);
                 }
@@ -273,20 +268,17 @@ public class FormulaUtil
                     cellRefs = CellRef.DEF_DEFAULT_VALUE;
                 logger.debug("    Appending default value: \"{}\".", cellRefs);
             }
-            // Replace the formula text, including any default value, with the
-            // updated cell references.
-            logger.debug("Regex: {}", NEGATIVE_LOOKBEHIND_ALPHA +
-                    Pattern.quote(origCellRef.formatAsStringWithDef()) +
-                    NEGATIVE_LOOKAHEAD_ALPHAN);
-            logger.debug("cellRefs: {}", Matcher.quoteReplacement(cellRefs));
-
-            excelFormula = excelFormula.replaceAll(
-                    NEGATIVE_LOOKBEHIND_ALPHA +
-                            Pattern.quote(origCellRef.formatAsStringWithDef()) +
-                            NEGATIVE_LOOKAHEAD_ALPHAN,
-                    Matcher.quoteReplacement(cellRefs));
+            replacements[i] = cellRefs;
         }
-        return excelFormula;
+        // Replace the formula text, including any default values, with the
+        // updated cell references, using the formula text already split at
+        // the original cell references.  Text that has changed since, e.g.
+        // from expressions inside the formula, is split here, because the
+        // Formula may be shared by other transformations.
+        FormulaTokens tokens = formula.getTokens();
+        if (!tokens.getText().equals(excelFormula))
+            tokens = new FormulaTokens(excelFormula, formula.getCellRefs());
+        return tokens.format(replacements);
     }
 
     /**
@@ -464,6 +456,7 @@ public class FormulaUtil
             }  // End null check on templateSheetRefName
             cellRefs.addAll(addedCellRefs);
         }  // End for loop on cell keys.
+        context.invalidateCellRefIndex();
     }
 
     /**
@@ -561,6 +554,7 @@ public class FormulaUtil
         }
         // Add the new entries.
         cellRefMap.putAll(addToCellRefMap);
+        context.invalidateCellRefIndex();
     }
 
     /**
@@ -653,6 +647,7 @@ public class FormulaUtil
         }
         // Put back all the replacements.
         cellRefMap.putAll(addToCellRefMap);
+        context.invalidateCellRefIndex();
     }
 
     /**
@@ -758,34 +753,15 @@ public class FormulaUtil
     {
         logger.trace("    sCRIR: left {}, right {}, top {}, bottom {}, numCols {}, numRows {}, remove {}, add {}",
                 left, right, top, bottom, numCols, numRows, remove, add);
-        Map<String, List<CellRef>> cellRefMap = context.getCellRefMap();
-        List<String> templateSheetNames = context.getTemplateSheetNames();
-        List<String> newSheetNames = context.getSheetNames();
         if (numCols == 0 && numRows == 0 && remove && add)
             return;
-        for (String cellKey : cellRefMap.keySet())
+        Map<String, List<CellRef>> cellRefMap = context.getCellRefMap();
+        CellRefIndex cellRefIndex = context.getCellRefIndex();
+        String templateSheetName = getTemplateSheetName(sheetName, context);
+        // Only cell keys with cell references in range, on this sheet or its
+        // template sheet, or explicit, are affected.
+        for (String cellKey : cellRefIndex.findCellKeys(sheetName, templateSheetName, left, right, top, bottom))
         {
-            // All cell keys have the sheet name in them.
-            boolean isExplicit = cellKey.startsWith(EXPLICIT_REF_PREFIX);
-            // Bypass explicit/implicit indicator.
-            String keySheetName = cellKey.substring(2, cellKey.indexOf("!"));
-            if (!keySheetName.equals(sheetName))
-            {
-                // No exact match.  Check the corresponding template sheet name, if
-                // it exists.
-                int index = newSheetNames.indexOf(sheetName);
-                if (isExplicit || (index != -1 && keySheetName.equals(templateSheetNames.get(index))))
-                {
-                    // Template sheet name match.
-                    // Update keySheetName (the template sheet name) to the new sheet name.
-                    keySheetName = sheetName;
-                }
-                else
-                {
-                    continue;
-                }
-            }
-
             List<CellRef> cellRefs = cellRefMap.get(cellKey);
             List<CellRef> delete = new ArrayList<>();
             List<CellRef> insert = new ArrayList<>();
@@ -794,7 +770,7 @@ public class FormulaUtil
                 String cellRefSheetName = cellRef.getSheetName();
                 int row = cellRef.getRow();
                 int col = cellRef.getCol();
-                if ((cellRefSheetName == null || keySheetName.equals(cellRefSheetName)) &&
+                if ((cellRefSheetName == null || sheetName.equals(cellRefSheetName)) &&
                         (row >= top && row <= bottom && col >= left && col <= right))
                 {
                     if (remove)
@@ -812,9 +788,21 @@ public class FormulaUtil
                 }
             }
             if (remove)
+            {
                 cellRefs.removeAll(delete);
+                for (CellRef cellRef : delete)
+                {
+                    cellRefIndex.remove(cellKey, cellRef);
+                }
+            }
             if (add)
+            {
                 cellRefs.addAll(insert);
+                for (CellRef cellRef : insert)
+                {
+                    cellRefIndex.add(cellKey, cellRef);
+                }
+            }
         }
     }
 
@@ -847,33 +835,85 @@ public class FormulaUtil
     {
         logger.trace("    cCRIR: left {}, right {}, top {}, bottom {}, numCols {}, numRows {}, currSuffix: \"{}\", newSuffix: \"{}\"",
                 left, right, top, bottom, numCols, numRows, currSuffix, newSuffix);
+        copyCellReferencesInRange(sheetName, context, left, right, top, bottom,
+                new int[] {numCols}, new int[] {numRows}, currSuffix, new String[] {newSuffix});
+    }
+
+    /**
+     * Copies cell references that are on the same <code>Sheet</code> in the
+     * given cell reference map into each of the consecutive blocks that a loop
+     * occupies, as if {@link #copyCellReferencesInRange(String, WorkbookContext, int, int, int, int, int, int, String, String)}
+     * were called once per block, with block <code>i</code> translated by
+     * <code>i</code> times the given number of rows and columns, but scanning
+     * the cell reference map only once.
+     * @param sheetName The name of the <code>Sheet</code> on which to copy
+     *    references.
+     * @param context The <code>WorkbookContext</code> which holds the cell ref
+     *    map, template sheet names, and new sheet names.
+     * @param left The 0-based index of the column on which to start copying
+     *    cell references.
+     * @param right The 0-based index of the column on which to end copying
+     *    cell references.
+     * @param top The 0-based index of the row on which to start copying
+     *    cell references.
+     * @param bottom The 0-based index of the row on which to end copying
+     *    cell references.
+     * @param numCols The number of columns between blocks.
+     * @param numRows The number of rows between blocks.
+     * @param currSuffix The current "[loop,iter]*" suffix we're already in.
+     * @param newSuffixes The new "[loop,iter]" suffixes to add for new
+     *    entries, one per block, the first of which is the original range.
+     * @since 0.11.1
+     */
+    public static void copyCellReferencesInRange(String sheetName, WorkbookContext context,
+                                                 int left, int right, int top, int bottom, int numCols, int numRows, String currSuffix, String[] newSuffixes)
+    {
+        logger.trace("    cCRIR: left {}, right {}, top {}, bottom {}, numCols {}, numRows {}, currSuffix: \"{}\", numBlocks: {}",
+                left, right, top, bottom, numCols, numRows, currSuffix, newSuffixes.length);
+        int[] colOffsets = new int[newSuffixes.length];
+        int[] rowOffsets = new int[newSuffixes.length];
+        for (int i = 0; i < newSuffixes.length; i++)
+        {
+            colOffsets[i] = i * numCols;
+            rowOffsets[i] = i * numRows;
+        }
+        copyCellReferencesInRange(sheetName, context, left, right, top, bottom,
+                colOffsets, rowOffsets, currSuffix, newSuffixes);
+    }
+
+    /**
+     * Copies cell references that are on the same <code>Sheet</code> in the
+     * given cell reference map once per given translation, in one scan of the
+     * map.  References copied by one translation are outside of the range, so
+     * they aren't copied again by the next.
+     * @param sheetName The name of the <code>Sheet</code> on which to copy
+     *    references.
+     * @param context The <code>WorkbookContext</code> which holds the cell ref
+     *    map, template sheet names, and new sheet names.
+     * @param left The 0-based index of the column on which to start copying
+     *    cell references.
+     * @param right The 0-based index of the column on which to end copying
+     *    cell references.
+     * @param top The 0-based index of the row on which to start copying
+     *    cell references.
+     * @param bottom The 0-based index of the row on which to end copying
+     *    cell references.
+     * @param colOffsets The number of columns of each translation.
+     * @param rowOffsets The number of rows of each translation.
+     * @param currSuffix The current "[loop,iter]*" suffix we're already in.
+     * @param newSuffixes The new "[loop,iter]" suffix of each translation.
+     */
+    private static void copyCellReferencesInRange(String sheetName, WorkbookContext context,
+                                                  int left, int right, int top, int bottom, int[] colOffsets, int[] rowOffsets, String currSuffix, String[] newSuffixes)
+    {
         Map<String, List<CellRef>> cellRefMap = context.getCellRefMap();
+        CellRefIndex cellRefIndex = context.getCellRefIndex();
         Map<String, List<CellRef>> newCellRefEntries = new HashMap<>();
-        List<String> templateSheetNames = context.getTemplateSheetNames();
-        List<String> newSheetNames = context.getSheetNames();
-        for (String cellKey : cellRefMap.keySet())
+        String templateSheetName = getTemplateSheetName(sheetName, context);
+        // Only cell keys with cell references in range, on this sheet or its
+        // template sheet, or explicit, are affected.
+        for (String cellKey : cellRefIndex.findCellKeys(sheetName, templateSheetName, left, right, top, bottom))
         {
-            // All cell keys have the sheet name in them.
-            boolean isExplicit = cellKey.startsWith(EXPLICIT_REF_PREFIX);
-            // Bypass the explicit/implicit indicator.
-            String keySheetName = cellKey.substring(2, cellKey.indexOf("!"));
-            if (!keySheetName.equals(sheetName))
-            {
-                // No exact match.  Check the corresponding template sheet name, if
-                // it exists.
-                int index = newSheetNames.indexOf(sheetName);
-                if (isExplicit || (index != -1 && keySheetName.equals(templateSheetNames.get(index))))
-                {
-                    // Template sheet name match.
-                    // Update keySheetName (the template sheet name) to the new sheet name.
-                    keySheetName = sheetName;
-                }
-                else
-                {
-                    continue;
-                }
-            }
-
             // A cell key may have a suffix, e.g. [0,1].
             String keySuffix = "";
             int idx = cellKey.indexOf("[");
@@ -882,17 +922,30 @@ public class FormulaUtil
             if (currSuffix.startsWith(keySuffix)) // Suffix matches
             {
                 List<CellRef> cellRefs = cellRefMap.get(cellKey);
-                List<CellRef> insert = new ArrayList<>();
+                List<CellRef> inRange = new ArrayList<>();
                 for (CellRef cellRef : cellRefs)
                 {
                     String cellRefSheetName = cellRef.getSheetName();
                     int row = cellRef.getRow();
                     int col = cellRef.getCol();
-                    if ((cellRefSheetName == null || keySheetName.equals(cellRefSheetName)) &&    // Sheet matches
+                    if ((cellRefSheetName == null || sheetName.equals(cellRefSheetName)) &&       // Sheet matches
                             (row >= top && row <= bottom && col >= left && col <= right))             // In cell range
                     {
-                        CellRef adjCellRef = new CellRef(cellRefSheetName, row + numRows, col + numCols,
-                                cellRef.isRowAbsolute(), cellRef.isColAbsolute());
+                        inRange.add(cellRef);
+                    }
+                }
+                if (inRange.isEmpty())
+                    continue;
+
+                List<CellRef> insert = new ArrayList<>();
+                for (int i = 0; i < newSuffixes.length; i++)
+                {
+                    int numCols = colOffsets[i];
+                    int numRows = rowOffsets[i];
+                    for (CellRef cellRef : inRange)
+                    {
+                        CellRef adjCellRef = new CellRef(cellRef.getSheetName(), cellRef.getRow() + numRows,
+                                cellRef.getCol() + numCols, cellRef.isRowAbsolute(), cellRef.isColAbsolute());
                         // Only add the reference if being translated!
                         if (numRows != 0 || numCols != 0)
                         {
@@ -905,7 +958,7 @@ public class FormulaUtil
                         // Only do this once (pick out those without suffixes to accomplish this).
                         if (idx == -1)
                         {
-                            String newCellKey = cellKey + currSuffix + newSuffix;
+                            String newCellKey = cellKey + currSuffix + newSuffixes[i];
                             List<CellRef> newCellRefs = new ArrayList<>();
                             newCellRefs.add(adjCellRef);
                             logger.debug("      Adding new entry: {} => [{}]", newCellKey, adjCellRef.formatAsString());
@@ -914,9 +967,35 @@ public class FormulaUtil
                     }
                 }
                 cellRefs.addAll(insert);
+                for (CellRef cellRef : insert)
+                {
+                    cellRefIndex.add(cellKey, cellRef);
+                }
             }
         }
         cellRefMap.putAll(newCellRefEntries);
+        for (Map.Entry<String, List<CellRef>> entry : newCellRefEntries.entrySet())
+        {
+            for (CellRef cellRef : entry.getValue())
+            {
+                cellRefIndex.add(entry.getKey(), cellRef);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the template sheet from which the given
+     * <code>Sheet</code> came.
+     * @param sheetName The name of the <code>Sheet</code>.
+     * @param context The <code>WorkbookContext</code> which holds the template
+     *    sheet names and new sheet names.
+     * @return The template sheet name, or <code>null</code> if the sheet name
+     *    isn't known.
+     */
+    private static String getTemplateSheetName(String sheetName, WorkbookContext context)
+    {
+        int index = context.getSheetNames().indexOf(sheetName);
+        return (index != -1) ? context.getTemplateSheetNames().get(index) : null;
     }
 
     /**
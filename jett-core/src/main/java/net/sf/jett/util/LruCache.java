@@ -0,0 +1,268 @@
+package net.sf.jett.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>An <code>LruCache</code> is a bounded cache that may be shared by many
+ * threads.  When it's full, it evicts the least recently used entry.  To
+ * keep threads from contending for one lock, the entries are split into
+ * stripes by key hash, each with its own lock and its own share of the
+ * maximum size, so the least recently used entry is evicted per stripe.</p>
+ *
+ * <p>It counts hits, misses, and evictions, so that its maximum size can be
+ * chosen from real usage.</p>
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class LruCache<K, V>
+{
+    private static final int MAX_STRIPES = 16;
+
+    private final int myMaxSize;
+    private final Stripe<K, V>[] myStripes;
+
+    /**
+     * Constructs an <code>LruCache</code>.
+     * @param maxSize The maximum number of entries.
+     * @throws IllegalArgumentException If <code>maxSize</code> isn't
+     *    positive.
+     */
+    public LruCache(int maxSize)
+    {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Maximum size must be positive: " + maxSize);
+        myMaxSize = maxSize;
+        // A power of two, so that a stripe can be chosen by masking, with
+        // stripes of at least 16 entries.
+        int numStripes = 1;
+        while (numStripes < MAX_STRIPES && numStripes * 2 * 16 <= maxSize)
+        {
+            numStripes *= 2;
+        }
+        myStripes = newStripes(numStripes);
+        for (int i = 0; i < numStripes; i++)
+        {
+            // Spread the remainder over the first stripes.
+            int stripeSize = maxSize / numStripes + ((i < maxSize % numStripes) ? 1 : 0);
+            myStripes[i] = new Stripe<>(stripeSize);
+        }
+    }
+
+    /**
+     * Creates an array of the given number of empty stripe slots.
+     * @param numStripes The number of stripes.
+     * @return An array of <code>Stripes</code>.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Stripe<K, V>[] newStripes(int numStripes)
+    {
+        return (Stripe<K, V>[]) new Stripe<?, ?>[numStripes];
+    }
+
+    /**
+     * Returns the cached value for the given key, counting a hit or a miss.
+     * @param key The key.
+     * @return The cached value, or <code>null</code> if not cached.
+     */
+    public V get(K key)
+    {
+        return getStripe(key).get(key);
+    }
+
+    /**
+     * Caches the given value for the given key, evicting the least recently
+     * used entry of its stripe if necessary.
+     * @param key The key.
+     * @param value The value, which must not be <code>null</code>.
+     */
+    public void put(K key, V value)
+    {
+        getStripe(key).put(key, value);
+    }
+
+    /**
+     * Removes all cached entries.  The counters aren't reset.
+     */
+    public void clear()
+    {
+        for (Stripe<K, V> stripe : myStripes)
+        {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     * @return The maximum number of entries.
+     */
+    public int getMaxSize()
+    {
+        return myMaxSize;
+    }
+
+    /**
+     * Returns the number of cached entries.
+     * @return The number of cached entries.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Stripe<K, V> stripe : myStripes)
+        {
+            synchronized (stripe)
+            {
+                size += stripe.myEntries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached value.
+     * @return The number of hits.
+     */
+    public long getNumHits()
+    {
+        long numHits = 0;
+        for (Stripe<K, V> stripe : myStripes)
+        {
+            synchronized (stripe)
+            {
+                numHits += stripe.myNumHits;
+            }
+        }
+        return numHits;
+    }
+
+    /**
+     * Returns the number of lookups that didn't find a cached value.
+     * @return The number of misses.
+     */
+    public long getNumMisses()
+    {
+        long numMisses = 0;
+        for (Stripe<K, V> stripe : myStripes)
+        {
+            synchronized (stripe)
+            {
+                numMisses += stripe.myNumMisses;
+            }
+        }
+        return numMisses;
+    }
+
+    /**
+     * Returns the number of entries removed because the cache was full.
+     * @return The number of evictions.
+     */
+    public long getNumEvictions()
+    {
+        long numEvictions = 0;
+        for (Stripe<K, V> stripe : myStripes)
+        {
+            synchronized (stripe)
+            {
+                numEvictions += stripe.myNumEvictions;
+            }
+        }
+        return numEvictions;
+    }
+
+    /**
+     * Returns a summary of the cache's size and counters.
+     * @return A <code>String</code> summary.
+     */
+    @Override
+    public String toString()
+    {
+        return "LruCache[size=" + size() + ", maxSize=" + myMaxSize +
+                ", hits=" + getNumHits() + ", misses=" + getNumMisses() + ", evictions=" + getNumEvictions() + "]";
+    }
+
+    /**
+     * Returns the stripe that holds the given key.
+     * @param key The key.
+     * @return The <code>Stripe</code>.
+     */
+    private Stripe<K, V> getStripe(K key)
+    {
+        int hash = key.hashCode();
+        // Let the high bits of the hash code choose the stripe too.
+        hash ^= (hash >>> 16);
+        return myStripes[hash & (myStripes.length - 1)];
+    }
+
+    /**
+     * A <code>Stripe</code> is a share of the entries of an
+     * <code>LruCache</code>, guarded by its own lock.
+     */
+    private static class Stripe<K, V>
+    {
+        private final int myMaxSize;
+        private final Map<K, V> myEntries;
+        private long myNumHits;
+        private long myNumMisses;
+        private long myNumEvictions;
+
+        /**
+         * Constructs a <code>Stripe</code>.
+         * @param maxSize The maximum number of entries in this stripe.
+         */
+        private Stripe(int maxSize)
+        {
+            myMaxSize = maxSize;
+            myEntries = new LinkedHashMap<K, V>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+                {
+                    if (size() > myMaxSize)
+                    {
+                        myNumEvictions++;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Returns the cached value for the given key, counting a hit or a
+         * miss.
+         * @param key The key.
+         * @return The cached value, or <code>null</code> if not cached.
+         */
+        private synchronized V get(K key)
+        {
+            V value = myEntries.get(key);
+            if (value == null)
+                myNumMisses++;
+            else
+                myNumHits++;
+            return value;
+        }
+
+        /**
+         * Caches the given value for the given key.
+         * @param key The key.
+         * @param value The value.
+         */
+        private synchronized void put(K key, V value)
+        {
+            myEntries.put(key, value);
+        }
+
+        /**
+         * Removes all cached entries.
+         */
+        private synchronized void clear()
+        {
+            myEntries.clear();
+        }
+    }
+}
@@ -43,7 +43,10 @@ import net.sf.jett.expression.Expression;
 import net.sf.jett.formula.Formula;
 import net.sf.jett.model.Block;
 import net.sf.jett.model.ExcelColor;
+import net.sf.jett.model.MergedRegions;
 import net.sf.jett.model.PastEndAction;
+import net.sf.jett.model.ProcessedCells;
+import net.sf.jett.model.TagLocations;
 import net.sf.jett.model.WorkbookContext;
 import net.sf.jett.tag.Tag;
 import net.sf.jett.tag.TagContext;
@@ -227,7 +230,9 @@ public class SheetUtil
         Row row;
         Cell cell, newCell;
         int newColIndex;
-        Map<String, String> tagLocationsMap = workbookContext.getTagLocationsMap();
+        TagLocations tagLocations = workbookContext.getTagLocations();
+        ProcessedCells processedCells = context.getProcessedCells();
+        String sheetName = sheet.getSheetName();
         for (int rowIndex = rowStart; rowIndex <= rowEnd; rowIndex++)
         {
             row = sheet.getRow(rowIndex);
@@ -238,6 +243,7 @@ public class SheetUtil
                     cell = row.getCell(colIndex);
                     newColIndex = colIndex - numCols;
                     newCell = row.getCell(newColIndex);
+                    processedCells.move(rowIndex, colIndex, rowIndex, newColIndex);
                     if (cell == null && newCell != null)
                         removeCell(row, newCell);
                     else if (cell != null)
@@ -246,15 +252,12 @@ public class SheetUtil
                             newCell = row.createCell(newColIndex);
                         copyCell(cell, newCell);
 
-                        String cellRef = getCellKey(cell);
-                        String newCellRef = getCellKey(newCell);
-                        String origCellRef = tagLocationsMap.get(cellRef);
+                        String origCellRef = tagLocations.move(sheetName, cell.getRowIndex(), cell.getColumnIndex(),
+                                newCell.getRowIndex(), newCell.getColumnIndex());
                         if (origCellRef != null)
                         {
-                            tagLocationsMap.remove(cellRef);
-                            tagLocationsMap.put(newCellRef, origCellRef);
-                            logger.debug("sCL: Replacing {} => {} with {} => {}",
-                                    cellRef, origCellRef, newCellRef, origCellRef);
+                            logger.debug("sCL: Moving {} from {} to {}",
+                                    origCellRef, getCellKey(cell), getCellKey(newCell));
                         }
 
                         // Remove the just copied Cell if we detect that it won't be
@@ -293,7 +296,9 @@ public class SheetUtil
         Row row;
         Cell cell, newCell;
         int newColIndex;
-        Map<String, String> tagLocationsMap = workbookContext.getTagLocationsMap();
+        TagLocations tagLocations = workbookContext.getTagLocations();
+        ProcessedCells processedCells = context.getProcessedCells();
+        String sheetName = sheet.getSheetName();
         for (int rowIndex = rowStart; rowIndex <= rowEnd; rowIndex++)
         {
             row = sheet.getRow(rowIndex);
@@ -304,6 +309,7 @@ public class SheetUtil
                     cell = row.getCell(colIndex);
                     newColIndex = colIndex + numCols;
                     newCell = row.getCell(newColIndex);
+                    processedCells.move(rowIndex, colIndex, rowIndex, newColIndex);
                     if (cell == null && newCell != null)
                         removeCell(row, newCell);
                     else if (cell != null)
@@ -312,15 +318,12 @@ public class SheetUtil
                             newCell = row.createCell(newColIndex);
                         copyCell(cell, newCell);
 
-                        String cellRef = getCellKey(cell);
-                        String newCellRef = getCellKey(newCell);
-                        String origCellRef = tagLocationsMap.get(cellRef);
+                        String origCellRef = tagLocations.move(sheetName, cell.getRowIndex(), cell.getColumnIndex(),
+                                newCell.getRowIndex(), newCell.getColumnIndex());
                         if (origCellRef != null)
                         {
-                            tagLocationsMap.remove(cellRef);
-                            tagLocationsMap.put(newCellRef, origCellRef);
-                            logger.debug("sCR: Replacing {} => {} with {} => {}",
-                                    cellRef, origCellRef, newCellRef, origCellRef);
+                            logger.debug("sCR: Moving {} from {} to {}",
+                                    origCellRef, getCellKey(cell), getCellKey(newCell));
                         }
 
                         // Remove the just copied Cell if we detect that it won't be
@@ -359,7 +362,9 @@ public class SheetUtil
         int newRowIndex;
         Row oldRow, newRow;
         Cell cell, newCell;
-        Map<String, String> tagLocationsMap = workbookContext.getTagLocationsMap();
+        TagLocations tagLocations = workbookContext.getTagLocations();
+        ProcessedCells processedCells = context.getProcessedCells();
+        String sheetName = sheet.getSheetName();
         for (int colIndex = colStart; colIndex <= colEnd; colIndex++)
         {
             for (int rowIndex = rowStart; rowIndex <= rowEnd; rowIndex++)
@@ -373,6 +378,7 @@ public class SheetUtil
                 newCell = null;
                 if (newRow != null)
                     newCell = newRow.getCell(colIndex);
+                processedCells.move(rowIndex, colIndex, newRowIndex, colIndex);
 
                 if (cell == null && newRow != null && newCell != null)
                     removeCell(newRow, newCell);
@@ -384,15 +390,12 @@ public class SheetUtil
                         newCell = newRow.createCell(colIndex);
                     copyCell(cell, newCell);
 
-                    String cellRef = getCellKey(cell);
-                    String newCellRef = getCellKey(newCell);
-                    String origCellRef = tagLocationsMap.get(cellRef);
+                    String origCellRef = tagLocations.move(sheetName, cell.getRowIndex(), cell.getColumnIndex(),
+                            newCell.getRowIndex(), newCell.getColumnIndex());
                     if (origCellRef != null)
                     {
-                        tagLocationsMap.remove(cellRef);
-                        tagLocationsMap.put(newCellRef, origCellRef);
-                        logger.debug("sCU: Replacing {} => {} with {} => {}",
-                                cellRef, origCellRef, newCellRef, origCellRef);
+                        logger.debug("sCU: Moving {} from {} to {}",
+                                origCellRef, getCellKey(cell), getCellKey(newCell));
                     }
 
                     // Remove the just copied Cell if we detect that it won't be
@@ -430,7 +433,9 @@ public class SheetUtil
         int newRowIndex;
         Row oldRow, newRow;
         Cell cell, newCell;
-        Map<String, String> tagLocationsMap = workbookContext.getTagLocationsMap();
+        TagLocations tagLocations = workbookContext.getTagLocations();
+        ProcessedCells processedCells = context.getProcessedCells();
+        String sheetName = sheet.getSheetName();
         for (int rowIndex = rowEnd; rowIndex >= rowStart; rowIndex--)
         {
             newRowIndex = rowIndex + numRows;
@@ -444,6 +449,7 @@ public class SheetUtil
             {
                 cell = oldRow.getCell(colIndex);
                 newCell = newRow.getCell(colIndex);
+                processedCells.move(rowIndex, colIndex, newRowIndex, colIndex);
                 if (cell == null && newCell != null)
                     removeCell(newRow, newCell);
                 else if (cell != null)
@@ -452,16 +458,12 @@ public class SheetUtil
                         newCell = newRow.createCell(colIndex);
                     copyCell(cell, newCell);
 
-                    String cellRef = getCellKey(cell);
-                    String newCellRef = getCellKey(newCell);
-                    String origCellRef = tagLocationsMap.get(cellRef);
+                    String origCellRef = tagLocations.move(sheetName, cell.getRowIndex(), cell.getColumnIndex(),
+                            newCell.getRowIndex(), newCell.getColumnIndex());
                     if (origCellRef != null)
                     {
-                        tagLocationsMap.remove(cellRef);
-                        tagLocationsMap.put(newCellRef, origCellRef);
-
-                        logger.debug("sCD: Replacing {} => {} with {} => {}",
-                                cellRef, origCellRef, newCellRef, origCellRef);
+                        logger.debug("sCD: Moving {} from {} to {}",
+                                origCellRef, getCellKey(cell), getCellKey(newCell));
                     }
                 }
 
@@ -777,49 +779,25 @@ public class SheetUtil
         if (numCols == 0 && numRows == 0 && remove && add)
             return;
 
-        List<CellRangeAddress> sheetMergedRegions = context.getMergedRegions();
+        MergedRegions sheetMergedRegions = context.getSheetMergedRegions();
         if (add)
         {
-            int numMergedRegions = sheetMergedRegions.size();
-            for (int i = 0; i < numMergedRegions; i++)
+            if (remove)
             {
-                CellRangeAddress region = sheetMergedRegions.get(i);
-                if (isCellAddressWhollyContained(region, left, right, top, bottom))
-                {
-                    CellRangeAddress newRegion = new CellRangeAddress(
-                            region.getFirstRow() + numRows,
-                            region.getLastRow() + numRows,
-                            region.getFirstColumn() + numCols,
-                            region.getLastColumn() + numCols);
-                    if (remove)
-                    {
-                        logger.debug("      Updating adjusted merged region from {} to {}.", region, newRegion);
-                        sheetMergedRegions.set(i, newRegion);
-                    }
-                    else
-                    {
-                        logger.debug("      Copying merged region from {} to {}.", region, newRegion);
-                        sheetMergedRegions.add(newRegion);
-                    }
-                }
+                int numShifted = sheetMergedRegions.translate(left, right, top, bottom, numCols, numRows);
+                logger.debug("      Shifted {} merged regions.", numShifted);
+            }
+            else
+            {
+                int numCopied = sheetMergedRegions.copy(left, right, top, bottom, numCols, numRows, 2);
+                logger.debug("      Copied {} merged regions.", numCopied);
             }
         }
         else if (remove)
         {
-            int numMergedRegions = sheetMergedRegions.size();
-            List<CellRangeAddress> regionsToRemove = new ArrayList<>();
-            for (int i = 0; i < numMergedRegions; i++)
-            for (CellRangeAddress region : sheetMergedRegions)
+            for (CellRangeAddress region : sheetMergedRegions.removeWhollyContained(left, right, top, bottom))
             {
-                if (isCellAddressWhollyContained(region, left, right, top, bottom))
-                {
-                    logger.debug("      Removing merged region: {}");
-                    regionsToRemove.add(region);
-                }
-            }
-            if (!regionsToRemove.isEmpty())
-            {
-                sheetMergedRegions.removeAll(regionsToRemove);
+                logger.debug("      Removed merged region: {}", region);
             }
         }
     }
@@ -1089,7 +1067,8 @@ public class SheetUtil
         int right = block.getRightColNum();
         int top = block.getTopRowNum();
         int bottom = block.getBottomRowNum();
-        Map<String, String> tagLocationsMap = context.getTagLocationsMap();
+        TagLocations tagLocations = context.getTagLocations();
+        String sheetName = sheet.getSheetName();
 
         // Blank out the Cells.
         for (int rowNum = top; rowNum <= bottom; rowNum++)
@@ -1102,15 +1081,14 @@ public class SheetUtil
                     Cell c = r.getCell(cellNum);
                     if (c != null)
                     {
-                        String cellRef = getCellKey(c);
+                        logger.debug("dB: Removing {}", getCellKey(c));
+                        tagLocations.remove(sheetName, rowNum, cellNum);
                         removeCell(r, c);
-                        tagLocationsMap.remove(cellRef);
-
-                        logger.debug("dB: Removing {}", cellRef);
                     }
                 }
             }
         }
+        tagContext.getProcessedCells().remove(left, right, top, bottom);
         // Remove any merged regions in this Block.
         shiftMergedRegionsInRange(tagContext, left, right, top, bottom, 0, 0, true, false);
         // Remove any conditional formatting regions in this Block.
@@ -1137,7 +1115,8 @@ public class SheetUtil
         int right = block.getRightColNum();
         int top = block.getTopRowNum();
         int bottom = block.getBottomRowNum();
-        Map<String, String> tagLocationsMap = context.getTagLocationsMap();
+        TagLocations tagLocations = context.getTagLocations();
+        String sheetName = sheet.getSheetName();
 
         // Blank out the Cells.
         for (int rowNum = top; rowNum <= bottom; rowNum++)
@@ -1150,11 +1129,10 @@ public class SheetUtil
                     Cell c = r.getCell(cellNum);
                     if (c != null)
                     {
-                        String cellRef = getCellKey(c);
                         c.setCellType(Cell.CELL_TYPE_BLANK);
                         c.removeHyperlink();
-                        tagLocationsMap.remove(cellRef);
-                        logger.debug("cB: Removing {}", cellRef);
+                        tagLocations.remove(sheetName, rowNum, cellNum);
+                        logger.debug("cB: Removing {}", getCellKey(c));
                     }
                 }
             }
@@ -1910,6 +1888,31 @@ public class SheetUtil
      * @return The newly copied <code>Block</code>.
      */
     public static Block copyBlock(Sheet sheet, TagContext tagContext, Block block, WorkbookContext context, int numBlocksAway)
+    {
+        return copyBlock(sheet, tagContext, block, context, numBlocksAway, numBlocksAway);
+    }
+
+    /**
+     * Copies an entire <code>Block</code> the given number of blocks away on
+     * the given <code>Sheet</code>, as the given iteration of its loop.  This
+     * allows a loop that doesn't know its number of iterations in advance to
+     * copy each iteration's <code>Block</code> from the previous, not yet
+     * transformed, iteration's <code>Block</code>.
+     *
+     * @param sheet         The <code>Sheet</code> on which to copy.
+     * @param tagContext    A <code>TagContext</code>.
+     * @param block         The <code>Block</code> to copy.
+     * @param context       The <code>WorkbookContext</code>.
+     * @param numBlocksAway The number of blocks (widths or lengths, depending
+     *                      on the direction of <code>block</code>), away to copy.
+     * @param iterationNbr  The 0-based iteration number of the new
+     *                      <code>Block</code>, which determines the suffix
+     *                      appended to JETT formulas.
+     * @return The newly copied <code>Block</code>.
+     * @since 0.11.1
+     */
+    public static Block copyBlock(Sheet sheet, TagContext tagContext, Block block, WorkbookContext context,
+                                  int numBlocksAway, int iterationNbr)
     {
         int left = block.getLeftColNum();
         int right = block.getRightColNum();
@@ -1920,8 +1923,9 @@ public class SheetUtil
         String sheetName = sheet.getSheetName();
         int seqNbr = context.getSequenceNbr();
         String currSuffix = tagContext.getFormulaSuffix();
-        String newSuffix = "[" + seqNbr + "," + numBlocksAway + "]";
-        Map<String, String> tagLocationsMap = context.getTagLocationsMap();
+        String newSuffix = "[" + seqNbr + "," + iterationNbr + "]";
+        TagLocations tagLocations = context.getTagLocations();
+        ProcessedCells processedCells = tagContext.getProcessedCells();
         logger.trace("copyBlock: {}: {}, numBlocksAway={}", sheet.getSheetName(), block, numBlocksAway);
 
         // If copying down...
@@ -1959,15 +1963,17 @@ public class SheetUtil
                     if (newCell == null)
                         newCell = newRow.createCell(c);
                     if (numBlocksAway > 0)
+                    {
                         copyCell(oldCell, newCell);
+                        processedCells.copy(oldCell.getRowIndex(), oldCell.getColumnIndex(),
+                                newCell.getRowIndex(), newCell.getColumnIndex());
+                    }
 
-                    String oldCellRef = getCellKey(oldCell);
-                    String newCellRef = getCellKey(newCell);
-                    String origCellRef = tagLocationsMap.get(oldCellRef);
+                    String origCellRef = tagLocations.get(sheetName, oldCell.getRowIndex(), oldCell.getColumnIndex());
                     if (origCellRef != null)
                     {
-                        tagLocationsMap.put(newCellRef, origCellRef);
-                        logger.debug("cB: Adding {} => {}", newCellRef, origCellRef);
+                        tagLocations.put(sheetName, newCell.getRowIndex(), newCell.getColumnIndex(), origCellRef);
+                        logger.debug("cB: Adding {} => {}", getCellKey(newCell), origCellRef);
                     }
 
                     // Append "[loop,iter]" on formulas.
@@ -2011,7 +2017,7 @@ public class SheetUtil
                 {
                     copyRowHeightsDown(sheet, top, bottom, translateDown);
                 }
-                newBlock = new Block(parent, left, right, newTop, newBottom, numBlocksAway);
+                newBlock = new Block(parent, left, right, newTop, newBottom, iterationNbr);
                 newBlock.setDirection(block.getDirection());
             }
             else
@@ -2040,15 +2046,17 @@ public class SheetUtil
                     if (newCell == null)
                         newCell = row.createCell(col + translateRight);
                     if (numBlocksAway > 0)
+                    {
                         copyCell(oldCell, newCell);
+                        processedCells.copy(oldCell.getRowIndex(), oldCell.getColumnIndex(),
+                                newCell.getRowIndex(), newCell.getColumnIndex());
+                    }
 
-                    String oldCellRef = getCellKey(oldCell);
-                    String newCellRef = getCellKey(newCell);
-                    String origCellRef = tagLocationsMap.get(oldCellRef);
+                    String origCellRef = tagLocations.get(sheetName, oldCell.getRowIndex(), oldCell.getColumnIndex());
                     if (origCellRef != null)
                     {
-                        tagLocationsMap.put(newCellRef, origCellRef);
-                        logger.debug("cB: Adding {} => {}", newCellRef, origCellRef);
+                        tagLocations.put(sheetName, newCell.getRowIndex(), newCell.getColumnIndex(), origCellRef);
+                        logger.debug("cB: Adding {} => {}", getCellKey(newCell), origCellRef);
                     }
 
                     // Append proper "[loop,iter]" on formulas.
@@ -2090,7 +2098,7 @@ public class SheetUtil
                 {
                     copyColumnWidthsRight(sheet, left, right, translateRight);
                 }
-                newBlock = new Block(parent, newLeft, newRight, top, bottom, numBlocksAway);
+                newBlock = new Block(parent, newLeft, newRight, top, bottom, iterationNbr);
                 newBlock.setDirection(block.getDirection());
             }
             else
@@ -2103,6 +2111,225 @@ public class SheetUtil
         return newBlock;
     }
 
+    /**
+     * Copies an entire <code>Block</code> so that it occupies the given number
+     * of consecutive blocks on the given <code>Sheet</code>, as the iterations
+     * of its loop, in one pass.  The result is the same as copying it
+     * <code>numCopies</code> times with {@link #copyBlock}, 0 through
+     * <code>numCopies - 1</code> blocks away, but the template cells are
+     * inspected, the merged regions are searched, and the cell reference map
+     * is scanned only once, instead of once per copy.
+     *
+     * @param sheet      The <code>Sheet</code> on which to copy.
+     * @param tagContext A <code>TagContext</code>.
+     * @param block      The <code>Block</code> to copy.
+     * @param context    The <code>WorkbookContext</code>.
+     * @param numCopies  The number of blocks to occupy, including the given
+     *                   <code>Block</code> itself.
+     * @return A <code>List</code> of the <code>Blocks</code>, one per
+     *    iteration, the first of which is the given <code>Block</code>.
+     * @since 0.11.1
+     */
+    public static List<Block> copyBlocks(Sheet sheet, TagContext tagContext, Block block, WorkbookContext context,
+                                         int numCopies)
+    {
+        return copyBlocks(sheet, tagContext, block, context, numCopies, true);
+    }
+
+    /**
+     * Copies an entire <code>Block</code> so that it occupies the given number
+     * of consecutive blocks on the given <code>Sheet</code>, as the iterations
+     * of its loop, in one pass.  If the <code>Cells</code> aren't copied, then
+     * only everything else is: merged regions, row heights or column widths,
+     * tag locations, and cell references.  That is for a caller that writes
+     * the <code>Cells</code> of each copy itself, e.g. a
+     * <code>BlockStamper</code>.
+     *
+     * @param sheet      The <code>Sheet</code> on which to copy.
+     * @param tagContext A <code>TagContext</code>.
+     * @param block      The <code>Block</code> to copy.
+     * @param context    The <code>WorkbookContext</code>.
+     * @param numCopies  The number of blocks to occupy, including the given
+     *                   <code>Block</code> itself.
+     * @param copyCells  Whether to copy the <code>Cells</code>, and to append
+     *                   the "[loop,iter]" suffix to JETT formulas in them.
+     * @return A <code>List</code> of the <code>Blocks</code>, one per
+     *    iteration, the first of which is the given <code>Block</code>.
+     * @since 0.11.1
+     */
+    public static List<Block> copyBlocks(Sheet sheet, TagContext tagContext, Block block, WorkbookContext context,
+                                         int numCopies, boolean copyCells)
+    {
+        List<Block> blocks = new ArrayList<>(numCopies);
+        Block.Direction direction = block.getDirection();
+        if (direction != Block.Direction.VERTICAL && direction != Block.Direction.HORIZONTAL)
+        {
+            for (int i = 0; i < numCopies; i++)
+            {
+                blocks.add(copyBlock(sheet, tagContext, block, context, i));
+            }
+            return blocks;
+        }
+        boolean vertical = (direction == Block.Direction.VERTICAL);
+
+        int left = block.getLeftColNum();
+        int right = block.getRightColNum();
+        int top = block.getTopRowNum();
+        int bottom = block.getBottomRowNum();
+        int height = bottom - top + 1;
+        int width = right - left + 1;
+        Block parent = block.getParent();
+        String sheetName = sheet.getSheetName();
+        int seqNbr = context.getSequenceNbr();
+        String currSuffix = tagContext.getFormulaSuffix();
+        TagLocations tagLocations = context.getTagLocations();
+        ProcessedCells processedCells = tagContext.getProcessedCells();
+        logger.trace("copyBlocks: {}: {}, numCopies={}", sheetName, block, numCopies);
+
+        String[] newSuffixes = new String[numCopies];
+        for (int i = 0; i < numCopies; i++)
+        {
+            newSuffixes[i] = "[" + seqNbr + "," + i + "]";
+        }
+
+        // Inspect the template cells once.  The first iteration is the
+        // template itself; only its JETT formulas change.
+        Cell[][] templateCells = new Cell[height][width];
+        String[][] origCellRefs = new String[height][width];
+        String[][] formulaTexts = new String[height][width];
+        for (int r = top; r <= bottom; r++)
+        {
+            Row row = sheet.getRow(r);
+            if (row == null)
+                row = sheet.createRow(r);
+            for (int c = left; c <= right; c++)
+            {
+                Cell cell = row.getCell(c);
+                if (cell == null)
+                    cell = row.createCell(c);
+                templateCells[r - top][c - left] = cell;
+                origCellRefs[r - top][c - left] = tagLocations.get(sheetName, r, c);
+
+                // Append "[loop,iter]" on formulas.
+                if (copyCells && cell.getCellType() == Cell.CELL_TYPE_STRING)
+                {
+                    String cellText = cell.getStringCellValue();
+                    int startIdx = cellText.indexOf(Formula.BEGIN_FORMULA);
+                    int endIdx = cellText.lastIndexOf(Formula.END_FORMULA);
+                    if (startIdx != -1 && endIdx != -1 && startIdx < endIdx)
+                    {
+                        formulaTexts[r - top][c - left] = cellText;
+                        setCellValue(context, cell, cellText + newSuffixes[0]);
+                    }
+                }
+            }
+        }
+        blocks.add(block);
+
+        // Copy Cells.
+        logger.debug("    Copying {}cells {} to {}, row {} to {} {} times {}.", (copyCells ? "" : "the layout of "),
+                left, right, top, bottom, numCopies - 1, (vertical ? "down" : "right"));
+        for (int i = 1; i < numCopies; i++)
+        {
+            int translateDown = (vertical) ? i * height : 0;
+            int translateRight = (vertical) ? 0 : i * width;
+            for (int r = top; r <= bottom; r++)
+            {
+                Row newRow = null;
+                if (copyCells)
+                {
+                    newRow = sheet.getRow(r + translateDown);
+                    if (newRow == null)
+                        newRow = sheet.createRow(r + translateDown);
+                }
+                for (int c = left; c <= right; c++)
+                {
+                    String origCellRef = origCellRefs[r - top][c - left];
+                    if (origCellRef != null)
+                    {
+                        tagLocations.put(sheetName, r + translateDown, c + translateRight, origCellRef);
+                        logger.debug("cBs: Adding {}, {} => {}", r + translateDown, c + translateRight, origCellRef);
+                    }
+                    if (!copyCells)
+                        continue;
+
+                    Cell newCell = newRow.getCell(c + translateRight);
+                    if (newCell == null)
+                        newCell = newRow.createCell(c + translateRight);
+                    copyCell(templateCells[r - top][c - left], newCell);
+                    processedCells.copy(r, c, r + translateDown, c + translateRight);
+
+                    String formulaText = formulaTexts[r - top][c - left];
+                    if (formulaText != null)
+                        setCellValue(context, newCell, formulaText + newSuffixes[i]);
+                }
+            }
+
+            if (vertical)
+            {
+                // Don't copy the same row heights down again.  This would occur if
+                // the parent is horizontal and already past its first iteration.
+                if (parent == null || parent.getDirection() != Block.Direction.HORIZONTAL || parent.getIterationNbr() == 0)
+                {
+                    copyRowHeightsDown(sheet, top, bottom, translateDown);
+                }
+                blocks.add(new Block(parent, left, right, top + translateDown, bottom + translateDown, i));
+            }
+            else
+            {
+                // Don't copy the same column widths right again.  This would occur if
+                // the parent is vertical and already past its first iteration.
+                if (parent == null || parent.getDirection() != Block.Direction.VERTICAL || parent.getIterationNbr() == 0)
+                {
+                    copyColumnWidthsRight(sheet, left, right, translateRight);
+                }
+                blocks.add(new Block(parent, left + translateRight, right + translateRight, top, bottom, i));
+            }
+            blocks.get(i).setDirection(direction);
+        }
+
+        if (vertical)
+        {
+            copyMergedRegionsInRange(tagContext, left, right, top, bottom, 0, height, numCopies);
+            FormulaUtil.copyCellReferencesInRange(sheetName, context,
+                    left, right, top, bottom, 0, height, currSuffix, newSuffixes);
+        }
+        else
+        {
+            copyMergedRegionsInRange(tagContext, left, right, top, bottom, width, 0, numCopies);
+            FormulaUtil.copyCellReferencesInRange(sheetName, context,
+                    left, right, top, bottom, width, 0, currSuffix, newSuffixes);
+        }
+        return blocks;
+    }
+
+    /**
+     * Copies all merged regions found in the given range into each of the
+     * given number of consecutive blocks, each translated by the given
+     * number of rows and columns further than the last.
+     *
+     * @param context   A <code>TagContext</code> that supplies the merged
+     *                  regions to copy.
+     * @param left      The 0-based index of the column on which to start
+     *                  copying merged regions.
+     * @param right     The 0-based index of the column on which to end
+     *                  copying merged regions.
+     * @param top       The 0-based index of the row on which to start
+     *                  copying merged regions.
+     * @param bottom    The 0-based index of the row on which to end copying
+     *                  merged regions.
+     * @param numCols   The number of columns between copies.
+     * @param numRows   The number of rows between copies.
+     * @param numCopies The number of blocks, including the original range.
+     * @since 0.11.1
+     */
+    private static void copyMergedRegionsInRange(TagContext context,
+                                                 int left, int right, int top, int bottom, int numCols, int numRows, int numCopies)
+    {
+        int numCopied = context.getSheetMergedRegions().copy(left, right, top, bottom, numCols, numRows, numCopies);
+        logger.debug("      Copied {} merged regions {} times.", numCopied, numCopies - 1);
+    }
+
     /**
      * Replace all occurrences of the given collection expression name with the
      * given item name, in preparation for implicit collections processing
@@ -2335,20 +2562,51 @@ public class SheetUtil
      * @since 0.5.0
      */
     public static String getColorHexString(Color color)
+    {
+        return getRgbHexString(getColorRgb(color));
+    }
+
+    /**
+     * Get the hex string of 6 lowercase hex digits that represents the given
+     * RGB value.
+     *
+     * @param rgb An RGB value, as returned by <code>getColorRgb</code>.
+     * @return The hex string.
+     * @since 0.11.1
+     */
+    public static String getRgbHexString(int rgb)
+    {
+        String hex = Integer.toHexString(rgb);
+        if (hex.length() < 6)
+            hex = "000000".substring(hex.length()) + hex;
+        return hex;
+    }
+
+    /**
+     * Get the RGB value that represents the <code>Color</code>, with red in
+     * bits 16-23, green in bits 8-15, and blue in bits 0-7.  It's the same
+     * value that <code>getColorHexString</code> represents, without building
+     * a string.
+     *
+     * @param color A POI <code>Color</code>.
+     * @return The RGB value that represents the <code>Color</code>.
+     * @since 0.11.1
+     */
+    public static int getColorRgb(Color color)
     {
         if (color instanceof HSSFColor)
         {
             HSSFColor hssfColor = (HSSFColor) color;
-            return getHSSFColorHexString(hssfColor);
+            return getHSSFColorRgb(hssfColor);
         }
         else if (color instanceof XSSFColor)
         {
             XSSFColor xssfColor = (XSSFColor) color;
-            return getXSSFColorHexString(xssfColor);
+            return getXSSFColorRgb(xssfColor);
         }
         else if (color == null)
         {
-            return "000000";
+            return 0;
         }
         else
         {
@@ -2357,37 +2615,34 @@ public class SheetUtil
     }
 
     /**
-     * Get the hex string for a <code>HSSFColor</code>.  Moved from test code.
+     * Get the RGB value for a <code>HSSFColor</code>.
      *
      * @param hssfColor A <code>HSSFColor</code>.
-     * @return The hex string.
-     * @since 0.5.0
+     * @return The RGB value.
+     * @since 0.11.1
      */
-    private static String getHSSFColorHexString(HSSFColor hssfColor)
+    private static int getHSSFColorRgb(HSSFColor hssfColor)
     {
         short[] shorts = hssfColor.getTriplet();
-        StringBuilder hexString = new StringBuilder();
+        int rgb = 0;
         for (short s : shorts)
         {
-            String twoHex = Integer.toHexString(0x000000FF & s);
-            if (twoHex.length() == 1)
-                hexString.append('0');
-            hexString.append(twoHex);
+            rgb = (rgb << 8) | (0x000000FF & s);
         }
-        return hexString.toString();
+        return rgb;
     }
 
     /**
-     * Get the hex string for a <code>XSSFColor</code>.  Moved from test code.
+     * Get the RGB value for a <code>XSSFColor</code>.
      *
      * @param xssfColor A <code>XSSFColor</code>.
-     * @return The hex string.
-     * @since 0.5.0
+     * @return The RGB value.
+     * @since 0.11.1
      */
-    private static String getXSSFColorHexString(XSSFColor xssfColor)
+    private static int getXSSFColorRgb(XSSFColor xssfColor)
     {
         if (xssfColor == null)
-            return "000000";
+            return 0;
         byte[] bytes;
         // As of Apache POI 3.8, there are Bugs 51236 and 52079 about font
         // color where somehow black and white get switched.  It appears to
@@ -2413,24 +2668,18 @@ public class SheetUtil
             // Indexed Color - like HSSF
             HSSFColor hColor = ExcelColor.getHssfColorByIndex(xssfColor.getIndexed());
             if (hColor != null)
-                return getHSSFColorHexString(ExcelColor.getHssfColorByIndex(xssfColor.getIndexed()));
+                return getHSSFColorRgb(hColor);
             else
-                return "000000";
-        }
-        if (bytes.length == 4)
-        {
-            // Lose the alpha.
-            bytes = new byte[] {bytes[1], bytes[2], bytes[3]};
+                return 0;
         }
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : bytes)
+        // Lose the alpha, if any.
+        int start = (bytes.length == 4) ? 1 : 0;
+        int rgb = 0;
+        for (int i = start; i < bytes.length; i++)
         {
-            String twoHex = Integer.toHexString(0x000000FF & b);
-            if (twoHex.length() == 1)
-                hexString.append('0');
-            hexString.append(twoHex);
+            rgb = (rgb << 8) | (0x000000FF & bytes[i]);
         }
-        return hexString.toString();
+        return rgb;
     }
 
     /**
@@ -2714,7 +2963,7 @@ public class SheetUtil
 
         StringBuilder buf = new StringBuilder();
         WorkbookContext workbookContext = tag.getWorkbookContext();
-        Map<String, String> tagLocationsMap = workbookContext.getTagLocationsMap();
+        TagLocations tagLocations = workbookContext.getTagLocations();
         do
         {
             TagContext tagContext = tag.getContext();
@@ -2723,7 +2972,7 @@ public class SheetUtil
             int row = block.getTopRowNum();
             int col = block.getLeftColNum();
             String cellRef = new CellReference(sheet == null ? "DNE" : sheet.getSheetName(), row, col, false, false).formatAsString();
-            String origCellRef = tagLocationsMap.get(cellRef);
+            String origCellRef = (sheet == null) ? null : tagLocations.get(sheet.getSheetName(), row, col);
             buf.append(System.getProperty("line.separator"));
             buf.append("  inside tag \"");
             buf.append(tag.getName());
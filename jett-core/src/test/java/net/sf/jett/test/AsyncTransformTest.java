@@ -0,0 +1,289 @@
+package net.sf.jett.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import net.sf.jett.event.SheetEvent;
+import net.sf.jett.event.SheetListener;
+import net.sf.jett.transform.CompiledTemplate;
+import net.sf.jett.transform.ExcelTransformer;
+import net.sf.jett.transform.TransformFuture;
+
+/**
+ * This JUnit Test class tests the <code>transformAsync</code> methods,
+ * including the limit on the number of asynchronous transformations running
+ * at once, that tasks over the limit don't block <code>Executor</code>
+ * threads, and that listeners are notified when transformations are done.  It uses the implicit collections processing template.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class AsyncTransformTest
+{
+    private static final int NUM_THREADS = 4;
+    private static final int MAX_TRANSFORMS = 2;
+    private static final int NUM_TRANSFORMS = 8;
+
+    /**
+     * Transforms the .xlsx template asynchronously many times, into
+     * <code>Workbooks</code> and into <code>OutputStreams</code>, with more
+     * threads than permits, and checks every result and that the limit was
+     * respected.
+     * @throws Exception If any transformation or check fails.
+     */
+    @Test
+    public void testLimitedAsyncTransforms() throws Exception
+    {
+        ImplCollProcessingTest test = new ImplCollProcessingTest();
+        ExcelTransformer transformer = new ExcelTransformer();
+        test.setupTransformer(transformer);
+        transformer.setMaxAsyncTransforms(MAX_TRANSFORMS);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        transformer.addSheetListener(new SheetListener()
+        {
+            @Override
+            public boolean beforeSheetProcessed(SheetEvent event)
+            {
+                int now = running.incrementAndGet();
+                int max;
+                do
+                {
+                    max = maxRunning.get();
+                }
+                while (now > max && !maxRunning.compareAndSet(max, now));
+                return true;
+            }
+
+            @Override
+            public void sheetProcessed(SheetEvent event)
+            {
+                running.decrementAndGet();
+            }
+        });
+        CompiledTemplate template = CompiledTemplate.compile("templates/ImplCollProcessingTemplate.xlsx");
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try
+        {
+            List<Future<Workbook>> workbookFutures = new ArrayList<>();
+            List<Future<Void>> writeFutures = new ArrayList<>();
+            List<ByteArrayOutputStream> outputs = new ArrayList<>();
+            for (int i = 0; i < NUM_TRANSFORMS / 2; i++)
+            {
+                workbookFutures.add(transformer.transformAsync(template, test.getBeansMap(), executor));
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                outputs.add(out);
+                writeFutures.add(transformer.transformAsync(template, out, test.getBeansMap(), executor));
+            }
+            for (Future<Workbook> future : workbookFutures)
+            {
+                test.check(future.get());
+            }
+            for (int i = 0; i < writeFutures.size(); i++)
+            {
+                writeFutures.get(i).get();
+                test.check(WorkbookFactory.create(new ByteArrayInputStream(outputs.get(i).toByteArray())));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertTrue(maxRunning.get() <= MAX_TRANSFORMS);
+    }
+
+    /**
+     * Tests that a transformation over the limit doesn't hold an
+     * <code>Executor</code> thread while it waits, so that other tasks on the
+     * same <code>Executor</code> can still run.  The first transformation
+     * can't finish until an unrelated task on the same two threads runs.
+     * @throws Exception If any transformation or check fails.
+     */
+    @Test
+    public void testQueuedTasksDontBlockThreads() throws Exception
+    {
+        ImplCollProcessingTest test = new ImplCollProcessingTest();
+        ExcelTransformer transformer = new ExcelTransformer();
+        test.setupTransformer(transformer);
+        transformer.setMaxAsyncTransforms(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        transformer.addSheetListener(new SheetListener()
+        {
+            @Override
+            public boolean beforeSheetProcessed(SheetEvent event)
+            {
+                try
+                {
+                    latch.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+
+            @Override
+            public void sheetProcessed(SheetEvent event) {}
+        });
+        CompiledTemplate template = CompiledTemplate.compile("templates/ImplCollProcessingTemplate.xlsx");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            Future<Workbook> first = transformer.transformAsync(template, test.getBeansMap(), executor);
+            Future<Workbook> second = transformer.transformAsync(template, test.getBeansMap(), executor);
+            Future<Boolean> unrelated = executor.submit(new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    latch.countDown();
+                    return true;
+                }
+            });
+            assertTrue(unrelated.get(1, TimeUnit.MINUTES));
+            test.check(first.get(1, TimeUnit.MINUTES));
+            test.check(second.get(1, TimeUnit.MINUTES));
+        }
+        finally
+        {
+            latch.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a listener is run once the transformation is done, without
+     * waiting for it, and that a listener added afterwards is run right away
+     * on the thread that adds it.
+     * @throws Exception If any transformation or check fails.
+     */
+    @Test
+    public void testListeners() throws Exception
+    {
+        ImplCollProcessingTest test = new ImplCollProcessingTest();
+        ExcelTransformer transformer = new ExcelTransformer();
+        test.setupTransformer(transformer);
+        CompiledTemplate template = CompiledTemplate.compile("templates/ImplCollProcessingTemplate.xlsx");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            final TransformFuture<Workbook> future = transformer.transformAsync(template, test.getBeansMap(), executor);
+            final CountDownLatch notified = new CountDownLatch(1);
+            final AtomicReference<Workbook> result = new AtomicReference<>();
+            future.addListener(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        assertTrue(future.isDone());
+                        result.set(future.get(0, TimeUnit.SECONDS));
+                    }
+                    catch (Exception e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+                    finally
+                    {
+                        notified.countDown();
+                    }
+                }
+            });
+            assertTrue(notified.await(1, TimeUnit.MINUTES));
+            test.check(result.get());
+
+            final AtomicReference<Thread> listenerThread = new AtomicReference<>();
+            future.addListener(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    listenerThread.set(Thread.currentThread());
+                }
+            });
+            assertSame(Thread.currentThread(), listenerThread.get());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a long queue of transformations over the limit, on an
+     * <code>Executor</code> that runs tasks on the calling thread, is started
+     * one after another instead of each from inside the one before, which
+     * would grow the stack with the length of the queue.
+     * @throws Exception If any transformation or check fails.
+     */
+    @Test
+    public void testQueueOnCallingThread() throws Exception
+    {
+        ImplCollProcessingTest test = new ImplCollProcessingTest();
+        ExcelTransformer transformer = new ExcelTransformer();
+        test.setupTransformer(transformer);
+        transformer.setMaxAsyncTransforms(1);
+        CompiledTemplate template = CompiledTemplate.compile("templates/ImplCollProcessingTemplate.xlsx");
+
+        final List<Runnable> held = new ArrayList<>();
+        final AtomicBoolean hold = new AtomicBoolean(true);
+        final AtomicInteger maxDepth = new AtomicInteger();
+        Executor executor = new Executor()
+        {
+            @Override
+            public void execute(Runnable task)
+            {
+                if (hold.get())
+                {
+                    held.add(task);
+                    return;
+                }
+                maxDepth.set(Math.max(maxDepth.get(), Thread.currentThread().getStackTrace().length));
+                task.run();
+            }
+        };
+
+        List<Future<Workbook>> futures = new ArrayList<>();
+        futures.add(transformer.transformAsync(template, test.getBeansMap(), executor));
+        hold.set(false);
+        for (int i = 0; i < 20; i++)
+        {
+            futures.add(transformer.transformAsync(template, test.getBeansMap(), executor));
+        }
+        assertEquals(1, held.size());
+        assertFalse(futures.get(1).isDone());
+
+        int startDepth = Thread.currentThread().getStackTrace().length;
+        held.get(0).run();
+        for (Future<Workbook> future : futures)
+        {
+            assertTrue(future.isDone());
+        }
+        test.check(futures.get(futures.size() - 1).get());
+        assertTrue("Stack grew to " + (maxDepth.get() - startDepth) + " frames",
+                maxDepth.get() - startDepth < 50);
+    }
+}
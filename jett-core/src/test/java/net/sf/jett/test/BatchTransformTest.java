@@ -0,0 +1,218 @@
+package net.sf.jett.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import net.sf.jett.transform.BatchResult;
+import net.sf.jett.transform.CompiledTemplate;
+import net.sf.jett.transform.ExcelTransformer;
+import net.sf.jett.transform.OutputStreamFactory;
+
+/**
+ * This JUnit Test class tests batch transformations of one
+ * <code>CompiledTemplate</code> with many <code>Maps</code> of beans.  It
+ * uses the implicit collections processing template, checks every
+ * successful result, and checks that a failed item is reported without
+ * stopping the batch, and that a failing <code>Iterator</code> stops the
+ * batch without leaving any item running.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class BatchTransformTest
+{
+    private static final int NUM_THREADS = 3;
+    private static final int NUM_ITEMS = 10;
+    private static final int FAILING_ITEM = 4;
+
+    /**
+     * Tests the .xls template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testXls() throws IOException, InvalidFormatException
+    {
+        testBatch("templates/ImplCollProcessingTemplate.xls");
+    }
+
+    /**
+     * Tests the .xlsx template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testXlsx() throws IOException, InvalidFormatException
+    {
+        testBatch("templates/ImplCollProcessingTemplate.xlsx");
+    }
+
+    /**
+     * Tests that an exception from the <code>Iterator</code> is rethrown only
+     * after every started item is done, and that no item starts afterwards.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testIteratorFailure() throws IOException, InvalidFormatException
+    {
+        final ImplCollProcessingTest test = new ImplCollProcessingTest();
+        ExcelTransformer transformer = new ExcelTransformer();
+        test.setupTransformer(transformer);
+        CompiledTemplate template = CompiledTemplate.compile("templates/ImplCollProcessingTemplate.xlsx");
+
+        Iterator<Map<String, Object>> beansIterator = new Iterator<Map<String, Object>>()
+        {
+            private int myNumItems = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return true;
+            }
+
+            @Override
+            public Map<String, Object> next()
+            {
+                if (myNumItems == FAILING_ITEM)
+                    throw new IllegalStateException("Can't supply item " + myNumItems);
+                myNumItems++;
+                return test.getBeansMap();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+        final AtomicInteger numOpen = new AtomicInteger();
+        final AtomicInteger numCreated = new AtomicInteger();
+        OutputStreamFactory outFactory = new OutputStreamFactory()
+        {
+            @Override
+            public OutputStream createOutputStream(int index, Map<String, Object> beans)
+            {
+                numCreated.incrementAndGet();
+                numOpen.incrementAndGet();
+                return new ByteArrayOutputStream()
+                {
+                    private boolean amIClosed = false;
+
+                    @Override
+                    public synchronized void close()
+                    {
+                        if (!amIClosed)
+                            numOpen.decrementAndGet();
+                        amIClosed = true;
+                    }
+                };
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try
+        {
+            transformer.transformBatch(template, beansIterator, outFactory, executor, NUM_THREADS + 1);
+            fail("Expected the Iterator's exception.");
+        }
+        catch (IllegalStateException expected)
+        {
+            assertEquals(0, numOpen.get());
+            int numCreatedAtReturn = numCreated.get();
+            assertTrue(numCreatedAtReturn <= FAILING_ITEM);
+            executor.shutdown();
+            try
+            {
+                assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+            }
+            catch (InterruptedException e)
+            {
+                fail("Interrupted");
+            }
+            assertEquals(numCreatedAtReturn, numCreated.get());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Transforms the given template in a batch, with one item whose
+     * <code>OutputStream</code> can't be created, and checks the results.
+     * @param filename The template filename.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    private void testBatch(String filename) throws IOException, InvalidFormatException
+    {
+        ImplCollProcessingTest test = new ImplCollProcessingTest();
+        ExcelTransformer transformer = new ExcelTransformer();
+        test.setupTransformer(transformer);
+        CompiledTemplate template = CompiledTemplate.compile(filename);
+
+        List<Map<String, Object>> beansList = new ArrayList<>();
+        for (int i = 0; i < NUM_ITEMS; i++)
+        {
+            beansList.add(test.getBeansMap());
+        }
+        final ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[NUM_ITEMS];
+        OutputStreamFactory outFactory = new OutputStreamFactory()
+        {
+            @Override
+            public OutputStream createOutputStream(int index, Map<String, Object> beans) throws IOException
+            {
+                if (index == FAILING_ITEM)
+                    throw new IOException("Can't create output " + index);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                outputs[index] = out;
+                return out;
+            }
+        };
+
+        BatchResult result;
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try
+        {
+            result = transformer.transformBatch(template, beansList.iterator(), outFactory, executor, NUM_THREADS + 1);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(NUM_ITEMS, result.getNumItems());
+        assertEquals(NUM_ITEMS - 1, result.getNumSucceeded());
+        assertEquals(1, result.getNumFailed());
+        assertTrue(result.getFailures().get(FAILING_ITEM) instanceof IOException);
+        assertTrue(result.getMaxLatencyNanos() >= result.getMeanLatencyNanos());
+        assertTrue(result.getElapsedNanos() > 0);
+        for (int i = 0; i < NUM_ITEMS; i++)
+        {
+            assertTrue(result.getLatencyNanos(i) > 0);
+            if (i != FAILING_ITEM)
+            {
+                Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(outputs[i].toByteArray()));
+                test.check(workbook);
+            }
+        }
+    }
+}
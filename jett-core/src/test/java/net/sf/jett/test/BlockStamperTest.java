@@ -0,0 +1,403 @@
+package net.sf.jett.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Hyperlink;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.event.CellEvent;
+import net.sf.jett.event.CellListener;
+import net.sf.jett.event.TagLoopEvent;
+import net.sf.jett.event.TagLoopListener;
+import net.sf.jett.expression.ExpressionFactory;
+import net.sf.jett.model.Block;
+import net.sf.jett.model.WorkbookContext;
+import net.sf.jett.tag.TagContext;
+import net.sf.jett.transform.BlockStamper;
+import net.sf.jett.transform.ExcelTransformer;
+
+/**
+ * This JUnit Test class tests the <code>BlockStamper</code>, which renders
+ * the iterations of a loop whose <code>Block</code> contains no tags.  Each
+ * template is transformed both as is and with a <code>CellListener</code>
+ * registered, which makes the loop copy and transform its <code>Blocks</code>
+ * instead, and the results must be the same.  There is a template for each
+ * case in which a loop must not stamp its <code>Block</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class BlockStamperTest
+{
+    private static final String URL = "http://jett.sourceforge.net";
+
+    /**
+     * Tests that the <code>BlockStamper</code> can stamp a <code>Block</code>
+     * without tags, but not one with a tag or when there are
+     * <code>CellListeners</code>, and that it detects implicit collections.
+     */
+    @Test
+    public void testStampable()
+    {
+        Sheet sheet = new XSSFWorkbook().createSheet();
+        Row row = sheet.createRow(0);
+        row.createCell(0).setCellValue("${item.name}");
+        row.createCell(1).setCellValue("${item.children.name}");
+        Block block = new Block(null, 0, 1, 0, 0);
+        block.setDirection(Block.Direction.VERTICAL);
+        TagContext context = new TagContext();
+        context.setSheet(sheet);
+        context.setBlock(block);
+        WorkbookContext workbookContext = new WorkbookContext();
+        workbookContext.setCellListeners(new ArrayList<CellListener>());
+        workbookContext.setNoImplicitCollectionProcessingNames(new ArrayList<String>());
+        workbookContext.setExpressionFactory(new ExpressionFactory());
+
+        BlockStamper stamper = new BlockStamper(context, workbookContext);
+        assertTrue(stamper.isStampable());
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("item", createItem("A", 1));
+        assertTrue(stamper.hasImplicitCollections(beans));
+        row.getCell(1).setCellValue("${item.value}");
+        assertFalse(new BlockStamper(context, workbookContext).hasImplicitCollections(beans));
+
+        workbookContext.getCellListeners().add(new CountingCellListener());
+        assertFalse(new BlockStamper(context, workbookContext).isStampable());
+
+        workbookContext.getCellListeners().clear();
+        row.getCell(1).setCellValue("<jt:null/>");
+        assertFalse(new BlockStamper(context, workbookContext).isStampable());
+    }
+
+    /**
+     * Tests a stamped <code>Block</code> that contains expressions, a JETT
+     * formula, a hyperlink, a static formula, a style, and a merged region,
+     * with a JETT formula below the loop that refers into it.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    @Test
+    public void testStampedBlock() throws IOException, InvalidFormatException
+    {
+        checkSameAsCopied(createStampableTemplate());
+    }
+
+    /**
+     * Tests that a <code>Block</code> is copied and transformed when there are
+     * <code>CellListeners</code>, so that they see every <code>Cell</code>.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    @Test
+    public void testCellListeners() throws IOException, InvalidFormatException
+    {
+        CountingCellListener listener = new CountingCellListener();
+        transform(createStampableTemplate(), listener);
+        // 3 iterations of 2 rows of 4 cells, each processed.
+        assertTrue(listener.getNumBlockCells() >= 24);
+    }
+
+    /**
+     * Tests a <code>Block</code> that contains a tag.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    @Test
+    public void testTag() throws IOException, InvalidFormatException
+    {
+        checkSameAsCopied(createTemplate("<jt:forEach items=\"${items}\" var=\"item\">${item.name}",
+                "<jt:if test=\"${item.value > 1}\" then=\"big\" else=\"small\"/></jt:forEach>"));
+    }
+
+    /**
+     * Tests a loop with a <code>TagLoopListener</code>, which changes a
+     * <code>Cell</code> of an iteration before it's processed.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    @Test
+    public void testTagLoopListener() throws IOException, InvalidFormatException
+    {
+        checkSameAsCopied(createTemplate(
+                "<jt:forEach items=\"${items}\" var=\"item\" onLoopProcessed=\"${loopListener}\">${item.name}",
+                "${item.value}</jt:forEach>"));
+    }
+
+    /**
+     * Tests a loop that takes a past end action on the iterations beyond
+     * its collection.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    @Test
+    public void testPastEndAction() throws IOException, InvalidFormatException
+    {
+        checkSameAsCopied(createTemplate(
+                "<jt:forEach items=\"${items}\" var=\"item\" limit=\"5\" pastEndAction=\"replaceExpr\" replaceValue=\"-\">${item.name}",
+                "${item.value}</jt:forEach>"));
+    }
+
+    /**
+     * Tests a "multiForEach" loop over collections of different sizes, which
+     * replaces the expressions of the exhausted collection.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    @Test
+    public void testMultiForEach() throws IOException, InvalidFormatException
+    {
+        checkSameAsCopied(createTemplate("<jt:multiForEach collections=\"${names};${values}\" vars=\"n;v\" pastEndAction=\"replaceExpr\" replaceValue=\"-\">${n}",
+                "${v}</jt:multiForEach>"));
+    }
+
+    /**
+     * Tests a <code>Block</code> with an implicit collection, which can only
+     * be found once the first item is exposed.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    @Test
+    public void testImplicitCollection() throws IOException, InvalidFormatException
+    {
+        checkSameAsCopied(createTemplate("<jt:forEach items=\"${items}\" var=\"item\">${item.name}",
+                "${item.children.name}</jt:forEach>"));
+    }
+
+    /**
+     * Checks that transforming the given template with a stampable loop gives
+     * the same result as copying and transforming its <code>Blocks</code>.
+     * @param template The template, as bytes.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    private void checkSameAsCopied(byte[] template) throws IOException, InvalidFormatException
+    {
+        String copied = describe(transform(template, new CountingCellListener()));
+        assertEquals(copied, describe(transform(template, null)));
+    }
+
+    /**
+     * Transforms the given template.
+     * @param template The template, as bytes.
+     * @param listener A <code>CellListener</code> to register, or
+     *    <code>null</code>.
+     * @return The transformed <code>Sheet</code>.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    private Sheet transform(byte[] template, CellListener listener) throws IOException, InvalidFormatException
+    {
+        Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(template));
+        ExcelTransformer transformer = new ExcelTransformer();
+        if (listener != null)
+            transformer.addCellListener(listener);
+        transformer.transform(workbook, getBeansMap());
+        return workbook.getSheetAt(0);
+    }
+
+    /**
+     * Creates a template with a header row, a loop in the second row whose
+     * two cells have the given values, and a row below the loop.
+     * @param first The value of the first cell of the loop.
+     * @param second The value of the second cell of the loop.
+     * @return The template, as bytes.
+     * @throws IOException If an I/O error occurs.
+     */
+    private byte[] createTemplate(String first, String second) throws IOException
+    {
+        Workbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("Loop");
+        sheet.createRow(0).createCell(0).setCellValue("Header");
+        Row row = sheet.createRow(1);
+        row.createCell(0).setCellValue(first);
+        row.createCell(1).setCellValue(second);
+        sheet.createRow(2).createCell(0).setCellValue("After");
+        return toBytes(workbook);
+    }
+
+    /**
+     * Creates a template with a two-row loop that can be stamped.
+     * @return The template, as bytes.
+     * @throws IOException If an I/O error occurs.
+     */
+    private byte[] createStampableTemplate() throws IOException
+    {
+        Workbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("Stamped");
+        sheet.createRow(0).createCell(0).setCellValue("Header");
+
+        CellStyle bold = workbook.createCellStyle();
+        Font font = workbook.createFont();
+        font.setBold(true);
+        bold.setFont(font);
+        Row row = sheet.createRow(1);
+        Cell cell = row.createCell(0);
+        cell.setCellValue("<jt:forEach items=\"${items}\" var=\"item\">${item.name}");
+        cell.setCellStyle(bold);
+        row.createCell(1).setCellValue("${item.value}");
+        row.createCell(2).setCellValue("$[B2*2]");
+        row.createCell(3).setCellFormula("ROW()");
+        row = sheet.createRow(2);
+        row.setHeightInPoints(25);
+        cell = row.createCell(0);
+        cell.setCellValue("Link");
+        Hyperlink hyperlink = workbook.getCreationHelper().createHyperlink(Hyperlink.LINK_URL);
+        hyperlink.setAddress(URL);
+        cell.setHyperlink(hyperlink);
+        row.createCell(1).setCellValue(42);
+        row.createCell(2).setCellValue("Merged");
+        row.createCell(3).setCellValue("</jt:forEach>");
+        sheet.addMergedRegion(new CellRangeAddress(2, 2, 2, 3));
+        sheet.createRow(3).createCell(1).setCellValue("$[SUM(B2)]");
+        return toBytes(workbook);
+    }
+
+    /**
+     * Writes the given <code>Workbook</code> to bytes.
+     * @param workbook The <code>Workbook</code>.
+     * @return The bytes.
+     * @throws IOException If an I/O error occurs.
+     */
+    private byte[] toBytes(Workbook workbook) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Describes the cells, row heights, hyperlinks, and merged regions of the
+     * given <code>Sheet</code>.
+     * @param sheet The <code>Sheet</code>.
+     * @return A description.
+     */
+    private String describe(Sheet sheet)
+    {
+        StringBuilder buf = new StringBuilder();
+        for (Row row : sheet)
+        {
+            buf.append("Row ").append(row.getRowNum()).append(", height ").append(row.getHeight()).append(":");
+            for (Cell cell : row)
+            {
+                buf.append(" ").append(cell.getColumnIndex()).append("=").append(cell.getCellType())
+                        .append("/").append(cell).append("/").append(cell.getCellStyle().getIndex());
+                if (cell.getHyperlink() != null)
+                    buf.append("/").append(cell.getHyperlink().getAddress());
+            }
+            buf.append("\n");
+        }
+        TreeSet<String> regions = new TreeSet<>();
+        for (int i = 0; i < sheet.getNumMergedRegions(); i++)
+        {
+            regions.add(sheet.getMergedRegion(i).formatAsString());
+        }
+        buf.append("Merged regions: ").append(regions).append("\n");
+        return buf.toString();
+    }
+
+    /**
+     * Creates an item.
+     * @param name The name.
+     * @param value The value, which is also the number of its children.
+     * @return The item, as a <code>Map</code>.
+     */
+    private static Map<String, Object> createItem(String name, int value)
+    {
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", name);
+        item.put("value", value);
+        List<Map<String, Object>> children = new ArrayList<>();
+        for (int i = 1; i <= value; i++)
+        {
+            Map<String, Object> child = new HashMap<>();
+            child.put("name", name + i);
+            children.add(child);
+        }
+        item.put("children", children);
+        return item;
+    }
+
+    /**
+     * Returns the beans for a transformation.
+     * @return A <code>Map</code> of bean names to bean values.
+     */
+    private Map<String, Object> getBeansMap()
+    {
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("items", Arrays.asList(createItem("A", 1), createItem("B", 2), createItem("C", 3)));
+        beans.put("names", Arrays.asList("A", "B", "C"));
+        beans.put("values", Arrays.asList(1, 2));
+        beans.put("loopListener", new TagLoopListener()
+        {
+            @Override
+            public boolean beforeTagLoopProcessed(TagLoopEvent event)
+            {
+                // Replaces the first Cell of the second iteration.
+                if (event.getLoopIndex() == 1)
+                {
+                    Block block = event.getBlock();
+                    Cell cell = event.getSheet().getRow(block.getTopRowNum()).getCell(block.getLeftColNum());
+                    cell.setCellValue("${item.value * 100}");
+                }
+                return true;
+            }
+
+            @Override
+            public void onTagLoopProcessed(TagLoopEvent event)
+            {
+            }
+        });
+        return beans;
+    }
+
+    /**
+     * A <code>CellListener</code> that counts the processed <code>Cells</code>
+     * below the header row, and changes nothing.
+     */
+    private static class CountingCellListener implements CellListener
+    {
+        private int myNumBlockCells;
+
+        @Override
+        public boolean beforeCellProcessed(CellEvent event)
+        {
+            return true;
+        }
+
+        @Override
+        public void cellProcessed(CellEvent event)
+        {
+            if (event.getCell().getRowIndex() > 0)
+                myNumBlockCells++;
+        }
+
+        /**
+         * Returns the number of processed <code>Cells</code> below the header
+         * row.
+         * @return The number of processed <code>Cells</code>.
+         */
+        public int getNumBlockCells()
+        {
+            return myNumBlockCells;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package net.sf.jett.test;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.model.TagLocations;
+import net.sf.jett.util.CellKeyMap;
+
+/**
+ * This JUnit Test class tests the <code>CellKeyMap</code>, including growing
+ * and removing entries that share probe sequences, and the
+ * <code>TagLocations</code> built on it.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class CellKeyMapTest
+{
+    /**
+     * Tests packing and unpacking row and column indexes.
+     */
+    @Test
+    public void testKeys()
+    {
+        long key = CellKeyMap.key(1048575, 16383);
+        assertEquals(1048575, CellKeyMap.getRowNum(key));
+        assertEquals(16383, CellKeyMap.getColNum(key));
+        key = CellKeyMap.key(0, 0);
+        assertEquals(0, CellKeyMap.getRowNum(key));
+        assertEquals(0, CellKeyMap.getColNum(key));
+        assertFalse(CellKeyMap.key(1, 2) == CellKeyMap.key(2, 1));
+    }
+
+    /**
+     * Tests putting, getting, and replacing entries, including growing.
+     */
+    @Test
+    public void testPutAndGet()
+    {
+        CellKeyMap<String> map = new CellKeyMap<>();
+        assertTrue(map.isEmpty());
+        for (int r = 0; r < 100; r++)
+        {
+            for (int c = 0; c < 10; c++)
+            {
+                assertNull(map.put(r, c, r + "," + c));
+            }
+        }
+        assertEquals(1000, map.size());
+        for (int r = 0; r < 100; r++)
+        {
+            for (int c = 0; c < 10; c++)
+            {
+                assertTrue(map.containsKey(r, c));
+                assertEquals(r + "," + c, map.get(r, c));
+            }
+        }
+        assertNull(map.get(100, 0));
+        assertFalse(map.containsKey(0, 10));
+
+        assertEquals("5,5", map.put(5, 5, "replaced"));
+        assertEquals("replaced", map.get(5, 5));
+        assertEquals(1000, map.size());
+        assertEquals(1000, map.keys().length);
+    }
+
+    /**
+     * Tests that removing entries leaves all other entries reachable.
+     */
+    @Test
+    public void testRemove()
+    {
+        CellKeyMap<Integer> map = new CellKeyMap<>();
+        for (int i = 0; i < 500; i++)
+        {
+            map.put(i, i % 7, i);
+        }
+        for (int i = 0; i < 500; i += 2)
+        {
+            assertEquals(Integer.valueOf(i), map.remove(i, i % 7));
+        }
+        assertNull(map.remove(0, 0));
+        assertEquals(250, map.size());
+        for (int i = 0; i < 500; i++)
+        {
+            if (i % 2 == 0)
+                assertNull(map.get(i, i % 7));
+            else
+                assertEquals(Integer.valueOf(i), map.get(i, i % 7));
+        }
+
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertEquals(CellKeyMap.key(1, 1), keys[0]);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1, 1));
+    }
+
+    /**
+     * Tests that a copy is independent of the original.
+     */
+    @Test
+    public void testCopy()
+    {
+        CellKeyMap<String> map = new CellKeyMap<>();
+        map.put(2, 3, "D3");
+        CellKeyMap<String> copy = new CellKeyMap<>(map);
+        copy.put(3, 3, "D4");
+        copy.remove(2, 3);
+        assertEquals("D3", map.get(2, 3));
+        assertNull(map.get(3, 3));
+        assertEquals(1, map.size());
+        assertEquals("D4", copy.get(3, 3));
+    }
+
+    /**
+     * Tests moving and removing tag locations on different sheets.
+     */
+    @Test
+    public void testTagLocations()
+    {
+        TagLocations locations = new TagLocations();
+        locations.put("Sheet1", 0, 1, "Sheet1!B1");
+        locations.put("Sheet2", 0, 1, "Sheet2!B1");
+        assertEquals(2, locations.size());
+
+        assertEquals("Sheet1!B1", locations.move("Sheet1", 0, 1, 5, 1));
+        assertNull(locations.get("Sheet1", 0, 1));
+        assertEquals("Sheet1!B1", locations.get("Sheet1", 5, 1));
+        assertEquals("Sheet2!B1", locations.get("Sheet2", 0, 1));
+        assertNull(locations.move("Sheet3", 0, 1, 5, 1));
+
+        TagLocations copy = new TagLocations(locations);
+        assertEquals("Sheet2!B1", copy.remove("Sheet2", 0, 1));
+        assertEquals("Sheet2!B1", locations.get("Sheet2", 0, 1));
+        assertEquals("Sheet1!B1", copy.toMap().get("Sheet1!B6"));
+    }
+}
@@ -0,0 +1,83 @@
+package net.sf.jett.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.formula.CellRef;
+import net.sf.jett.model.CellRefIndex;
+
+/**
+ * This JUnit Test class tests the <code>CellRefIndex</code>, including which
+ * cell keys match a range on a sheet, and keeping the index up to date.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class CellRefIndexTest
+{
+    /**
+     * Creates a cell reference map with implicit references on two sheets
+     * and an explicit reference.
+     * @return The cell reference map.
+     */
+    private static Map<String, List<CellRef>> createCellRefMap()
+    {
+        Map<String, List<CellRef>> cellRefMap = new HashMap<>();
+        cellRefMap.put("i/Sheet1!B2", new ArrayList<>(Arrays.asList(new CellRef("B2"), new CellRef("B3"))));
+        cellRefMap.put("i/Sheet2!B2", new ArrayList<>(Arrays.asList(new CellRef("B2"))));
+        cellRefMap.put("e/Other!C5", new ArrayList<>(Arrays.asList(new CellRef("Other!C5"), new CellRef("Sheet1!C5"))));
+        return cellRefMap;
+    }
+
+    /**
+     * Tests finding the cell keys with references in a range.
+     */
+    @Test
+    public void testFindCellKeys()
+    {
+        CellRefIndex index = new CellRefIndex(createCellRefMap());
+        Set<String> cellKeys = index.findCellKeys("Sheet1", null, 0, 10, 0, 10);
+        assertEquals(2, cellKeys.size());
+        assertTrue(cellKeys.contains("i/Sheet1!B2"));
+        assertTrue(cellKeys.contains("e/Other!C5"));
+
+        cellKeys = index.findCellKeys("Sheet1", null, 1, 1, 2, 2);
+        assertEquals(1, cellKeys.size());
+        assertTrue(cellKeys.contains("i/Sheet1!B2"));
+        assertTrue(index.findCellKeys("Sheet1", null, 2, 10, 0, 3).isEmpty());
+
+        // Implicit keys from the template sheet match a sheet cloned from it.
+        cellKeys = index.findCellKeys("Clone", "Sheet2", 0, 10, 0, 10);
+        assertEquals(1, cellKeys.size());
+        assertTrue(cellKeys.contains("i/Sheet2!B2"));
+    }
+
+    /**
+     * Tests keeping the index up to date as references are moved, and that
+     * replaced <code>Lists</code> are recognized as stale.
+     */
+    @Test
+    public void testAddAndRemove()
+    {
+        Map<String, List<CellRef>> cellRefMap = createCellRefMap();
+        CellRefIndex index = new CellRefIndex(cellRefMap);
+        List<CellRef> cellRefs = cellRefMap.get("i/Sheet1!B2");
+        CellRef old = cellRefs.remove(1);
+        index.remove("i/Sheet1!B2", old);
+        CellRef moved = new CellRef("B30");
+        cellRefs.add(moved);
+        index.add("i/Sheet1!B2", moved);
+        assertTrue(index.findCellKeys("Sheet1", null, 1, 1, 2, 2).isEmpty());
+        assertEquals(1, index.findCellKeys("Sheet1", null, 1, 1, 29, 29).size());
+
+        cellRefMap.put("i/Sheet2!B2", new ArrayList<CellRef>());
+        assertTrue(index.findCellKeys("Sheet2", null, 0, 10, 0, 10).isEmpty());
+    }
+}
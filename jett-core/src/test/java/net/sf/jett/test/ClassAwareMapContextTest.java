@@ -0,0 +1,109 @@
+package net.sf.jett.test;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.jexl2.JexlException;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.expression.ClassAwareMapContext;
+import net.sf.jett.expression.Expression;
+import net.sf.jett.expression.ExpressionFactory;
+import net.sf.jett.transform.ExcelTransformer;
+
+/**
+ * This JUnit Test class tests resolving class names in expressions, with and
+ * without imported classes and class name fallback.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class ClassAwareMapContextTest
+{
+    /**
+     * Tests resolving beans, class names, and names that are neither.
+     */
+    @Test
+    public void testResolve()
+    {
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("nothing", null);
+        ClassAwareMapContext context = new ClassAwareMapContext(beans);
+        assertTrue(context.has("nothing"));
+        assertNull(context.get("nothing"));
+        assertEquals(String.class, context.get("java.lang.String"));
+        assertFalse(context.has("java.lang"));
+        // Again, from the cache.
+        assertFalse(context.has("java.lang"));
+        assertNull(context.get("java.lang"));
+        assertTrue(context.wraps(beans));
+        assertFalse(context.wraps(new HashMap<String, Object>()));
+    }
+
+    /**
+     * Tests imported classes and turning off class name fallback.
+     */
+    @Test
+    public void testImports()
+    {
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("x", 3);
+        ExpressionFactory factory = new ExpressionFactory();
+        factory.importClass(Math.class);
+        assertEquals(3, Expression.evaluateString("${Math.abs(-3)}", factory, beans));
+        assertEquals("3", Expression.evaluateString("${java.lang.String.valueOf(x)}", factory, beans));
+
+        factory.setClassNameFallback(false);
+        assertFalse(factory.isClassNameFallback());
+        assertEquals(3, Expression.evaluateString("${java.lang.Math.abs(-x)}", factory, beans));
+    }
+
+    /**
+     * Tests that other class names aren't resolved when class name fallback
+     * is off.
+     */
+    @Test(expected = JexlException.class)
+    public void testNoClassNameFallback()
+    {
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("x", 3);
+        ExpressionFactory factory = new ExpressionFactory();
+        factory.setClassNameFallback(false);
+        Expression.evaluateString("${java.lang.String.valueOf(x)}", factory, beans);
+    }
+
+    /**
+     * Tests that neither a transformation nor an evaluation outside of one
+     * leaves the thread referring to the beans.
+     */
+    @Test
+    public void testBeansReleased()
+    {
+        ExcelTransformer transformer = new ExcelTransformer();
+        Workbook workbook = new XSSFWorkbook();
+        workbook.createSheet("Sheet1").createRow(0).createCell(0).setCellValue("${x}");
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("x", 3);
+        transformer.transform(workbook, beans);
+        assertEquals(3, workbook.getSheetAt(0).getRow(0).getCell(0).getNumericCellValue(), 0);
+        WeakReference<Map<String, Object>> transformed = new WeakReference<>(beans);
+
+        beans = new HashMap<>();
+        beans.put("x", 4);
+        assertEquals(4, Expression.evaluateString("${x}", transformer.getExpressionFactory(), beans));
+        WeakReference<Map<String, Object>> evaluated = new WeakReference<>(beans);
+
+        beans = null;
+        for (int i = 0; i < 10 && (transformed.get() != null || evaluated.get() != null); i++)
+        {
+            System.gc();
+        }
+        assertNull(transformed.get());
+        assertNull(evaluated.get());
+        assertNotNull(transformer);
+    }
+}
@@ -0,0 +1,75 @@
+package net.sf.jett.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import net.sf.jett.transform.CompiledTemplate;
+import net.sf.jett.transform.ExcelTransformer;
+
+/**
+ * This JUnit Test class tests transforming a <code>CompiledTemplate</code>
+ * more than once.  It uses the name tag template, because the name tag
+ * modifies the formula and cell reference maps during transformation, and
+ * each transformation must start with fresh copies.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class CompiledTemplateTest
+{
+    private static final String TEMPLATE_BASE = "templates/NameTagTemplate";
+
+    /**
+     * Tests compiling the .xls template once and transforming it twice.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testXls() throws IOException, InvalidFormatException
+    {
+        testRepeated(TEMPLATE_BASE + ".xls");
+    }
+
+    /**
+     * Tests compiling the .xlsx template once and transforming it twice.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testXlsx() throws IOException, InvalidFormatException
+    {
+        testRepeated(TEMPLATE_BASE + ".xlsx");
+    }
+
+    /**
+     * Compiles the given template and transforms it twice, once to a
+     * <code>Workbook</code> and once to an <code>OutputStream</code>,
+     * checking both results.
+     * @param filename The template filename.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    private void testRepeated(String filename) throws IOException, InvalidFormatException
+    {
+        CompiledTemplate template = CompiledTemplate.compile(filename);
+        assertEquals(4, template.getNumFormulas());
+        NameTagTest nameTagTest = new NameTagTest();
+        ExcelTransformer transformer = new ExcelTransformer();
+
+        Workbook first = transformer.transform(template, nameTagTest.getBeansMap());
+        nameTagTest.check(first);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transformer.transform(template, out, nameTagTest.getBeansMap());
+        Workbook second = WorkbookFactory.create(new ByteArrayInputStream(out.toByteArray()));
+        nameTagTest.check(second);
+    }
+}
@@ -0,0 +1,76 @@
+package net.sf.jett.test;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.Test;
+
+import net.sf.jett.transform.ExcelTransformer;
+
+/**
+ * This JUnit Test class tests that one configured
+ * <code>ExcelTransformer</code> can be shared by many threads transforming at
+ * the same time.  It uses the implicit collections processing template,
+ * which exercises the cache of collection names found in expressions.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class ConcurrentTransformTest
+{
+    private static final int NUM_THREADS = 4;
+    private static final int NUM_TRANSFORMS = 16;
+
+    /**
+     * Transforms the .xlsx template many times concurrently with one shared
+     * <code>ExcelTransformer</code>, checking every result.
+     * @throws Exception If any transformation or check fails.
+     */
+    @Test
+    public void testSharedTransformer() throws Exception
+    {
+        final ImplCollProcessingTest implCollTest = new ImplCollProcessingTest();
+        final ExcelTransformer transformer = new ExcelTransformer();
+        implCollTest.setupTransformer(transformer);
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < NUM_TRANSFORMS; i++)
+            {
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        try (InputStream fileIn = new BufferedInputStream(
+                                new FileInputStream("templates/ImplCollProcessingTemplate.xlsx")))
+                        {
+                            Workbook workbook = transformer.transform(fileIn, implCollTest.getBeansMap());
+                            implCollTest.check(workbook);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            // Rethrows any assertion failure or exception from the tasks.
+            for (Future<Void> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
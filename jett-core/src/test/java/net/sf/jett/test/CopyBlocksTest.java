@@ -0,0 +1,309 @@
+package net.sf.jett.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.formula.CellRef;
+import net.sf.jett.formula.Formula;
+import net.sf.jett.model.Block;
+import net.sf.jett.model.MergedRegions;
+import net.sf.jett.model.ProcessedCells;
+import net.sf.jett.model.TagLocations;
+import net.sf.jett.model.WorkbookContext;
+import net.sf.jett.tag.TagContext;
+import net.sf.jett.util.FormulaUtil;
+import net.sf.jett.util.SheetUtil;
+
+/**
+ * This JUnit Test class tests that copying a <code>Block</code> into all of
+ * its iterations at once with <code>SheetUtil.copyBlocks</code> leaves the
+ * same cells, merged regions, row heights, column widths, tag locations,
+ * processed cells, and cell reference map as copying it once per iteration
+ * with <code>SheetUtil.copyBlock</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class CopyBlocksTest
+{
+    private static final String SHEET_NAME = "Sheet1";
+    private static final int NUM_COPIES = 3;
+
+    /**
+     * Tests a vertical <code>Block</code> with a merged region, a row height,
+     * a tag location, a processed cell, and JETT formulas referring into it
+     * from inside and outside of it.
+     */
+    @Test
+    public void testVertical()
+    {
+        assertEquals(copyVertical(true), copyVertical(false));
+    }
+
+    /**
+     * Tests a horizontal <code>Block</code> with a merged region, a column
+     * width, a tag location, a processed cell, and JETT formulas referring
+     * into it from inside and outside of it.
+     */
+    @Test
+    public void testHorizontal()
+    {
+        assertEquals(copyHorizontal(true), copyHorizontal(false));
+    }
+
+    /**
+     * Tests a horizontal <code>Block</code> inside each iteration of a
+     * vertical <code>Block</code>, so that JETT formulas and cell reference
+     * map entries get both loops' suffixes, in order.
+     */
+    @Test
+    public void testNested()
+    {
+        String expected = copyNested(false);
+        assertEquals(expected, copyNested(true));
+        assertTrue(expected.contains("$[C2][0,1][1,2]"));
+        assertTrue(expected.contains("i/Sheet1!C2[0,1][1,2]"));
+    }
+
+    /**
+     * Copies a vertical <code>Block</code>, A3:C4, below which nothing is on
+     * the <code>Sheet</code>.
+     * @param all Whether to copy all iterations at once.
+     * @return A description of the state after copying.
+     */
+    private String copyVertical(boolean all)
+    {
+        Fixture fixture = new Fixture();
+        fixture.setCell(0, 0, "$[SUM(B3)]");
+        fixture.setCell(2, 0, "${item.name}");
+        fixture.setCell(2, 1, "${item.value}");
+        fixture.setCell(2, 2, "$[B3*2]");
+        fixture.setCell(3, 0, "Merged");
+        fixture.setCell(3, 2, "Plain");
+        fixture.mySheet.getRow(3).setHeightInPoints(25);
+        fixture.myMergedRegions.add(new CellRangeAddress(3, 3, 0, 1));
+        fixture.myWorkbookContext.getTagLocations().put(SHEET_NAME, 2, 0, SHEET_NAME + "!A3");
+        fixture.myTagContext.getProcessedCells().add(3, 2);
+        fixture.addFormula("A1", "$[SUM(B3)]", "B3");
+        fixture.addFormula("C3", "$[B3*2]", "B3");
+
+        Block parent = new Block(null, 0, 2, 0, 3);
+        Block block = new Block(parent, 0, 2, 2, 3);
+        block.setDirection(Block.Direction.VERTICAL);
+        List<Block> blocks = fixture.copy(fixture.myTagContext, block, all);
+        return fixture.describe(blocks);
+    }
+
+    /**
+     * Copies a horizontal <code>Block</code>, B1:C3, to the right of which
+     * nothing is on the <code>Sheet</code>.
+     * @param all Whether to copy all iterations at once.
+     * @return A description of the state after copying.
+     */
+    private String copyHorizontal(boolean all)
+    {
+        Fixture fixture = new Fixture();
+        fixture.setCell(0, 0, "$[SUM(B1)]");
+        fixture.setCell(0, 1, "${item.name}");
+        fixture.setCell(1, 1, "$[B1 + C2]");
+        fixture.setCell(1, 2, "${item.value}");
+        fixture.setCell(2, 1, "Merged");
+        fixture.mySheet.setColumnWidth(2, 5000);
+        fixture.myMergedRegions.add(new CellRangeAddress(2, 2, 1, 2));
+        fixture.myWorkbookContext.getTagLocations().put(SHEET_NAME, 0, 1, SHEET_NAME + "!B1");
+        fixture.myTagContext.getProcessedCells().add(2, 1);
+        fixture.addFormula("A1", "$[SUM(B1)]", "B1");
+        fixture.addFormula("B2", "$[B1 + C2]", "B1", "C2");
+
+        Block parent = new Block(null, 0, 2, 0, 2);
+        Block block = new Block(parent, 1, 2, 0, 2);
+        block.setDirection(Block.Direction.HORIZONTAL);
+        List<Block> blocks = fixture.copy(fixture.myTagContext, block, all);
+        return fixture.describe(blocks);
+    }
+
+    /**
+     * Copies a vertical <code>Block</code>, A2:C3, then a horizontal
+     * <code>Block</code>, B2:C2, in each of its iterations.
+     * @param all Whether to copy all iterations at once.
+     * @return A description of the state after copying.
+     */
+    private String copyNested(boolean all)
+    {
+        Fixture fixture = new Fixture();
+        fixture.setCell(0, 0, "$[SUM(C2)]");
+        fixture.setCell(1, 0, "${outer}");
+        fixture.setCell(1, 1, "${inner}");
+        fixture.setCell(1, 2, "$[C2]");
+        fixture.setCell(2, 0, "Merged");
+        fixture.myMergedRegions.add(new CellRangeAddress(2, 2, 0, 2));
+        fixture.addFormula("A1", "$[SUM(C2)]", "C2");
+        fixture.addFormula("C2", "$[C2]", "C2");
+
+        Block parent = new Block(null, 0, 2, 0, 2);
+        Block outer = new Block(parent, 0, 2, 1, 2);
+        outer.setDirection(Block.Direction.VERTICAL);
+        List<Block> outerBlocks = fixture.copy(fixture.myTagContext, outer, all);
+        fixture.myWorkbookContext.incrSequenceNbr();
+
+        List<Block> blocks = new ArrayList<>(outerBlocks);
+        for (int i = 0; i < outerBlocks.size(); i++)
+        {
+            Block outerBlock = outerBlocks.get(i);
+            TagContext innerContext = new TagContext();
+            innerContext.setSheet(fixture.mySheet);
+            innerContext.setBlock(outerBlock);
+            innerContext.setProcessedCells(fixture.myTagContext.getProcessedCells());
+            innerContext.setSheetMergedRegions(fixture.myMergedRegions);
+            innerContext.setFormulaSuffix("[0," + i + "]");
+            Block inner = new Block(outerBlock, 1, 2, outerBlock.getTopRowNum(), outerBlock.getTopRowNum());
+            inner.setDirection(Block.Direction.HORIZONTAL);
+            blocks.addAll(fixture.copy(innerContext, inner, all));
+        }
+        return fixture.describe(blocks);
+    }
+
+    /**
+     * A <code>Sheet</code> and the contexts that are needed to copy
+     * <code>Blocks</code> on it.
+     */
+    private static class Fixture
+    {
+        private Sheet mySheet;
+        private MergedRegions myMergedRegions;
+        private TagContext myTagContext;
+        private WorkbookContext myWorkbookContext;
+        private Map<String, Formula> myFormulaMap;
+
+        /**
+         * Creates an empty <code>Sheet</code> and its contexts.
+         */
+        public Fixture()
+        {
+            mySheet = new XSSFWorkbook().createSheet(SHEET_NAME);
+            myMergedRegions = new MergedRegions();
+            myTagContext = new TagContext();
+            myTagContext.setSheet(mySheet);
+            myTagContext.setProcessedCells(new ProcessedCells());
+            myTagContext.setSheetMergedRegions(myMergedRegions);
+            myWorkbookContext = new WorkbookContext();
+            myWorkbookContext.setTagLocations(new TagLocations());
+            myWorkbookContext.setSheetNames(Arrays.asList(SHEET_NAME));
+            myWorkbookContext.setTemplateSheetNames(Arrays.asList(SHEET_NAME));
+            myFormulaMap = new HashMap<>();
+            myWorkbookContext.setFormulaMap(myFormulaMap);
+        }
+
+        /**
+         * Sets the value of a <code>Cell</code>, creating it if necessary.
+         * @param rowNum The 0-based row index.
+         * @param colNum The 0-based column index.
+         * @param value The value.
+         */
+        public void setCell(int rowNum, int colNum, String value)
+        {
+            Row row = mySheet.getRow(rowNum);
+            if (row == null)
+                row = mySheet.createRow(rowNum);
+            row.createCell(colNum).setCellValue(value);
+        }
+
+        /**
+         * Adds a JETT formula, and rebuilds the cell reference map.
+         * @param cellRef Where the formula is.
+         * @param text The formula text.
+         * @param refs The cell references in the formula.
+         */
+        public void addFormula(String cellRef, String text, String... refs)
+        {
+            List<CellRef> cellRefs = new ArrayList<>();
+            for (String ref : refs)
+            {
+                cellRefs.add(new CellRef(ref));
+            }
+            myFormulaMap.put(SHEET_NAME + "!" + cellRef, new Formula(text, cellRefs));
+            myWorkbookContext.setCellRefMap(FormulaUtil.createCellRefMap(myFormulaMap));
+            myWorkbookContext.invalidateCellRefIndex();
+        }
+
+        /**
+         * Copies the given <code>Block</code> into <code>NUM_COPIES</code>
+         * iterations.
+         * @param tagContext The <code>TagContext</code> of the loop.
+         * @param block The <code>Block</code>.
+         * @param all Whether to copy all iterations at once, or one at a time.
+         * @return The <code>Blocks</code> of the iterations.
+         */
+        public List<Block> copy(TagContext tagContext, Block block, boolean all)
+        {
+            if (all)
+                return SheetUtil.copyBlocks(mySheet, tagContext, block, myWorkbookContext, NUM_COPIES);
+            List<Block> blocks = new ArrayList<>();
+            for (int i = 0; i < NUM_COPIES; i++)
+            {
+                blocks.add(SheetUtil.copyBlock(mySheet, tagContext, block, myWorkbookContext, i));
+            }
+            return blocks;
+        }
+
+        /**
+         * Describes everything that copying <code>Blocks</code> may change.
+         * @param blocks The copied <code>Blocks</code>.
+         * @return A description.
+         */
+        public String describe(List<Block> blocks)
+        {
+            StringBuilder buf = new StringBuilder();
+            for (Block block : blocks)
+            {
+                buf.append(block).append("\n");
+            }
+            for (Row row : mySheet)
+            {
+                buf.append("Row ").append(row.getRowNum()).append(", height ").append(row.getHeight()).append(":");
+                for (Cell cell : row)
+                {
+                    buf.append(" ").append(cell.getColumnIndex()).append("=").append(cell)
+                            .append("/").append(cell.getCellStyle().getIndex());
+                }
+                buf.append("\n");
+            }
+            for (int c = 0; c < 10; c++)
+            {
+                buf.append("Column ").append(c).append(", width ").append(mySheet.getColumnWidth(c)).append("\n");
+            }
+            TreeSet<String> regions = new TreeSet<>();
+            for (CellRangeAddress region : myMergedRegions)
+            {
+                regions.add(region.formatAsString());
+            }
+            buf.append("Merged regions: ").append(regions).append("\n");
+            buf.append("Tag locations: ").append(new TreeMap<>(myWorkbookContext.getTagLocations().toMap())).append("\n");
+            buf.append("Processed cells: ").append(new TreeSet<>(myTagContext.getProcessedCells().asMap(mySheet).keySet())).append("\n");
+            Map<String, List<CellRef>> cellRefMap = myWorkbookContext.getCellRefMap();
+            for (String cellKey : new TreeSet<>(cellRefMap.keySet()))
+            {
+                buf.append(cellKey).append(" =>");
+                for (CellRef cellRef : cellRefMap.get(cellKey))
+                {
+                    buf.append(" ").append(cellRef.formatAsString());
+                }
+                buf.append("\n");
+            }
+            return buf.toString();
+        }
+    }
+}
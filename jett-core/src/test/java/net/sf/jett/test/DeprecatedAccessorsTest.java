@@ -0,0 +1,134 @@
+package net.sf.jett.test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.model.MergedRegions;
+import net.sf.jett.model.ProcessedCells;
+import net.sf.jett.model.TagLocations;
+import net.sf.jett.model.WorkbookContext;
+import net.sf.jett.tag.TagContext;
+import net.sf.jett.util.SheetUtil;
+
+/**
+ * This JUnit Test class tests that the deprecated <code>Map</code> and
+ * <code>List</code> accessors of <code>TagContext</code> and
+ * <code>WorkbookContext</code>, still used by custom tags, are views of the
+ * structures that replaced them.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+@SuppressWarnings("deprecation")
+public class DeprecatedAccessorsTest
+{
+    /**
+     * Tests that the processed cells <code>Map</code> writes through to the
+     * <code>ProcessedCells</code>, and that passing it along shares it.
+     */
+    @Test
+    public void testProcessedCellsMap()
+    {
+        Workbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("My Sheet");
+        Cell cell = sheet.createRow(2).createCell(1);
+        String key = SheetUtil.getCellKey(cell);
+
+        TagContext context = new TagContext();
+        context.setSheet(sheet);
+        context.setProcessedCells(new ProcessedCells());
+        Map<String, Cell> map = context.getProcessedCellsMap();
+        assertFalse(map.containsKey(key));
+        map.put(key, cell);
+        assertTrue(context.getProcessedCells().contains(cell));
+        assertTrue(map.containsKey(key));
+        assertSame(cell, map.get(key));
+        assertEquals(1, map.size());
+        assertEquals(key, map.keySet().iterator().next());
+
+        TagContext child = new TagContext();
+        child.setSheet(sheet);
+        child.setProcessedCellsMap(context.getProcessedCellsMap());
+        assertSame(context.getProcessedCells(), child.getProcessedCells());
+        child.getProcessedCellsMap().remove(key);
+        assertFalse(context.getProcessedCells().contains(cell));
+
+        Map<String, Cell> custom = new HashMap<>();
+        custom.put(key, cell);
+        child.setProcessedCellsMap(custom);
+        assertTrue(child.getProcessedCells().contains(cell));
+    }
+
+    /**
+     * Tests that the merged regions <code>List</code> writes through to the
+     * <code>MergedRegions</code>, and that passing it along shares it.
+     */
+    @Test
+    public void testMergedRegionsList()
+    {
+        CellRangeAddress first = new CellRangeAddress(0, 1, 0, 1);
+        CellRangeAddress second = new CellRangeAddress(5, 5, 2, 4);
+        MergedRegions mergedRegions = new MergedRegions();
+        mergedRegions.add(second);
+
+        TagContext context = new TagContext();
+        context.setSheetMergedRegions(mergedRegions);
+        List<CellRangeAddress> list = context.getMergedRegions();
+        list.add(first);
+        assertEquals(2, mergedRegions.size());
+        assertEquals(2, list.size());
+        assertSame(first, list.get(0));
+        assertSame(second, list.get(1));
+
+        TagContext child = new TagContext();
+        child.setMergedRegions(context.getMergedRegions());
+        assertSame(mergedRegions, child.getSheetMergedRegions());
+        for (int i = 0; i < list.size(); i++)
+        {
+            if (list.get(i).getFirstRow() == 0)
+            {
+                list.remove(i);
+                i--;
+            }
+        }
+        assertEquals(1, mergedRegions.size());
+        assertNull(mergedRegions.findAt(0, 0));
+        assertSame(second, mergedRegions.findAt(2, 5));
+    }
+
+    /**
+     * Tests that the tag locations <code>Map</code> writes through to the
+     * <code>TagLocations</code>.
+     */
+    @Test
+    public void testTagLocationsMap()
+    {
+        WorkbookContext context = new WorkbookContext();
+        context.setTagLocations(new TagLocations());
+        Map<String, String> map = context.getTagLocationsMap();
+        map.put("My Sheet!B3", "My Sheet!B1");
+        assertEquals("My Sheet!B1", context.getTagLocations().get("My Sheet", 2, 1));
+        assertEquals("My Sheet!B1", map.get("My Sheet!B3"));
+        assertEquals(1, map.size());
+        assertEquals("My Sheet!B3", map.keySet().iterator().next());
+
+        context.getTagLocations().move("My Sheet", 2, 1, 4, 1);
+        assertNull(map.get("My Sheet!B3"));
+        assertEquals("My Sheet!B1", map.remove("My Sheet!B5"));
+        assertEquals(0, context.getTagLocations().size());
+
+        Map<String, String> custom = new HashMap<>();
+        custom.put("Sheet1!C2", "Sheet1!C1");
+        context.setTagLocationsMap(custom);
+        assertEquals("Sheet1!C1", context.getTagLocations().get("Sheet1", 1, 2));
+    }
+}
@@ -0,0 +1,90 @@
+package net.sf.jett.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.expression.Expression;
+import net.sf.jett.expression.ExpressionFactory;
+
+/**
+ * This JUnit Test class tests replacing expressions embedded in text with
+ * their values.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class ExpressionInterpolationTest
+{
+    /**
+     * Counts how many times it has been called.
+     */
+    public static class Counter
+    {
+        private int myCount = 0;
+
+        /**
+         * Increments and returns the count.
+         * @return The count.
+         */
+        public int next()
+        {
+            return ++myCount;
+        }
+    }
+
+    /**
+     * Creates beans for the tests.
+     * @return A <code>Map</code> of beans.
+     */
+    private static Map<String, Object> createBeans()
+    {
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("name", "World");
+        beans.put("nothing", null);
+        beans.put("counter", new Counter());
+        return beans;
+    }
+
+    /**
+     * Tests replacing expressions, including escaped expressions and
+     * <code>null</code> values.
+     */
+    @Test
+    public void testReplace()
+    {
+        ExpressionFactory factory = new ExpressionFactory();
+        Object result = Expression.evaluateString("Hello ${name}, \\${name}${nothing}!", factory, createBeans());
+        assertEquals("Hello World, ${name}!", result);
+
+        result = Expression.evaluateString("${name}${name}", factory, createBeans());
+        assertEquals("WorldWorld", result);
+
+        result = Expression.evaluateString("No expressions", factory, createBeans());
+        assertEquals("No expressions", result);
+    }
+
+    /**
+     * Tests that each expression is evaluated exactly once.
+     */
+    @Test
+    public void testEvaluatedOnce()
+    {
+        ExpressionFactory factory = new ExpressionFactory();
+        Object result = Expression.evaluateString("${counter.next()} then ${counter.next()}", factory, createBeans());
+        assertEquals("1 then 2", result);
+    }
+
+    /**
+     * Tests that expressions inside JETT formulas are left alone.
+     */
+    @Test
+    public void testFormula()
+    {
+        ExpressionFactory factory = new ExpressionFactory();
+        Object result = Expression.evaluateString("${name} $[SUM(${name}!B2)]", factory, createBeans());
+        assertEquals("World $[SUM(${name}!B2)]", result);
+    }
+}
@@ -0,0 +1,84 @@
+package net.sf.jett.test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.formula.CellRef;
+import net.sf.jett.formula.Formula;
+import net.sf.jett.formula.FormulaTokens;
+import net.sf.jett.model.WorkbookContext;
+import net.sf.jett.util.FormulaUtil;
+
+/**
+ * This JUnit Test class tests the <code>FormulaTokens</code>, which split
+ * formula text at its cell references.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class FormulaTokensTest
+{
+    /**
+     * Tests that cell references are only found on their own, not inside
+     * other cell references or names.
+     */
+    @Test
+    public void testBoundaries()
+    {
+        List<CellRef> cellRefs = Arrays.asList(new CellRef("A1"), new CellRef("A2"));
+        FormulaTokens tokens = new FormulaTokens("A1 + A2 + AA1 + A10 + A1", cellRefs);
+        assertEquals(3, tokens.getNumSlots());
+        assertEquals("A21 + A22 + AA1 + A10 + A21", tokens.format(new String[] {"A21", "A22"}));
+    }
+
+    /**
+     * Tests that a translated cell reference isn't translated again by a
+     * later cell reference.
+     */
+    @Test
+    public void testNoRetranslation()
+    {
+        List<CellRef> cellRefs = Arrays.asList(new CellRef("B2"), new CellRef("B3"));
+        FormulaTokens tokens = new FormulaTokens("SUM(B2)/B3", cellRefs);
+        assertEquals("SUM(B3,B4)/B5", tokens.format(new String[] {"B3,B4", "B5"}));
+    }
+
+    /**
+     * Tests formula text without cell references.
+     */
+    @Test
+    public void testNoCellRefs()
+    {
+        FormulaTokens tokens = new FormulaTokens("1 + 2", Arrays.<CellRef>asList());
+        assertEquals(0, tokens.getNumSlots());
+        assertEquals("1 + 2", tokens.format(new String[0]));
+    }
+
+    /**
+     * Tests that formula text that has changed since the <code>Formula</code>
+     * was created is split without replacing the <code>Formula's</code> own
+     * tokens, because the <code>Formula</code> may be shared.
+     */
+    @Test
+    public void testChangedTextLeavesFormulaAlone()
+    {
+        List<CellRef> cellRefs = Arrays.asList(new CellRef("B2"));
+        Formula formula = new Formula("$[SUM(B2)]", cellRefs);
+        FormulaTokens tokens = formula.getTokens();
+        assertEquals("SUM(B2)", tokens.getText());
+
+        Map<String, List<CellRef>> cellRefMap = new HashMap<>();
+        cellRefMap.put(FormulaUtil.IMPLICIT_REF_PREFIX + "Sheet1!B2", Arrays.asList(new CellRef("B3"), new CellRef("B4")));
+        WorkbookContext context = new WorkbookContext();
+        context.setCellRefMap(cellRefMap);
+        assertEquals("SUM(B3,B4)", FormulaUtil.createExcelFormulaString(formula, "Sheet1", context));
+        assertEquals("AVERAGE(B3,B4)", FormulaUtil.createExcelFormulaString("$[AVERAGE(B2)]", formula, "Sheet1", context));
+        assertSame(tokens, formula.getTokens());
+        assertEquals("SUM(B2)", formula.getTokens().getText());
+    }
+}
@@ -0,0 +1,122 @@
+package net.sf.jett.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.expression.Expression;
+import net.sf.jett.expression.ExpressionFactory;
+import net.sf.jett.model.WorkbookContext;
+import net.sf.jett.transform.ExcelTransformer;
+
+/**
+ * This JUnit Test class tests that implicit collections detection is cached
+ * only within a transformation, because it depends on the beans, even
+ * though the parsing of expression text is shared across transformations.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class ImplicitCollectionCacheTest
+{
+    /**
+     * Creates a <code>WorkbookContext</code> that uses the given
+     * <code>ExpressionFactory</code>.
+     * @param factory An <code>ExpressionFactory</code>.
+     * @return A <code>WorkbookContext</code>.
+     */
+    private static WorkbookContext createContext(ExpressionFactory factory)
+    {
+        WorkbookContext context = new WorkbookContext();
+        context.setExpressionFactory(factory);
+        context.setNoImplicitCollectionProcessingNames(new ArrayList<String>());
+        return context;
+    }
+
+    /**
+     * Creates beans in which "data.items" is the given value.
+     * @param items The value of "data.items".
+     * @return A <code>Map</code> of beans.
+     */
+    private static Map<String, Object> createBeans(Object items)
+    {
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", items);
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("data", data);
+        return beans;
+    }
+
+    /**
+     * Tests that detection is cached within a transformation, but is done
+     * again for another transformation whose nested bean properties have
+     * different types.
+     */
+    @Test
+    public void testPerTransformation()
+    {
+        ExpressionFactory factory = new ExpressionFactory();
+        Expression expr = new Expression("data.items.name");
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", "listed");
+        List<Map<String, Object>> items = new ArrayList<>();
+        items.add(item);
+        Map<String, Object> beans = createBeans(items);
+        WorkbookContext context = createContext(factory);
+        assertEquals("data.items", expr.getValueIndicatingImplicitCollection(beans, context));
+        assertEquals("data.items", context.getExpressionToCollNamesMap().get("data.items.name"));
+
+        Map<String, Object> plain = new HashMap<>();
+        plain.put("name", "plain");
+        assertNull(expr.getValueIndicatingImplicitCollection(createBeans(plain), createContext(factory)));
+    }
+
+    /**
+     * Tests that an expression rendered with a <code>List</code> of
+     * <code>Maps</code> and then with a plain <code>Map</code> by the same
+     * <code>ExcelTransformer</code> isn't treated as implicit Collections
+     * access the second time.
+     */
+    @Test
+    public void testListThenMap()
+    {
+        ExcelTransformer transformer = new ExcelTransformer();
+        Map<String, Object> first = new HashMap<>();
+        first.put("name", "first");
+        Map<String, Object> second = new HashMap<>();
+        second.put("name", "second");
+        Workbook workbook = createWorkbook();
+        transformer.transform(workbook, createBeans(Arrays.asList(first, second)));
+        Sheet sheet = workbook.getSheetAt(0);
+        assertEquals("first", TestUtility.getStringCellValue(sheet, 0, 0));
+        assertEquals("second", TestUtility.getStringCellValue(sheet, 1, 0));
+
+        Map<String, Object> plain = new HashMap<>();
+        plain.put("name", "plain");
+        workbook = createWorkbook();
+        transformer.transform(workbook, createBeans(plain));
+        sheet = workbook.getSheetAt(0);
+        assertEquals("plain", TestUtility.getStringCellValue(sheet, 0, 0));
+        assertNull(TestUtility.getStringCellValue(sheet, 1, 0));
+    }
+
+    /**
+     * Creates a template <code>Workbook</code> whose only cell is
+     * "${data.items.name}".
+     * @return A <code>Workbook</code>.
+     */
+    private static Workbook createWorkbook()
+    {
+        Workbook workbook = new XSSFWorkbook();
+        workbook.createSheet("Sheet1").createRow(0).createCell(0).setCellValue("${data.items.name}");
+        return workbook;
+    }
+}
@@ -0,0 +1,285 @@
+package net.sf.jett.test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.jdbc.JDBCExecutor;
+import net.sf.jett.jdbc.ResultSetCursor;
+import net.sf.jett.jdbc.ResultSetRow;
+
+/**
+ * This JUnit Test class tests the <code>ResultSetCursor</code> class, both
+ * directly and as the items of "forEach" tags, including closing a cursor
+ * whose loop stops early at its limit.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class JDBCCursorTest extends TestCase
+{
+    private static Connection theConnection;
+
+    private List<ResultSetCursor> myCursors = new ArrayList<>();
+
+    /**
+     * Creates and populates an in-memory HSQL DB prior to running any tests.
+     * @throws ClassNotFoundException If the HSQL DB driver was not found.
+     * @throws SQLException If there is an error connecting to the database.
+     */
+    @BeforeClass
+    public static void setUpOnce() throws ClassNotFoundException, SQLException
+    {
+        Class.forName("org.hsqldb.jdbcDriver");
+        theConnection = DriverManager.getConnection("jdbc:hsqldb:mem:jett-cursor-db", "sa", "");
+
+        update("CREATE TABLE employee (emp_id INTEGER, first_name VARCHAR(30), last_name VARCHAR(30), " +
+                "salary INTEGER, title VARCHAR(30))");
+        update("INSERT INTO employee VALUES (1, 'Robert', 'Stack', 1000, 'Data Structures Programmer')");
+        update("INSERT INTO employee VALUES (2, 'Suzie',  'Queue',  900, 'Data Structures Programmer')");
+        update("INSERT INTO employee VALUES (3, 'Elmer',  'Fudd',   800, 'Cartoon Character')");
+        update("INSERT INTO employee VALUES (4, 'Bugs',   'Bunny', 1500, 'Cartoon Character')");
+    }
+
+    /**
+     * Runs the given SQL Statement via a <code>Statement</code> and a call to
+     * <code>executeUpdate</code>.
+     * @param sql The SQL Statement.
+     * @throws SQLException If there is a problem executing the query.
+     */
+    private static void update(String sql) throws SQLException
+    {
+        try (Statement st = theConnection.createStatement())
+        {
+            st.executeUpdate(sql);
+        }
+    }
+
+    /**
+     * Shuts down the in-memory HSQL DB after all tests are run.
+     * @throws SQLException If there is a problem closing the connection.
+     */
+    @AfterClass
+    public static void cleanUpOnce() throws SQLException
+    {
+        if (theConnection != null)
+        {
+            try (Statement st = theConnection.createStatement())
+            {
+                st.execute("SHUTDOWN");
+            }
+            theConnection.close();
+        }
+    }
+
+    /**
+     * Tests the .xls template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Override
+    @Test
+    public void testXls() throws IOException, InvalidFormatException
+    {
+        super.testXls();
+    }
+
+    /**
+     * Tests the .xlsx template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Override
+    @Test
+    public void testXlsx() throws IOException, InvalidFormatException
+    {
+        super.testXlsx();
+    }
+
+    /**
+     * Tests that a cursor closes itself once its rows are exhausted, and that
+     * it may only be iterated once.
+     * @throws SQLException If there is a problem executing the query.
+     */
+    @Test
+    public void testCursorClosesWhenExhausted() throws SQLException
+    {
+        JDBCExecutor jdbc = new JDBCExecutor(theConnection);
+        jdbc.setFetchSize(2);
+        ResultSetCursor cursor = jdbc.execQueryCursor("SELECT * FROM employee WHERE salary > ? ORDER BY emp_id", 850);
+        List<String> firstNames = new ArrayList<>();
+        for (ResultSetRow row : cursor)
+        {
+            assertFalse(cursor.isClosed());
+            firstNames.add((String) row.get("first_name"));
+        }
+        assertEquals(Arrays.asList("Robert", "Suzie", "Bugs"), firstNames);
+        assertTrue(cursor.isClosed());
+        try
+        {
+            cursor.iterator();
+            fail("Expected IllegalStateException when iterating a cursor twice.");
+        }
+        catch (IllegalStateException expected) {}
+    }
+
+    /**
+     * Tests that a cursor may be closed before its rows are exhausted.
+     * @throws SQLException If there is a problem executing the query.
+     */
+    @Test
+    public void testCursorClosedEarly() throws SQLException
+    {
+        JDBCExecutor jdbc = new JDBCExecutor(theConnection);
+        try (ResultSetCursor cursor = jdbc.execQueryCursor("SELECT * FROM employee ORDER BY emp_id"))
+        {
+            Iterator<ResultSetRow> itr = cursor.iterator();
+            assertEquals("Stack", itr.next().get("last_name"));
+            cursor.close();
+            assertTrue(cursor.isClosed());
+            assertFalse(itr.hasNext());
+        }
+    }
+
+    /**
+     * Tests that row values are found by column name regardless of case, and
+     * that properties that aren't columns may be set and found.
+     * @throws SQLException If there is a problem executing the query.
+     */
+    @Test
+    public void testRowProperties() throws SQLException
+    {
+        JDBCExecutor jdbc = new JDBCExecutor(theConnection);
+        List<ResultSetRow> rows = jdbc.execQuery("SELECT * FROM employee WHERE emp_id = ?", 3);
+        assertEquals(1, rows.size());
+        ResultSetRow row = rows.get(0);
+        assertEquals("Elmer", row.get("first_name"));
+        assertEquals("Elmer", row.get("FIRST_NAME"));
+        assertEquals("Elmer", row.get("First_Name"));
+        assertNull(row.get("middle_name"));
+
+        row.set("Last_Name", "Fudd Jr.");
+        assertEquals("Fudd Jr.", row.get("last_name"));
+        row.set("Nickname", "Hunter");
+        assertEquals("Hunter", row.get("nickname"));
+        assertEquals(800, row.get("salary"));
+    }
+
+    /**
+     * Tests that when two columns' names differ only in case, the last column
+     * wins, whichever case the name is looked up in.
+     * @throws SQLException If there is a problem executing the query.
+     */
+    @Test
+    public void testRepeatedColumnNames() throws SQLException
+    {
+        JDBCExecutor jdbc = new JDBCExecutor(theConnection);
+        List<ResultSetRow> rows = jdbc.execQuery(
+                "SELECT first_name AS \"Name\", last_name AS \"NAME\" FROM employee WHERE emp_id = ?", 3);
+        assertEquals(1, rows.size());
+        ResultSetRow row = rows.get(0);
+        assertEquals("Fudd", row.get("Name"));
+        assertEquals("Fudd", row.get("NAME"));
+        assertEquals("Fudd", row.get("name"));
+        assertEquals("Fudd", row.get("nAmE"));
+    }
+
+    /**
+     * Returns the Excel name base for the template and resultant spreadsheets
+     * for this test.
+     * @return The Excel name base for this test.
+     */
+    @Override
+    protected String getExcelNameBase()
+    {
+        return "JDBCCursor";
+    }
+
+    /**
+     * Validate the newly created resultant <code>Workbook</code> with JUnit
+     * assertions.
+     * @param workbook A <code>Workbook</code>.
+     */
+    @Override
+    protected void check(Workbook workbook)
+    {
+        Sheet cursor = workbook.getSheetAt(0);
+        assertEquals("Robert", TestUtility.getStringCellValue(cursor, 1, 0));
+        assertEquals("Queue", TestUtility.getStringCellValue(cursor, 2, 1));
+        assertEquals(800, TestUtility.getNumericCellValue(cursor, 3, 2), Double.MIN_VALUE);
+        assertEquals("Bunny", TestUtility.getStringCellValue(cursor, 4, 1));
+        assertEquals("After", TestUtility.getStringCellValue(cursor, 5, 0));
+
+        Sheet prepared = workbook.getSheetAt(1);
+        assertEquals("Cartoon Character", TestUtility.getStringCellValue(prepared, 0, 0));
+        assertEquals("Elmer", TestUtility.getStringCellValue(prepared, 1, 0));
+        assertEquals("Bunny", TestUtility.getStringCellValue(prepared, 2, 1));
+        assertEquals("Data Structures Programmer", TestUtility.getStringCellValue(prepared, 3, 0));
+        assertEquals("Robert", TestUtility.getStringCellValue(prepared, 4, 0));
+        assertEquals("Queue", TestUtility.getStringCellValue(prepared, 5, 1));
+        assertEquals("Nonexistent Title", TestUtility.getStringCellValue(prepared, 6, 0));
+        assertTrue(TestUtility.isCellBlank(prepared, 7, 0));
+
+        Sheet limit = workbook.getSheetAt(2);
+        assertEquals("Robert", TestUtility.getStringCellValue(limit, 0, 0));
+        assertEquals("Queue", TestUtility.getStringCellValue(limit, 1, 1));
+        assertEquals("After", TestUtility.getStringCellValue(limit, 2, 0));
+        for (ResultSetCursor c : myCursors)
+        {
+            assertTrue(c.isClosed());
+        }
+    }
+
+    /**
+     * This test is a single map test.
+     * @return <code>false</code>.
+     */
+    @Override
+    protected boolean isMultipleBeans()
+    {
+        return false;
+    }
+
+    /**
+     * For single beans map tests, return the <code>Map</code> of bean names to
+     * bean values.
+     * @return A <code>Map</code> of bean names to bean values.
+     */
+    @Override
+    protected Map<String, Object> getBeansMap()
+    {
+        Map<String, Object> beans = new HashMap<>();
+        JDBCExecutor jdbc = new JDBCExecutor(theConnection);
+        beans.put("jdbc", jdbc);
+
+        List<String> titleSearches = Arrays.asList("Cartoon Character", "Data Structures Programmer", "Nonexistent Title");
+        beans.put("titleSearches", titleSearches);
+        try
+        {
+            ResultSetCursor cursor = jdbc.execQueryCursor("SELECT * FROM employee ORDER BY emp_id");
+            myCursors.add(cursor);
+            beans.put("cursor", cursor);
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+        return beans;
+    }
+}
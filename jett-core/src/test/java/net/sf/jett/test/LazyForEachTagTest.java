@@ -0,0 +1,283 @@
+package net.sf.jett.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.transform.ExcelTransformer;
+
+/**
+ * This JUnit Test class tests the evaluation of the "forEach" tag when the
+ * items are an <code>Iterable</code> that isn't a <code>Collection</code>,
+ * so they are consumed lazily.  It uses the "forEach" tag template, with the
+ * list of divisions exposed only as an <code>Iterable</code>, and expects
+ * the same results.  It also checks that a one-shot <code>Iterator</code>
+ * isn't read ahead of the item being transformed, with and without a "where"
+ * condition, and that the content below such a loop ends up right below its
+ * last iteration.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class LazyForEachTagTest extends ForEachTagTest
+{
+    private static final int NUM_ITEMS = 7;
+
+    /**
+     * Tests the .xls template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Override
+    @Test
+    public void testXls() throws IOException, InvalidFormatException
+    {
+        super.testXls();
+    }
+
+    /**
+     * Tests the .xlsx template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Override
+    @Test
+    public void testXlsx() throws IOException, InvalidFormatException
+    {
+        super.testXlsx();
+    }
+
+    /**
+     * Tests that a one-shot <code>Iterator</code> is read only as its items
+     * are transformed, and that the content below the loop, including a
+     * merged region and a row height, follows the last iteration.
+     */
+    @Test
+    public void testIteratorNotReadAhead()
+    {
+        OneShotIterator items = new OneShotIterator();
+        Sheet sheet = transformLoop("", items);
+
+        assertFalse(items.isReadAhead());
+        for (int i = 0; i < NUM_ITEMS; i++)
+        {
+            assertEquals(i, TestUtility.getNumericCellValue(sheet, i + 1, 0), DELTA);
+            assertEquals(i * 2, TestUtility.getNumericCellValue(sheet, i + 1, 1), DELTA);
+        }
+        checkContentBelow(sheet, NUM_ITEMS + 1);
+    }
+
+    /**
+     * Tests that a "where" condition on a one-shot <code>Iterator</code>
+     * doesn't pull the next item that satisfies it before the current item
+     * is transformed.
+     */
+    @Test
+    public void testWhereNotReadAhead()
+    {
+        OneShotIterator items = new OneShotIterator();
+        Sheet sheet = transformLoop(" where=\"${item.wanted}\"", items);
+
+        assertFalse(items.isReadAhead());
+        int rowNum = 1;
+        for (int i = 0; i < NUM_ITEMS; i++)
+        {
+            if (new Item(i).isWanted())
+            {
+                assertEquals(i, TestUtility.getNumericCellValue(sheet, rowNum, 0), DELTA);
+                assertEquals(i * 2, TestUtility.getNumericCellValue(sheet, rowNum, 1), DELTA);
+                rowNum++;
+            }
+        }
+        assertEquals(4, rowNum - 1);
+        checkContentBelow(sheet, rowNum);
+    }
+
+    /**
+     * Transforms a template with a "forEach" loop over the given items, with
+     * a merged row of a custom height and another row below the loop.
+     * @param attributes Any additional attributes of the "forEach" tag.
+     * @param items The items.
+     * @return The transformed <code>Sheet</code>.
+     */
+    private Sheet transformLoop(String attributes, Iterator<Item> items)
+    {
+        Workbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet("Items");
+        sheet.createRow(0).createCell(0).setCellValue("Items");
+        Row row = sheet.createRow(1);
+        row.createCell(0).setCellValue("<jt:forEach items=\"${items}\" var=\"item\"" + attributes + ">${item.value}");
+        row.createCell(1).setCellValue("${item.value * 2}</jt:forEach>");
+        row = sheet.createRow(2);
+        row.createCell(0).setCellValue("After");
+        row.setHeightInPoints(30);
+        sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, 1));
+        sheet.createRow(3).createCell(0).setCellValue("End");
+
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("items", items);
+        new ExcelTransformer().transform(workbook, beans);
+        return workbook.getSheetAt(0);
+    }
+
+    /**
+     * Checks the content that was below the loop in the template.
+     * @param sheet The transformed <code>Sheet</code>.
+     * @param rowNum The 0-based row number right below the last iteration.
+     */
+    private void checkContentBelow(Sheet sheet, int rowNum)
+    {
+        assertEquals("Items", TestUtility.getStringCellValue(sheet, 0, 0));
+        assertEquals("After", TestUtility.getStringCellValue(sheet, rowNum, 0));
+        assertEquals(30, sheet.getRow(rowNum).getHeightInPoints(), DELTA);
+        assertEquals(1, sheet.getNumMergedRegions());
+        assertTrue(TestUtility.isMergedRegionPresent(sheet, new CellRangeAddress(rowNum, rowNum, 0, 1)));
+        assertEquals("End", TestUtility.getStringCellValue(sheet, rowNum + 1, 0));
+        for (int r = rowNum + 2; r <= sheet.getLastRowNum(); r++)
+        {
+            assertTrue(TestUtility.isCellBlank(sheet, r, 0));
+            assertTrue(TestUtility.isCellBlank(sheet, r, 1));
+        }
+    }
+
+    /**
+     * For this test, the list of divisions is replaced by an
+     * <code>Iterable</code> over it that isn't a <code>Collection</code>.
+     * @return A <code>Map</code> of bean names to bean values.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Map<String, Object> getBeansMap()
+    {
+        Map<String, Object> beans = super.getBeansMap();
+        final List<Object> divisionsList = (List<Object>) beans.get("divisionsList");
+        beans.put("divisionsList", new Iterable<Object>()
+        {
+            @Override
+            public Iterator<Object> iterator()
+            {
+                return divisionsList.iterator();
+            }
+        });
+        return beans;
+    }
+
+    /**
+     * An item that knows whether its value has been rendered.
+     */
+    public static class Item
+    {
+        private int myValue;
+        private boolean amIRendered;
+
+        /**
+         * Constructs an <code>Item</code>.
+         * @param value The value.
+         */
+        public Item(int value)
+        {
+            myValue = value;
+            amIRendered = false;
+        }
+
+        /**
+         * Returns the value, marking this <code>Item</code> as rendered.
+         * @return The value.
+         */
+        public int getValue()
+        {
+            amIRendered = true;
+            return myValue;
+        }
+
+        /**
+         * Returns whether the value has been rendered.
+         * @return Whether the value has been rendered.
+         */
+        public boolean isRendered()
+        {
+            return amIRendered;
+        }
+
+        /**
+         * Returns whether this <code>Item</code> satisfies the "where"
+         * condition, without marking it as rendered.
+         * @return Whether the value isn't a multiple of 3.
+         */
+        public boolean isWanted()
+        {
+            return myValue % 3 != 0;
+        }
+    }
+
+    /**
+     * An <code>Iterator</code> over <code>NUM_ITEMS</code> <code>Items</code>
+     * that can only be consumed once, and that notes whether an item is
+     * requested before the previous wanted item has been rendered.
+     */
+    private static class OneShotIterator implements Iterator<Item>
+    {
+        private List<Item> myItems;
+        private int myIndex;
+        private boolean amIReadAhead;
+
+        /**
+         * Constructs a <code>OneShotIterator</code>.
+         */
+        public OneShotIterator()
+        {
+            myItems = new ArrayList<>(NUM_ITEMS);
+            for (int i = 0; i < NUM_ITEMS; i++)
+            {
+                myItems.add(new Item(i));
+            }
+            myIndex = 0;
+            amIReadAhead = false;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return myIndex < myItems.size();
+        }
+
+        @Override
+        public Item next()
+        {
+            if (myIndex > 0)
+            {
+                Item previous = myItems.get(myIndex - 1);
+                if (previous.isWanted() && !previous.isRendered())
+                    amIReadAhead = true;
+            }
+            return myItems.get(myIndex++);
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        /**
+         * Returns whether an item was requested too early.
+         * @return Whether an item was requested too early.
+         */
+        public boolean isReadAhead()
+        {
+            return amIReadAhead;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.sf.jett.test;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.expression.ExpressionFactory;
+import net.sf.jett.util.LruCache;
+
+/**
+ * This JUnit Test class tests the <code>LruCache</code>, including eviction
+ * of the least recently used entries and its counters, and the bounded
+ * expression caches of the <code>ExpressionFactory</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class LruCacheTest
+{
+    /**
+     * Tests that the least recently used entry is evicted first.
+     */
+    @Test
+    public void testEviction()
+    {
+        LruCache<String, Integer> cache = new LruCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("d", 4);
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(Integer.valueOf(3), cache.get("c"));
+        assertEquals(Integer.valueOf(4), cache.get("d"));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getNumEvictions());
+        assertEquals(4, cache.getNumHits());
+        assertEquals(1, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that a large cache never holds more than its maximum size.
+     */
+    @Test
+    public void testBounded()
+    {
+        LruCache<Integer, Integer> cache = new LruCache<>(1000);
+        for (int i = 0; i < 10000; i++)
+        {
+            cache.put(i, i);
+        }
+        assertTrue(cache.size() <= 1000);
+        assertEquals(10000 - cache.size(), cache.getNumEvictions());
+        assertEquals(Integer.valueOf(9999), cache.get(9999));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(9999));
+    }
+
+    /**
+     * Tests the counters of the expression caches of an
+     * <code>ExpressionFactory</code>.
+     */
+    @Test
+    public void testExpressionFactory()
+    {
+        ExpressionFactory factory = new ExpressionFactory();
+        assertEquals(ExpressionFactory.DEF_EXPRESSION_CACHE_SIZE, factory.getExpressionCacheSize());
+        factory.setExpressionCacheSize(2);
+        assertEquals(2, factory.getExpressionCacheSize());
+        assertSame(factory.createExpression("a + 1"), factory.createExpression("a + 1"));
+        factory.createExpression("a + 2");
+        factory.createExpression("a + 3");
+        factory.createQuietExpression("a + 1");
+        assertEquals(1, factory.getExpressionCacheNumHits());
+        assertEquals(4, factory.getExpressionCacheNumMisses());
+        assertEquals(1, factory.getExpressionCacheNumEvictions());
+    }
+}
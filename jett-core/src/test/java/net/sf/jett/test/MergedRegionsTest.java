@@ -0,0 +1,129 @@
+package net.sf.jett.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.model.MergedRegions;
+
+/**
+ * This JUnit Test class tests the <code>MergedRegions</code> index,
+ * including range queries, translating, copying, removing, and validation.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class MergedRegionsTest
+{
+    /**
+     * Creates <code>MergedRegions</code> with a 2x2 region every 3 rows in
+     * columns B:C, rows 1 through 30.
+     * @return The <code>MergedRegions</code>.
+     */
+    private static MergedRegions createRegions()
+    {
+        MergedRegions regions = new MergedRegions();
+        for (int row = 0; row < 30; row += 3)
+        {
+            regions.add(new CellRangeAddress(row, row + 1, 1, 2));
+        }
+        return regions;
+    }
+
+    /**
+     * Tests finding regions by top-left corner and by range.
+     */
+    @Test
+    public void testFind()
+    {
+        MergedRegions regions = createRegions();
+        assertEquals(10, regions.size());
+        CellRangeAddress found = regions.findAt(1, 6);
+        assertNotNull(found);
+        assertEquals(7, found.getLastRow());
+        assertNull(regions.findAt(2, 6));
+        assertNull(regions.findAt(1, 7));
+
+        // The region starting on row 9 ends outside the range.
+        assertEquals(2, regions.findWhollyContained(0, 5, 3, 9).size());
+        assertEquals(0, regions.findWhollyContained(2, 5, 0, 30).size());
+        assertEquals(0, regions.findWhollyContained(0, 5, 10, 3).size());
+    }
+
+    /**
+     * Tests translating regions.
+     */
+    @Test
+    public void testTranslate()
+    {
+        MergedRegions regions = createRegions();
+        assertEquals(2, regions.translate(0, 5, 24, 29, 0, 10));
+        assertNull(regions.findAt(1, 24));
+        assertNotNull(regions.findAt(1, 34));
+        assertNotNull(regions.findAt(1, 37));
+        assertEquals(10, regions.size());
+
+        assertEquals(1, regions.translate(1, 2, 0, 1, 3, 0));
+        assertNotNull(regions.findAt(4, 0));
+        assertNull(regions.findAt(1, 0));
+    }
+
+    /**
+     * Tests copying regions into consecutive blocks.
+     */
+    @Test
+    public void testCopy()
+    {
+        MergedRegions regions = new MergedRegions();
+        regions.add(new CellRangeAddress(0, 1, 0, 1));
+        regions.add(new CellRangeAddress(0, 0, 2, 3));
+        assertEquals(2, regions.copy(0, 3, 0, 1, 0, 2, 4));
+        assertEquals(8, regions.size());
+        assertNotNull(regions.findAt(0, 6));
+        assertNotNull(regions.findAt(2, 6));
+        regions.validate();
+
+        List<CellRangeAddress> all = new ArrayList<>();
+        for (CellRangeAddress region : regions)
+        {
+            all.add(region);
+        }
+        assertEquals(8, all.size());
+        for (int i = 1; i < all.size(); i++)
+        {
+            assertTrue(all.get(i - 1).getFirstRow() <= all.get(i).getFirstRow());
+        }
+    }
+
+    /**
+     * Tests removing regions.
+     */
+    @Test
+    public void testRemove()
+    {
+        MergedRegions regions = createRegions();
+        assertEquals(4, regions.removeWhollyContained(1, 2, 0, 11).size());
+        assertEquals(6, regions.size());
+        assertNull(regions.findAt(1, 9));
+
+        CellRangeAddress region = regions.findAt(1, 12);
+        assertTrue(regions.remove(region));
+        assertFalse(regions.remove(region));
+        assertEquals(5, regions.size());
+    }
+
+    /**
+     * Tests that validation catches overlapping regions.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testValidateOverlap()
+    {
+        MergedRegions regions = createRegions();
+        regions.validate();
+        regions.add(new CellRangeAddress(4, 4, 0, 1));
+        regions.validate();
+    }
+}
@@ -0,0 +1,200 @@
+package net.sf.jett.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hsqldb.jdbc.jdbcDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.jdbc.JDBCExecutor;
+import net.sf.jett.jdbc.NamedQueries;
+import net.sf.jett.jdbc.ResultSetRow;
+
+/**
+ * This JUnit Test class tests the <code>PreparedStatement</code> cache of
+ * <code>JDBCExecutor</code> and the concurrent execution of
+ * <code>NamedQueries</code> over a <code>DataSource</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class NamedQueriesTest
+{
+    private static jdbcDataSource theDataSource;
+    private static Connection theConnection;
+
+    /**
+     * Creates and populates an in-memory HSQL DB prior to running any tests.
+     * @throws SQLException If there is an error connecting to the database.
+     */
+    @BeforeClass
+    public static void setUpOnce() throws SQLException
+    {
+        theDataSource = new jdbcDataSource();
+        theDataSource.setDatabase("jdbc:hsqldb:mem:jett-named-queries-db");
+        theDataSource.setUser("sa");
+        theDataSource.setPassword("");
+        theConnection = theDataSource.getConnection();
+
+        update("CREATE TABLE employee (emp_id INTEGER, first_name VARCHAR(30), last_name VARCHAR(30), " +
+                "salary INTEGER, is_a_manager VARCHAR(1))");
+        update("INSERT INTO employee VALUES (1, 'Robert', 'Stack', 1000, 'Y')");
+        update("INSERT INTO employee VALUES (2, 'Suzie',  'Queue',  900, 'N')");
+        update("INSERT INTO employee VALUES (3, 'Elmer',  'Fudd',   800, 'N')");
+        update("INSERT INTO employee VALUES (4, 'Bugs',   'Bunny', 1500, 'Y')");
+    }
+
+    /**
+     * Runs the given SQL Statement via a <code>Statement</code> and a call to
+     * <code>executeUpdate</code>.
+     * @param sql The SQL Statement.
+     * @throws SQLException If there is a problem executing the query.
+     */
+    private static void update(String sql) throws SQLException
+    {
+        try (Statement st = theConnection.createStatement())
+        {
+            st.executeUpdate(sql);
+        }
+    }
+
+    /**
+     * Shuts down the in-memory HSQL DB after all tests are run.
+     * @throws SQLException If there is a problem closing the connection.
+     */
+    @AfterClass
+    public static void cleanUpOnce() throws SQLException
+    {
+        if (theConnection != null)
+        {
+            try (Statement st = theConnection.createStatement())
+            {
+                st.execute("SHUTDOWN");
+            }
+            theConnection.close();
+        }
+    }
+
+    /**
+     * Tests that cached <code>PreparedStatements</code> are reused for the
+     * same SQL, and that the least recently used one is replaced when the
+     * cache is full.
+     * @throws SQLException If there is a problem executing a query.
+     */
+    @Test
+    public void testStatementCache() throws SQLException
+    {
+        final AtomicInteger numPrepared = new AtomicInteger();
+        Connection counting = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+                if ("prepareStatement".equals(method.getName()))
+                    numPrepared.incrementAndGet();
+                try
+                {
+                    return method.invoke(theConnection, args);
+                }
+                catch (InvocationTargetException e)
+                {
+                    throw e.getCause();
+                }
+            }
+        });
+
+        String bySalary = "SELECT * FROM employee WHERE salary > ? ORDER BY emp_id";
+        String byManager = "SELECT * FROM employee WHERE is_a_manager = ? ORDER BY emp_id";
+        String byId = "SELECT * FROM employee WHERE emp_id = ?";
+        try (JDBCExecutor jdbc = new JDBCExecutor(counting))
+        {
+            jdbc.setStatementCacheSize(2);
+            assertEquals(3, jdbc.execQuery(bySalary, 850).size());
+            assertEquals(1, jdbc.execQuery(bySalary, 1200).size());
+            assertEquals(2, jdbc.execQuery(byManager, "Y").size());
+            assertEquals("Suzie", jdbc.execQuery(byManager, "N").get(0).get("first_name"));
+            assertEquals(2, numPrepared.get());
+
+            // Evicts the salary statement, the least recently used.
+            assertEquals("Fudd", jdbc.execQuery(byId, 3).get(0).get("last_name"));
+            assertEquals(3, numPrepared.get());
+            assertEquals(2, jdbc.execQuery(byManager, "N").size());
+            assertEquals(3, numPrepared.get());
+            assertEquals(4, jdbc.execQuery(bySalary, 0).size());
+            assertEquals(4, numPrepared.get());
+        }
+    }
+
+    /**
+     * Tests that named queries are all executed, with and without bind
+     * variables, into a <code>Map</code> of beans.
+     * @throws SQLException If there is a problem executing a query.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNamedQueries() throws SQLException
+    {
+        NamedQueries queries = new NamedQueries();
+        queries.addQuery("employees", "SELECT * FROM employee ORDER BY emp_id");
+        queries.addQuery("managers", "SELECT * FROM employee WHERE is_a_manager = ? ORDER BY emp_id", "Y");
+        queries.addQuery("highPaid", "SELECT * FROM employee WHERE salary >= ? ORDER BY emp_id", 1000);
+        assertEquals(3, queries.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Map<String, Object> beans;
+        try
+        {
+            beans = queries.execute(theDataSource, executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertEquals(3, beans.size());
+        List<ResultSetRow> employees = (List<ResultSetRow>) beans.get("employees");
+        assertEquals(4, employees.size());
+        assertEquals("Queue", employees.get(1).get("last_name"));
+        List<ResultSetRow> managers = (List<ResultSetRow>) beans.get("managers");
+        assertEquals(2, managers.size());
+        assertEquals("Bugs", managers.get(1).get("first_name"));
+        List<ResultSetRow> highPaid = (List<ResultSetRow>) beans.get("highPaid");
+        assertEquals(2, highPaid.size());
+
+        // With its own pool, and in the order the queries were added.
+        assertEquals(Arrays.asList("employees", "managers", "highPaid"),
+                new ArrayList<>(queries.execute(theDataSource).keySet()));
+    }
+
+    /**
+     * Tests that a failing named query's <code>SQLException</code> is thrown.
+     */
+    @Test
+    public void testNamedQueryFailure()
+    {
+        NamedQueries queries = new NamedQueries();
+        queries.addQuery("employees", "SELECT * FROM employee");
+        queries.addQuery("missing", "SELECT * FROM no_such_table");
+        try
+        {
+            queries.execute(theDataSource);
+            fail("Expected SQLException from a query of a missing table.");
+        }
+        catch (SQLException expected) {}
+    }
+}
@@ -0,0 +1,262 @@
+package net.sf.jett.test;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import net.sf.jett.event.SheetEvent;
+import net.sf.jett.event.SheetListener;
+import net.sf.jett.transform.ExcelTransformer;
+
+/**
+ * This JUnit Test class tests transforming sheet specific beans sheets in
+ * parallel.  It uses the multiple bean maps template, which clones one sheet
+ * many times, and the style tag template, whose sheets create many new cell
+ * styles and fonts that must be matched or created in the resultant
+ * <code>Workbook</code>.  The image template's sheets get drawings, so they
+ * can't be assembled, and must be transformed one after another, and only
+ * once.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class ParallelSheetsTest
+{
+    private static final int NUM_THREADS = 3;
+
+    /**
+     * Tests the .xls multiple bean maps template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testMultipleBeanMapsXls() throws IOException, InvalidFormatException
+    {
+        testMultipleBeanMaps("templates/MultipleBeanMapsTemplate.xls");
+    }
+
+    /**
+     * Tests the .xlsx multiple bean maps template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testMultipleBeanMapsXlsx() throws IOException, InvalidFormatException
+    {
+        testMultipleBeanMaps("templates/MultipleBeanMapsTemplate.xlsx");
+    }
+
+    /**
+     * Tests the .xls style tag template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testStyleTagXls() throws IOException, InvalidFormatException
+    {
+        testStyleTag("templates/StyleTagTemplate.xls");
+    }
+
+    /**
+     * Tests the .xlsx style tag template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testStyleTagXlsx() throws IOException, InvalidFormatException
+    {
+        testStyleTag("templates/StyleTagTemplate.xlsx");
+    }
+
+    /**
+     * Tests the .xls image template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testImageXls() throws IOException, InvalidFormatException
+    {
+        testImage("templates/ImageTagTemplate.xls");
+    }
+
+    /**
+     * Tests the .xlsx image template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testImageXlsx() throws IOException, InvalidFormatException
+    {
+        testImage("templates/ImageTagTemplate.xlsx");
+    }
+
+    /**
+     * Transforms the multiple bean maps template in parallel and checks the
+     * result.
+     * @param filename The template filename.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    private void testMultipleBeanMaps(String filename) throws IOException, InvalidFormatException
+    {
+        MultipleBeanMapsTest test = new MultipleBeanMapsTest();
+        ExcelTransformer transformer = new ExcelTransformer();
+        test.setupTransformer(transformer);
+        Workbook workbook = transformInParallel(transformer, filename, test.getListOfTemplateSheetNames(),
+                test.getListOfResultSheetNames(), test.getListOfBeansMaps());
+        test.check(workbook);
+    }
+
+    /**
+     * Transforms every sheet of the style tag template, with its own beans
+     * map, in parallel and checks the result.
+     * @param filename The template filename.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    private void testStyleTag(String filename) throws IOException, InvalidFormatException
+    {
+        List<String> sheetNames = getSheetNames(filename);
+        StyleTagTest test = new StyleTagTest();
+        List<Map<String, Object>> beansList = new ArrayList<>();
+        for (int i = 0; i < sheetNames.size(); i++)
+        {
+            beansList.add(new HashMap<>(test.getBeansMap()));
+        }
+        ExcelTransformer transformer = new ExcelTransformer();
+        test.setupTransformer(transformer);
+        Workbook workbook = transformInParallel(transformer, filename, sheetNames, sheetNames, beansList);
+        test.check(workbook);
+    }
+
+    /**
+     * Transforms the image template, cloning its sheet, with parallelism
+     * turned on, and checks that its sheets were transformed once each, one
+     * after another, in the resultant <code>Workbook</code>.
+     * @param filename The template filename.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    private void testImage(String filename) throws IOException, InvalidFormatException
+    {
+        String templateSheetName = getSheetNames(filename).get(0);
+        List<String> templateSheetNames = new ArrayList<>();
+        List<String> newSheetNames = new ArrayList<>();
+        List<Map<String, Object>> beansList = new ArrayList<>();
+        ImageTest test = new ImageTest();
+        for (int i = 0; i < NUM_THREADS; i++)
+        {
+            templateSheetNames.add(templateSheetName);
+            newSheetNames.add(templateSheetName + i);
+            beansList.add(new HashMap<>(test.getBeansMap()));
+        }
+        ExcelTransformer transformer = new ExcelTransformer();
+        final Set<Workbook> transformedIn = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<Workbook, Boolean>()));
+        final AtomicInteger numSheetsProcessed = new AtomicInteger();
+        transformer.addSheetListener(new SheetListener()
+        {
+            @Override
+            public boolean beforeSheetProcessed(SheetEvent event)
+            {
+                transformedIn.add(event.getSheet().getWorkbook());
+                numSheetsProcessed.incrementAndGet();
+                return true;
+            }
+
+            @Override
+            public void sheetProcessed(SheetEvent event) {}
+        });
+        transformer.setSheetParallelism(NUM_THREADS);
+
+        Workbook workbook;
+        try (InputStream fileIn = new BufferedInputStream(new FileInputStream(filename)))
+        {
+            workbook = transformer.transform(fileIn, templateSheetNames, newSheetNames, beansList);
+        }
+        assertEquals(NUM_THREADS, numSheetsProcessed.get());
+        assertEquals(1, transformedIn.size());
+        assertTrue(transformedIn.contains(workbook));
+        test.check(workbook);
+    }
+
+    /**
+     * Returns the names of all sheets in the given template.
+     * @param filename The template filename.
+     * @return A <code>List</code> of sheet names.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    private List<String> getSheetNames(String filename) throws IOException, InvalidFormatException
+    {
+        List<String> sheetNames = new ArrayList<>();
+        try (InputStream fileIn = new BufferedInputStream(new FileInputStream(filename)))
+        {
+            Workbook template = WorkbookFactory.create(fileIn);
+            for (int i = 0; i < template.getNumberOfSheets(); i++)
+            {
+                sheetNames.add(template.getSheetName(i));
+            }
+        }
+        return sheetNames;
+    }
+
+    /**
+     * Transforms the given template with sheet specific beans, with
+     * <code>NUM_THREADS</code> threads, and checks that the sheets were
+     * transformed outside of the resultant <code>Workbook</code>.
+     * @param transformer The <code>ExcelTransformer</code>.
+     * @param filename The template filename.
+     * @param templateSheetNames The <code>List</code> of template sheet names.
+     * @param newSheetNames The <code>List</code> of new sheet names.
+     * @param beansList The <code>List</code> of beans maps.
+     * @return The resultant <code>Workbook</code>.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    private Workbook transformInParallel(ExcelTransformer transformer, String filename,
+                                         List<String> templateSheetNames, List<String> newSheetNames,
+                                         List<Map<String, Object>> beansList) throws IOException, InvalidFormatException
+    {
+        final Set<Workbook> transformedIn = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<Workbook, Boolean>()));
+        transformer.addSheetListener(new SheetListener()
+        {
+            @Override
+            public boolean beforeSheetProcessed(SheetEvent event)
+            {
+                transformedIn.add(event.getSheet().getWorkbook());
+                return true;
+            }
+
+            @Override
+            public void sheetProcessed(SheetEvent event) {}
+        });
+        transformer.setSheetParallelism(NUM_THREADS);
+
+        Workbook workbook;
+        try (InputStream fileIn = new BufferedInputStream(new FileInputStream(filename)))
+        {
+            workbook = transformer.transform(fileIn, templateSheetNames, newSheetNames, beansList);
+        }
+        assertEquals(NUM_THREADS, transformedIn.size());
+        assertFalse(transformedIn.contains(workbook));
+        return workbook;
+    }
+}
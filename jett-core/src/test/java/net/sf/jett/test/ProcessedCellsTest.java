@@ -0,0 +1,97 @@
+package net.sf.jett.test;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.model.ProcessedCells;
+
+/**
+ * This JUnit Test class tests the <code>ProcessedCells</code> bitmap,
+ * including growing and moving, copying, and removing processed cells.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class ProcessedCellsTest
+{
+    /**
+     * Tests adding and removing processed cells, including growing.
+     */
+    @Test
+    public void testAddAndRemove()
+    {
+        ProcessedCells cells = new ProcessedCells();
+        assertFalse(cells.contains(0, 0));
+        cells.add(0, 0);
+        cells.add(1000, 63);
+        cells.add(1000, 64);
+        cells.add(5, 16383);
+        assertTrue(cells.contains(0, 0));
+        assertTrue(cells.contains(1000, 63));
+        assertTrue(cells.contains(1000, 64));
+        assertTrue(cells.contains(5, 16383));
+        assertFalse(cells.contains(1000, 65));
+        assertFalse(cells.contains(5, 16319));
+        assertFalse(cells.contains(2000, 0));
+        assertEquals(4, cells.size());
+
+        cells.remove(1000, 63);
+        cells.remove(3000, 1);
+        assertFalse(cells.contains(1000, 63));
+        assertTrue(cells.contains(1000, 64));
+        assertEquals(3, cells.size());
+
+        cells.removeRow(1000);
+        assertFalse(cells.contains(1000, 64));
+        assertEquals(2, cells.size());
+    }
+
+    /**
+     * Tests removing a range of processed cells.
+     */
+    @Test
+    public void testRemoveRange()
+    {
+        ProcessedCells cells = new ProcessedCells();
+        for (int r = 0; r < 10; r++)
+        {
+            for (int c = 0; c < 10; c++)
+            {
+                cells.add(r, c);
+            }
+        }
+        cells.remove(2, 4, 3, 5);
+        assertEquals(91, cells.size());
+        assertFalse(cells.contains(3, 2));
+        assertFalse(cells.contains(5, 4));
+        assertTrue(cells.contains(3, 1));
+        assertTrue(cells.contains(6, 4));
+    }
+
+    /**
+     * Tests moving and copying processed cells.
+     */
+    @Test
+    public void testMoveAndCopy()
+    {
+        ProcessedCells cells = new ProcessedCells();
+        cells.add(1, 1);
+        cells.add(4, 1);
+
+        // Moving an unprocessed cell onto a processed one unmarks it.
+        cells.move(2, 1, 4, 1);
+        assertFalse(cells.contains(4, 1));
+
+        cells.move(1, 1, 200, 100);
+        assertFalse(cells.contains(1, 1));
+        assertTrue(cells.contains(200, 100));
+
+        cells.copy(200, 100, 201, 100);
+        assertTrue(cells.contains(200, 100));
+        assertTrue(cells.contains(201, 100));
+
+        cells.move(201, 100, 201, 100);
+        assertTrue(cells.contains(201, 100));
+        assertEquals(2, cells.size());
+    }
+}
@@ -0,0 +1,153 @@
+package net.sf.jett.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.jdbc.JDBCExecutor;
+import net.sf.jett.jdbc.QueryResultCache;
+import net.sf.jett.jdbc.ResultSetRow;
+
+/**
+ * This JUnit Test class tests the <code>QueryResultCache</code>, including
+ * its size and time to live limits, its counters, and invalidation.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class QueryResultCacheTest
+{
+    private static final String REGIONS = "SELECT * FROM region ORDER BY region_id";
+    private static final String REGION_BY_ID = "SELECT * FROM region WHERE region_id = ?";
+
+    private static Connection theConnection;
+
+    /**
+     * Creates and populates an in-memory HSQL DB prior to running any tests.
+     * @throws ClassNotFoundException If the HSQL DB driver was not found.
+     * @throws SQLException If there is an error connecting to the database.
+     */
+    @BeforeClass
+    public static void setUpOnce() throws ClassNotFoundException, SQLException
+    {
+        Class.forName("org.hsqldb.jdbcDriver");
+        theConnection = DriverManager.getConnection("jdbc:hsqldb:mem:jett-result-cache-db", "sa", "");
+
+        update("CREATE TABLE region (region_id INTEGER, name VARCHAR(30))");
+        update("INSERT INTO region VALUES (1, 'North')");
+        update("INSERT INTO region VALUES (2, 'South')");
+        update("INSERT INTO region VALUES (3, 'East')");
+    }
+
+    /**
+     * Runs the given SQL Statement via a <code>Statement</code> and a call to
+     * <code>executeUpdate</code>.
+     * @param sql The SQL Statement.
+     * @throws SQLException If there is a problem executing the query.
+     */
+    private static void update(String sql) throws SQLException
+    {
+        try (Statement st = theConnection.createStatement())
+        {
+            st.executeUpdate(sql);
+        }
+    }
+
+    /**
+     * Shuts down the in-memory HSQL DB after all tests are run.
+     * @throws SQLException If there is a problem closing the connection.
+     */
+    @AfterClass
+    public static void cleanUpOnce() throws SQLException
+    {
+        if (theConnection != null)
+        {
+            try (Statement st = theConnection.createStatement())
+            {
+                st.execute("SHUTDOWN");
+            }
+            theConnection.close();
+        }
+    }
+
+    /**
+     * Tests that repeated queries share cached, read-only rows, keyed by SQL
+     * and bind variable values, and that the least recently used result is
+     * evicted when the cache is full.
+     * @throws SQLException If there is a problem executing a query.
+     */
+    @Test
+    public void testHitsMissesAndSize() throws SQLException
+    {
+        QueryResultCache cache = new QueryResultCache(2, 1, TimeUnit.HOURS);
+        JDBCExecutor jdbc = new JDBCExecutor(theConnection);
+        jdbc.setResultCache(cache);
+        JDBCExecutor other = new JDBCExecutor(theConnection);
+        other.setResultCache(cache);
+
+        List<ResultSetRow> regions = jdbc.execQuery(REGIONS);
+        assertEquals(3, regions.size());
+        assertSame(regions, other.execQuery(REGIONS));
+        List<ResultSetRow> south = jdbc.execQuery(REGION_BY_ID, 2);
+        assertEquals("South", south.get(0).get("name"));
+        assertSame(south, jdbc.execQuery(REGION_BY_ID, 2));
+        assertEquals("East", jdbc.execQuery(REGION_BY_ID, 3).get(0).get("name"));
+        assertEquals(2, cache.getNumHits());
+        assertEquals(3, cache.getNumMisses());
+        // The regions result was the least recently used.
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getNumEvictions());
+        assertNotSame(regions, jdbc.execQuery(REGIONS));
+
+        try
+        {
+            regions.remove(0);
+            fail("Expected UnsupportedOperationException modifying cached rows.");
+        }
+        catch (UnsupportedOperationException expected) {}
+        try
+        {
+            south.get(0).set("name", "Deep South");
+            fail("Expected UnsupportedOperationException modifying a cached row.");
+        }
+        catch (UnsupportedOperationException expected) {}
+    }
+
+    /**
+     * Tests that cached results expire, and that they may be invalidated.
+     * @throws Exception If there is a problem executing a query or sleeping.
+     */
+    @Test
+    public void testExpirationAndInvalidation() throws Exception
+    {
+        QueryResultCache cache = new QueryResultCache(10, 50, TimeUnit.MILLISECONDS);
+        JDBCExecutor jdbc = new JDBCExecutor(theConnection);
+        jdbc.setResultCache(cache);
+
+        List<ResultSetRow> regions = jdbc.execQuery(REGIONS);
+        Thread.sleep(100);
+        assertNotSame(regions, jdbc.execQuery(REGIONS));
+        assertEquals(0, cache.getNumHits());
+        assertEquals(1, cache.getNumEvictions());
+
+        cache = new QueryResultCache(10, 1, TimeUnit.HOURS);
+        jdbc.setResultCache(cache);
+        jdbc.execQuery(REGIONS);
+        jdbc.execQuery(REGION_BY_ID, 1);
+        jdbc.execQuery(REGION_BY_ID, 2);
+        assertEquals(3, cache.size());
+        cache.invalidate(REGION_BY_ID);
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getNumEvictions());
+    }
+}
@@ -0,0 +1,252 @@
+package net.sf.jett.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jett.event.CellEvent;
+import net.sf.jett.event.CellListener;
+import net.sf.jett.transform.CompiledTemplate;
+import net.sf.jett.transform.ExcelTransformer;
+
+/**
+ * This JUnit Test class tests the streaming mode of JETT, in which finished
+ * rows are spooled out of memory during transformation and written through a
+ * sliding window.  It uses the fixed collections template, whose sheets
+ * contain loops, merged regions, and blank rows from fixed size collections.
+ * It also checks that the rows generated by a single loop over many items
+ * are spooled while the loop runs.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class StreamingTest extends TestCase
+{
+    private static final int NUM_ITEMS = 5000;
+    private static final int MAX_RESIDENT_ROWS = 10;
+
+    /**
+     * Tests the .xls template spreadsheet.  Streaming mode has no effect on
+     * .xls spreadsheets.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Override
+    @Test
+    public void testXlsFiles() throws IOException, InvalidFormatException
+    {
+        super.testXlsFiles();
+    }
+
+    /**
+     * Tests the .xlsx template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Override
+    @Test
+    public void testXlsxFiles() throws IOException, InvalidFormatException
+    {
+        super.testXlsxFiles();
+    }
+
+    /**
+     * Tests that the rows generated by a loop over a <code>List</code> are
+     * spooled as the loop runs, instead of after it.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testLoopRowsSpooled() throws IOException, InvalidFormatException
+    {
+        checkLoopRowsSpooled(getItems());
+    }
+
+    /**
+     * Tests that the rows generated by a loop over items that are consumed
+     * lazily are spooled as the loop runs, instead of after it.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testLazyLoopRowsSpooled() throws IOException, InvalidFormatException
+    {
+        final List<Integer> items = getItems();
+        checkLoopRowsSpooled(new Iterable<Integer>()
+        {
+            @Override
+            public Iterator<Integer> iterator()
+            {
+                return items.iterator();
+            }
+        });
+    }
+
+    /**
+     * Transforms a template with a single loop over the given items in
+     * streaming mode, checking that no more than a few rows were ever in
+     * memory at once, and checks the result.
+     * @param items The items of the loop.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    private void checkLoopRowsSpooled(Object items) throws IOException, InvalidFormatException
+    {
+        ExcelTransformer transformer = new ExcelTransformer();
+        transformer.setStreamingWindowSize(100);
+        final int[] maxRows = new int[1];
+        transformer.addCellListener(new CellListener()
+        {
+            @Override
+            public boolean beforeCellProcessed(CellEvent event)
+            {
+                return true;
+            }
+
+            @Override
+            public void cellProcessed(CellEvent event)
+            {
+                maxRows[0] = Math.max(maxRows[0], event.getCell().getSheet().getPhysicalNumberOfRows());
+            }
+        });
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("items", items);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transformer.transform(createLoopTemplate(), out, beans);
+        assertTrue("Rows in memory: " + maxRows[0], maxRows[0] <= MAX_RESIDENT_ROWS);
+
+        Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(out.toByteArray()));
+        Sheet sheet = workbook.getSheetAt(0);
+        assertEquals("Items", TestUtility.getStringCellValue(sheet, 0, 0));
+        for (int i = 0; i < NUM_ITEMS; i++)
+        {
+            Row row = sheet.getRow(i + 1);
+            assertEquals(i, row.getCell(0).getNumericCellValue(), 0);
+            assertEquals(2 * i, row.getCell(1).getNumericCellValue(), 0);
+        }
+        assertEquals("After", TestUtility.getStringCellValue(sheet, NUM_ITEMS + 1, 0));
+    }
+
+    /**
+     * Creates a template with a header row, a loop over the "items" bean, and
+     * a row after the loop.
+     * @return A <code>CompiledTemplate</code>.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the template is invalid.
+     */
+    private CompiledTemplate createLoopTemplate() throws IOException, InvalidFormatException
+    {
+        Workbook template = new XSSFWorkbook();
+        Sheet sheet = template.createSheet("Items");
+        sheet.createRow(0).createCell(0).setCellValue("Items");
+        Row row = sheet.createRow(1);
+        row.createCell(0).setCellValue("<jt:forEach items=\"${items}\" var=\"item\">${item}");
+        row.createCell(1).setCellValue("${item * 2}</jt:forEach>");
+        sheet.createRow(2).createCell(0).setCellValue("After");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.write(out);
+        return CompiledTemplate.compile(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Returns the items of the loop.
+     * @return A <code>List</code> of the integers from <code>0</code> until
+     *    <code>NUM_ITEMS</code>.
+     */
+    private List<Integer> getItems()
+    {
+        List<Integer> items = new ArrayList<>(NUM_ITEMS);
+        for (int i = 0; i < NUM_ITEMS; i++)
+        {
+            items.add(i);
+        }
+        return items;
+    }
+
+    /**
+     * Returns the Excel name base for the template and resultant spreadsheets
+     * for this test.
+     * @return The Excel name base for this test.
+     */
+    @Override
+    protected String getExcelNameBase()
+    {
+        return "FixedCollections";
+    }
+
+    /**
+     * Call certain setup-related methods on the <code>ExcelTransformer</code>
+     * before template sheet transformation.
+     * @param transformer The <code>ExcelTransformer</code> that will transform
+     *    the template worksheet(s).
+     */
+    @Override
+    protected void setupTransformer(ExcelTransformer transformer)
+    {
+        transformer.addFixedSizeCollectionName("division.teams");
+        transformer.addFixedSizeCollectionName("divisionsList.teams");
+        transformer.setStreamingWindowSize(2);
+    }
+
+    /**
+     * Validate the newly created resultant <code>Workbook</code> with JUnit
+     * assertions.
+     * @param workbook A <code>Workbook</code>.
+     */
+    @Override
+    protected void check(Workbook workbook)
+    {
+        for (int s = 0; s < 2; s++)
+        {
+            Sheet sheet = workbook.getSheetAt(s);
+            assertEquals("Division: Atlantic", TestUtility.getStringCellValue(sheet, 0, 0));
+            assertEquals("Philadelphia", TestUtility.getStringCellValue(sheet, 3, 0));
+            assertEquals("Raptors", TestUtility.getStringCellValue(sheet, 6, 1));
+            assertEquals("Division: Pacific", TestUtility.getStringCellValue(sheet, 28, 0));
+            assertTrue(TestUtility.isMergedRegionPresent(sheet, new CellRangeAddress(28, 28, 0, 4)));
+            assertTrue(TestUtility.isCellBlank(sheet, 44, 0));
+            assertTrue(TestUtility.isCellBlank(sheet, 48, 0));
+            assertEquals("Division: Of Their Own", TestUtility.getStringCellValue(sheet, 49, 0));
+            assertEquals("Harlem", TestUtility.getStringCellValue(sheet, 51, 0));
+            assertTrue(TestUtility.isCellBlank(sheet, 55, 0));
+            assertEquals("After", TestUtility.getStringCellValue(sheet, 56, 0));
+            assertEquals(8, sheet.getNumMergedRegions());
+        }
+    }
+
+    /**
+     * This test is a single map test.
+     * @return <code>false</code>.
+     */
+    @Override
+    protected boolean isMultipleBeans()
+    {
+        return false;
+    }
+
+    /**
+     * For single beans map tests, return the <code>Map</code> of bean names to
+     * bean values.
+     * @return A <code>Map</code> of bean names to bean values.
+     */
+    @Override
+    protected Map<String, Object> getBeansMap()
+    {
+        return TestUtility.getDivisionData();
+    }
+}
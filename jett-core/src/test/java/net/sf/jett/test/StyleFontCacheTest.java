@@ -13,6 +13,7 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.hssf.util.HSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.junit.Test;
@@ -198,6 +199,23 @@ public class StyleFontCacheTest extends TestCase
         FontCache fCache = new FontCache(workbook);
     }
 
+    /**
+     * Tests that the RGB values of colors, which the caches' keys use, match
+     * their hex strings.
+     */
+    @Test
+    public void testColorRgb()
+    {
+        Color red = new HSSFColor.RED();
+        assertEquals(0xFF0000, SheetUtil.getColorRgb(red));
+        assertEquals("ff0000", SheetUtil.getColorHexString(red));
+        Color blue = new XSSFColor(new byte[] {0, 0, 0, (byte) 0xFF});
+        assertEquals(0x0000FF, SheetUtil.getColorRgb(blue));
+        assertEquals("0000ff", SheetUtil.getColorHexString(blue));
+        assertEquals(0, SheetUtil.getColorRgb(null));
+        assertEquals("000000", SheetUtil.getColorHexString(null));
+    }
+
     /**
      * This test is a single map test.
      * @return <code>false</code>.
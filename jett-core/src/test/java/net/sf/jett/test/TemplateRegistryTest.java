@@ -0,0 +1,79 @@
+package net.sf.jett.test;
+
+import java.io.IOException;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import net.sf.jett.transform.CompiledTemplate;
+import net.sf.jett.transform.ExcelTransformer;
+import net.sf.jett.transform.TemplateRegistry;
+
+/**
+ * This JUnit Test class tests that a <code>TemplateRegistry</code> loads each
+ * template once, and that transformations from registered templates, whose
+ * cell style and font caches start from pre-built indexes, are correct.  It
+ * uses the style tag template, which creates and reuses many cell styles and
+ * fonts.
+ *
+ * @author Randy Gettman
+ * @since 0.11.1
+ */
+public class TemplateRegistryTest
+{
+    private static final String TEMPLATE_BASE = "templates/StyleTagTemplate";
+
+    /**
+     * Tests the .xls template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testXls() throws IOException, InvalidFormatException
+    {
+        testRegistry(TEMPLATE_BASE + ".xls");
+    }
+
+    /**
+     * Tests the .xlsx template spreadsheet.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    @Test
+    public void testXlsx() throws IOException, InvalidFormatException
+    {
+        testRegistry(TEMPLATE_BASE + ".xlsx");
+    }
+
+    /**
+     * Gets the given template from a registry twice, checks that it was
+     * loaded only once, and transforms it twice, checking both results.
+     * @param filename The template filename.
+     * @throws IOException If an I/O error occurs.
+     * @throws InvalidFormatException If the input spreadsheet is invalid.
+     */
+    private void testRegistry(String filename) throws IOException, InvalidFormatException
+    {
+        TemplateRegistry registry = new TemplateRegistry();
+        CompiledTemplate template = registry.getTemplate(filename);
+        assertSame(template, registry.getTemplate(filename));
+        assertSame(template, registry.get(filename));
+        assertEquals(1, registry.size());
+
+        StyleTagTest styleTagTest = new StyleTagTest();
+        ExcelTransformer transformer = new ExcelTransformer();
+        styleTagTest.setupTransformer(transformer);
+        for (int i = 0; i < 2; i++)
+        {
+            Workbook workbook = transformer.transform(registry.getTemplate(filename), styleTagTest.getBeansMap());
+            styleTagTest.check(workbook);
+        }
+
+        registry.remove(filename);
+        assertNull(registry.get(filename));
+        assertEquals(0, registry.size());
+    }
+}